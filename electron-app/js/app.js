@@ -11,6 +11,8 @@ class TradingApp {
         this.socket = null;
         this.refreshInterval = null;  // 定时刷新器
         this.isWebSocketConnected = false;  // WebSocket连接状态
+        this.accountState = null;  // WebSocket推送合并后的账户信息
+        this.accountSeq = 0;  // 最后应用的推送帧序号
         
         this.init();
     }
@@ -847,14 +849,10 @@ class TradingApp {
                             // console.log('消息体长度:', message.body ? message.body.length : 0);
                             // console.log('消息体前200字符:', message.body ? message.body.substring(0, 200) : 'null');
                             
-                            const accountInfo = JSON.parse(message.body);
+                            const frame = JSON.parse(message.body);
                             // console.log('========== 收到WebSocket账户更新 ==========');
-                            // console.log('账户信息:', {
-                            //     totalBalance: accountInfo.totalBalance,
-                            //     positionsCount: accountInfo.positions ? accountInfo.positions.length : 0,
-                            //     positions: accountInfo.positions
-                            // });
-                            this.updateAccountInfo(accountInfo);
+                            // console.log('推送帧:', frame.type, frame.seq);
+                            this.applyAccountFrame(frame);
                             // console.log('========== 账户信息更新完成 ==========');
                         } catch (error) {
                             console.error('解析WebSocket消息失败:', error);
@@ -926,6 +924,43 @@ class TradingApp {
         }
     }
     
+    /**
+     * 应用账户推送帧：snapshot 替换本地账户信息，delta 合并变化的字段和持仓
+     * 增量不连续（baseSeq 与本地序号不一致）时丢弃并请求完整快照
+     */
+    applyAccountFrame(frame) {
+        if (frame.type === 'delta') {
+            if (!this.accountState || frame.baseSeq !== this.accountSeq) {
+                console.warn('账户增量不连续，请求完整快照:', frame.baseSeq, this.accountSeq);
+                this.accountState = null;
+                if (this.stompClient && this.stompClient.connected) {
+                    this.stompClient.send('/app/account/request', {}, {});
+                }
+                return;
+            }
+            const state = this.accountState;
+            ['totalBalance', 'availableBalance', 'frozenBalance', 'equity', 'unrealizedPnl', 'timestamp', 'metadata']
+                .forEach(field => {
+                    if (field in frame) {
+                        state[field] = frame[field];
+                    }
+                });
+            const positionKey = (p) => `${p.symbol}:${p.side}`;
+            const positions = new Map((state.positions || []).map(p => [positionKey(p), p]));
+            (frame.removed || []).forEach(p => positions.delete(positionKey(p)));
+            (frame.positions || []).forEach(change => {
+                const key = positionKey(change);
+                positions.set(key, Object.assign(positions.get(key) || {}, change));
+            });
+            state.positions = Array.from(positions.values());
+        } else {
+            // snapshot（或旧版本服务端的完整账户信息）
+            this.accountState = frame;
+        }
+        this.accountSeq = frame.seq || 0;
+        this.updateAccountInfo(this.accountState);
+    }
+    
     updateAccountInfo(accountInfo) {
         // console.log('更新账户信息:', {
         //     totalBalance: accountInfo.totalBalance,
@@ -41,10 +41,11 @@ class WebSocketManager {
     
     onConnected() {
         // 订阅账户信息
+        // 推送为快照或增量帧，由应用合并
         this.stompClient.subscribe(`/user/${this.userId}/account`, (message) => {
-            const accountInfo = JSON.parse(message.body);
+            const frame = JSON.parse(message.body);
             if (window.app) {
-                window.app.updateAccountInfo(accountInfo);
+                window.app.applyAccountFrame(frame);
             }
         });
         
@@ -0,0 +1,90 @@
+package com.quant.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 策略执行器对比：pool（有界线程池）与 virtual（虚拟线程）
+ * 每个策略执行若干轮阻塞调用（模拟策略循环中的 REST / Python 调用 .block()），
+ * 测量全部策略完成一轮的耗时；virtual 需要用 JDK 21+ 运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StrategyExecutorBenchmark {
+
+    @Param({"pool", "virtual"})
+    public String mode;
+
+    // 同时运行的策略数量（线程池模式不排队，最多同时运行 50 个，超过时拒绝；
+    // 更多策略只能用 virtual 模式运行，如 -p mode=virtual -p strategies=100）
+    @Param({"30", "50"})
+    public int strategies;
+
+    // 每个策略每轮的阻塞调用次数和单次阻塞时间
+    @Param({"5"})
+    public int calls;
+
+    @Param({"2"})
+    public long blockMs;
+
+    private Executor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = "virtual".equals(mode)
+                ? AsyncConfig.createVirtualThreadExecutor()
+                : AsyncConfig.createThreadPoolExecutor();
+        if (executor == null) {
+            throw new IllegalStateException("虚拟线程需要JDK 21+");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor simple) {
+            simple.close();
+        }
+    }
+
+    @Benchmark
+    public void round() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(strategies);
+        for (int i = 0; i < strategies; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int call = 0; call < calls; call++) {
+                        Thread.sleep(blockMs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
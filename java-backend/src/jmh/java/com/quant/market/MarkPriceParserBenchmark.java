@@ -0,0 +1,115 @@
+package com.quant.market;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quant.exchange.BinanceMarkPriceParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全市场标记价格消息（!markPrice@arr@1s）解析：流式解析写入 {@link MarkPriceTable} 与改造前的树模型解析对比
+ * - streaming：{@link BinanceMarkPriceParser} 逐字段读取 s/p/E，原地更新价格表
+ * - treeModel：改造前的 onMessage（readValue 为 List&lt;Map&gt;，每个交易对创建BigDecimal，每条消息一个新的HashMap）
+ *
+ * 消息按Binance推送格式生成，交易对数量由 symbols 参数控制；
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="MarkPriceParserBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkPriceParserBenchmark {
+
+    @Param({"500"})
+    public int symbols;
+
+    private String message;
+    private BinanceMarkPriceParser parser;
+    private MarkPriceTable table;
+    private ObjectMapper mapper;
+    private Map<String, BigDecimal> markPrices;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        message = buildMessage(symbols);
+        table = new MarkPriceTable(2048);
+        parser = new BinanceMarkPriceParser(table);
+        mapper = new ObjectMapper();
+        markPrices = new HashMap<>();
+
+        // 两种解析方式的价格必须一致
+        parser.parse(message);
+        Map<String, BigDecimal> legacy = treeModel();
+        if (legacy.size() != symbols || table.size() != symbols) {
+            throw new IllegalStateException("交易对数量不一致: " + legacy.size() + " / " + table.size());
+        }
+        legacy.forEach((symbol, price) -> {
+            if (price.compareTo(table.getMarkPrice(symbol)) != 0) {
+                throw new IllegalStateException("价格不一致: " + symbol + " " + price + " / " + table.getMarkPrice(symbol));
+            }
+        });
+    }
+
+    @Benchmark
+    public int streaming() throws IOException {
+        return parser.parse(message);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> treeModel() throws IOException {
+        List<Map<String, Object>> priceList = mapper.readValue(message,
+                mapper.getTypeFactory().constructCollectionType(List.class, Map.class));
+        Map<String, BigDecimal> updatedPrices = new HashMap<>();
+        for (Map<String, Object> priceData : priceList) {
+            String symbol = (String) priceData.get("s");
+            Object markPriceObj = priceData.get("p");
+            if (symbol != null && markPriceObj != null) {
+                BigDecimal markPrice = new BigDecimal(markPriceObj.toString());
+                markPrices.put(symbol, markPrice);
+                updatedPrices.put(symbol, markPrice);
+            }
+        }
+        return updatedPrices;
+    }
+
+    private static String buildMessage(int count) {
+        StringBuilder sb = new StringBuilder(count * 200);
+        sb.append('[');
+        long eventTime = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            double price = 0.0001 + (i * 7919 % 100_000) * 1.37;
+            String mark = String.format(Locale.ROOT, "%.8f", price);
+            sb.append("{\"e\":\"markPriceUpdate\",\"E\":").append(eventTime)
+                    .append(",\"s\":\"SYM").append(i).append("USDT\"")
+                    .append(",\"p\":\"").append(mark).append('"')
+                    .append(",\"ap\":\"").append(mark).append('"')
+                    .append(",\"P\":\"").append(mark).append('"')
+                    .append(",\"i\":\"").append(mark).append('"')
+                    .append(",\"r\":\"0.00010000\",\"T\":").append(eventTime + 3_600_000L)
+                    .append('}');
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,325 @@
+package com.quant.service;
+
+import com.quant.model.AccountInfo;
+import com.quant.model.ClosePositionRecord;
+import com.quant.model.Position;
+import com.quant.model.TradingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次策略执行的上下文采集：快照（{@link TradingEngine#buildContext}）与改造前的采集方式对比
+ * - legacy：改造前的调用顺序（2次 fetchMarketData + 2次 getCurrentPosition + getStrategyParams），
+ *   每次都读取账户信息并扫描持仓，每个方向 getCounts 一次，平仓记录读取全部后在内存中过滤
+ * - snapshot：buildContext 一次采集，再由快照构建持仓和策略参数
+ *
+ * 账户、Redis、数据库使用计数的内存实现，结束时输出每次执行的访问次数；
+ * 分配量用 -prof gc 查看（gc.alloc.rate.norm）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradingContextBenchmark {
+
+    private static final String USER_ID = "bench-user";
+    private static final String SYMBOL = "BTCUSDT";
+
+    private CountingAccountService accountService;
+    private CountingRedisTemplate redisTemplate;
+    private CountingCloseRecordService closeRecordService;
+    private ProfitCountService profitCountService;
+    private TradingEngine tradingEngine;
+    private long invocations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 20个持仓（10个交易对的多空两个方向）
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String symbol = i == 0 ? SYMBOL : "SYM" + i + "USDT";
+            for (String side : new String[]{"LONG", "SHORT"}) {
+                positions.add(Position.builder()
+                        .symbol(symbol)
+                        .side(side)
+                        .quantity(new BigDecimal("0.010"))
+                        .available(new BigDecimal("0.010"))
+                        .avgPrice(new BigDecimal("65000.5"))
+                        .currentPrice(new BigDecimal("65120.1"))
+                        .unrealizedPnl(new BigDecimal("1.196"))
+                        .pnlPercentage(new BigDecimal("9.2"))
+                        .leverage(50)
+                        .margin(new BigDecimal("13.0"))
+                        .build());
+            }
+        }
+        AccountInfo account = AccountInfo.builder()
+                .userId(USER_ID)
+                .totalBalance(new BigDecimal("1000"))
+                .availableBalance(new BigDecimal("900"))
+                .frozenBalance(BigDecimal.ZERO)
+                .positions(positions)
+                .build();
+
+        // 200条历史平仓记录，其中2条在最近60秒内
+        List<ClosePositionRecord> records = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 200; i++) {
+            records.add(ClosePositionRecord.builder()
+                    .userId(USER_ID)
+                    .symbol(SYMBOL)
+                    .side(i % 2 == 0 ? "LONG" : "SHORT")
+                    .closeType("STRATEGY")
+                    .createdAt(i < 2 ? now.plusDays(1) : now.minusMinutes(10 + i))
+                    .build());
+        }
+
+        accountService = new CountingAccountService(account);
+        redisTemplate = new CountingRedisTemplate();
+        closeRecordService = new CountingCloseRecordService(records);
+        profitCountService = new ProfitCountService(redisTemplate);
+        tradingEngine = new TradingEngine(null, null, null, accountService, profitCountService,
+                closeRecordService, null, null, null, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (invocations > 0) {
+            System.out.printf("%n  per evaluation: accountReads=%.1f, redisOps=%.1f, dbRows=%.1f%n",
+                    accountService.reads / (double) invocations,
+                    redisTemplate.ops / (double) invocations,
+                    closeRecordService.rows / (double) invocations);
+        }
+        accountService.reads = 0;
+        redisTemplate.ops = 0;
+        closeRecordService.rows = 0;
+        invocations = 0;
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole blackhole) {
+        invocations++;
+        TradingContext context = tradingEngine.buildContext(USER_ID, SYMBOL);
+        blackhole.consume(context.getPrice().doubleValue());
+        blackhole.consume(tradingEngine.buildPosition(context));
+        blackhole.consume(tradingEngine.buildStrategyParams(context));
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        invocations++;
+        // 改造前 executeTrading 的采集顺序：先校验持仓和价格，再构建请求时重新获取
+        blackhole.consume(legacyPosition());
+        blackhole.consume(legacyMarketData());
+        blackhole.consume(legacyMarketData());
+        blackhole.consume(legacyStrategyParams());
+        blackhole.consume(legacyPosition());
+    }
+
+    // ========== 改造前的采集方式（基准） ==========
+
+    private Map<String, Object> legacyMarketData() {
+        BigDecimal price = BigDecimal.ZERO;
+        AccountInfo accountInfo = accountService.getAccountInfo(USER_ID);
+        for (Position pos : accountInfo.getPositions()) {
+            if (pos.getSymbol().equals(SYMBOL) && pos.getCurrentPrice() != null
+                    && pos.getCurrentPrice().compareTo(BigDecimal.ZERO) > 0) {
+                price = pos.getCurrentPrice();
+                break;
+            }
+        }
+        return Map.of("price", price.doubleValue(), "volume", 1000000, "timestamp", System.currentTimeMillis());
+    }
+
+    private Map<String, Object> legacyStrategyParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("ma_period", 20);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime startTime = now.minusSeconds(60);
+        List<Map<String, Object>> recentCloseList = new ArrayList<>();
+        for (ClosePositionRecord record : closeRecordService.getClosePositionRecords(USER_ID, SYMBOL)) {
+            if (record.getCreatedAt() != null && record.getCreatedAt().isAfter(startTime)) {
+                Map<String, Object> closeInfo = new HashMap<>();
+                closeInfo.put("side", record.getSide());
+                closeInfo.put("closeType", record.getCloseType());
+                recentCloseList.add(closeInfo);
+            }
+        }
+        if (!recentCloseList.isEmpty()) {
+            params.put("recentClosePositions", recentCloseList);
+        }
+        return params;
+    }
+
+    private Map<String, Object> legacyPosition() {
+        AccountInfo accountInfo = accountService.getAccountInfo(USER_ID);
+        BigDecimal longQuantity = BigDecimal.ZERO;
+        BigDecimal shortQuantity = BigDecimal.ZERO;
+        BigDecimal longOpenRate = BigDecimal.ZERO;
+        BigDecimal shortOpenRate = BigDecimal.ZERO;
+        BigDecimal longProfitPct = BigDecimal.ZERO;
+        BigDecimal shortProfitPct = BigDecimal.ZERO;
+        Integer longLeverage = 0;
+        Integer shortLeverage = 0;
+        for (Position pos : accountInfo.getPositions()) {
+            if (pos.getSymbol().equals(SYMBOL)) {
+                if ("LONG".equals(pos.getSide())) {
+                    longQuantity = pos.getQuantity();
+                    longOpenRate = pos.getAvgPrice();
+                    longProfitPct = pos.getPnlPercentage();
+                    longLeverage = pos.getLeverage();
+                } else if ("SHORT".equals(pos.getSide())) {
+                    shortQuantity = pos.getQuantity();
+                    shortOpenRate = pos.getAvgPrice();
+                    shortProfitPct = pos.getPnlPercentage();
+                    shortLeverage = pos.getLeverage();
+                }
+            }
+        }
+        Map<String, Integer> longCounts = profitCountService.getCounts(USER_ID, SYMBOL, "LONG").block();
+        Map<String, Integer> shortCounts = profitCountService.getCounts(USER_ID, SYMBOL, "SHORT").block();
+
+        Map<String, Object> positionMap = new HashMap<>();
+        positionMap.put("longQuantity", longQuantity);
+        positionMap.put("shortQuantity", shortQuantity);
+        positionMap.put("longOpenRate", longOpenRate);
+        positionMap.put("shortOpenRate", shortOpenRate);
+        positionMap.put("longProfitPct", longProfitPct);
+        positionMap.put("shortProfitPct", shortProfitPct);
+        positionMap.put("longLeverage", longLeverage);
+        positionMap.put("shortLeverage", shortLeverage);
+        positionMap.put("longProfitCount", longCounts.getOrDefault("profitCount", 0));
+        positionMap.put("shortProfitCount", shortCounts.getOrDefault("profitCount", 0));
+        positionMap.put("longAddCount", longCounts.getOrDefault("addCount", 0));
+        positionMap.put("shortAddCount", shortCounts.getOrDefault("addCount", 0));
+        positionMap.put("quantity", longQuantity.add(shortQuantity));
+        positionMap.put("avgPrice", longQuantity.signum() > 0 ? longOpenRate : shortOpenRate);
+        positionMap.put("_fetchSuccess", true);
+        return positionMap;
+    }
+
+    // ========== 计数的内存实现 ==========
+
+    private static final class CountingAccountService extends AccountService {
+        private final AccountInfo account;
+        private long reads;
+
+        private CountingAccountService(AccountInfo account) {
+            super(null, null, null, null, null, null, null, null);
+            this.account = account;
+        }
+
+        @Override
+        public AccountInfo getAccountInfo(String userId) {
+            reads++;
+            return account;
+        }
+
+        @Override
+        public BigDecimal getRealTimePrice(String userId, String symbol) {
+            reads++;
+            return BigDecimal.ZERO;
+        }
+    }
+
+    private static final class CountingCloseRecordService extends ClosePositionRecordService {
+        private final List<ClosePositionRecord> records;
+        private long rows;
+
+        private CountingCloseRecordService(List<ClosePositionRecord> records) {
+            super(null);
+            this.records = records;
+        }
+
+        @Override
+        public List<ClosePositionRecord> getClosePositionRecords(String userId, String symbol) {
+            rows += records.size();
+            return records;
+        }
+
+        @Override
+        public List<ClosePositionRecord> getRecentClosePositionRecords(String userId, String symbol,
+                                                                      LocalDateTime startTime) {
+            // 数据库按时间过滤，只返回范围内的记录
+            List<ClosePositionRecord> recent = new ArrayList<>();
+            for (ClosePositionRecord record : records) {
+                if (record.getCreatedAt().isAfter(startTime)) {
+                    recent.add(record);
+                }
+            }
+            rows += recent.size();
+            return recent;
+        }
+    }
+
+    /**
+     * 内存中的Redis字符串操作，每个命令计一次访问
+     */
+    private static final class CountingRedisTemplate extends RedisTemplate<String, String> {
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final ValueOperations<String, String> valueOperations;
+        private long ops;
+
+        @SuppressWarnings("unchecked")
+        private CountingRedisTemplate() {
+            valueOperations = (ValueOperations<String, String>) Proxy.newProxyInstance(
+                    ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class},
+                    (proxy, method, args) -> {
+                        ops++;
+                        return switch (method.getName()) {
+                            case "get" -> values.get((String) args[0]);
+                            case "set" -> {
+                                values.put((String) args[0], (String) args[1]);
+                                yield null;
+                            }
+                            case "setIfAbsent" -> values.putIfAbsent((String) args[0], (String) args[1]) == null;
+                            case "multiGet" -> {
+                                List<String> result = new ArrayList<>();
+                                for (Object key : (Collection<?>) args[0]) {
+                                    result.add(values.get((String) key));
+                                }
+                                yield result;
+                            }
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        };
+                    });
+        }
+
+        @Override
+        public ValueOperations<String, String> opsForValue() {
+            return valueOperations;
+        }
+
+        @Override
+        public Boolean hasKey(String key) {
+            ops++;
+            return values.containsKey(key);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.quant.strategy;
+
+import com.quant.model.Position;
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 双向策略单次决策：基本类型通道（{@link DualDirectionStrategy#evaluate(TradingContext)}）与Map请求通道对比
+ * - primitive：从快照填充复用的输入对象，写入复用的 StrategySignal，期望 gc.alloc.rate.norm ≈ 0
+ * - mapRequest：Map请求适配（{@link DualDirectionStrategy#execute(StrategyRequest)}），每次构建响应和metadata
+ *
+ * 场景：HOLD（双边持仓未触发任何规则，实盘中最常见）、ADD（触发补仓信号）；
+ * 策略实例为离线实例（不输出逐条信号日志），排除日志框架的分配
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="StrategySignalBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StrategySignalBenchmark {
+
+    @Param({"HOLD", "ADD"})
+    public String scenario;
+
+    private DualDirectionStrategy strategy;
+    private TradingContext context;
+    private StrategyRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        strategy = DualDirectionStrategy.offline(DualDirectionParams.DEFAULTS);
+        // HOLD：多头盈利3次（不在补仓窗口）；ADD：多头盈利4次且空头亏损
+        int longProfitCount = "ADD".equals(scenario) ? 4 : 3;
+
+        context = TradingContext.builder()
+                .userId("bench-user")
+                .symbol("BTCUSDT")
+                .timestamp(System.currentTimeMillis())
+                .fetchSuccess(true)
+                .price(new BigDecimal("65120.1"))
+                .longPosition(position("LONG", "12.5"))
+                .shortPosition(position("SHORT", "-8.0"))
+                .longProfitCount(longProfitCount)
+                .recentClosePositions(List.of())
+                .build();
+
+        Map<String, Object> positionMap = new HashMap<>();
+        positionMap.put("longQuantity", new BigDecimal("0.010"));
+        positionMap.put("shortQuantity", new BigDecimal("0.010"));
+        positionMap.put("longOpenRate", new BigDecimal("65000.5"));
+        positionMap.put("shortOpenRate", new BigDecimal("65000.5"));
+        positionMap.put("longProfitPct", new BigDecimal("12.5"));
+        positionMap.put("shortProfitPct", new BigDecimal("-8.0"));
+        positionMap.put("longProfitCount", longProfitCount);
+        positionMap.put("shortProfitCount", 0);
+        positionMap.put("longAddCount", 0);
+        positionMap.put("shortAddCount", 0);
+        positionMap.put("_fetchSuccess", true);
+        request = StrategyRequest.builder()
+                .requestId("bench")
+                .strategyName("DualDirectionStrategy")
+                .symbol("BTCUSDT")
+                .marketData(Map.of("price", 65120.1, "volume", 1000000, "timestamp", context.getTimestamp()))
+                .strategyParams(Map.of("ma_period", 20))
+                .position(positionMap)
+                .account(Map.of())
+                .build();
+
+        // 两个通道的决策必须一致
+        StrategySignal signal = strategy.evaluate(context);
+        StrategyResponse response = strategy.execute(request);
+        if (!signal.getAction().name().equals(response.getSignal())) {
+            throw new IllegalStateException("通道决策不一致: " + signal.getAction() + " / " + response.getSignal());
+        }
+    }
+
+    @Benchmark
+    public void primitive(Blackhole blackhole) {
+        StrategySignal signal = strategy.evaluate(context);
+        blackhole.consume(signal.getAction());
+        blackhole.consume(signal.getPositionRatio());
+        blackhole.consume(signal.getMargin());
+    }
+
+    @Benchmark
+    public StrategyResponse mapRequest() {
+        return strategy.execute(request);
+    }
+
+    private static Position position(String side, String pnlPercentage) {
+        return Position.builder()
+                .symbol("BTCUSDT")
+                .side(side)
+                .quantity(new BigDecimal("0.010"))
+                .available(new BigDecimal("0.010"))
+                .avgPrice(new BigDecimal("65000.5"))
+                .currentPrice(new BigDecimal("65120.1"))
+                .pnlPercentage(new BigDecimal(pnlPercentage))
+                .leverage(50)
+                .margin(new BigDecimal("13.0"))
+                .build();
+    }
+}
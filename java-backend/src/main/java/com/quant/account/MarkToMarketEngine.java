@@ -0,0 +1,174 @@
+package com.quant.account;
+
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceTable;
+import com.quant.market.MarkPriceUpdate;
+import com.quant.model.ExchangeType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 盯市引擎：按交易对把标记价格变化分发到持有该交易对的持仓账本
+ * - 每个价格源维护一个 交易对 -> 持仓账本 的索引，账本在持仓变化后通过 {@link #track} 重新登记
+ * - 每条标记价格推送只检查索引中的交易对（而不是全部用户的全部持仓），
+ *   用价格表的更新序号判断交易对是否在本条推送中变化，只有变化的交易对才重算对应账本中的持仓
+ * - 重算在行情线程中以定点整数进行（见 {@link PositionLedger#markToMarket}），账本版本号随之递增，
+ *   推送层据此只推送有变化的用户
+ *
+ * CPU开销与价格变化次数 × 受影响的持仓数成正比，与用户数量和轮询频率无关
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MarkToMarketEngine {
+
+    private final MarkPriceHub markPriceHub;
+
+    // 交易所 -> 索引（按需创建，创建时订阅该交易所的标记价格推送）
+    private final Map<ExchangeType, Index> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 登记（或更新）账本持有的交易对，并按当前标记价格重算新登记的持仓
+     */
+    public void track(ExchangeType exchangeType, PositionLedger ledger) {
+        Index index = indexes.computeIfAbsent(exchangeType, this::createIndex);
+        Set<String> symbols = ledger.symbols();
+        index.track(ledger, symbols);
+
+        // 登记前已经推送过的价格不会再通知，直接从价格表读取一次
+        MarkPriceTable table = markPriceHub.getTable(exchangeType);
+        if (table != null) {
+            for (String symbol : symbols) {
+                int symbolIndex = table.indexOf(symbol);
+                if (symbolIndex >= 0) {
+                    ledger.markToMarket(symbol, table.scaledPrice(symbolIndex));
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消账本的全部登记（账本被替换或用户下线）
+     */
+    public void untrack(ExchangeType exchangeType, PositionLedger ledger) {
+        Index index = indexes.get(exchangeType);
+        if (index != null) {
+            index.track(ledger, Set.of());
+        }
+    }
+
+    /**
+     * 引擎状态（用于监控）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        indexes.forEach((exchangeType, index) -> stats.put(exchangeType.name(), index.stats()));
+        return stats;
+    }
+
+    private Index createIndex(ExchangeType exchangeType) {
+        Index index = new Index();
+        markPriceHub.markPriceUpdates(exchangeType).subscribe(
+                index::onUpdate,
+                error -> log.error("盯市引擎的标记价格订阅失败: exchangeType={}, error={}",
+                        exchangeType, error.getMessage(), error));
+        log.info("盯市引擎已订阅标记价格: exchangeType={}", exchangeType);
+        return index;
+    }
+
+    /**
+     * 一个交易对及持有它的账本
+     */
+    private static final class Slot {
+        private final String symbol;
+        private final Set<PositionLedger> holders = new CopyOnWriteArraySet<>();
+        // 价格表中的下标（只由行情线程读写，价格表重建后重新查找）
+        private MarkPriceTable table;
+        private int tableIndex = -1;
+
+        private Slot(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * 一个价格源的 交易对 -> 账本 索引
+     * 登记由账户线程执行（加锁），价格推送由行情线程执行（不加锁，遍历并发集合）
+     */
+    private static final class Index {
+        private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+        // 账本 -> 已登记的交易对
+        private final Map<PositionLedger, Set<String>> tracked = new ConcurrentHashMap<>();
+
+        // 统计（只由行情线程写入）
+        private volatile long updates;
+        private volatile long symbolChanges;
+        private volatile long recomputed;
+
+        private synchronized void track(PositionLedger ledger, Set<String> symbols) {
+            Set<String> previous = tracked.getOrDefault(ledger, Set.of());
+            for (String symbol : symbols) {
+                if (!previous.contains(symbol)) {
+                    slots.computeIfAbsent(symbol, Slot::new).holders.add(ledger);
+                }
+            }
+            for (String symbol : previous) {
+                if (!symbols.contains(symbol)) {
+                    Slot slot = slots.get(symbol);
+                    if (slot != null) {
+                        slot.holders.remove(ledger);
+                        if (slot.holders.isEmpty()) {
+                            slots.remove(symbol);
+                        }
+                    }
+                }
+            }
+            if (symbols.isEmpty()) {
+                tracked.remove(ledger);
+            } else {
+                tracked.put(ledger, new HashSet<>(symbols));
+            }
+        }
+
+        private void onUpdate(MarkPriceUpdate update) {
+            MarkPriceTable table = update.table();
+            long changes = 0;
+            long count = 0;
+            for (Slot slot : slots.values()) {
+                if (slot.table != table || slot.tableIndex < 0) {
+                    slot.table = table;
+                    slot.tableIndex = table.indexOf(slot.symbol);
+                }
+                if (!table.updatedSince(slot.tableIndex, update.sequence())) {
+                    continue;
+                }
+                long price = table.scaledPrice(slot.tableIndex);
+                changes++;
+                for (PositionLedger ledger : slot.holders) {
+                    count += ledger.markToMarket(slot.symbol, price);
+                }
+            }
+            updates++;
+            symbolChanges += changes;
+            recomputed += count;
+        }
+
+        private Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("symbols", slots.size());
+            stats.put("ledgers", tracked.size());
+            stats.put("updates", updates);
+            stats.put("symbolChanges", symbolChanges);
+            stats.put("positionsRecomputed", recomputed);
+            return stats;
+        }
+    }
+}
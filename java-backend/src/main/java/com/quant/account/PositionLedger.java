@@ -0,0 +1,513 @@
+package com.quant.account;
+
+import com.quant.market.MarkPriceTable;
+import com.quant.model.AccountInfo;
+import com.quant.model.Position;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单个用户的内存持仓账本
+ * 由用户数据流的增量推送（Binance ACCOUNT_UPDATE：只包含变化的余额和持仓，数量为0表示已平仓）实时维护，
+ * REST快照只用于初始同步和对账：
+ * - 增量按到达顺序原地更新余额和持仓；增量中没有的字段（杠杆、标记价格）沿用账本中已有的值
+ * - 快照请求发出后才到达的增量比快照新：对账时保留这些持仓（以及期间平掉的持仓），不被旧快照覆盖
+ * - 以下情况需要对账：还没有快照、数据流重连或listenKey过期、新持仓的杠杆未知、
+ *   下单后一段时间内没有收到增量（推送丢失）、距离上次对账超过对账间隔、数据流已断开
+ *
+ * 盯市：持仓以定点整数（× 10^{@value #SCALE}）保存数量、均价、标记价格、未实现盈亏和保证金，
+ * {@link MarkToMarketEngine} 在交易对标记价格变化时调用 {@link #markToMarket} 只重算该交易对的持仓；
+ * 每次变化递增版本号，{@link #account()} 只在版本变化后重新生成账户信息，
+ * 推送方通过 {@link #consumeDirty()} 判断上次推送后是否有变化
+ *
+ * 所有方法同步，由用户数据流线程和行情线程写入、策略和推送线程读取
+ */
+public final class PositionLedger {
+
+    /**
+     * 定点小数位数（与标记价格表一致）
+     */
+    public static final int SCALE = MarkPriceTable.PRICE_SCALE;
+
+    private static final long UNIT = 100_000_000L;
+
+    private final String userId;
+
+    // symbol:side -> 持仓（按首次出现的顺序）
+    private final Map<String, Entry> positions = new LinkedHashMap<>();
+
+    // 增量平掉的持仓（symbol:side -> 平仓时间），下次对账时用于忽略快照中已平掉的持仓
+    private final Map<String, Long> closed = new HashMap<>();
+
+    // 交易对杠杆（来自快照和ACCOUNT_CONFIG_UPDATE，新开仓的增量不带杠杆）
+    private final Map<String, Integer> symbolLeverage = new HashMap<>();
+
+    private BigDecimal totalBalance;
+    private BigDecimal availableBalance;
+    private BigDecimal frozenBalance;
+    private long balanceUpdateTime;
+
+    private long lastSnapshotTime;
+    private long lastDeltaTime;
+    // 下单后等待增量推送的开始时间（0表示没有等待）
+    private long pendingSince;
+    private boolean stale;
+    private boolean streamAlive = true;
+
+    // 每次余额或持仓变化递增；account() 按版本缓存，推送方记录已推送的版本
+    private long version;
+    private long viewVersion = -1;
+    private AccountInfo view;
+    private long pushedVersion = -1;
+
+    // 统计
+    private long deltaCount;
+    private long snapshotCount;
+    private long markCount;
+
+    public PositionLedger(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * 用REST快照对账
+     *
+     * @param account 账户余额（REST）
+     * @param snapshot 全部持仓（REST）
+     * @param requestTime 快照请求发出的时间（之后到达的增量比快照新）
+     */
+    public synchronized void applySnapshot(AccountInfo account, List<Position> snapshot, long requestTime) {
+        if (account != null && balanceUpdateTime <= requestTime) {
+            totalBalance = account.getTotalBalance();
+            availableBalance = account.getAvailableBalance();
+            frozenBalance = account.getFrozenBalance();
+            balanceUpdateTime = requestTime;
+        }
+
+        Map<String, Entry> merged = new LinkedHashMap<>();
+        if (snapshot != null) {
+            for (Position position : snapshot) {
+                if (position.getQuantity() == null || position.getQuantity().signum() == 0) {
+                    continue;
+                }
+                String key = key(position.getSymbol(), position.getSide());
+                Entry current = positions.get(key);
+                Long closedTime = closed.get(key);
+                if (current != null && current.updateTime > requestTime) {
+                    merged.put(key, current);
+                } else if (closedTime == null || closedTime <= requestTime) {
+                    merged.put(key, new Entry(position, position.getLeverage(), requestTime));
+                }
+                if (position.getLeverage() != null && position.getLeverage() > 0) {
+                    symbolLeverage.put(position.getSymbol(), position.getLeverage());
+                }
+            }
+        }
+        // 快照请求之后新开的持仓
+        for (Map.Entry<String, Entry> entry : positions.entrySet()) {
+            if (entry.getValue().updateTime > requestTime) {
+                merged.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        positions.clear();
+        positions.putAll(merged);
+        closed.clear();
+
+        // 增量新开的持仓没有杠杆时使用快照中同一交易对的杠杆，仍然未知时下次继续对账
+        boolean leverageUnknown = false;
+        for (Entry entry : positions.values()) {
+            if (entry.leverage == null) {
+                entry.setLeverage(symbolLeverage.get(entry.symbol));
+                leverageUnknown |= entry.leverage == null;
+            }
+        }
+
+        lastSnapshotTime = Math.max(requestTime, 1);
+        if (pendingSince <= requestTime) {
+            pendingSince = 0;
+        }
+        stale = leverageUnknown;
+        snapshotCount++;
+        version++;
+    }
+
+    /**
+     * 应用用户数据流的增量推送
+     * - 余额为null时不更新余额；只有钱包余额没有可用余额时沿用原来的可用余额和冻结余额，并尽快对账
+     * - 持仓数量为0表示已平仓（单向持仓模式的 BOTH 同时删除两个方向）
+     * - 单向持仓模式（BOTH）的持仓数量带符号：按符号确定方向，同时删除另一个方向（反手）
+     *
+     * @param leverages 杠杆变化（交易对 -> 杠杆，可为null）
+     */
+    public synchronized void applyDelta(AccountInfo delta, Map<String, Integer> leverages, long now) {
+        if (delta.getTotalBalance() != null) {
+            totalBalance = delta.getTotalBalance();
+            if (delta.getAvailableBalance() != null) {
+                availableBalance = delta.getAvailableBalance();
+                frozenBalance = delta.getFrozenBalance();
+            } else {
+                // 可用余额取决于全部持仓的保证金和未实现盈亏，由REST对账更新
+                stale = true;
+            }
+            balanceUpdateTime = now;
+        }
+
+        if (leverages != null) {
+            for (Map.Entry<String, Integer> entry : leverages.entrySet()) {
+                symbolLeverage.put(entry.getKey(), entry.getValue());
+                for (Entry position : positions.values()) {
+                    if (position.symbol.equals(entry.getKey())) {
+                        position.setLeverage(entry.getValue());
+                        position.updateTime = now;
+                    }
+                }
+            }
+        }
+
+        if (delta.getPositions() != null) {
+            for (Position position : delta.getPositions()) {
+                String symbol = position.getSymbol();
+                boolean flat = position.getQuantity() == null || position.getQuantity().signum() == 0;
+                if (flat) {
+                    if ("BOTH".equals(position.getSide())) {
+                        remove(key(symbol, "LONG"), now);
+                        remove(key(symbol, "SHORT"), now);
+                    } else {
+                        remove(key(symbol, position.getSide()), now);
+                    }
+                    continue;
+                }
+                if ("BOTH".equals(position.getSide())) {
+                    String side = position.getQuantity().signum() > 0 ? "LONG" : "SHORT";
+                    remove(key(symbol, "LONG".equals(side) ? "SHORT" : "LONG"), now);
+                    position = oneWay(position, side);
+                }
+                String key = key(symbol, position.getSide());
+                Entry current = positions.get(key);
+                Integer leverage = position.getLeverage();
+                if (leverage == null && current != null) {
+                    leverage = current.leverage;
+                }
+                if (leverage == null) {
+                    leverage = symbolLeverage.get(symbol);
+                }
+                if (leverage == null) {
+                    // 杠杆未知（账本还没有这个交易对），尽快对账
+                    stale = true;
+                }
+                if (current != null) {
+                    // 增量中通常没有标记价格，沿用账本中的标记价格重算盈亏
+                    current.set(position, leverage, now);
+                } else {
+                    positions.put(key, new Entry(position, leverage, now));
+                }
+                closed.remove(key);
+            }
+        }
+
+        lastDeltaTime = now;
+        pendingSince = 0;
+        deltaCount++;
+        version++;
+    }
+
+    /**
+     * 交易对的标记价格变化：只重算该交易对的持仓（定点整数运算）
+     *
+     * @param scaledPrice 标记价格 × 10^{@value #SCALE}
+     * @return 重算的持仓数量（价格没有变化时为0）
+     */
+    public synchronized int markToMarket(String symbol, long scaledPrice) {
+        if (scaledPrice <= 0) {
+            return 0;
+        }
+        int count = 0;
+        for (Entry entry : positions.values()) {
+            if (entry.mark != scaledPrice && entry.symbol.equals(symbol)) {
+                entry.mark = scaledPrice;
+                entry.revalue();
+                count++;
+            }
+        }
+        if (count > 0) {
+            markCount += count;
+            version++;
+        }
+        return count;
+    }
+
+    /**
+     * 持仓中的交易对
+     */
+    public synchronized Set<String> symbols() {
+        Set<String> symbols = new LinkedHashSet<>();
+        for (Entry entry : positions.values()) {
+            symbols.add(entry.symbol);
+        }
+        return symbols;
+    }
+
+    /**
+     * 上次调用后余额或持仓（包括盯市盈亏）是否有变化，调用后视为已推送
+     */
+    public synchronized boolean consumeDirty() {
+        if (pushedVersion == version) {
+            return false;
+        }
+        pushedVersion = version;
+        return true;
+    }
+
+    private void remove(String key, long now) {
+        if (positions.remove(key) != null) {
+            version++;
+        }
+        closed.put(key, now);
+    }
+
+    /**
+     * 数据流（重新）建立或listenKey过期：期间可能丢失推送，需要对账
+     */
+    public synchronized void resync() {
+        streamAlive = true;
+        stale = true;
+    }
+
+    /**
+     * 数据流已断开：不再依赖增量，每次刷新都对账
+     */
+    public synchronized void streamDown() {
+        streamAlive = false;
+    }
+
+    /**
+     * 已提交订单，预期很快收到增量推送（超时未收到视为推送丢失）
+     */
+    public synchronized void expectUpdate(long now) {
+        if (pendingSince == 0) {
+            pendingSince = now;
+        }
+    }
+
+    /**
+     * 是否需要通过REST对账
+     *
+     * @param reconcileIntervalMs 定期对账间隔
+     * @param gapTimeoutMs 下单后等待增量推送的超时时间
+     */
+    public synchronized boolean needsReconcile(long now, long reconcileIntervalMs, long gapTimeoutMs) {
+        return lastSnapshotTime == 0
+                || stale
+                || !streamAlive
+                || now - lastSnapshotTime >= reconcileIntervalMs
+                || (pendingSince > 0 && now - pendingSince >= gapTimeoutMs);
+    }
+
+    /**
+     * 是否已经用快照同步过（同步前账本中的数据不完整）
+     */
+    public synchronized boolean isSynced() {
+        return lastSnapshotTime > 0;
+    }
+
+    /**
+     * 当前持仓（副本）
+     */
+    public synchronized List<Position> positions() {
+        return new ArrayList<>(account().getPositions());
+    }
+
+    /**
+     * 账户余额、持仓和按标记价格计算的未实现盈亏、权益
+     * 版本没有变化时返回同一个对象，调用方不能修改
+     */
+    public synchronized AccountInfo account() {
+        if (view != null && viewVersion == version) {
+            return view;
+        }
+        List<Position> result = new ArrayList<>(positions.size());
+        long unrealized = 0;
+        for (Entry entry : positions.values()) {
+            result.add(entry.toPosition());
+            unrealized += entry.pnl;
+        }
+        BigDecimal unrealizedPnl = BigDecimal.valueOf(unrealized, SCALE);
+        view = AccountInfo.builder()
+                .userId(userId)
+                .totalBalance(totalBalance)
+                .availableBalance(availableBalance)
+                .frozenBalance(frozenBalance)
+                .equity(totalBalance != null ? totalBalance.add(unrealizedPnl) : unrealizedPnl)
+                .unrealizedPnl(unrealizedPnl)
+                .positions(result)
+                .timestamp(Math.max(lastDeltaTime, lastSnapshotTime))
+                .build();
+        viewVersion = version;
+        return view;
+    }
+
+    /**
+     * 账本状态（用于监控）
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("positions", positions.size());
+        stats.put("deltas", deltaCount);
+        stats.put("snapshots", snapshotCount);
+        stats.put("marks", markCount);
+        stats.put("version", version);
+        stats.put("lastDeltaTime", lastDeltaTime);
+        stats.put("lastSnapshotTime", lastSnapshotTime);
+        stats.put("stale", stale);
+        stats.put("streamAlive", streamAlive);
+        stats.put("pendingSince", pendingSince);
+        return stats;
+    }
+
+    /**
+     * 单向持仓模式的持仓转换为 LONG/SHORT 和非负数量
+     */
+    private static Position oneWay(Position position, String side) {
+        return Position.builder()
+                .symbol(position.getSymbol())
+                .side(side)
+                .quantity(position.getQuantity().abs())
+                .available(position.getAvailable() != null ? position.getAvailable().abs() : null)
+                .avgPrice(position.getAvgPrice())
+                .currentPrice(position.getCurrentPrice())
+                .unrealizedPnl(position.getUnrealizedPnl())
+                .pnlPercentage(position.getPnlPercentage())
+                .leverage(position.getLeverage())
+                .margin(position.getMargin())
+                .build();
+    }
+
+    private static String key(String symbol, String side) {
+        return symbol + ":" + side;
+    }
+
+    private static long toScaled(BigDecimal value) {
+        return value != null ? value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValue() : 0L;
+    }
+
+    /**
+     * a × b / 10^8（a、b都是定点数），按128位中间结果计算，不会因为乘积超出long而溢出
+     */
+    static long multiply(long a, long b) {
+        boolean negative = (a < 0) != (b < 0);
+        long x = Math.abs(a);
+        long y = Math.abs(b);
+        long high = Math.multiplyHigh(x, y);
+        long low = x * y;
+        // 128位无符号数除以10^8：按 64 + 32 + 32 位逐段做长除法（余数小于10^8，左移32位不会溢出）
+        long remainder = high % UNIT;
+        long mid = (remainder << 32) | (low >>> 32);
+        long q1 = mid / UNIT;
+        long lower = ((mid % UNIT) << 32) | (low & 0xFFFFFFFFL);
+        long quotient = (q1 << 32) + lower / UNIT;
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * 一个持仓：原始字段用于展示，盈亏计算使用定点整数
+     */
+    private static final class Entry {
+        private final String symbol;
+        private final String side;
+        private final boolean isLong;
+        private BigDecimal quantity;
+        private BigDecimal available;
+        private BigDecimal avgPrice;
+        private Integer leverage;
+        private long updateTime;
+
+        // 定点数（× 10^8）
+        private long qty;
+        private long avg;
+        private long mark;
+        private long pnl;
+        private long margin;
+        // 交易所给出的保证金（逐仓保证金或快照中的保证金），为0时按 均价 × 数量 / 杠杆 计算
+        private long reportedMargin;
+
+        private Entry(Position position, Integer leverage, long updateTime) {
+            this.symbol = position.getSymbol();
+            this.side = position.getSide();
+            this.isLong = "LONG".equals(position.getSide());
+            set(position, leverage, updateTime);
+        }
+
+        private void set(Position position, Integer leverage, long now) {
+            quantity = position.getQuantity();
+            available = position.getAvailable();
+            avgPrice = position.getAvgPrice();
+            this.leverage = leverage;
+            updateTime = now;
+            qty = toScaled(quantity);
+            avg = toScaled(avgPrice);
+            reportedMargin = toScaled(position.getMargin());
+            long reportedMark = toScaled(position.getCurrentPrice());
+            if (reportedMark > 0) {
+                mark = reportedMark;
+            }
+            if (mark > 0) {
+                revalue();
+            } else {
+                // 还没有标记价格时使用交易所给出的盈亏
+                pnl = toScaled(position.getUnrealizedPnl());
+                margin = margin();
+            }
+        }
+
+        private void setLeverage(Integer leverage) {
+            this.leverage = leverage;
+            margin = margin();
+        }
+
+        /**
+         * 按标记价格重算盈亏和保证金
+         */
+        private void revalue() {
+            pnl = isLong ? multiply(mark - avg, qty) : multiply(avg - mark, qty);
+            margin = margin();
+        }
+
+        private long margin() {
+            if (reportedMargin > 0) {
+                return reportedMargin;
+            }
+            return leverage != null && leverage > 0 ? multiply(avg, qty) / leverage : 0L;
+        }
+
+        private Position toPosition() {
+            // 盈亏百分比相对于保证金，没有保证金时相对于持仓价值
+            long base = margin > 0 ? margin : multiply(avg, qty);
+            return Position.builder()
+                    .symbol(symbol)
+                    .side(side)
+                    .quantity(quantity)
+                    .available(available)
+                    .avgPrice(avgPrice)
+                    .currentPrice(mark > 0 ? BigDecimal.valueOf(mark, SCALE) : null)
+                    .unrealizedPnl(BigDecimal.valueOf(pnl, SCALE))
+                    .pnlPercentage(base > 0
+                            ? BigDecimal.valueOf(pnl * 100.0 / base).setScale(SCALE, RoundingMode.HALF_UP)
+                            : BigDecimal.ZERO)
+                    .leverage(leverage)
+                    .margin(BigDecimal.valueOf(margin, SCALE))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.quant.backtest;
+
+import com.quant.strategy.StrategySignal;
+
+/**
+ * 回测账户（单个交易对，双向持仓，全仓USDT）
+ * 状态全部保存在基本类型字段中，执行信号时不分配对象；规则与实盘保持一致：
+ * - 信号处理与 {@link com.quant.service.OrderService} 一致：HOLD不下单；position>=1为平仓（BUY平空、SELL平多，全部平仓）；
+ *   开仓/补仓需要保证金（position=0.5且没有保证金时默认0.5U）；DUAL_OPEN同时开多空；同一方向30秒内不重复开仓；
+ *   补仓（position<1且不是补齐仓位）成功后补仓次数+1
+ * - 数量计算与 {@link com.quant.service.AccountService} 一致：数量 = 保证金 × 杠杆 / 当前价格，
+ *   杠杆优先沿用已有持仓，没有持仓时双向策略50倍、其他策略1倍；平仓成功后该方向盈利次数+1，另一方向盈利/补仓次数清零
+ * - 成交和手续费与 {@link com.quant.exchange.PaperExchangeAdapter} 一致：按价格立即全部成交，按名义价值收取手续费，
+ *   开仓所需保证金和手续费超过可用余额时拒绝开仓
+ *
+ * 可选记录每笔平仓（扣除手续费后的盈亏、保证金、杠杆）到 {@link TradeSeries}，用于稳健性检验
+ *
+ * 非线程安全，每次回测使用一个实例
+ */
+public final class BacktestAccount {
+
+    /**
+     * 执行结果（与OrderService返回的结果类型一致）
+     */
+    public enum Outcome {
+        SKIP_HOLD,
+        SKIP_NO_MARGIN,
+        SKIP_COOLDOWN,
+        SKIP_INVALID_SIGNAL,
+        ORDER_SUCCESS,
+        ORDER_FAILED,
+        DUAL_ORDER_SUCCESS,
+        DUAL_ORDER_PARTIAL,
+        CLOSE_ORDER_SUCCESS,
+        CLOSE_ORDER_FAILED
+    }
+
+    public static final int LONG = 0;
+    public static final int SHORT = 1;
+
+    // 开仓冷却期（毫秒），与OrderService一致
+    private static final long OPEN_COOLDOWN_MS = 30_000;
+
+    // 没有提供保证金时的默认补仓金额（USDT），与OrderService一致
+    private static final double DEFAULT_MARGIN = 0.5;
+
+    private static final int DUAL_DIRECTION_LEVERAGE = 50;
+
+    private final double initialBalance;
+    private final double feeRate;
+    private final double slippage;
+    // 固定杠杆（0表示按实盘规则确定）
+    private final int fixedLeverage;
+
+    private double walletBalance;
+
+    private final double[] quantity = new double[2];
+    private final double[] entryPrice = new double[2];
+    private final int[] leverage = new int[2];
+    private final int[] profitCount = new int[2];
+    private final int[] addCount = new int[2];
+    private final long[] lastOpenTime = {Long.MIN_VALUE, Long.MIN_VALUE};
+    private long lastCloseTime;
+
+    // 平仓记录（null表示不记录）
+    private TradeSeries trades;
+
+    // 统计
+    private int opens;
+    private int adds;
+    private int rebalances;
+    private int closes;
+    private int wins;
+    private int losses;
+    private int rejected;
+    private int cooldownSkips;
+    private double totalFees;
+    private double realizedPnl;
+
+    /**
+     * @param initialBalance 初始资金（USDT）
+     * @param feeRate 手续费率（按成交名义价值）
+     * @param slippageBps 滑点（基点，买入成交价上浮、卖出成交价下浮）
+     * @param fixedLeverage 固定杠杆（0表示按实盘规则确定）
+     */
+    public BacktestAccount(double initialBalance, double feeRate, double slippageBps, int fixedLeverage) {
+        this.initialBalance = initialBalance;
+        this.feeRate = feeRate;
+        this.slippage = slippageBps / 10_000.0;
+        this.fixedLeverage = fixedLeverage;
+        this.walletBalance = initialBalance;
+    }
+
+    /**
+     * 记录之后的每笔平仓（null表示不记录）
+     */
+    public void recordTrades(TradeSeries trades) {
+        this.trades = trades;
+    }
+
+    /**
+     * 执行策略信号（成交价格为当前价格）
+     *
+     * @param now 当前时间（毫秒）
+     * @param price 当前价格
+     * @param action 信号
+     * @param positionRatio 仓位比例（>=1表示平仓）
+     * @param margin 开仓/补仓金额（NaN表示没有提供）
+     * @param rebalance 是否为补齐仓位（不计入补仓次数）
+     * @param dualDirection 是否为双向策略（决定没有持仓时的杠杆）
+     */
+    public Outcome execute(long now, double price, StrategySignal.Action action, double positionRatio,
+                           double margin, boolean rebalance, boolean dualDirection) {
+        if (action == StrategySignal.Action.HOLD) {
+            return Outcome.SKIP_HOLD;
+        }
+
+        // 兜底逻辑：开仓/补仓信号（position=0.5）没有margin时使用默认值
+        if (Double.isNaN(margin) && action != StrategySignal.Action.DUAL_OPEN && positionRatio == 0.5) {
+            margin = DEFAULT_MARGIN;
+        }
+
+        if (action == StrategySignal.Action.DUAL_OPEN) {
+            if (!(margin > 0)) {
+                return Outcome.SKIP_NO_MARGIN;
+            }
+            if (inCooldown(LONG, now) || inCooldown(SHORT, now)) {
+                cooldownSkips++;
+                return Outcome.SKIP_COOLDOWN;
+            }
+            boolean longSuccess = open(LONG, now, price, margin, true);
+            boolean shortSuccess = open(SHORT, now, price, margin, true);
+            return longSuccess && shortSuccess ? Outcome.DUAL_ORDER_SUCCESS : Outcome.DUAL_ORDER_PARTIAL;
+        }
+
+        boolean buy = action == StrategySignal.Action.BUY;
+        if (!buy && action != StrategySignal.Action.SELL) {
+            return Outcome.SKIP_INVALID_SIGNAL;
+        }
+
+        // 平仓：BUY平空头、SELL平多头
+        if (positionRatio >= 1.0) {
+            return close(buy ? SHORT : LONG, now, price) ? Outcome.CLOSE_ORDER_SUCCESS : Outcome.CLOSE_ORDER_FAILED;
+        }
+
+        // 开仓/补仓：BUY开多、SELL开空
+        int side = buy ? LONG : SHORT;
+        if (inCooldown(side, now)) {
+            cooldownSkips++;
+            return Outcome.SKIP_COOLDOWN;
+        }
+        if (!(margin > 0)) {
+            return Outcome.SKIP_NO_MARGIN;
+        }
+        if (!open(side, now, price, margin, dualDirection)) {
+            return Outcome.ORDER_FAILED;
+        }
+        if (rebalance) {
+            rebalances++;
+        } else {
+            addCount[side]++;
+            adds++;
+        }
+        return Outcome.ORDER_SUCCESS;
+    }
+
+    private boolean inCooldown(int side, long now) {
+        return lastOpenTime[side] != Long.MIN_VALUE && now - lastOpenTime[side] < OPEN_COOLDOWN_MS;
+    }
+
+    private boolean open(int side, long now, double price, double margin, boolean dualDirection) {
+        int positionLeverage = leverageFor(side, dualDirection);
+        double openQuantity = margin * positionLeverage / price;
+        if (!(openQuantity > 0)) {
+            return false;
+        }
+        double fillPrice = side == LONG ? price * (1 + slippage) : price * (1 - slippage);
+        double notional = fillPrice * openQuantity;
+        double fee = notional * feeRate;
+        if (notional / positionLeverage + fee > availableBalance(price)) {
+            rejected++;
+            return false;
+        }
+        double total = quantity[side] + openQuantity;
+        entryPrice[side] = (entryPrice[side] * quantity[side] + notional) / total;
+        quantity[side] = total;
+        leverage[side] = positionLeverage;
+        walletBalance -= fee;
+        totalFees += fee;
+        lastOpenTime[side] = now;
+        opens++;
+        return true;
+    }
+
+    private boolean close(int side, long now, double price) {
+        double closeQuantity = quantity[side];
+        if (!(closeQuantity > 0)) {
+            return false;
+        }
+        double fillPrice = side == LONG ? price * (1 - slippage) : price * (1 + slippage);
+        double pnl = side == LONG
+                ? (fillPrice - entryPrice[side]) * closeQuantity
+                : (entryPrice[side] - fillPrice) * closeQuantity;
+        double fee = fillPrice * closeQuantity * feeRate;
+        if (trades != null) {
+            trades.add(now, pnl - fee, margin(side), leverage[side]);
+        }
+        walletBalance += pnl - fee;
+        totalFees += fee;
+        realizedPnl += pnl;
+        quantity[side] = 0.0;
+        entryPrice[side] = 0.0;
+        closes++;
+        if (pnl - fee > 0) {
+            wins++;
+        } else {
+            losses++;
+        }
+
+        // 平仓成功：该方向盈利次数+1，另一方向盈利次数和补仓次数清零
+        int opposite = 1 - side;
+        profitCount[side]++;
+        profitCount[opposite] = 0;
+        addCount[opposite] = 0;
+        lastCloseTime = now;
+        return true;
+    }
+
+    /**
+     * 杠杆：优先沿用同方向持仓，其次另一方向持仓，没有持仓时双向策略50倍、其他策略1倍
+     */
+    private int leverageFor(int side, boolean dualDirection) {
+        if (fixedLeverage > 0) {
+            return fixedLeverage;
+        }
+        if (quantity[side] > 0) {
+            return leverage[side];
+        }
+        if (quantity[1 - side] > 0) {
+            return leverage[1 - side];
+        }
+        return dualDirection ? DUAL_DIRECTION_LEVERAGE : 1;
+    }
+
+    public double quantity(int side) {
+        return quantity[side];
+    }
+
+    /**
+     * 开仓均价（没有持仓时为NaN）
+     */
+    public double entryPrice(int side) {
+        return quantity[side] > 0 ? entryPrice[side] : Double.NaN;
+    }
+
+    public int leverage(int side) {
+        return quantity[side] > 0 ? leverage[side] : 0;
+    }
+
+    public double unrealizedPnl(int side, double price) {
+        if (!(quantity[side] > 0)) {
+            return 0.0;
+        }
+        double diff = price - entryPrice[side];
+        return side == LONG ? diff * quantity[side] : -diff * quantity[side];
+    }
+
+    /**
+     * 占用保证金 = 开仓价值 / 杠杆
+     */
+    public double margin(int side) {
+        return quantity[side] > 0 ? entryPrice[side] * quantity[side] / leverage[side] : 0.0;
+    }
+
+    /**
+     * 盈亏百分比 = 未实现盈亏 / 保证金 × 100（与交易所适配器一致）
+     */
+    public double pnlPercentage(int side, double price) {
+        double margin = margin(side);
+        return margin > 0 ? unrealizedPnl(side, price) / margin * 100 : 0.0;
+    }
+
+    /**
+     * 权益 = 钱包余额 + 未实现盈亏
+     */
+    public double equity(double price) {
+        return walletBalance + unrealizedPnl(LONG, price) + unrealizedPnl(SHORT, price);
+    }
+
+    /**
+     * 可用余额 = 权益 - 占用保证金
+     */
+    public double availableBalance(double price) {
+        return equity(price) - margin(LONG) - margin(SHORT);
+    }
+
+    public int profitCount(int side) {
+        return profitCount[side];
+    }
+
+    public int addCount(int side) {
+        return addCount[side];
+    }
+
+    /**
+     * 最近一次平仓时间（毫秒，0表示还没有平仓）
+     */
+    public long lastCloseTime() {
+        return lastCloseTime;
+    }
+
+    public double getInitialBalance() {
+        return initialBalance;
+    }
+
+    public double getWalletBalance() {
+        return walletBalance;
+    }
+
+    public double getTotalFees() {
+        return totalFees;
+    }
+
+    public double getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    public int getOpens() {
+        return opens;
+    }
+
+    public int getAdds() {
+        return adds;
+    }
+
+    public int getRebalances() {
+        return rebalances;
+    }
+
+    public int getCloses() {
+        return closes;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public int getCooldownSkips() {
+        return cooldownSkips;
+    }
+}
@@ -0,0 +1,46 @@
+package com.quant.backtest;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 回测参数
+ */
+@Getter
+@Builder(toBuilder = true)
+public class BacktestConfig {
+
+    /**
+     * 初始资金（USDT）
+     */
+    @Builder.Default
+    private final double initialBalance = 10_000.0;
+
+    /**
+     * 手续费率（吃单，按成交名义价值收取，与模拟交易默认值一致）
+     */
+    @Builder.Default
+    private final double feeRate = 0.0004;
+
+    /**
+     * 滑点（基点）
+     */
+    @Builder.Default
+    private final double slippageBps = 0.0;
+
+    /**
+     * 固定杠杆（0表示按实盘规则：沿用已有持仓，没有持仓时双向策略50倍、其他策略1倍）
+     */
+    @Builder.Default
+    private final int leverage = 0;
+
+    /**
+     * 结果中权益曲线的最大点数（0表示不输出权益曲线）
+     */
+    @Builder.Default
+    private final int curvePoints = 500;
+
+    public static BacktestConfig defaults() {
+        return BacktestConfig.builder().build();
+    }
+}
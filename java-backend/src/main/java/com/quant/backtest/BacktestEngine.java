@@ -0,0 +1,280 @@
+package com.quant.backtest;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.strategy.BaseStrategy;
+import com.quant.strategy.DualDirectionInput;
+import com.quant.strategy.DualDirectionStrategy;
+import com.quant.strategy.StrategySignal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回测引擎
+ * 按K线顺序在每根K线收盘时执行一次策略，信号按实盘规则在 {@link BacktestAccount} 中成交，统计盈亏、回撤和交易次数
+ *
+ * 策略执行方式：
+ * - 双向策略直接填充基本类型输入（{@link DualDirectionInput}）执行，每根K线不分配对象
+ * - 其他 {@link BaseStrategy} 实现按 TradingEngine 的字段构建 StrategyRequest 执行（较慢，用于没有基本类型通道的策略）
+ *
+ * 引擎本身无状态，可以在多个线程中同时回测（同一份 {@link BarSeries} 只读共享）
+ */
+public class BacktestEngine {
+
+    // 通用策略请求中传递的最近收盘价数量
+    private static final int HISTORY_BARS = 100;
+
+    // 最近平仓记录的有效期（毫秒），与TradingEngine查询最近60秒平仓记录一致
+    private static final long RECENT_CLOSE_MS = 60_000;
+
+    private final BacktestConfig config;
+
+    public BacktestEngine(BacktestConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 在整段行情上回测策略
+     */
+    public BacktestResult run(BarSeries bars, BaseStrategy strategy) {
+        return run(bars, strategy, null);
+    }
+
+    /**
+     * 在整段行情上回测策略，同时把每笔平仓记录到 trades（null表示不记录）
+     */
+    public BacktestResult run(BarSeries bars, BaseStrategy strategy, TradeSeries trades) {
+        long startNanos = System.nanoTime();
+        BacktestAccount account = new BacktestAccount(config.getInitialBalance(), config.getFeeRate(),
+                config.getSlippageBps(), config.getLeverage());
+        account.recordTrades(trades);
+        Stepper stepper = strategy instanceof DualDirectionStrategy dual
+                ? new DualDirectionStepper(dual)
+                : new RequestStepper(strategy, bars);
+
+        int size = bars.size();
+        int curvePoints = config.getCurvePoints() > 0 ? Math.min(config.getCurvePoints(), size) : 0;
+        int curveStep = curvePoints > 0 ? (size + curvePoints - 1) / curvePoints : 0;
+        long[] curveTimes = new long[curvePoints > 0 ? (size + curveStep - 1) / curveStep : 0];
+        double[] curveEquity = new double[curveTimes.length];
+        int curveSize = 0;
+
+        double peak = account.getInitialBalance();
+        double maxDrawdown = 0.0;
+        double maxDrawdownPct = 0.0;
+        double equity = peak;
+        boolean ruined = false;
+        int processed = 0;
+        for (int i = 0; i < size; i++) {
+            long now = bars.closeTime(i);
+            double price = bars.close(i);
+            if (!(price > 0)) {
+                continue;
+            }
+            stepper.step(account, i, now, price);
+
+            equity = account.equity(price);
+            if (equity > peak) {
+                peak = equity;
+            } else if (peak - equity > maxDrawdown) {
+                maxDrawdown = peak - equity;
+                maxDrawdownPct = maxDrawdown / peak * 100;
+            }
+            if (curveStep > 0 && i / curveStep == curveSize) {
+                curveTimes[curveSize] = now;
+                curveEquity[curveSize] = equity;
+                curveSize++;
+            }
+            processed = i + 1;
+            if (equity <= 0) {
+                ruined = true;
+                break;
+            }
+        }
+
+        int closes = account.getCloses();
+        double initialBalance = account.getInitialBalance();
+        return BacktestResult.builder()
+                .symbol(bars.getSymbol())
+                .strategy(strategy.getStrategyName())
+                .intervalMs(bars.getIntervalMs())
+                .bars(processed)
+                .startTime(size > 0 ? bars.time(0) : 0)
+                .endTime(processed > 0 ? bars.closeTime(processed - 1) : 0)
+                .initialBalance(initialBalance)
+                .finalEquity(equity)
+                .netPnl(equity - initialBalance)
+                .returnPct(initialBalance > 0 ? (equity - initialBalance) / initialBalance * 100 : 0.0)
+                .realizedPnl(account.getRealizedPnl())
+                .fees(account.getTotalFees())
+                .maxDrawdown(maxDrawdown)
+                .maxDrawdownPct(maxDrawdownPct)
+                .trades(account.getOpens() + closes)
+                .opens(account.getOpens())
+                .adds(account.getAdds())
+                .rebalances(account.getRebalances())
+                .closes(closes)
+                .wins(account.getWins())
+                .losses(account.getLosses())
+                .winRate(closes > 0 ? (double) account.getWins() / closes * 100 : 0.0)
+                .rejectedOrders(account.getRejected())
+                .cooldownSkips(account.getCooldownSkips())
+                .ruined(ruined)
+                .elapsedMs((System.nanoTime() - startNanos) / 1_000_000)
+                .curveTimes(Arrays.copyOf(curveTimes, curveSize))
+                .curveEquity(Arrays.copyOf(curveEquity, curveSize))
+                .build();
+    }
+
+    /**
+     * 单根K线上的策略执行
+     */
+    private interface Stepper {
+        void step(BacktestAccount account, int index, long now, double price);
+    }
+
+    /**
+     * 双向策略：基本类型输入 → 可复用信号 → 账户
+     */
+    private static final class DualDirectionStepper implements Stepper {
+
+        private final DualDirectionStrategy strategy;
+        private final DualDirectionInput in = new DualDirectionInput();
+        private final StrategySignal signal = new StrategySignal();
+
+        private DualDirectionStepper(DualDirectionStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        @Override
+        public void step(BacktestAccount account, int index, long now, double price) {
+            in.reset();
+            in.price = price;
+            in.timestampMs = now;
+            in.longQuantity = account.quantity(BacktestAccount.LONG);
+            in.shortQuantity = account.quantity(BacktestAccount.SHORT);
+            in.longOpenRate = account.entryPrice(BacktestAccount.LONG);
+            in.shortOpenRate = account.entryPrice(BacktestAccount.SHORT);
+            in.longProfitPct = account.pnlPercentage(BacktestAccount.LONG, price);
+            in.shortProfitPct = account.pnlPercentage(BacktestAccount.SHORT, price);
+            in.longProfitCount = account.profitCount(BacktestAccount.LONG);
+            in.shortProfitCount = account.profitCount(BacktestAccount.SHORT);
+            in.longAddCount = account.addCount(BacktestAccount.LONG);
+            in.shortAddCount = account.addCount(BacktestAccount.SHORT);
+            long lastClose = account.lastCloseTime();
+            if (lastClose > 0 && now - lastClose < RECENT_CLOSE_MS) {
+                in.lastCloseTimeMs = lastClose;
+            }
+
+            strategy.evaluate(in, signal);
+            if (signal.isHold()) {
+                return;
+            }
+            account.execute(now, price, signal.getAction(), signal.getPositionRatio(), signal.getMargin(),
+                    signal.getAddType() == StrategySignal.AddType.REBALANCE, true);
+        }
+    }
+
+    /**
+     * 通用策略：按 TradingEngine 的字段构建请求，响应按 OrderService 的规则解析
+     */
+    private static final class RequestStepper implements Stepper {
+
+        private final BaseStrategy strategy;
+        private final BarSeries bars;
+
+        private RequestStepper(BaseStrategy strategy, BarSeries bars) {
+            this.strategy = strategy;
+            this.bars = bars;
+        }
+
+        @Override
+        public void step(BacktestAccount account, int index, long now, double price) {
+            Map<String, Object> marketData = new HashMap<>();
+            marketData.put("price", price);
+            marketData.put("timestamp", now);
+            marketData.put("volume", bars.volume(index));
+            marketData.put("prices", new CloseWindow(bars, Math.max(0, index + 1 - HISTORY_BARS), index + 1));
+
+            Map<String, Object> position = new HashMap<>();
+            double longQuantity = account.quantity(BacktestAccount.LONG);
+            double shortQuantity = account.quantity(BacktestAccount.SHORT);
+            position.put("longQuantity", longQuantity);
+            position.put("shortQuantity", shortQuantity);
+            position.put("longOpenRate", longQuantity > 0 ? account.entryPrice(BacktestAccount.LONG) : 0.0);
+            position.put("shortOpenRate", shortQuantity > 0 ? account.entryPrice(BacktestAccount.SHORT) : 0.0);
+            position.put("longProfitPct", account.pnlPercentage(BacktestAccount.LONG, price));
+            position.put("shortProfitPct", account.pnlPercentage(BacktestAccount.SHORT, price));
+            position.put("longLeverage", account.leverage(BacktestAccount.LONG));
+            position.put("shortLeverage", account.leverage(BacktestAccount.SHORT));
+            position.put("longProfitCount", account.profitCount(BacktestAccount.LONG));
+            position.put("shortProfitCount", account.profitCount(BacktestAccount.SHORT));
+            position.put("longAddCount", account.addCount(BacktestAccount.LONG));
+            position.put("shortAddCount", account.addCount(BacktestAccount.SHORT));
+            position.put("quantity", longQuantity + shortQuantity);
+
+            Map<String, Object> strategyParams = new HashMap<>();
+            long lastClose = account.lastCloseTime();
+            if (lastClose > 0 && now - lastClose < RECENT_CLOSE_MS) {
+                Map<String, Object> closeInfo = new HashMap<>();
+                closeInfo.put("closeTime", lastClose);
+                strategyParams.put("recentClosePositions", List.of(closeInfo));
+            }
+
+            StrategyResponse response = strategy.execute(StrategyRequest.builder()
+                    .strategyName(strategy.getStrategyName())
+                    .symbol(bars.getSymbol())
+                    .marketData(marketData)
+                    .position(position)
+                    .strategyParams(strategyParams)
+                    .build());
+            if (response == null || response.getSignal() == null || "HOLD".equals(response.getSignal())) {
+                return;
+            }
+
+            StrategySignal.Action action;
+            try {
+                action = StrategySignal.Action.valueOf(response.getSignal());
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            Map<String, Object> metadata = response.getMetadata();
+            double margin = metadata != null && metadata.get("margin") instanceof Number number
+                    ? number.doubleValue() : Double.NaN;
+            boolean rebalance = metadata != null && "REBALANCE".equals(String.valueOf(metadata.get("addPositionType")));
+            boolean dualDirection = metadata != null && "DualDirectionStrategy".equals(String.valueOf(metadata.get("strategy")));
+            double positionRatio = response.getPosition() != null ? response.getPosition().doubleValue() : 0.0;
+            account.execute(now, price, action, positionRatio, margin, rebalance, dualDirection);
+        }
+    }
+
+    /**
+     * 收盘价窗口（只读视图，不复制数组）
+     */
+    private static final class CloseWindow extends AbstractList<Double> {
+
+        private final BarSeries bars;
+        private final int from;
+        private final int to;
+
+        private CloseWindow(BarSeries bars, int from, int to) {
+            this.bars = bars;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Double get(int index) {
+            return bars.close(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.quant.backtest;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 回测专用的 fork/join 线程池（参数寻优和稳健性检验共用，首次使用时创建）
+ * 与公共池分开，长时间的批量回测不会占满其他组件使用的公共池
+ */
+@Slf4j
+@Component
+public class BacktestPool {
+
+    // 并行度（0表示CPU核心数的一半，至少1个，给行情和交易线程留出CPU）
+    @Value("${strategy.backtest.parallelism:0}")
+    private int parallelism;
+
+    private volatile ForkJoinPool pool;
+
+    public ForkJoinPool get() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    int threads = parallelism > 0 ? parallelism
+                            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+                    current = new ForkJoinPool(threads, forkJoinPool -> {
+                        var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                        thread.setName("backtest-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+                    pool = current;
+                    log.info("回测线程池已创建: parallelism={}", threads);
+                }
+            }
+        }
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ForkJoinPool current = pool;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.quant.backtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 回测结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacktestResult {
+
+    private String symbol;
+
+    private String strategy;
+
+    /**
+     * K线周期（毫秒，0表示Tick）
+     */
+    private long intervalMs;
+
+    /**
+     * 参与回测的K线数量（爆仓时小于数据总量）
+     */
+    private int bars;
+
+    private long startTime;
+
+    private long endTime;
+
+    private double initialBalance;
+
+    /**
+     * 最终权益（钱包余额 + 未实现盈亏）
+     */
+    private double finalEquity;
+
+    /**
+     * 净盈亏 = 最终权益 - 初始资金（含手续费和未平仓盈亏）
+     */
+    private double netPnl;
+
+    private double returnPct;
+
+    /**
+     * 已实现盈亏（不含手续费）
+     */
+    private double realizedPnl;
+
+    private double fees;
+
+    /**
+     * 最大回撤（USDT，按每根K线收盘时的权益计算）
+     */
+    private double maxDrawdown;
+
+    private double maxDrawdownPct;
+
+    /**
+     * 成交订单数（开仓 + 平仓，双向开仓计为两笔）
+     */
+    private int trades;
+
+    private int opens;
+
+    /**
+     * 补仓次数（不含补齐仓位）
+     */
+    private int adds;
+
+    /**
+     * 补齐仓位次数
+     */
+    private int rebalances;
+
+    private int closes;
+
+    /**
+     * 盈利/亏损的平仓次数（扣除平仓手续费后）
+     */
+    private int wins;
+
+    private int losses;
+
+    private double winRate;
+
+    /**
+     * 可用余额不足被拒绝的开仓次数
+     */
+    private int rejectedOrders;
+
+    /**
+     * 开仓冷却期内跳过的信号次数
+     */
+    private int cooldownSkips;
+
+    /**
+     * 权益是否耗尽（权益<=0时停止回测）
+     */
+    private boolean ruined;
+
+    /**
+     * 回测耗时（毫秒）
+     */
+    private long elapsedMs;
+
+    /**
+     * 权益曲线（按K线等间隔采样）
+     */
+    private long[] curveTimes;
+
+    private double[] curveEquity;
+}
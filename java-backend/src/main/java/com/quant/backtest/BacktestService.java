@@ -0,0 +1,296 @@
+package com.quant.backtest;
+
+import com.quant.market.KlineInterval;
+import com.quant.market.journal.TickJournal;
+import com.quant.market.journal.TickJournalService;
+import com.quant.model.StrategyType;
+import com.quant.strategy.BaseStrategy;
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import com.quant.strategy.StrategyFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 回测服务
+ * 加载历史行情（Binance K线CSV或本地Tick日志），按请求参数创建策略和回测参数后执行 {@link BacktestEngine}；
+ * 加载后的行情按文件缓存（只读，多个回测共享）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BacktestService {
+
+    // 缓存的行情数量
+    private static final int MAX_CACHED_SERIES = 8;
+
+    private final StrategyFactory strategyFactory;
+    private final TickJournalService tickJournalService;
+
+    // K线CSV目录
+    @Value("${strategy.backtest.data-dir:data/backtest}")
+    private String dataDir;
+
+    private final Map<String, BarSeries> seriesCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BarSeries> eldest) {
+            return size() > MAX_CACHED_SERIES;
+        }
+    };
+
+    /**
+     * K线CSV目录下的文件
+     */
+    public List<String> listFiles() {
+        Path dir = Path.of(dataDir);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".csv"))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("列出回测数据文件失败: dir={}, error={}", dataDir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 按请求执行回测
+     * 请求参数：
+     * - source：csv（默认）/ journal
+     * - files：CSV文件名（字符串或列表，按顺序拼接，只能读取数据目录下的文件）
+     * - symbol：交易对（CSV默认取文件名中第一个“-”之前的部分）
+     * - interval：K线周期（1s/1m/5m/1h，默认1m；Tick日志可传 tick 表示不聚合）
+     * - from / to：Tick日志的日期范围（yyyyMMdd，含两端，默认全部）
+     * - journalType：MARK_PRICE（默认）/ TRADE
+     * - strategyType：策略类型（默认DUAL_DIRECTION）
+     * - params：双向策略参数（takeProfitPct、winsPerAdd、cooldownSeconds、openMargin、addMargin，缺省使用实盘参数）
+     * - initialBalance、feeRate、slippageBps、leverage、curvePoints：回测参数（见 {@link BacktestConfig}）
+     */
+    public BacktestResult run(Map<String, Object> request) throws IOException {
+        BarSeries bars = loadSeries(request);
+        if (bars.size() == 0) {
+            throw new IllegalArgumentException("没有可回测的行情数据: symbol=" + bars.getSymbol());
+        }
+        BaseStrategy strategy = resolveStrategy(request);
+        BacktestConfig config = toConfig(request);
+        BacktestResult result = new BacktestEngine(config).run(bars, strategy);
+        log.info("回测完成: symbol={}, strategy={}, bars={}, netPnl={}, maxDrawdown={}, trades={}, elapsed={}ms",
+                result.getSymbol(), result.getStrategy(), result.getBars(), result.getNetPnl(),
+                result.getMaxDrawdown(), result.getTrades(), result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * 按请求加载行情（已加载的文件直接使用缓存）
+     */
+    public BarSeries loadSeries(Map<String, Object> request) throws IOException {
+        String source = request.get("source") != null ? String.valueOf(request.get("source")) : "csv";
+        long intervalMs = intervalMs(request.get("interval"));
+        if ("journal".equalsIgnoreCase(source)) {
+            String symbol = (String) request.get("symbol");
+            if (symbol == null || symbol.isEmpty()) {
+                throw new IllegalArgumentException("缺少交易对");
+            }
+            byte type = "TRADE".equalsIgnoreCase(String.valueOf(request.get("journalType")))
+                    ? TickJournal.TYPE_TRADE : TickJournal.TYPE_MARK_PRICE;
+            List<Path> files = journalFiles(request.get("from"), request.get("to"));
+            String key = "journal:" + symbol + ":" + type + ":" + intervalMs + ":" + cacheKey(files);
+            BarSeries cached = cached(key);
+            return cached != null ? cached : cache(key, BarSeries.readJournal(files, symbol, type, intervalMs));
+        }
+
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("K线CSV必须指定周期");
+        }
+        List<Path> files = csvFiles(request.get("files"));
+        String symbol = (String) request.get("symbol");
+        if (symbol == null || symbol.isEmpty()) {
+            String name = files.get(0).getFileName().toString();
+            symbol = name.contains("-") ? name.substring(0, name.indexOf('-')) : name.replace(".csv", "");
+        }
+        String key = "csv:" + symbol + ":" + intervalMs + ":" + cacheKey(files);
+        BarSeries cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        BarSeries series = BarSeries.readCsv(files.get(0), symbol, intervalMs);
+        for (int i = 1; i < files.size(); i++) {
+            BarSeries next = BarSeries.readCsv(files.get(i), symbol, intervalMs);
+            for (int j = 0; j < next.size(); j++) {
+                series.add(next.time(j), next.open(j), next.high(j), next.low(j), next.close(j), next.volume(j));
+            }
+        }
+        return cache(key, series);
+    }
+
+    /**
+     * 按请求创建策略（双向策略使用请求中的参数创建离线实例）
+     */
+    public BaseStrategy resolveStrategy(Map<String, Object> request) {
+        StrategyType type = StrategyType.DUAL_DIRECTION;
+        Object typeValue = request.get("strategyType");
+        if (typeValue != null) {
+            try {
+                type = StrategyType.valueOf(String.valueOf(typeValue).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的策略类型: " + typeValue);
+            }
+        }
+        if (type == StrategyType.DUAL_DIRECTION) {
+            return DualDirectionStrategy.offline(toParams(request.get("params")));
+        }
+        return strategyFactory.getStrategy(type);
+    }
+
+    /**
+     * 双向策略参数（缺省字段使用实盘参数）
+     */
+    public static DualDirectionParams toParams(Object value) {
+        DualDirectionParams defaults = DualDirectionParams.DEFAULTS;
+        if (!(value instanceof Map<?, ?> params)) {
+            return defaults;
+        }
+        return new DualDirectionParams(
+                number(params.get("takeProfitPct"), defaults.takeProfitPct()),
+                (int) number(params.get("winsPerAdd"), defaults.winsPerAdd()),
+                (int) number(params.get("cooldownSeconds"), defaults.cooldownSeconds()),
+                number(params.get("openMargin"), defaults.openMargin()),
+                number(params.get("addMargin"), defaults.addMargin()));
+    }
+
+    /**
+     * 回测参数（缺省字段使用默认值）
+     */
+    public static BacktestConfig toConfig(Map<String, Object> request) {
+        BacktestConfig defaults = BacktestConfig.defaults();
+        return BacktestConfig.builder()
+                .initialBalance(number(request.get("initialBalance"), defaults.getInitialBalance()))
+                .feeRate(number(request.get("feeRate"), defaults.getFeeRate()))
+                .slippageBps(number(request.get("slippageBps"), defaults.getSlippageBps()))
+                .leverage((int) number(request.get("leverage"), defaults.getLeverage()))
+                .curvePoints((int) number(request.get("curvePoints"), defaults.getCurvePoints()))
+                .build();
+    }
+
+    private static long intervalMs(Object value) {
+        if (value == null) {
+            return KlineInterval.M1.getMillis();
+        }
+        if ("tick".equalsIgnoreCase(String.valueOf(value))) {
+            return 0;
+        }
+        KlineInterval interval = KlineInterval.fromCode(String.valueOf(value));
+        if (interval == null) {
+            throw new IllegalArgumentException("不支持的K线周期: " + value);
+        }
+        return interval.getMillis();
+    }
+
+    private List<Path> csvFiles(Object value) {
+        List<String> names = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            list.forEach(item -> names.add(String.valueOf(item)));
+        } else if (value != null) {
+            names.add(String.valueOf(value));
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("缺少行情文件");
+        }
+        List<Path> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            // 只允许读取数据目录下的文件
+            Path file = Path.of(dataDir).resolve(Path.of(name).getFileName());
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException("行情文件不存在: " + name);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Tick日志目录下日期范围内的日志文件（按日期排序）
+     */
+    private List<Path> journalFiles(Object from, Object to) throws IOException {
+        Path dir = tickJournalService.getDirectory();
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("Tick日志目录不存在: " + dir);
+        }
+        String fromDay = from != null ? String.valueOf(from) : "00000000";
+        String toDay = to != null ? String.valueOf(to) : "99999999";
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(path -> {
+                        String name = path.getFileName().toString();
+                        int end = name.length() - TickJournal.TICKS_SUFFIX.length();
+                        if (!name.endsWith(TickJournal.TICKS_SUFFIX) || end < 8) {
+                            return false;
+                        }
+                        String day = name.substring(end - 8, end);
+                        return day.compareTo(fromDay) >= 0 && day.compareTo(toDay) <= 0;
+                    })
+                    .sorted()
+                    .toList();
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("日期范围内没有Tick日志: " + fromDay + " - " + toDay);
+        }
+        return files;
+    }
+
+    private static String cacheKey(List<Path> files) throws IOException {
+        StringBuilder key = new StringBuilder();
+        for (Path file : files) {
+            key.append(file).append('@').append(Files.size(file)).append('@')
+                    .append(Files.getLastModifiedTime(file).toMillis()).append(';');
+        }
+        return key.toString();
+    }
+
+    private BarSeries cached(String key) {
+        synchronized (seriesCache) {
+            return seriesCache.get(key);
+        }
+    }
+
+    private BarSeries cache(String key, BarSeries series) {
+        synchronized (seriesCache) {
+            seriesCache.put(key, series);
+        }
+        log.info("回测行情已加载: symbol={}, interval={}ms, bars={}",
+                series.getSymbol(), series.getIntervalMs(), series.size());
+        return series;
+    }
+
+    /**
+     * 请求中的数字参数（支持数字字符串，缺省时返回默认值）
+     */
+    static double number(Object value, double defaultValue) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String str && !str.isBlank()) {
+            try {
+                return Double.parseDouble(str.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("参数不是数字: " + str);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,227 @@
+package com.quant.backtest;
+
+import com.quant.market.journal.TickJournal;
+import com.quant.market.journal.TickJournalReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 回测用的历史行情（单个交易对，按时间升序）
+ * 按列保存在基本类型数组中（开盘时间、开高低收、成交量），加载完成后只读，可以被多个回测线程共享；
+ * 周期为0时每一行是一笔Tick（开高低收都等于成交价）
+ */
+public final class BarSeries {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // 毫秒时间戳超过该值时认为是微秒（Binance部分历史数据导出使用微秒）
+    private static final long MICROS_THRESHOLD = 100_000_000_000_000L;
+
+    private final String symbol;
+    private final long intervalMs;
+
+    private long[] times;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private double[] volumes;
+    private int size;
+
+    public BarSeries(String symbol, long intervalMs) {
+        this.symbol = symbol;
+        this.intervalMs = intervalMs;
+        this.times = new long[INITIAL_CAPACITY];
+        this.opens = new double[INITIAL_CAPACITY];
+        this.highs = new double[INITIAL_CAPACITY];
+        this.lows = new double[INITIAL_CAPACITY];
+        this.closes = new double[INITIAL_CAPACITY];
+        this.volumes = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * 追加一根K线（时间早于上一根的数据被忽略；K线时间重复时保留先写入的一根，Tick允许同一毫秒多笔）
+     */
+    public void add(long time, double open, double high, double low, double close, double volume) {
+        if (size > 0 && (time < times[size - 1] || (time == times[size - 1] && intervalMs > 0))) {
+            return;
+        }
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+        times[size] = time;
+        opens[size] = open;
+        highs[size] = high;
+        lows[size] = low;
+        closes[size] = close;
+        volumes[size] = volume;
+        size++;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * K线周期（毫秒，0表示Tick）
+     */
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long time(int index) {
+        return times[index];
+    }
+
+    /**
+     * 第index根K线收盘（策略决策）的时间
+     */
+    public long closeTime(int index) {
+        return times[index] + intervalMs;
+    }
+
+    public double open(int index) {
+        return opens[index];
+    }
+
+    public double high(int index) {
+        return highs[index];
+    }
+
+    public double low(int index) {
+        return lows[index];
+    }
+
+    public double close(int index) {
+        return closes[index];
+    }
+
+    public double volume(int index) {
+        return volumes[index];
+    }
+
+    /**
+     * 复制 [from, to) 区间的K线（用于滚动窗口回测）
+     */
+    public BarSeries slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("区间无效: [" + from + ", " + to + "), size=" + size);
+        }
+        BarSeries series = new BarSeries(symbol, intervalMs);
+        int length = Math.max(to - from, 1);
+        series.times = Arrays.copyOfRange(times, from, from + length);
+        series.opens = Arrays.copyOfRange(opens, from, from + length);
+        series.highs = Arrays.copyOfRange(highs, from, from + length);
+        series.lows = Arrays.copyOfRange(lows, from, from + length);
+        series.closes = Arrays.copyOfRange(closes, from, from + length);
+        series.volumes = Arrays.copyOfRange(volumes, from, from + length);
+        series.size = to - from;
+        return series;
+    }
+
+    /**
+     * 从Binance K线CSV读取（data.binance.vision 导出格式：open_time,open,high,low,close,volume,...）
+     * 表头和无法解析的行被跳过；微秒时间戳自动转换为毫秒
+     */
+    public static BarSeries readCsv(Path file, String symbol, long intervalMs) throws IOException {
+        BarSeries series = new BarSeries(symbol, intervalMs);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    continue;
+                }
+                int c1 = line.indexOf(',');
+                int c2 = line.indexOf(',', c1 + 1);
+                int c3 = line.indexOf(',', c2 + 1);
+                int c4 = line.indexOf(',', c3 + 1);
+                int c5 = line.indexOf(',', c4 + 1);
+                if (c1 < 0 || c2 < 0 || c3 < 0 || c4 < 0 || c5 < 0) {
+                    continue;
+                }
+                int c6 = line.indexOf(',', c5 + 1);
+                try {
+                    long time = Long.parseLong(line, 0, c1, 10);
+                    if (time > MICROS_THRESHOLD) {
+                        time /= 1000;
+                    }
+                    series.add(time,
+                            Double.parseDouble(line.substring(c1 + 1, c2)),
+                            Double.parseDouble(line.substring(c2 + 1, c3)),
+                            Double.parseDouble(line.substring(c3 + 1, c4)),
+                            Double.parseDouble(line.substring(c4 + 1, c5)),
+                            Double.parseDouble(line.substring(c5 + 1, c6 > 0 ? c6 : line.length())));
+                } catch (NumberFormatException e) {
+                    // 跳过格式错误的行
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * 从行情Tick日志读取（文件按日期顺序传入）
+     *
+     * @param type 记录类型（{@link TickJournal#TYPE_MARK_PRICE} / {@link TickJournal#TYPE_TRADE}）
+     * @param intervalMs 聚合周期（毫秒，0表示不聚合，每笔Tick一行）
+     */
+    public static BarSeries readJournal(List<Path> files, String symbol, byte type, long intervalMs) throws IOException {
+        BarSeries series = new BarSeries(symbol, intervalMs);
+        long barTime = Long.MIN_VALUE;
+        double open = 0;
+        double high = 0;
+        double low = 0;
+        double close = 0;
+        double volume = 0;
+        for (Path file : files) {
+            try (TickJournalReader reader = new TickJournalReader(file)) {
+                while (reader.next()) {
+                    if (reader.type() != type || !symbol.equals(reader.symbol())) {
+                        continue;
+                    }
+                    long time = reader.eventTime();
+                    double price = reader.price();
+                    if (intervalMs <= 0) {
+                        series.add(time, price, price, price, price, reader.quantity());
+                        continue;
+                    }
+                    long openTime = time - Math.floorMod(time, intervalMs);
+                    if (openTime != barTime) {
+                        if (barTime != Long.MIN_VALUE) {
+                            series.add(barTime, open, high, low, close, volume);
+                        }
+                        barTime = openTime;
+                        open = price;
+                        high = price;
+                        low = price;
+                        volume = 0;
+                    }
+                    high = Math.max(high, price);
+                    low = Math.min(low, price);
+                    close = price;
+                    volume += reader.quantity();
+                }
+            }
+        }
+        if (intervalMs > 0 && barTime != Long.MIN_VALUE) {
+            series.add(barTime, open, high, low, close, volume);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,251 @@
+package com.quant.backtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 蒙特卡洛交易顺序检验
+ * 把同一组交易盈亏按随机顺序重新排列（SHUFFLE）或有放回抽样（BOOTSTRAP）得到大量权益路径，
+ * 统计最大回撤、最终权益的分布和爆仓概率，判断实际结果是否依赖于交易出现的先后顺序：
+ * - 模拟按固定大小分块交给 fork/join 线程池，每块一个随机数生成器和一个排列数组，单次模拟内不分配对象
+ * - 分块方式只取决于模拟次数，相同种子的结果与线程数无关
+ * - 每次模拟只写入自己的结果槽位，线程之间不共享可变状态
+ */
+public final class MonteCarlo {
+
+    /**
+     * 重排方式
+     */
+    public enum Method {
+        /**
+         * 打乱全部交易的顺序（每笔交易恰好出现一次，最终盈亏不变，只改变路径和回撤）
+         */
+        SHUFFLE,
+
+        /**
+         * 有放回抽样（交易可能重复或缺失，最终盈亏也会变化）
+         */
+        BOOTSTRAP
+    }
+
+    // 每个叶子任务执行的模拟次数
+    private static final int SIMULATIONS_PER_TASK = 256;
+
+    // 输出的分位数
+    private static final int[] PERCENTILES = {5, 25, 50, 75, 95, 99};
+
+    // 不同分块的种子间隔（黄金分割常数，使相邻分块的随机序列不相关）
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final double[] pnl;
+    private final double initialBalance;
+    private final double ruinEquity;
+    private final Method method;
+
+    /**
+     * @param pnl 每笔交易的盈亏（按实际顺序）
+     * @param initialBalance 初始资金
+     * @param ruinDrawdownPct 爆仓线（权益相对初始资金的亏损百分比，权益跌到该线以下即视为爆仓并停止该次模拟）
+     * @param method 重排方式
+     */
+    public MonteCarlo(double[] pnl, double initialBalance, double ruinDrawdownPct, Method method) {
+        if (!(initialBalance > 0)) {
+            throw new IllegalArgumentException("初始资金必须大于0: " + initialBalance);
+        }
+        if (!(ruinDrawdownPct > 0) || ruinDrawdownPct > 100) {
+            throw new IllegalArgumentException("爆仓线必须在0到100之间: " + ruinDrawdownPct);
+        }
+        this.pnl = pnl;
+        this.initialBalance = initialBalance;
+        this.ruinEquity = initialBalance * (1 - ruinDrawdownPct / 100);
+        this.method = method;
+    }
+
+    /**
+     * 执行模拟并汇总分布
+     *
+     * @return 实际顺序的结果（actual）、各指标的分位数分布、爆仓概率和亏损概率
+     */
+    public Map<String, Object> run(ForkJoinPool pool, int simulations, long seed) {
+        long startNanos = System.nanoTime();
+        Simulation simulation = new Simulation(simulations, seed);
+        pool.invoke(simulation.new Task(0, simulations));
+
+        int ruined = 0;
+        int losing = 0;
+        for (int i = 0; i < simulations; i++) {
+            if (simulation.ruined[i]) {
+                ruined++;
+            }
+            if (simulation.finalEquity[i] < initialBalance) {
+                losing++;
+            }
+        }
+
+        double[] actual = new double[3];
+        boolean actualRuined = path(pnl, actual);
+        Map<String, Object> actualResult = new LinkedHashMap<>();
+        actualResult.put("maxDrawdown", actual[0]);
+        actualResult.put("maxDrawdownPct", actual[1]);
+        actualResult.put("finalEquity", actual[2]);
+        actualResult.put("ruined", actualRuined);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("method", method.name());
+        result.put("simulations", simulations);
+        result.put("trades", pnl.length);
+        result.put("initialBalance", initialBalance);
+        result.put("ruinEquity", ruinEquity);
+        result.put("actual", actualResult);
+        result.put("maxDrawdown", distribution(simulation.maxDrawdown));
+        result.put("maxDrawdownPct", distribution(simulation.maxDrawdownPct));
+        result.put("finalEquity", distribution(simulation.finalEquity));
+        result.put("probabilityOfRuin", simulations > 0 ? (double) ruined / simulations : 0.0);
+        result.put("probabilityOfLoss", simulations > 0 ? (double) losing / simulations : 0.0);
+        result.put("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * 按顺序累计一条权益路径
+     *
+     * @param out [最大回撤, 最大回撤百分比, 最终权益]
+     * @return 是否爆仓
+     */
+    private boolean path(double[] order, double[] out) {
+        double equity = initialBalance;
+        double peak = equity;
+        double maxDrawdown = 0.0;
+        double maxDrawdownPct = 0.0;
+        boolean ruined = false;
+        for (double value : order) {
+            equity += value;
+            if (equity > peak) {
+                peak = equity;
+            } else if (peak - equity > maxDrawdown) {
+                maxDrawdown = peak - equity;
+                maxDrawdownPct = maxDrawdown / peak * 100;
+            }
+            if (equity <= ruinEquity) {
+                ruined = true;
+                break;
+            }
+        }
+        out[0] = maxDrawdown;
+        out[1] = maxDrawdownPct;
+        out[2] = equity;
+        return ruined;
+    }
+
+    /**
+     * 均值、最小值、最大值和分位数（会对数组原地排序）
+     */
+    static Map<String, Object> distribution(double[] values) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (values.length == 0) {
+            return result;
+        }
+        Arrays.sort(values);
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        result.put("mean", sum / values.length);
+        result.put("min", values[0]);
+        for (int percentile : PERCENTILES) {
+            // 最近秩法
+            int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+            result.put("p" + percentile, values[Math.max(rank, 1) - 1]);
+        }
+        result.put("max", values[values.length - 1]);
+        return result;
+    }
+
+    /**
+     * 单次执行的结果（每次模拟一个槽位）
+     */
+    private final class Simulation {
+        private final long seed;
+        private final double[] maxDrawdown;
+        private final double[] maxDrawdownPct;
+        private final double[] finalEquity;
+        private final boolean[] ruined;
+
+        private Simulation(int simulations, long seed) {
+            this.seed = seed;
+            this.maxDrawdown = new double[simulations];
+            this.maxDrawdownPct = new double[simulations];
+            this.finalEquity = new double[simulations];
+            this.ruined = new boolean[simulations];
+        }
+
+        /**
+         * fork/join任务：拆分到固定大小的分块后顺序模拟
+         */
+        private final class Task extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            private Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > SIMULATIONS_PER_TASK) {
+                    // 按分块边界拆分，保证分块方式只取决于模拟次数
+                    int blocks = (to - from + SIMULATIONS_PER_TASK - 1) / SIMULATIONS_PER_TASK;
+                    int mid = from + blocks / 2 * SIMULATIONS_PER_TASK;
+                    invokeAll(new Task(from, mid), new Task(mid, to));
+                    return;
+                }
+                simulate();
+            }
+
+            private void simulate() {
+                SplittableRandom random = new SplittableRandom(seed + from * SEED_GAMMA);
+                int n = pnl.length;
+                boolean shuffle = method == Method.SHUFFLE;
+                // SHUFFLE在同一个数组上连续洗牌（每次洗牌后仍是均匀随机排列），不需要每次复制
+                double[] order = shuffle ? pnl.clone() : null;
+                for (int sim = from; sim < to; sim++) {
+                    if (shuffle) {
+                        for (int i = n - 1; i > 0; i--) {
+                            int j = random.nextInt(i + 1);
+                            double swap = order[i];
+                            order[i] = order[j];
+                            order[j] = swap;
+                        }
+                    }
+                    double equity = initialBalance;
+                    double peak = equity;
+                    double drawdown = 0.0;
+                    double drawdownPct = 0.0;
+                    boolean ruin = false;
+                    for (int i = 0; i < n; i++) {
+                        equity += shuffle ? order[i] : pnl[random.nextInt(n)];
+                        if (equity > peak) {
+                            peak = equity;
+                        } else if (peak - equity > drawdown) {
+                            drawdown = peak - equity;
+                            drawdownPct = drawdown / peak * 100;
+                        }
+                        if (equity <= ruinEquity) {
+                            ruin = true;
+                            break;
+                        }
+                    }
+                    maxDrawdown[sim] = drawdown;
+                    maxDrawdownPct[sim] = drawdownPct;
+                    finalEquity[sim] = equity;
+                    ruined[sim] = ruin;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 双向策略参数网格
+ * 每个参数一组候选值，组合按混合进制编号（0 ~ size-1），按编号解码参数，不需要展开全部组合
+ *
+ * 每个参数的取值可以是：单个数字、数字列表、或范围 {"from": 30, "to": 80, "step": 10}（含两端）；
+ * 没有指定的参数使用实盘参数
+ */
+public final class ParameterGrid {
+
+    // 参数顺序（编号解码顺序，最后一个变化最快）
+    private static final String[] NAMES = {"takeProfitPct", "winsPerAdd", "cooldownSeconds", "openMargin", "addMargin"};
+
+    // 单个参数的候选值上限
+    private static final int MAX_VALUES_PER_PARAM = 10_000;
+
+    private final double[][] values;
+    private final long size;
+
+    private ParameterGrid(double[][] values) {
+        this.values = values;
+        long total = 1;
+        for (double[] candidates : values) {
+            total = Math.multiplyExact(total, candidates.length);
+        }
+        this.size = total;
+    }
+
+    /**
+     * 解析参数网格
+     *
+     * @param spec 参数名 -> 取值（见类说明），可为null
+     */
+    public static ParameterGrid parse(Map<String, Object> spec) {
+        DualDirectionParams defaults = DualDirectionParams.DEFAULTS;
+        double[] defaultValues = {defaults.takeProfitPct(), defaults.winsPerAdd(), defaults.cooldownSeconds(),
+                defaults.openMargin(), defaults.addMargin()};
+        double[][] values = new double[NAMES.length][];
+        for (int i = 0; i < NAMES.length; i++) {
+            Object value = spec != null ? spec.get(NAMES[i]) : null;
+            values[i] = value != null ? candidates(NAMES[i], value) : new double[]{defaultValues[i]};
+        }
+        try {
+            return new ParameterGrid(values);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("参数组合数量过多");
+        }
+    }
+
+    private static double[] candidates(String name, Object value) {
+        if (value instanceof Number number) {
+            return new double[]{number.doubleValue()};
+        }
+        if (value instanceof List<?> list) {
+            if (list.isEmpty() || list.size() > MAX_VALUES_PER_PARAM) {
+                throw new IllegalArgumentException("参数候选值数量无效: " + name + ", count=" + list.size());
+            }
+            double[] result = new double[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                if (!(list.get(i) instanceof Number number)) {
+                    throw new IllegalArgumentException("参数候选值不是数字: " + name + "=" + list.get(i));
+                }
+                result[i] = number.doubleValue();
+            }
+            return result;
+        }
+        if (value instanceof Map<?, ?> range && range.get("from") instanceof Number from
+                && range.get("to") instanceof Number to) {
+            double step = range.get("step") instanceof Number number ? number.doubleValue() : 1.0;
+            if (!(step > 0) || to.doubleValue() < from.doubleValue()) {
+                throw new IllegalArgumentException("参数范围无效: " + name + "=" + range);
+            }
+            // 容忍浮点误差，保证包含终点
+            long count = (long) Math.floor((to.doubleValue() - from.doubleValue()) / step + 1e-9) + 1;
+            if (count > MAX_VALUES_PER_PARAM) {
+                throw new IllegalArgumentException("参数候选值数量过多: " + name + ", count=" + count);
+            }
+            double[] result = new double[(int) count];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = from.doubleValue() + step * i;
+            }
+            return result;
+        }
+        throw new IllegalArgumentException("无法解析参数取值: " + name + "=" + value);
+    }
+
+    /**
+     * 组合数量
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 按编号解码参数组合
+     *
+     * @throws IllegalArgumentException 参数组合无效时（如金额不大于0）
+     */
+    public DualDirectionParams params(long index) {
+        double[] decoded = new double[NAMES.length];
+        for (int i = NAMES.length - 1; i >= 0; i--) {
+            int radix = values[i].length;
+            decoded[i] = values[i][(int) (index % radix)];
+            index /= radix;
+        }
+        return new DualDirectionParams(decoded[0], (int) decoded[1], (int) decoded[2], decoded[3], decoded[4]);
+    }
+}
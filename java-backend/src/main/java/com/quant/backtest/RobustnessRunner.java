@@ -0,0 +1,243 @@
+package com.quant.backtest;
+
+import com.quant.model.ClosePositionRecord;
+import com.quant.service.ClosePositionRecordService;
+import com.quant.service.StrategyConfigService;
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 策略配置稳健性检验（判断参数是否过拟合）
+ * 交易来源（input）：
+ * - RECORDS：用户在 close_position_records 中的实盘平仓记录（默认只取策略平仓）
+ * - TRADES：请求中直接提供的交易列表
+ * - BACKTEST（默认）：用策略配置的参数在历史行情上回测得到的模拟交易，同时执行行情上的滚动窗口寻优检验
+ *
+ * 检验内容：
+ * - walk-forward：见 {@link WalkForward}
+ * - 蒙特卡洛：见 {@link MonteCarlo}，按每个目标杠杆分别统计回撤分位数和爆仓概率；
+ *   默认使用交易记录中的杠杆（开仓时沿用已有持仓杠杆，没有持仓时双向策略50倍、其他策略1倍）
+ *
+ * 所有并行计算在 {@link BacktestPool} 中执行，请求同步返回
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RobustnessRunner {
+
+    private final BacktestService backtestService;
+    private final BacktestPool backtestPool;
+    private final ClosePositionRecordService closePositionRecordService;
+    private final StrategyConfigService strategyConfigService;
+
+    // 默认模拟次数
+    @Value("${strategy.backtest.robustness.simulations:10000}")
+    private int defaultSimulations;
+
+    // 单次请求的最大模拟次数（每个目标杠杆）
+    @Value("${strategy.backtest.robustness.max-simulations:100000}")
+    private int maxSimulations;
+
+    // walk-forward 样本内回测次数上限（窗口数量 × 参数组合数量）
+    @Value("${strategy.backtest.robustness.max-walk-forward-runs:10000}")
+    private int maxWalkForwardRuns;
+
+    /**
+     * 执行稳健性检验
+     * 请求参数：
+     * - input：RECORDS / TRADES / BACKTEST（默认）
+     * - userId、symbol：RECORDS 的用户和交易对（交易对可选）；includeManual：是否包含手动平仓（默认false）
+     * - trades：TRADES 的交易列表，每笔 {pnl, margin?, leverage?, time?}，按列表顺序
+     * - BACKTEST 的行情和回测参数同 {@link BacktestService#run(Map)}；策略参数优先取 params，
+     *   其次按 userId + strategyName（默认DualDirectionStrategy）读取已保存的策略配置
+     * - windows：walk-forward 窗口数量（默认5）；inSamplePct：样本内比例（默认70）；
+     *   grid：样本内寻优的参数网格（见 {@link ParameterGrid}，不提供时不寻优）；objective：寻优目标
+     * - simulations：蒙特卡洛模拟次数（默认10000）；method：SHUFFLE（默认）/ BOOTSTRAP；seed：随机种子（默认0）
+     * - initialBalance：初始资金（默认同回测）；ruinDrawdownPct：爆仓线（亏损百分比，默认50）
+     * - leverages：目标杠杆列表（按杠杆换算交易盈亏，默认只使用交易记录中的杠杆）
+     */
+    public Map<String, Object> run(Map<String, Object> request) throws IOException {
+        long startNanos = System.nanoTime();
+        String input = request.get("input") != null ? String.valueOf(request.get("input")).trim().toUpperCase() : "BACKTEST";
+        BacktestConfig config = BacktestService.toConfig(request);
+        int windows = (int) BacktestService.number(request.get("windows"), 5);
+        double inSamplePct = BacktestService.number(request.get("inSamplePct"), 70);
+        int simulations = (int) BacktestService.number(request.get("simulations"), defaultSimulations);
+        if (simulations < 1 || simulations > maxSimulations) {
+            throw new IllegalArgumentException("模拟次数必须在1到" + maxSimulations + "之间: " + simulations);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("input", input);
+        TradeSeries trades;
+        switch (input) {
+            case "RECORDS" -> {
+                trades = loadRecords(request);
+                report.put("walkForward", WalkForward.byTrades(trades, Math.min(windows, trades.size()),
+                        config.getInitialBalance()));
+            }
+            case "TRADES" -> {
+                trades = parseTrades(request.get("trades"));
+                report.put("walkForward", WalkForward.byTrades(trades, Math.min(windows, trades.size()),
+                        config.getInitialBalance()));
+            }
+            case "BACKTEST" -> {
+                BarSeries bars = backtestService.loadSeries(request);
+                if (bars.size() == 0) {
+                    throw new IllegalArgumentException("没有可回测的行情数据: symbol=" + bars.getSymbol());
+                }
+                DualDirectionParams params = resolveParams(request);
+                ParameterGrid grid = null;
+                if (request.get("grid") instanceof Map<?, ?> spec) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> gridSpec = (Map<String, Object>) spec;
+                    grid = ParameterGrid.parse(gridSpec);
+                    if (grid.size() > maxWalkForwardRuns / Math.max(windows, 1)) {
+                        throw new IllegalArgumentException("walk-forward 回测次数超过上限" + maxWalkForwardRuns
+                                + "，请缩小网格或减少窗口数量");
+                    }
+                }
+                SweepObjective objective = SweepObjective.from(request.get("objective"), SweepObjective.RETURN_OVER_DRAWDOWN);
+                report.put("symbol", bars.getSymbol());
+                report.put("params", params);
+                report.put("walkForward", new WalkForward(config, objective)
+                        .run(backtestPool.get(), bars, windows, inSamplePct, grid, params));
+
+                // 蒙特卡洛使用整段行情上的模拟交易
+                trades = new TradeSeries();
+                BacktestResult full = new BacktestEngine(config.toBuilder().curvePoints(0).build())
+                        .run(bars, DualDirectionStrategy.offline(params), trades);
+                report.put("backtest", full);
+            }
+            default -> throw new IllegalArgumentException("不支持的交易来源: " + input);
+        }
+        if (trades.size() == 0) {
+            throw new IllegalArgumentException("回测期间没有平仓交易");
+        }
+
+        MonteCarlo.Method method;
+        try {
+            method = request.get("method") != null
+                    ? MonteCarlo.Method.valueOf(String.valueOf(request.get("method")).trim().toUpperCase())
+                    : MonteCarlo.Method.SHUFFLE;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的重排方式: " + request.get("method"));
+        }
+        double ruinDrawdownPct = BacktestService.number(request.get("ruinDrawdownPct"), 50);
+        long seed = (long) BacktestService.number(request.get("seed"), 0);
+        List<Integer> leverages = new ArrayList<>();
+        if (request.get("leverages") instanceof List<?> list) {
+            for (Object value : list) {
+                int leverage = (int) BacktestService.number(value, 0);
+                if (leverage < 1) {
+                    throw new IllegalArgumentException("杠杆必须大于0: " + value);
+                }
+                leverages.add(leverage);
+            }
+        }
+        if (leverages.isEmpty()) {
+            // 0表示使用交易记录中的杠杆
+            leverages.add(0);
+        }
+
+        List<Map<String, Object>> monteCarlo = new ArrayList<>(leverages.size());
+        for (int leverage : leverages) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("leverage", leverage > 0 ? leverage : trades.typicalLeverage());
+            result.put("scaled", leverage > 0);
+            result.putAll(new MonteCarlo(trades.scaledPnl(leverage), config.getInitialBalance(), ruinDrawdownPct, method)
+                    .run(backtestPool.get(), simulations, seed));
+            monteCarlo.add(result);
+        }
+        report.put("trades", trades.size());
+        report.put("monteCarlo", monteCarlo);
+        long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+        report.put("elapsedMs", elapsed);
+        log.info("稳健性检验完成: input={}, trades={}, simulations={}, leverages={}, elapsed={}ms",
+                input, trades.size(), simulations, leverages, elapsed);
+        return report;
+    }
+
+    /**
+     * 实盘平仓记录（按平仓时间升序；已实现盈亏为空的记录被忽略）
+     */
+    private TradeSeries loadRecords(Map<String, Object> request) {
+        String userId = (String) request.get("userId");
+        if (userId == null || userId.isEmpty()) {
+            throw new IllegalArgumentException("缺少用户ID");
+        }
+        String symbol = (String) request.get("symbol");
+        boolean includeManual = Boolean.TRUE.equals(request.get("includeManual"));
+        List<ClosePositionRecord> records = symbol != null && !symbol.isEmpty()
+                ? closePositionRecordService.getClosePositionRecords(userId, symbol)
+                : closePositionRecordService.getClosePositionRecords(userId);
+        TradeSeries trades = new TradeSeries();
+        // 查询结果按时间倒序
+        for (int i = records.size() - 1; i >= 0; i--) {
+            ClosePositionRecord record = records.get(i);
+            if (record.getRealizedPnl() == null || (!includeManual && !"STRATEGY".equals(record.getCloseType()))) {
+                continue;
+            }
+            long time = record.getCreatedAt() != null
+                    ? record.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+            trades.add(time, record.getRealizedPnl().doubleValue(),
+                    record.getMargin() != null ? record.getMargin().doubleValue() : 0.0,
+                    record.getLeverage() != null ? record.getLeverage() : 0);
+        }
+        log.info("加载平仓记录: userId={}, symbol={}, records={}, trades={}",
+                userId, symbol, records.size(), trades.size());
+        if (trades.size() == 0) {
+            throw new IllegalArgumentException("没有可检验的平仓记录: userId=" + userId);
+        }
+        return trades;
+    }
+
+    private static TradeSeries parseTrades(Object value) {
+        if (!(value instanceof List<?> list) || list.isEmpty()) {
+            throw new IllegalArgumentException("缺少交易列表");
+        }
+        TradeSeries trades = new TradeSeries();
+        for (int i = 0; i < list.size(); i++) {
+            Object item = list.get(i);
+            if (item instanceof Number pnl) {
+                trades.add(i, pnl.doubleValue(), 0.0, 0);
+            } else if (item instanceof Map<?, ?> trade && trade.get("pnl") != null) {
+                trades.add((long) BacktestService.number(trade.get("time"), i), BacktestService.number(trade.get("pnl"), 0),
+                        BacktestService.number(trade.get("margin"), 0), (int) BacktestService.number(trade.get("leverage"), 0));
+            } else {
+                throw new IllegalArgumentException("无法解析交易: " + item);
+            }
+        }
+        return trades;
+    }
+
+    /**
+     * 策略参数：请求中的 params，其次用户保存的策略配置，都没有时使用实盘参数
+     */
+    private DualDirectionParams resolveParams(Map<String, Object> request) {
+        if (request.get("params") instanceof Map<?, ?> params) {
+            return BacktestService.toParams(params);
+        }
+        String userId = (String) request.get("userId");
+        if (userId != null && !userId.isEmpty()) {
+            String strategyName = request.get("strategyName") != null
+                    ? String.valueOf(request.get("strategyName")) : "DualDirectionStrategy";
+            Map<String, Object> saved = strategyConfigService.getStrategyConfig(userId, strategyName);
+            if (saved != null) {
+                return BacktestService.toParams(saved);
+            }
+        }
+        return DualDirectionParams.DEFAULTS;
+    }
+}
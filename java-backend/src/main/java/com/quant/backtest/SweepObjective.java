@@ -0,0 +1,50 @@
+package com.quant.backtest;
+
+/**
+ * 参数寻优的排序目标（分数越高越好，权益耗尽的组合排在最后）
+ */
+public enum SweepObjective {
+    /**
+     * 净盈亏
+     */
+    NET_PNL,
+
+    /**
+     * 净盈亏 / 最大回撤（收益回撤比）
+     */
+    RETURN_OVER_DRAWDOWN,
+
+    /**
+     * 平仓胜率
+     */
+    WIN_RATE;
+
+    public double score(BacktestResult result) {
+        if (result.isRuined()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        switch (this) {
+            case RETURN_OVER_DRAWDOWN:
+                // 没有回撤时按1 USDT计算，避免除以0
+                return result.getNetPnl() / Math.max(result.getMaxDrawdown(), 1.0);
+            case WIN_RATE:
+                return result.getWinRate();
+            default:
+                return result.getNetPnl();
+        }
+    }
+
+    /**
+     * 解析请求参数，无法识别时返回默认值
+     */
+    public static SweepObjective from(Object value, SweepObjective defaultObjective) {
+        if (value == null) {
+            return defaultObjective;
+        }
+        try {
+            return SweepObjective.valueOf(String.valueOf(value).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultObjective;
+        }
+    }
+}
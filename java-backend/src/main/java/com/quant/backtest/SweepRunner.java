@@ -0,0 +1,351 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 双向策略参数寻优
+ * 在同一段历史行情上按参数网格（或从网格中随机抽样）逐个回测，按目标排序输出：
+ * - 回测任务通过 fork/join 拆分到回测线程池（{@link BacktestPool}）的所有线程，每个组合一个叶子任务，
+ *   行情（{@link BarSeries}）只读共享、不复制，每个组合使用独立的账户和策略实例，线程之间不共享可变状态
+ * - 结果按组合写入各自的槽位，只有完成计数是共享的，排序在查询时进行，不影响回测线程
+ * - 进度和当前排名通过 {@link #stream} 以SSE推送，寻优结束时推送最终排名
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SweepRunner {
+
+    private final BacktestService backtestService;
+    private final BacktestPool backtestPool;
+
+    // 单次寻优的最大组合数量
+    @Value("${strategy.backtest.sweep.max-combinations:100000}")
+    private int maxCombinations;
+
+    // 保留的寻优会话数量（超出时删除最早结束的会话）
+    @Value("${strategy.backtest.sweep.max-sessions:10}")
+    private int maxSessions;
+
+    // SSE推送进度的间隔（毫秒）
+    @Value("${strategy.backtest.sweep.progress-interval-ms:500}")
+    private long progressIntervalMs;
+
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final AtomicLong sessionSequence = new AtomicLong();
+
+    /**
+     * 开始寻优
+     * 请求参数：行情和回测参数同 {@link BacktestService#run(Map)}（params 为参数网格，见 {@link ParameterGrid}），另外：
+     * - mode：GRID（默认，遍历全部组合）/ RANDOM（随机抽取 samples 个不重复的组合）
+     * - samples：RANDOM模式的抽样数量（默认1000）
+     * - seed：RANDOM模式的随机种子（默认0，相同种子抽到相同组合）
+     * - objective：排序目标（NET_PNL / RETURN_OVER_DRAWDOWN / WIN_RATE，默认 RETURN_OVER_DRAWDOWN）
+     */
+    public Map<String, Object> start(Map<String, Object> request) throws IOException {
+        BarSeries bars = backtestService.loadSeries(request);
+        if (bars.size() == 0) {
+            throw new IllegalArgumentException("没有可回测的行情数据: symbol=" + bars.getSymbol());
+        }
+        Object spec = request.get("params");
+        @SuppressWarnings("unchecked")
+        ParameterGrid grid = ParameterGrid.parse(spec instanceof Map<?, ?> map ? (Map<String, Object>) map : null);
+        long[] combinations = select(grid, request);
+        BacktestConfig config = BacktestService.toConfig(request).toBuilder()
+                .curvePoints(0)
+                .build();
+        SweepObjective objective = SweepObjective.from(request.get("objective"), SweepObjective.RETURN_OVER_DRAWDOWN);
+
+        Session session = new Session("sweep-" + sessionSequence.incrementAndGet(), bars, grid, combinations,
+                config, objective);
+        synchronized (sessions) {
+            evictFinished();
+            sessions.put(session.id, session);
+        }
+        log.info("开始参数寻优: session={}, symbol={}, bars={}, combinations={}, objective={}, parallelism={}",
+                session.id, bars.getSymbol(), bars.size(), combinations.length, objective, backtestPool.get().getParallelism());
+        backtestPool.get().execute(new SweepTask(session, 0, combinations.length));
+        return session.status(0);
+    }
+
+    /**
+     * 本次寻优的组合编号（GRID：全部组合；RANDOM：不重复抽样）
+     */
+    private long[] select(ParameterGrid grid, Map<String, Object> request) {
+        long size = grid.size();
+        boolean randomMode = "RANDOM".equalsIgnoreCase(String.valueOf(request.get("mode")));
+        long samples = request.get("samples") instanceof Number n ? n.longValue() : 1000;
+        if (!randomMode || samples >= size) {
+            if (size > maxCombinations) {
+                throw new IllegalArgumentException("参数组合数量" + size + "超过上限" + maxCombinations
+                        + "，请缩小网格或使用RANDOM模式");
+            }
+            long[] all = new long[(int) size];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        if (samples < 1 || samples > maxCombinations) {
+            throw new IllegalArgumentException("抽样数量必须在1到" + maxCombinations + "之间: " + samples);
+        }
+        long seed = request.get("seed") instanceof Number n ? n.longValue() : 0L;
+        SplittableRandom random = new SplittableRandom(seed);
+        Set<Long> chosen = new HashSet<>();
+        long[] result = new long[(int) samples];
+        int count = 0;
+        while (count < result.length) {
+            long index = random.nextLong(size);
+            if (chosen.add(index)) {
+                result[count++] = index;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 推送寻优进度和当前排名（SSE：进行中为 progress 事件，结束时推送一次 done 事件后完成）
+     *
+     * @return 会话不存在时返回null
+     */
+    public Flux<ServerSentEvent<Map<String, Object>>> stream(String sessionId, int topN) {
+        Session session = getSession(sessionId);
+        if (session == null) {
+            return null;
+        }
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(progressIntervalMs))
+                .map(tick -> session.status(topN))
+                .takeUntil(status -> Boolean.TRUE.equals(status.get("finished")))
+                .map(status -> ServerSentEvent.builder(status)
+                        .event(Boolean.TRUE.equals(status.get("finished")) ? "done" : "progress")
+                        .build());
+    }
+
+    /**
+     * 寻优状态和当前排名
+     *
+     * @return 会话不存在时返回null
+     */
+    public Map<String, Object> status(String sessionId, int topN) {
+        Session session = getSession(sessionId);
+        return session != null ? session.status(topN) : null;
+    }
+
+    /**
+     * 全部会话的状态（不含排名）
+     */
+    public List<Map<String, Object>> sessions() {
+        List<Session> list;
+        synchronized (sessions) {
+            list = new ArrayList<>(sessions.values());
+        }
+        List<Map<String, Object>> result = new ArrayList<>(list.size());
+        for (Session session : list) {
+            result.add(session.status(0));
+        }
+        return result;
+    }
+
+    /**
+     * 停止寻优（未开始的组合不再执行，会话不存在时返回false）
+     */
+    public boolean stop(String sessionId) {
+        Session session = getSession(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.stopped = true;
+        log.info("停止参数寻优: session={}", sessionId);
+        return true;
+    }
+
+    private Session getSession(String sessionId) {
+        synchronized (sessions) {
+            return sessions.get(sessionId);
+        }
+    }
+
+    private void evictFinished() {
+        var iterator = sessions.values().iterator();
+        while (sessions.size() >= maxSessions && iterator.hasNext()) {
+            if (iterator.next().finished) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * fork/join任务：拆分到单个组合后执行回测
+     */
+    private static final class SweepTask extends RecursiveAction {
+        private final Session session;
+        private final int from;
+        private final int to;
+
+        private SweepTask(Session session, int from, int to) {
+            this.session = session;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    session.runOne(from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SweepTask(session, from, mid), new SweepTask(session, mid, to));
+        }
+    }
+
+    /**
+     * 寻优会话
+     */
+    private static final class Session {
+        private final String id;
+        private final BarSeries bars;
+        private final ParameterGrid grid;
+        private final long[] combinations;
+        private final BacktestEngine engine;
+        private final SweepObjective objective;
+        private final long startTime = System.currentTimeMillis();
+
+        // 按槽位保存结果（未完成或参数无效时为null）
+        private final AtomicReferenceArray<BacktestResult> results;
+        private final DualDirectionParams[] params;
+
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger invalid = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile boolean stopped;
+        private volatile boolean finished;
+        private volatile long endTime;
+
+        private Session(String id, BarSeries bars, ParameterGrid grid, long[] combinations,
+                        BacktestConfig config, SweepObjective objective) {
+            this.id = id;
+            this.bars = bars;
+            this.grid = grid;
+            this.combinations = combinations;
+            this.engine = new BacktestEngine(config);
+            this.objective = objective;
+            this.results = new AtomicReferenceArray<>(combinations.length);
+            this.params = new DualDirectionParams[combinations.length];
+            if (combinations.length == 0) {
+                finish();
+            }
+        }
+
+        private void runOne(int slot) {
+            try {
+                if (!stopped) {
+                    DualDirectionParams candidate = grid.params(combinations[slot]);
+                    params[slot] = candidate;
+                    results.set(slot, engine.run(bars, DualDirectionStrategy.offline(candidate)));
+                }
+            } catch (IllegalArgumentException e) {
+                invalid.incrementAndGet();
+            } catch (Exception e) {
+                if (failures.incrementAndGet() == 1) {
+                    log.error("参数寻优回测失败: session={}, params={}, error={}", id, params[slot], e.getMessage(), e);
+                }
+            } finally {
+                if (completed.incrementAndGet() == combinations.length) {
+                    finish();
+                }
+            }
+        }
+
+        private void finish() {
+            endTime = System.currentTimeMillis();
+            finished = true;
+            log.info("参数寻优结束: session={}, combinations={}, invalid={}, failures={}, stopped={}, elapsed={}ms",
+                    id, combinations.length, invalid.get(), failures.get(), stopped, endTime - startTime);
+        }
+
+        /**
+         * 状态和前topN名（topN<=0时不排序）
+         */
+        private Map<String, Object> status(int topN) {
+            Map<String, Object> status = new HashMap<>();
+            boolean done = finished;
+            int completedCount = completed.get();
+            long elapsed = (done ? endTime : System.currentTimeMillis()) - startTime;
+            status.put("sessionId", id);
+            status.put("state", done ? (stopped ? "STOPPED" : "FINISHED") : (stopped ? "STOPPING" : "RUNNING"));
+            status.put("finished", done);
+            status.put("symbol", bars.getSymbol());
+            status.put("bars", bars.size());
+            status.put("objective", objective.name());
+            status.put("total", combinations.length);
+            status.put("completed", completedCount);
+            status.put("invalid", invalid.get());
+            status.put("failures", failures.get());
+            status.put("elapsedMs", elapsed);
+            status.put("combinationsPerSecond", elapsed > 0 ? completedCount * 1000.0 / elapsed : 0.0);
+            if (topN > 0) {
+                status.put("ranking", ranking(topN));
+            }
+            return status;
+        }
+
+        private List<Map<String, Object>> ranking(int topN) {
+            List<Integer> slots = new ArrayList<>();
+            double[] scores = new double[combinations.length];
+            for (int slot = 0; slot < combinations.length; slot++) {
+                BacktestResult result = results.get(slot);
+                if (result != null) {
+                    scores[slot] = objective.score(result);
+                    slots.add(slot);
+                }
+            }
+            slots.sort(Comparator.comparingDouble((Integer slot) -> scores[slot]).reversed());
+            List<Map<String, Object>> ranking = new ArrayList<>(Math.min(topN, slots.size()));
+            for (int i = 0; i < slots.size() && i < topN; i++) {
+                int slot = slots.get(i);
+                BacktestResult result = results.get(slot);
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("rank", i + 1);
+                entry.put("score", scores[slot]);
+                entry.put("params", params[slot]);
+                entry.put("netPnl", result.getNetPnl());
+                entry.put("returnPct", result.getReturnPct());
+                entry.put("maxDrawdown", result.getMaxDrawdown());
+                entry.put("maxDrawdownPct", result.getMaxDrawdownPct());
+                entry.put("fees", result.getFees());
+                entry.put("trades", result.getTrades());
+                entry.put("closes", result.getCloses());
+                entry.put("adds", result.getAdds());
+                entry.put("winRate", result.getWinRate());
+                entry.put("ruined", result.isRuined());
+                ranking.add(entry);
+            }
+            return ranking;
+        }
+    }
+}
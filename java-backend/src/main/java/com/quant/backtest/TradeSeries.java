@@ -0,0 +1,98 @@
+package com.quant.backtest;
+
+import java.util.Arrays;
+
+/**
+ * 已平仓交易序列（按平仓时间升序）
+ * 按列保存在基本类型数组中（平仓时间、已实现盈亏、保证金、杠杆），用于稳健性检验：
+ * 来源可以是实盘平仓记录（close_position_records）、请求中直接提供的交易列表，或回测中记录的交易
+ */
+public final class TradeSeries {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private double[] pnls = new double[INITIAL_CAPACITY];
+    private double[] margins = new double[INITIAL_CAPACITY];
+    private int[] leverages = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * 追加一笔交易
+     *
+     * @param time 平仓时间（毫秒）
+     * @param pnl 已实现盈亏（USDT）
+     * @param margin 平仓时占用的保证金（USDT，未知时为0）
+     * @param leverage 杠杆倍数（未知时为0）
+     */
+    public void add(long time, double pnl, double margin, int leverage) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            pnls = Arrays.copyOf(pnls, capacity);
+            margins = Arrays.copyOf(margins, capacity);
+            leverages = Arrays.copyOf(leverages, capacity);
+        }
+        times[size] = time;
+        pnls[size] = pnl;
+        margins[size] = margin;
+        leverages[size] = leverage;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long time(int index) {
+        return times[index];
+    }
+
+    public double pnl(int index) {
+        return pnls[index];
+    }
+
+    public double margin(int index) {
+        return margins[index];
+    }
+
+    public int leverage(int index) {
+        return leverages[index];
+    }
+
+    /**
+     * 交易中最常用的杠杆（没有杠杆信息时为0）
+     */
+    public int typicalLeverage() {
+        int[] sorted = Arrays.copyOf(leverages, size);
+        Arrays.sort(sorted);
+        int best = 0;
+        int bestCount = 0;
+        for (int i = 0; i < sorted.length; ) {
+            int j = i;
+            while (j < sorted.length && sorted[j] == sorted[i]) {
+                j++;
+            }
+            if (sorted[i] > 0 && j - i > bestCount) {
+                best = sorted[i];
+                bestCount = j - i;
+            }
+            i = j;
+        }
+        return best;
+    }
+
+    /**
+     * 按目标杠杆换算后的盈亏
+     * 开仓数量 = 保证金 × 杠杆 / 价格，同样的保证金和价格变化下盈亏与杠杆成正比；
+     * targetLeverage<=0 或交易没有杠杆信息时使用原始盈亏
+     */
+    public double[] scaledPnl(int targetLeverage) {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            int leverage = leverages[i];
+            result[i] = targetLeverage > 0 && leverage > 0 ? pnls[i] * targetLeverage / leverage : pnls[i];
+        }
+        return result;
+    }
+}
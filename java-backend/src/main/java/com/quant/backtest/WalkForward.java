@@ -0,0 +1,263 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * 滚动窗口（walk-forward）检验
+ * 把行情按时间分成若干个连续窗口，每个窗口前一部分为样本内（寻优）、后一部分为样本外（验证）：
+ * - 样本内在参数网格上逐个回测，取目标分数最高的参数；没有网格时直接使用给定参数
+ * - 样本外用选出的参数回测；样本外与样本内每根K线收益的比值为walk-forward效率，明显低于1说明参数过拟合了样本内行情
+ * - 全部窗口的样本内回测展开成一个任务列表并行执行，随后并行执行各窗口的样本外回测
+ *
+ * 只有平仓记录（没有行情）时，使用 {@link #byTrades} 按交易数量分窗口，检查各段盈亏是否一致
+ */
+public final class WalkForward {
+
+    private final BacktestEngine engine;
+    private final SweepObjective objective;
+
+    public WalkForward(BacktestConfig config, SweepObjective objective) {
+        this.engine = new BacktestEngine(config.toBuilder().curvePoints(0).build());
+        this.objective = objective;
+    }
+
+    /**
+     * 在行情上执行滚动窗口检验
+     *
+     * @param windows 窗口数量
+     * @param inSamplePct 每个窗口中样本内的比例（百分比）
+     * @param grid 样本内寻优的参数网格（null表示不寻优，直接使用 fixed）
+     * @param fixed 不寻优时使用的参数
+     */
+    public Map<String, Object> run(ForkJoinPool pool, BarSeries bars, int windows, double inSamplePct,
+                                   ParameterGrid grid, DualDirectionParams fixed) {
+        if (windows < 1 || bars.size() / windows < 2) {
+            throw new IllegalArgumentException("窗口数量无效: windows=" + windows + ", bars=" + bars.size());
+        }
+        if (!(inSamplePct > 0) || !(inSamplePct < 100)) {
+            throw new IllegalArgumentException("样本内比例必须在0到100之间: " + inSamplePct);
+        }
+        long startNanos = System.nanoTime();
+        BarSeries[] inSample = new BarSeries[windows];
+        BarSeries[] outOfSample = new BarSeries[windows];
+        int windowSize = bars.size() / windows;
+        for (int w = 0; w < windows; w++) {
+            int from = w * windowSize;
+            int to = w == windows - 1 ? bars.size() : from + windowSize;
+            int split = from + Math.max(1, Math.min(to - from - 1, (int) ((to - from) * inSamplePct / 100)));
+            inSample[w] = bars.slice(from, split);
+            outOfSample[w] = bars.slice(split, to);
+        }
+
+        // 样本内：窗口 × 参数组合
+        int candidates = grid != null ? (int) grid.size() : 1;
+        BacktestResult[] inSampleResults = new BacktestResult[windows * candidates];
+        DualDirectionParams[] candidateParams = new DualDirectionParams[candidates];
+        for (int c = 0; c < candidates; c++) {
+            try {
+                candidateParams[c] = grid != null ? grid.params(c) : fixed;
+            } catch (IllegalArgumentException e) {
+                // 无效组合不参与寻优
+            }
+        }
+        pool.invoke(new RangeTask(0, inSampleResults.length, slot -> {
+            DualDirectionParams params = candidateParams[slot % candidates];
+            if (params != null) {
+                inSampleResults[slot] = engine.run(inSample[slot / candidates], DualDirectionStrategy.offline(params));
+            }
+        }));
+
+        int[] best = new int[windows];
+        for (int w = 0; w < windows; w++) {
+            best[w] = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < candidates; c++) {
+                BacktestResult result = inSampleResults[w * candidates + c];
+                if (result != null && (best[w] < 0 || objective.score(result) > bestScore)) {
+                    best[w] = c;
+                    bestScore = objective.score(result);
+                }
+            }
+            if (best[w] < 0) {
+                throw new IllegalArgumentException("参数网格中没有有效的参数组合");
+            }
+        }
+
+        // 样本外：每个窗口使用样本内最优参数
+        BacktestResult[] outOfSampleResults = new BacktestResult[windows];
+        pool.invoke(new RangeTask(0, windows, w -> outOfSampleResults[w] = engine.run(outOfSample[w],
+                DualDirectionStrategy.offline(candidateParams[best[w]]))));
+
+        List<Map<String, Object>> windowReports = new ArrayList<>(windows);
+        int profitable = 0;
+        int efficiencyCount = 0;
+        double efficiencySum = 0.0;
+        double outOfSampleNetPnl = 0.0;
+        for (int w = 0; w < windows; w++) {
+            BacktestResult is = inSampleResults[w * candidates + best[w]];
+            BacktestResult oos = outOfSampleResults[w];
+            Double efficiency = efficiency(is, oos);
+            if (efficiency != null) {
+                efficiencySum += efficiency;
+                efficiencyCount++;
+            }
+            if (oos.getNetPnl() > 0) {
+                profitable++;
+            }
+            outOfSampleNetPnl += oos.getNetPnl();
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("window", w + 1);
+            report.put("inSampleStart", is.getStartTime());
+            report.put("outOfSampleStart", oos.getStartTime());
+            report.put("outOfSampleEnd", oos.getEndTime());
+            report.put("params", candidateParams[best[w]]);
+            report.put("inSampleScore", objective.score(is));
+            report.put("outOfSampleScore", objective.score(oos));
+            report.put("inSample", summary(is));
+            report.put("outOfSample", summary(oos));
+            report.put("efficiency", efficiency);
+            windowReports.add(report);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windows", windows);
+        result.put("inSamplePct", inSamplePct);
+        result.put("candidates", candidates);
+        result.put("objective", objective.name());
+        result.put("profitableWindows", profitable);
+        result.put("outOfSampleNetPnl", outOfSampleNetPnl);
+        result.put("averageEfficiency", efficiencyCount > 0 ? efficiencySum / efficiencyCount : null);
+        result.put("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+        result.put("results", windowReports);
+        return result;
+    }
+
+    /**
+     * 按交易数量把平仓记录分成连续窗口，统计每段的盈亏、胜率和回撤（每段从初始资金开始）
+     */
+    public static Map<String, Object> byTrades(TradeSeries trades, int windows, double initialBalance) {
+        if (windows < 1 || trades.size() < windows) {
+            throw new IllegalArgumentException("窗口数量无效: windows=" + windows + ", trades=" + trades.size());
+        }
+        int windowSize = trades.size() / windows;
+        double[] netPnls = new double[windows];
+        List<Map<String, Object>> windowReports = new ArrayList<>(windows);
+        int profitable = 0;
+        for (int w = 0; w < windows; w++) {
+            int from = w * windowSize;
+            int to = w == windows - 1 ? trades.size() : from + windowSize;
+            double equity = initialBalance;
+            double peak = equity;
+            double maxDrawdown = 0.0;
+            double grossProfit = 0.0;
+            double grossLoss = 0.0;
+            int wins = 0;
+            for (int i = from; i < to; i++) {
+                double pnl = trades.pnl(i);
+                equity += pnl;
+                if (pnl > 0) {
+                    grossProfit += pnl;
+                    wins++;
+                } else {
+                    grossLoss -= pnl;
+                }
+                if (equity > peak) {
+                    peak = equity;
+                } else if (peak - equity > maxDrawdown) {
+                    maxDrawdown = peak - equity;
+                }
+            }
+            netPnls[w] = equity - initialBalance;
+            if (netPnls[w] > 0) {
+                profitable++;
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("window", w + 1);
+            report.put("startTime", trades.time(from));
+            report.put("endTime", trades.time(to - 1));
+            report.put("trades", to - from);
+            report.put("netPnl", netPnls[w]);
+            report.put("winRate", (double) wins / (to - from) * 100);
+            report.put("profitFactor", grossLoss > 0 ? grossProfit / grossLoss : null);
+            report.put("maxDrawdown", maxDrawdown);
+            windowReports.add(report);
+        }
+
+        double mean = 0.0;
+        for (double netPnl : netPnls) {
+            mean += netPnl / windows;
+        }
+        double variance = 0.0;
+        for (double netPnl : netPnls) {
+            variance += (netPnl - mean) * (netPnl - mean) / windows;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windows", windows);
+        result.put("profitableWindows", profitable);
+        result.put("meanNetPnl", mean);
+        result.put("stdNetPnl", Math.sqrt(variance));
+        result.put("results", windowReports);
+        return result;
+    }
+
+    /**
+     * 样本外与样本内每根K线收益率的比值（样本内没有盈利时为null）
+     */
+    private static Double efficiency(BacktestResult inSample, BacktestResult outOfSample) {
+        if (!(inSample.getReturnPct() > 0) || inSample.getBars() == 0 || outOfSample.getBars() == 0) {
+            return null;
+        }
+        return (outOfSample.getReturnPct() / outOfSample.getBars()) / (inSample.getReturnPct() / inSample.getBars());
+    }
+
+    private static Map<String, Object> summary(BacktestResult result) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("bars", result.getBars());
+        summary.put("netPnl", result.getNetPnl());
+        summary.put("returnPct", result.getReturnPct());
+        summary.put("maxDrawdown", result.getMaxDrawdown());
+        summary.put("maxDrawdownPct", result.getMaxDrawdownPct());
+        summary.put("closes", result.getCloses());
+        summary.put("winRate", result.getWinRate());
+        summary.put("ruined", result.isRuined());
+        return summary;
+    }
+
+    /**
+     * fork/join任务：拆分到单个编号后执行
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private RangeTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    action.accept(from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, action), new RangeTask(mid, to, action));
+        }
+    }
+}
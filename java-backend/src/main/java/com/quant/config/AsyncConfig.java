@@ -1,7 +1,10 @@
 package com.quant.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -12,46 +15,86 @@ import java.util.concurrent.ThreadPoolExecutor;
 /**
  * 异步任务配置
  * 优化线程池配置以支持多用户并发执行策略
- * 
- * 配置说明：
- * - 核心线程数：30（支持20个用户 + 10个缓冲）
- * - 最大线程数：50（峰值情况）
- * - 队列容量：100（缓冲突发请求）
+ *
+ * 执行模式（strategy.execution.executor）：
+ * - pool：有界线程池（默认）
+ *   - 核心线程数：30（支持20个用户 + 10个缓冲）
+ *   - 最大线程数：50（峰值情况）
+ *   - 不排队：策略循环不会结束，排队的策略永远得不到执行
+ *   - 50个线程都在运行策略时拒绝新策略（不再由调用者线程执行策略循环）
+ * - virtual：每个策略一个虚拟线程（需要JDK 21+运行），无并发上限，阻塞调用不占用平台线程
+ *   运行时JDK不支持虚拟线程时自动回退到 pool 模式
  */
+@Slf4j
 @Configuration
 @EnableAsync
 public class AsyncConfig implements AsyncConfigurer {
-    
+
+    @Value("${strategy.execution.executor:pool}")
+    private String executorMode;
+
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
+        if ("virtual".equalsIgnoreCase(executorMode)) {
+            Executor virtualExecutor = createVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                return virtualExecutor;
+            }
+        }
+        return createThreadPoolExecutor();
+    }
+
+    /**
+     * 虚拟线程执行器：每个任务一个虚拟线程，不设并发上限（JDK不支持时返回null）
+     */
+    static Executor createVirtualThreadExecutor() {
+        try {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("strategy-vt-");
+            executor.setVirtualThreads(true);
+            // 关闭时等待运行中的任务结束（与线程池模式保持一致）
+            executor.setTaskTerminationTimeout(60_000);
+            log.info("策略执行器使用虚拟线程模式");
+            return executor;
+        } catch (UnsupportedOperationException e) {
+            log.warn("当前JDK不支持虚拟线程（需要JDK 21+），回退到线程池模式: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 有界线程池执行器
+     */
+    static Executor createThreadPoolExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        
+
         // 核心线程数：支持20个用户，每个用户1-2个策略
         // 30 = 20用户 × 1.5（考虑每个用户可能有多个策略）
         executor.setCorePoolSize(30);
-        
+
         // 最大线程数：峰值情况下的最大并发
         executor.setMaxPoolSize(50);
-        
-        // 队列容量：缓冲突发请求
-        executor.setQueueCapacity(100);
-        
+
+        // 队列容量：0（SynchronousQueue），没有空闲线程且已达最大线程数时直接拒绝
+        // 策略循环不会结束，进入队列的策略永远不会被执行，却会被当作启动成功
+        executor.setQueueCapacity(0);
+
         // 线程名前缀：便于日志追踪
         executor.setThreadNamePrefix("strategy-exec-");
-        
-        // 拒绝策略：调用者运行（确保任务不丢失）
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        
+
+        // 拒绝策略：直接拒绝并由调用方处理
+        // 策略循环不会结束，若由调用者线程执行会永久占用调用者（如HTTP请求线程）
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+
         // 线程空闲时间：60秒后回收
         executor.setKeepAliveSeconds(60);
-        
+
         // 等待所有任务完成后再关闭
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
-        
+
         executor.initialize();
+        log.info("策略执行器使用线程池模式");
         return executor;
     }
 }
-
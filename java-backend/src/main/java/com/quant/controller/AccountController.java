@@ -82,6 +82,19 @@ public class AccountController {
         }
     }
     
+    /**
+     * 获取当前用户的持仓账本状态（增量推送次数、对账次数、最近更新时间等；没有账本时返回404）
+     */
+    @GetMapping("/ledger")
+    public ResponseEntity<Map<String, Object>> getLedgerStats() {
+        String userId = getCurrentUserId();
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Map<String, Object> stats = accountService.getLedgerStats(userId);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+    
     /**
      * 获取指定用户的持仓列表（管理员功能）
      */
@@ -107,9 +120,8 @@ public class AccountController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
             
-            // 清除缓存，强制刷新
-            accountService.clearCache(userId);
-            AccountInfo accountInfo = accountService.getAccountInfo(userId);
+            // 强制刷新（有持仓账本时立即对账）
+            AccountInfo accountInfo = accountService.refreshFromExchange(userId);
             return ResponseEntity.ok(accountInfo);
         } catch (Exception e) {
             log.error("刷新账户信息失败: {}", e.getMessage());
@@ -1,13 +1,31 @@
 package com.quant.controller;
 
+import com.quant.account.MarkToMarketEngine;
+import com.quant.backtest.BacktestService;
+import com.quant.backtest.RobustnessRunner;
+import com.quant.backtest.SweepRunner;
+import com.quant.market.KlineAggregator;
+import com.quant.market.MarkPriceHub;
+import com.quant.market.OrderBookHub;
+import com.quant.market.journal.TickJournalService;
 import com.quant.model.StrategyConfig;
 import com.quant.model.StrategyType;
+import com.quant.replay.ReplayMode;
+import com.quant.replay.ReplayRecorder;
+import com.quant.replay.ReplayRunner;
 import com.quant.service.StrategyConfigService;
 import com.quant.service.StrategyExecutionService;
+import com.quant.service.StrategyScheduler;
+import com.quant.service.TradingEngine;
+import com.quant.strategy.StrategyEngine;
+import com.quant.websocket.AccountPushService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -28,6 +46,19 @@ public class StrategyController {
     
     private final StrategyExecutionService strategyExecutionService;
     private final StrategyConfigService strategyConfigService;
+    private final StrategyScheduler strategyScheduler;
+    private final TradingEngine tradingEngine;
+    private final MarkPriceHub markPriceHub;
+    private final KlineAggregator klineAggregator;
+    private final OrderBookHub orderBookHub;
+    private final TickJournalService tickJournalService;
+    private final ReplayRecorder replayRecorder;
+    private final ReplayRunner replayRunner;
+    private final BacktestService backtestService;
+    private final SweepRunner sweepRunner;
+    private final RobustnessRunner robustnessRunner;
+    private final MarkToMarketEngine markToMarketEngine;
+    private final AccountPushService accountPushService;
     
     /**
      * 启动策略
@@ -63,10 +94,10 @@ public class StrategyController {
             response.put("strategyName", strategyName);
             response.put("strategyType", strategyType);
         } else {
-            log.warn("策略启动失败: userId={}, strategyName={}, 可能原因：Python服务不可用或策略已在运行", 
+            log.warn("策略启动失败: userId={}, strategyName={}, 可能原因：Python服务不可用、策略已在运行或策略执行器已满", 
                     userId, strategyName);
             response.put("success", false);
-            response.put("message", "策略启动失败，请检查Python策略服务是否运行（http://localhost:8000）");
+            response.put("message", "策略启动失败，请检查Python策略服务是否运行（http://localhost:8000），或运行中的策略是否已达上限");
             response.put("strategyName", strategyName);
         }
         
@@ -238,5 +269,280 @@ public class StrategyController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * 获取时间轮调度统计（执行次数、延迟次数、跳过次数、最大延迟）
+     */
+    @GetMapping("/scheduler/stats")
+    public ResponseEntity<Map<String, Object>> getSchedulerStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("stats", strategyScheduler.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取策略执行引擎统计（Java策略执行耗时、影子模式比对结果）
+     */
+    @GetMapping("/engine/stats")
+    public ResponseEntity<Map<String, Object>> getEngineStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("stats", tradingEngine.getEngineStats());
+        response.put("recorder", replayRecorder.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取共享标记价格中心的运行状态
+     */
+    @GetMapping("/market/stats")
+    public ResponseEntity<Map<String, Object>> getMarketStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("stats", markPriceHub.getStats());
+        response.put("kline", klineAggregator.getStats());
+        response.put("orderBook", orderBookHub.getStats());
+        response.put("journal", tickJournalService.getStats());
+        response.put("markToMarket", markToMarketEngine.getStats());
+        response.put("accountPush", accountPushService.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取录制文件列表
+     */
+    @GetMapping("/replay/files")
+    public ResponseEntity<Map<String, Object>> getReplayFiles() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("files", replayRunner.listFiles());
+        response.put("recorder", replayRecorder.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 开始回放录制文件
+     * 请求参数：file（文件名）、mode（MAX_SPEED/ACCELERATED/STEP，默认MAX_SPEED）、
+     * speed（ACCELERATED倍速，默认10）、engine（PYTHON/JVM/SHADOW，默认使用录制时的引擎）
+     */
+    @PostMapping("/replay/start")
+    public ResponseEntity<Map<String, Object>> startReplay(@RequestBody Map<String, Object> request) {
+        log.info("收到开始回放请求: {}", request);
+        
+        Map<String, Object> response = new HashMap<>();
+        String file = (String) request.get("file");
+        if (file == null || file.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "缺少录制文件名");
+            return ResponseEntity.badRequest().body(response);
+        }
+        ReplayMode mode = ReplayMode.from(request.get("mode"), ReplayMode.MAX_SPEED);
+        double speed = request.get("speed") instanceof Number n ? n.doubleValue() : 10.0;
+        StrategyEngine engine = StrategyEngine.from(request.get("engine"), null);
+        
+        try {
+            response.put("success", true);
+            response.put("session", replayRunner.start(file, mode, speed, engine));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("开始回放失败: file={}, error={}", file, e.getMessage());
+            response.put("success", false);
+            response.put("message", "开始回放失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 单步回放（STEP模式）
+     */
+    @PostMapping("/replay/{sessionId}/step")
+    public ResponseEntity<Map<String, Object>> stepReplay(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "1") int count) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> session = replayRunner.step(sessionId, count);
+            if (session == null) {
+                return ResponseEntity.notFound().build();
+            }
+            response.put("success", true);
+            response.put("session", session);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 停止回放
+     */
+    @PostMapping("/replay/{sessionId}/stop")
+    public ResponseEntity<Map<String, Object>> stopReplay(@PathVariable String sessionId) {
+        if (!replayRunner.stop(sessionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("session", replayRunner.status(sessionId));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取回放会话状态（进度、比对结果、结果摘要）
+     */
+    @GetMapping("/replay/{sessionId}")
+    public ResponseEntity<Map<String, Object>> getReplayStatus(@PathVariable String sessionId) {
+        Map<String, Object> session = replayRunner.status(sessionId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("session", session);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取全部回放会话
+     */
+    @GetMapping("/replay")
+    public ResponseEntity<Map<String, Object>> getReplaySessions() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessions", replayRunner.sessions());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取回测数据文件列表（K线CSV）
+     */
+    @GetMapping("/backtest/files")
+    public ResponseEntity<Map<String, Object>> getBacktestFiles() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("files", backtestService.listFiles());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 执行回测（同步返回结果）
+     * 请求参数见 {@link BacktestService#run(Map)}
+     */
+    @PostMapping("/backtest")
+    public ResponseEntity<Map<String, Object>> runBacktest(@RequestBody Map<String, Object> request) {
+        log.info("收到回测请求: {}", request);
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("result", backtestService.run(request));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("回测失败: request={}, error={}", request, e.getMessage());
+            response.put("success", false);
+            response.put("message", "回测失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 策略配置稳健性检验（walk-forward + 蒙特卡洛，同步返回结果）
+     * 请求参数见 {@link RobustnessRunner#run(Map)}
+     */
+    @PostMapping("/robustness")
+    public ResponseEntity<Map<String, Object>> runRobustness(@RequestBody Map<String, Object> request) {
+        log.info("收到稳健性检验请求: {}", request);
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("result", robustnessRunner.run(request));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("稳健性检验失败: request={}, error={}", request, e.getMessage());
+            response.put("success", false);
+            response.put("message", "稳健性检验失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 开始双向策略参数寻优（后台并行执行，通过 /sweep/{sessionId}/stream 获取排名）
+     * 请求参数见 {@link SweepRunner#start(Map)}
+     */
+    @PostMapping("/sweep/start")
+    public ResponseEntity<Map<String, Object>> startSweep(@RequestBody Map<String, Object> request) {
+        log.info("收到参数寻优请求: {}", request);
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("session", sweepRunner.start(request));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("开始参数寻优失败: request={}, error={}", request, e.getMessage());
+            response.put("success", false);
+            response.put("message", "开始参数寻优失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 推送参数寻优进度和当前排名（SSE，结束时推送 done 事件）
+     */
+    @GetMapping(value = "/sweep/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Map<String, Object>>>> streamSweep(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "20") int top) {
+        Flux<ServerSentEvent<Map<String, Object>>> stream = sweepRunner.stream(sessionId, top);
+        if (stream == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stream);
+    }
+    
+    /**
+     * 获取参数寻优状态和当前排名
+     */
+    @GetMapping("/sweep/{sessionId}")
+    public ResponseEntity<Map<String, Object>> getSweep(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "20") int top) {
+        Map<String, Object> status = sweepRunner.status(sessionId, top);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("session", status);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 停止参数寻优
+     */
+    @PostMapping("/sweep/{sessionId}/stop")
+    public ResponseEntity<Map<String, Object>> stopSweep(@PathVariable String sessionId) {
+        if (!sweepRunner.stop(sessionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("session", sweepRunner.status(sessionId, 0));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取全部参数寻优会话
+     */
+    @GetMapping("/sweep")
+    public ResponseEntity<Map<String, Object>> getSweeps() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessions", sweepRunner.sessions());
+        return ResponseEntity.ok(response);
+    }
 }
-
@@ -35,10 +35,16 @@ public class UserController {
     public ResponseEntity<ExchangeConfigResponse> setExchange(
             @PathVariable String userId,
             @RequestParam ExchangeType exchangeType,
-            @RequestParam String apiKey,
-            @RequestParam String secretKey,
+            @RequestParam(required = false) String apiKey,
+            @RequestParam(required = false) String secretKey,
             @RequestParam(required = false) String passphrase) {
         
+        // 模拟交易不需要API密钥，其他交易所必须提供
+        if (exchangeType != ExchangeType.PAPER && (isBlank(apiKey) || isBlank(secretKey))) {
+            log.warn("设置交易所失败，缺少API Key: userId={}, exchangeType={}", userId, exchangeType);
+            return ResponseEntity.badRequest().build();
+        }
+        
         try {
             // 保存交易所配置
             ExchangeConfig config = exchangeConfigService.saveOrUpdateConfig(
@@ -88,6 +94,10 @@ public class UserController {
         }
     }
     
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
     /**
      * 掩码API Key（只显示前后几位）
      */
@@ -1,6 +1,10 @@
 package com.quant.exchange;
 
 import com.quant.config.ProxyConfig;
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceUpdate;
+import com.quant.market.OrderBookHub;
+import com.quant.market.SlippageEstimate;
 import com.quant.model.AccountInfo;
 import com.quant.model.ExchangeType;
 import com.quant.model.Order;
@@ -42,13 +46,18 @@ public class BinanceAdapter implements ExchangeAdapter {
     private BinanceFuturesWebSocketClient futuresWsClient;
     private final WebClient webClient;
     private final ProxyConfig proxyConfig;
+    private final MarkPriceHub markPriceHub;
+    private final OrderBookHub orderBookHub;
     
     // 缓存交易对的精度信息 (symbol -> stepSize)
     private final Map<String, Integer> symbolPrecisionCache = new HashMap<>();
     
-    public BinanceAdapter(WebClient webClient, ProxyConfig proxyConfig) {
+    public BinanceAdapter(WebClient webClient, ProxyConfig proxyConfig, MarkPriceHub markPriceHub,
+                          OrderBookHub orderBookHub) {
         this.webClient = webClient;
         this.proxyConfig = proxyConfig;
+        this.markPriceHub = markPriceHub;
+        this.orderBookHub = orderBookHub;
     }
     
     @Override
@@ -64,21 +73,9 @@ public class BinanceAdapter implements ExchangeAdapter {
         this.apiClient = new BinanceApiClient(apiKey, secretKey, webClient);
         this.futuresApiClient = new BinanceFuturesApiClient(apiKey, secretKey, webClient);
         
-        // 初始化期货WebSocket客户端（用于订阅标记价格流和用户数据流）
-        Proxy proxy = createProxy();
-        this.futuresWsClient = new BinanceFuturesWebSocketClient(proxy, futuresApiClient);
-        // 订阅所有标记价格流
-        this.futuresWsClient.subscribeAllMarkPrices()
-                .subscribe(
-                    prices -> log.debug("收到标记价格更新: {} 个交易对", prices.size()),
-                    error -> log.error("订阅标记价格流失败: {}", error.getMessage())
-                );
-        // 等待第一条价格数据到达（最多等待5秒）
-        if (this.futuresWsClient.waitForPriceData(5)) {
-            log.info("WebSocket价格数据已就绪");
-        } else {
-            log.warn("等待WebSocket价格数据超时，可能导致首次交易获取价格失败");
-        }
+        // 标记价格由进程级的MarkPriceHub统一订阅（所有用户共享一条连接），
+        // 期货WebSocket客户端只在订阅用户数据流时创建
+        markPriceHub.ensureStarted(ExchangeType.BINANCE);
         
 //        log.info("Binance适配器初始化完成（支持现货和期货API，已订阅标记价格流）");
     }
@@ -228,39 +225,37 @@ public class BinanceAdapter implements ExchangeAdapter {
                                 side = "LONG";
                             }
                             
-                            // 尝试从WebSocket获取实时标记价格（如果可用）
+                            // 从共享的标记价格中心获取实时标记价格（如果可用）
                             BigDecimal realTimeMarkPrice = markPrice;
-                            if (futuresWsClient != null) {
-                                BigDecimal wsMarkPrice = futuresWsClient.getMarkPrice(symbol);
-                                if (wsMarkPrice != null && wsMarkPrice.compareTo(BigDecimal.ZERO) > 0) {
-                                    realTimeMarkPrice = wsMarkPrice;
-                                    // 使用实时标记价格重新计算盈亏
-                                    if (side.equals("LONG")) {
-                                        // 多仓：盈亏 = (当前价格 - 开仓价格) × 数量
-                                        unrealizedPnl = realTimeMarkPrice.subtract(entryPrice)
-                                                .multiply(positionAmt.abs());
-                                    } else {
-                                        // 空仓：盈亏 = (开仓价格 - 当前价格) × 数量
-                                        unrealizedPnl = entryPrice.subtract(realTimeMarkPrice)
-                                                .multiply(positionAmt.abs());
-                                    }
-                                    // 重新计算盈亏百分比（相对于保证金）
-                                    // 盈亏百分比 = 未实现盈亏 / 保证金 × 100
-                                    if (calculatedMargin.compareTo(BigDecimal.ZERO) > 0) {
-                                        // 使用保证金计算盈亏百分比（更准确）
-                                        pnlPercentage = unrealizedPnl.divide(calculatedMargin, 8, BigDecimal.ROUND_HALF_UP)
+                            BigDecimal wsMarkPrice = markPriceHub.getMarkPrice(ExchangeType.BINANCE, symbol);
+                            if (wsMarkPrice != null && wsMarkPrice.compareTo(BigDecimal.ZERO) > 0) {
+                                realTimeMarkPrice = wsMarkPrice;
+                                // 使用实时标记价格重新计算盈亏
+                                if (side.equals("LONG")) {
+                                    // 多仓：盈亏 = (当前价格 - 开仓价格) × 数量
+                                    unrealizedPnl = realTimeMarkPrice.subtract(entryPrice)
+                                            .multiply(positionAmt.abs());
+                                } else {
+                                    // 空仓：盈亏 = (开仓价格 - 当前价格) × 数量
+                                    unrealizedPnl = entryPrice.subtract(realTimeMarkPrice)
+                                            .multiply(positionAmt.abs());
+                                }
+                                // 重新计算盈亏百分比（相对于保证金）
+                                // 盈亏百分比 = 未实现盈亏 / 保证金 × 100
+                                if (calculatedMargin.compareTo(BigDecimal.ZERO) > 0) {
+                                    // 使用保证金计算盈亏百分比（更准确）
+                                    pnlPercentage = unrealizedPnl.divide(calculatedMargin, 8, BigDecimal.ROUND_HALF_UP)
+                                            .multiply(new BigDecimal("100"));
+                                } else if (entryPrice.compareTo(BigDecimal.ZERO) > 0 && positionAmt.abs().compareTo(BigDecimal.ZERO) > 0) {
+                                    // 如果仍然没有保证金，使用持仓价值计算（备用方案）
+                                    BigDecimal positionValue = entryPrice.multiply(positionAmt.abs());
+                                    if (positionValue.compareTo(BigDecimal.ZERO) > 0) {
+                                        pnlPercentage = unrealizedPnl.divide(positionValue, 8, BigDecimal.ROUND_HALF_UP)
                                                 .multiply(new BigDecimal("100"));
-                                    } else if (entryPrice.compareTo(BigDecimal.ZERO) > 0 && positionAmt.abs().compareTo(BigDecimal.ZERO) > 0) {
-                                        // 如果仍然没有保证金，使用持仓价值计算（备用方案）
-                                        BigDecimal positionValue = entryPrice.multiply(positionAmt.abs());
-                                        if (positionValue.compareTo(BigDecimal.ZERO) > 0) {
-                                            pnlPercentage = unrealizedPnl.divide(positionValue, 8, BigDecimal.ROUND_HALF_UP)
-                                                    .multiply(new BigDecimal("100"));
-                                        }
                                     }
-                                    log.debug("使用实时标记价格更新盈亏: symbol={}, 实时价格={}, 盈亏={}", 
-                                            symbol, realTimeMarkPrice, unrealizedPnl);
                                 }
+                                log.debug("使用实时标记价格更新盈亏: symbol={}, 实时价格={}, 盈亏={}", 
+                                        symbol, realTimeMarkPrice, unrealizedPnl);
                             }
                             
                             Position position = Position.builder()
@@ -443,6 +438,22 @@ public class BinanceAdapter implements ExchangeAdapter {
             positionSide = "BUY".equals(side) ? "LONG" : "SHORT";
         }
         
+        // 市价单：根据本地订单簿预估滑点，超过上限时拒绝下单
+        if ("MARKET".equals(type) && quantityValue != null) {
+            SlippageEstimate estimate = orderBookHub.estimateSlippage(symbol, "BUY".equals(side), quantityValue.doubleValue());
+            if (estimate != null) {
+                log.info("市价单滑点预估: symbol={}, side={}, quantity={}, 最优价={}, 预估均价={}, 滑点={}bps, 可成交数量={}",
+                        symbol, side, quantityValue, estimate.bestPrice(), estimate.averagePrice(),
+                        String.format("%.2f", estimate.slippageBps()), estimate.filledQuantity());
+                double maxSlippageBps = orderBookHub.getMaxSlippageBps();
+                if (maxSlippageBps > 0 && estimate.slippageBps() > maxSlippageBps) {
+                    log.warn("预估滑点超过上限，拒绝下单: symbol={}, slippage={}bps, max={}bps",
+                            symbol, String.format("%.2f", estimate.slippageBps()), maxSlippageBps);
+                    return Mono.error(new RuntimeException("预估滑点超过上限: " + symbol));
+                }
+            }
+        }
+        
         // 获取交易对精度并格式化数量
         return getSymbolPrecision(symbol)
                 .flatMap(precision -> {
@@ -517,6 +528,14 @@ public class BinanceAdapter implements ExchangeAdapter {
                 .doOnError(error -> log.error("Binance期货WebSocket错误: {}", error.getMessage()));
     }
     
+    /**
+     * 期货用户数据流的ACCOUNT_UPDATE是增量推送
+     */
+    @Override
+    public boolean supportsAccountDeltas() {
+        return true;
+    }
+    
     @Override
     public Flux<Map<String, Object>> subscribeMarketData(String symbol) {
         log.info("订阅Binance市场数据: symbol={}", symbol);
@@ -538,12 +557,16 @@ public class BinanceAdapter implements ExchangeAdapter {
      * 获取实时标记价格（用于更新持仓盈亏）
      */
     public java.math.BigDecimal getRealTimeMarkPrice(String symbol) {
-        if (futuresWsClient != null) {
-            return futuresWsClient.getMarkPrice(symbol);
-        }
-        return null;
+        return markPriceHub.getMarkPrice(ExchangeType.BINANCE, symbol);
     }
-    
+
+    /**
+     * 订阅实时标记价格更新（用于行情驱动的策略触发）
+     */
+    public Flux<MarkPriceUpdate> subscribeMarkPriceUpdates() {
+        return markPriceHub.markPriceUpdates(ExchangeType.BINANCE);
+    }
+
     /**
      * 创建代理对象
      */
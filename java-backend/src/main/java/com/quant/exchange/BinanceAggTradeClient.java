@@ -0,0 +1,189 @@
+package com.quant.exchange;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.quant.market.TradeTick;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.PingFrame;
+import org.java_websocket.framing.PongFrame;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Binance Futures归集成交流客户端
+ * 一条连接，按需通过 SUBSCRIBE 请求订阅交易对的 <symbol>@aggTrade 流，重连后自动重新订阅
+ *
+ * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/websocket-market-streams/Aggregate-Trade-Streams
+ */
+@Slf4j
+public class BinanceAggTradeClient {
+
+    private static final String FUTURES_STREAM_ENDPOINT = "wss://fstream.binance.com/ws";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Proxy proxy;
+    private final Consumer<TradeTick> listener;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "binance-aggtrade-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 已订阅的交易对（大写）
+    private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requestId = new AtomicLong();
+
+    private volatile WebSocketClient client;
+    private volatile boolean closed;
+
+    public BinanceAggTradeClient(Proxy proxy, Consumer<TradeTick> listener) {
+        this.proxy = proxy;
+        this.listener = listener;
+    }
+
+    /**
+     * 订阅交易对的归集成交（首次调用时建立连接）
+     */
+    public synchronized void subscribe(String symbol) {
+        if (!symbols.add(symbol)) {
+            return;
+        }
+        WebSocketClient current = client;
+        if (current == null) {
+            connect();
+        } else if (current.isOpen()) {
+            sendSubscribe(current, Set.of(symbol));
+        }
+        // 连接中：onOpen时会订阅全部交易对
+    }
+
+    private synchronized void connect() {
+        if (closed) {
+            return;
+        }
+        try {
+            WebSocketClient ws = new WebSocketClient(new URI(FUTURES_STREAM_ENDPOINT)) {
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                    log.info("Binance Futures归集成交流连接已建立: symbols={}", symbols.size());
+                    sendSubscribe(this, symbols);
+                }
+
+                @Override
+                public void onMessage(String message) {
+                    try {
+                        TradeTick tick = parse(message);
+                        if (tick != null) {
+                            listener.accept(tick);
+                        }
+                    } catch (Exception e) {
+                        log.error("解析归集成交消息失败: {}", e.getMessage());
+                    }
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                    log.warn("Binance Futures归集成交流连接关闭: code={}, reason={}", code, reason);
+                    if (!closed) {
+                        scheduler.schedule(BinanceAggTradeClient.this::connect, 5, TimeUnit.SECONDS);
+                    }
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                    log.error("Binance Futures归集成交流错误: {}", ex.getMessage());
+                }
+
+                @Override
+                public void onWebsocketPing(org.java_websocket.WebSocket conn, Framedata f) {
+                    try {
+                        conn.sendFrame(f instanceof PingFrame ping ? new PongFrame(ping) : new PongFrame());
+                    } catch (Exception e) {
+                        log.error("回复pong帧失败: {}", e.getMessage());
+                    }
+                }
+            };
+            if (proxy != null && proxy != Proxy.NO_PROXY) {
+                ws.setProxy(proxy);
+            }
+            client = ws;
+            ws.connect();
+        } catch (Exception e) {
+            log.error("连接Binance Futures归集成交流失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void sendSubscribe(WebSocketClient ws, Set<String> subscribeSymbols) {
+        if (subscribeSymbols.isEmpty()) {
+            return;
+        }
+        StringBuilder params = new StringBuilder();
+        for (String symbol : subscribeSymbols) {
+            if (params.length() > 0) {
+                params.append(',');
+            }
+            params.append('"').append(symbol.toLowerCase()).append("@aggTrade\"");
+        }
+        ws.send("{\"method\":\"SUBSCRIBE\",\"params\":[" + params + "],\"id\":" + requestId.incrementAndGet() + "}");
+        log.info("订阅归集成交流: {}", subscribeSymbols);
+    }
+
+    /**
+     * 解析归集成交消息（{"e":"aggTrade","E":...,"s":"BTCUSDT","p":"0.001","q":"100","T":...}），
+     * 订阅回执等其他消息返回null
+     */
+    static TradeTick parse(String message) throws Exception {
+        String symbol = null;
+        double price = Double.NaN;
+        double quantity = 0.0;
+        long time = 0;
+        boolean aggTrade = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "e" -> aggTrade = "aggTrade".equals(parser.getText());
+                    case "s" -> symbol = parser.getText();
+                    case "p" -> price = parser.getValueAsDouble(Double.NaN);
+                    case "q" -> quantity = parser.getValueAsDouble(0.0);
+                    case "T" -> time = parser.getValueAsLong(0L);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (!aggTrade || symbol == null || !(price > 0)) {
+            return null;
+        }
+        return new TradeTick(symbol, price, quantity, time > 0 ? time : System.currentTimeMillis());
+    }
+
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    public void close() {
+        closed = true;
+        WebSocketClient current = client;
+        if (current != null) {
+            current.close();
+        }
+        scheduler.shutdownNow();
+    }
+}
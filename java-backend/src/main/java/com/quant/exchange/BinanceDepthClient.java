@@ -0,0 +1,182 @@
+package com.quant.exchange;
+
+import com.quant.market.DepthUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.PingFrame;
+import org.java_websocket.framing.PongFrame;
+import org.java_websocket.handshake.ServerHandshake;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Binance Futures深度增量流客户端
+ * 一条连接，按需通过 SUBSCRIBE 请求订阅交易对的 <symbol>@depth@100ms 流，重连后自动重新订阅；
+ * 订单簿快照通过REST接口获取
+ *
+ * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/websocket-market-streams/How-to-manage-a-local-order-book-correctly
+ */
+@Slf4j
+public class BinanceDepthClient {
+
+    private static final String FUTURES_STREAM_ENDPOINT = "wss://fstream.binance.com/ws";
+    private static final String BASE_URL = "https://fapi.binance.com";
+
+    private final Proxy proxy;
+    private final WebClient webClient;
+    private final Consumer<DepthUpdate> listener;
+    private final BinanceDepthParser parser = new BinanceDepthParser();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "binance-depth-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 已订阅的交易对（大写）
+    private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requestId = new AtomicLong();
+
+    private volatile WebSocketClient client;
+    private volatile boolean closed;
+
+    public BinanceDepthClient(Proxy proxy, WebClient webClient, Consumer<DepthUpdate> listener) {
+        this.proxy = proxy;
+        this.webClient = webClient;
+        this.listener = listener;
+    }
+
+    /**
+     * 订阅交易对的深度增量（首次调用时建立连接）
+     */
+    public synchronized void subscribe(String symbol) {
+        if (!symbols.add(symbol)) {
+            return;
+        }
+        WebSocketClient current = client;
+        if (current == null) {
+            connect();
+        } else if (current.isOpen()) {
+            sendSubscribe(current, Set.of(symbol));
+        }
+        // 连接中：onOpen时会订阅全部交易对
+    }
+
+    /**
+     * 获取订单簿快照
+     * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/market-data/rest-api/Order-Book
+     */
+    public Mono<DepthUpdate> fetchSnapshot(String symbol, int limit) {
+        return webClient.get()
+                .uri(BASE_URL + "/fapi/v1/depth?symbol=" + symbol + "&limit=" + limit)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(body -> {
+                    try {
+                        DepthUpdate snapshot = new BinanceDepthParser().parseSnapshot(symbol, body);
+                        if (snapshot == null) {
+                            throw new IllegalStateException("订单簿快照格式无效: " + symbol);
+                        }
+                        return snapshot;
+                    } catch (java.io.IOException e) {
+                        throw new IllegalStateException("解析订单簿快照失败: " + e.getMessage(), e);
+                    }
+                })
+                .doOnError(error -> log.error("获取Binance期货订单簿快照失败: symbol={}, error={}",
+                        symbol, error.getMessage()));
+    }
+
+    private synchronized void connect() {
+        if (closed) {
+            return;
+        }
+        try {
+            WebSocketClient ws = new WebSocketClient(new URI(FUTURES_STREAM_ENDPOINT)) {
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                    log.info("Binance Futures深度流连接已建立: symbols={}", symbols.size());
+                    sendSubscribe(this, symbols);
+                }
+
+                @Override
+                public void onMessage(String message) {
+                    try {
+                        DepthUpdate update = parser.parseDiff(message);
+                        if (update != null) {
+                            listener.accept(update);
+                        }
+                    } catch (Exception e) {
+                        log.error("处理深度消息失败: {}", e.getMessage());
+                    }
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                    log.warn("Binance Futures深度流连接关闭: code={}, reason={}", code, reason);
+                    if (!closed) {
+                        scheduler.schedule(BinanceDepthClient.this::connect, 5, TimeUnit.SECONDS);
+                    }
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                    log.error("Binance Futures深度流错误: {}", ex.getMessage());
+                }
+
+                @Override
+                public void onWebsocketPing(org.java_websocket.WebSocket conn, Framedata f) {
+                    try {
+                        conn.sendFrame(f instanceof PingFrame ping ? new PongFrame(ping) : new PongFrame());
+                    } catch (Exception e) {
+                        log.error("回复pong帧失败: {}", e.getMessage());
+                    }
+                }
+            };
+            if (proxy != null && proxy != Proxy.NO_PROXY) {
+                ws.setProxy(proxy);
+            }
+            client = ws;
+            ws.connect();
+        } catch (Exception e) {
+            log.error("连接Binance Futures深度流失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void sendSubscribe(WebSocketClient ws, Set<String> subscribeSymbols) {
+        if (subscribeSymbols.isEmpty()) {
+            return;
+        }
+        StringBuilder params = new StringBuilder();
+        for (String symbol : subscribeSymbols) {
+            if (params.length() > 0) {
+                params.append(',');
+            }
+            params.append('"').append(symbol.toLowerCase()).append("@depth@100ms\"");
+        }
+        ws.send("{\"method\":\"SUBSCRIBE\",\"params\":[" + params + "],\"id\":" + requestId.incrementAndGet() + "}");
+        log.info("订阅深度流: {}", subscribeSymbols);
+    }
+
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    public void close() {
+        closed = true;
+        WebSocketClient current = client;
+        if (current != null) {
+            current.close();
+        }
+        scheduler.shutdownNow();
+    }
+}
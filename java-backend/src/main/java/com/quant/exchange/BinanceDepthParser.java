@@ -0,0 +1,131 @@
+package com.quant.exchange;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.quant.market.DepthUpdate;
+import com.quant.market.MarkPriceTable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binance Futures深度消息的流式解析器
+ * 档位直接解析到可复用的基本类型缓冲区，最后按实际档位数复制为 {@link DepthUpdate}；
+ * 价格解析为定点整数，与标记价格使用相同的精度
+ *
+ * 增量消息: {"e":"depthUpdate","E":...,"T":...,"s":"BTCUSDT","U":...,"u":...,"pu":...,"b":[["价格","数量"],...],"a":[...]}
+ * 快照消息: {"lastUpdateId":...,"E":...,"T":...,"bids":[["价格","数量"],...],"asks":[...]}
+ *
+ * 只能由单个线程使用
+ */
+public class BinanceDepthParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final double QUANTITY_FACTOR = Math.pow(10, MarkPriceTable.PRICE_SCALE);
+
+    private final Levels bids = new Levels();
+    private final Levels asks = new Levels();
+
+    /**
+     * 解析增量消息（订阅回执等其他消息返回null）
+     */
+    public DepthUpdate parseDiff(String message) throws IOException {
+        return parse(null, message);
+    }
+
+    /**
+     * 解析REST快照
+     */
+    public DepthUpdate parseSnapshot(String symbol, String message) throws IOException {
+        return parse(symbol, message);
+    }
+
+    private DepthUpdate parse(String snapshotSymbol, String message) throws IOException {
+        boolean snapshot = snapshotSymbol != null;
+        String symbol = snapshotSymbol;
+        boolean depthUpdate = false;
+        long first = -1;
+        long last = -1;
+        long previous = -1;
+        long eventTime = 0;
+        bids.count = 0;
+        asks.count = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "e" -> depthUpdate = "depthUpdate".equals(parser.getText());
+                    case "s" -> symbol = snapshot ? symbol : parser.getText();
+                    case "E" -> eventTime = parser.getValueAsLong(0L);
+                    case "U" -> first = parser.getValueAsLong(-1L);
+                    case "u" -> last = parser.getValueAsLong(-1L);
+                    case "pu" -> previous = parser.getValueAsLong(-1L);
+                    case "lastUpdateId" -> {
+                        first = parser.getValueAsLong(-1L);
+                        last = first;
+                    }
+                    case "b", "bids" -> readLevels(parser, value, bids);
+                    case "a", "asks" -> readLevels(parser, value, asks);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if ((!snapshot && !depthUpdate) || symbol == null || last < 0) {
+            return null;
+        }
+        return new DepthUpdate(symbol, first, last, previous, eventTime,
+                Arrays.copyOf(bids.prices, bids.count), Arrays.copyOf(bids.quantities, bids.count),
+                Arrays.copyOf(asks.prices, asks.count), Arrays.copyOf(asks.quantities, asks.count));
+    }
+
+    private static void readLevels(JsonParser parser, JsonToken value, Levels levels) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            long price = -1;
+            long quantity = -1;
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                price = BinanceMarkPriceParser.parseScaled(parser.getTextCharacters(), parser.getTextOffset(),
+                        parser.getTextLength());
+                if (parser.nextToken() != JsonToken.END_ARRAY) {
+                    quantity = BinanceMarkPriceParser.parseScaled(parser.getTextCharacters(),
+                            parser.getTextOffset(), parser.getTextLength());
+                    // 跳过多余的元素
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            if (price > 0 && quantity >= 0) {
+                levels.add(price, quantity / QUANTITY_FACTOR);
+            }
+        }
+    }
+
+    /**
+     * 可复用的档位缓冲区
+     */
+    private static final class Levels {
+        private long[] prices = new long[1024];
+        private double[] quantities = new double[1024];
+        private int count;
+
+        private void add(long price, double quantity) {
+            if (count == prices.length) {
+                prices = Arrays.copyOf(prices, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            prices[count] = price;
+            quantities[count] = quantity;
+            count++;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.quant.exchange;
 
+import com.quant.market.MarkPriceTable;
+import com.quant.market.MarkPriceUpdate;
 import com.quant.model.AccountInfo;
 import com.quant.model.Position;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,13 +20,12 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,17 +43,32 @@ public class BinanceFuturesWebSocketClient {
     
     private WebSocketClient markPriceClient;
     private WebSocketClient userDataClient;
-    private final Sinks.Many<Map<String, BigDecimal>> markPriceSink = Sinks.many().multicast().onBackpressureBuffer();
+    private final Sinks.Many<MarkPriceUpdate> markPriceSink = Sinks.many().multicast().onBackpressureBuffer();
     private final Sinks.Many<AccountInfo> accountSink = Sinks.many().multicast().onBackpressureBuffer();
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final Proxy proxy;
     private final BinanceFuturesApiClient futuresApiClient;
-    private String listenKey;
+    private volatile String listenKey;
     private String currentUserId;
+    private ScheduledFuture<?> keepAliveTask;
+    // 主动关闭后不再重连
+    private volatile boolean closed;
     
-    // 存储每个交易对的标记价格 (symbol -> markPrice)
-    private final Map<String, BigDecimal> markPrices = new ConcurrentHashMap<>();
+    /**
+     * 用户数据流推送的 metadata 字段：
+     * delta=true 表示增量推送；resync=true 表示可能丢失了推送，需要对账；leverages 为杠杆变化（交易对 -> 杠杆）
+     */
+    public static final String METADATA_DELTA = "delta";
+    public static final String METADATA_RESYNC = "resync";
+    public static final String METADATA_LEVERAGES = "leverages";
+
+    // 标记价格表容量（交易对数量上限，一次性分配）
+    private static final int MARK_PRICE_CAPACITY = 2048;
+
+    // 按交易对下标存储的标记价格，收到推送时原地更新
+    private final MarkPriceTable markPriceTable = new MarkPriceTable(MARK_PRICE_CAPACITY);
+    private final BinanceMarkPriceParser markPriceParser = new BinanceMarkPriceParser(markPriceTable);
 
     // 用于等待第一条价格数据
     private final CountDownLatch priceDataReady = new CountDownLatch(1);
@@ -72,7 +88,7 @@ public class BinanceFuturesWebSocketClient {
      * 使用组合流订阅所有标记价格更新
      * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/market-data/websocket-api/Mark-Price-Stream
      */
-    public Flux<Map<String, BigDecimal>> subscribeAllMarkPrices() {
+    public Flux<MarkPriceUpdate> subscribeAllMarkPrices() {
         try {
             // 使用组合流订阅所有标记价格
             // 格式: !markPrice@arr@1s (每秒更新一次，所有交易对的标记价格数组)
@@ -88,39 +104,15 @@ public class BinanceFuturesWebSocketClient {
                 @Override
                 public void onMessage(String message) {
                     try {
-                        // 解析标记价格数组
-                        ObjectMapper mapper = new ObjectMapper();
-                        java.util.List<Map<String, Object>> priceList = mapper.readValue(message, 
-                                mapper.getTypeFactory().constructCollectionType(java.util.List.class, Map.class));
+                        // 流式解析标记价格数组，直接更新价格表
+                        int updated = markPriceParser.parse(message);
                         
-                        // 更新每个交易对的标记价格
-                        Map<String, BigDecimal> updatedPrices = new HashMap<>();
-                        for (Map<String, Object> priceData : priceList) {
-                            String symbol = (String) priceData.get("s");
-                            Object markPriceObj = priceData.get("p");
-                            
-                            if (symbol != null && markPriceObj != null) {
-                                try {
-                                    BigDecimal markPrice = new BigDecimal(markPriceObj.toString());
-                                    markPrices.put(symbol, markPrice);
-                                    updatedPrices.put(symbol, markPrice);
-                                } catch (Exception e) {
-                                    log.warn("解析标记价格失败: symbol={}, price={}, error={}", 
-                                            symbol, markPriceObj, e.getMessage());
-                                }
-                            }
-                        }
-                        
-                        // 如果有更新，发送到流
-                        if (!updatedPrices.isEmpty()) {
-                            markPriceSink.tryEmitNext(updatedPrices);
+                        // 如果有更新，发送通知（不复制价格，订阅者从价格表读取）
+                        if (updated > 0) {
+                            markPriceSink.tryEmitNext(new MarkPriceUpdate(markPriceTable, markPriceTable.sequence(), updated));
                             // 通知第一条价格数据已到达
                             priceDataReady.countDown();
-//                            log.info("更新标记价格: {} 个交易对", updatedPrices.size());
-                            // 记录前几个交易对的价格，便于调试
-                            updatedPrices.entrySet().stream().limit(5).forEach(entry -> 
-                                log.debug("标记价格更新: {} = {}", entry.getKey(), entry.getValue())
-                            );
+//                            log.info("更新标记价格: {} 个交易对", updated);
                         }
                     } catch (Exception e) {
                         log.error("解析标记价格消息失败: {}", e.getMessage(), e);
@@ -130,8 +122,8 @@ public class BinanceFuturesWebSocketClient {
                 @Override
                 public void onClose(int code, String reason, boolean remote) {
                     log.warn("Binance Futures标记价格流连接关闭: code={}, reason={}", code, reason);
-                    // 尝试重连
-                    if (remote) {
+                    // 尝试重连（连接可能由多个用户共享，除主动关闭外都需要重连）
+                    if (!closed) {
                         scheduler.schedule(() -> {
                             log.info("尝试重连Binance Futures标记价格流...");
                             subscribeAllMarkPrices().subscribe();
@@ -141,8 +133,8 @@ public class BinanceFuturesWebSocketClient {
                 
                 @Override
                 public void onError(Exception ex) {
+                    // 不结束价格流：连接随后会关闭并自动重连，订阅者继续收到重连后的价格
                     log.error("Binance Futures标记价格流错误: {}", ex.getMessage(), ex);
-                    markPriceSink.tryEmitError(ex);
                 }
                 
                 @Override
@@ -186,7 +178,10 @@ public class BinanceFuturesWebSocketClient {
             
         } catch (Exception e) {
             log.error("连接Binance Futures标记价格流失败: {}", e.getMessage(), e);
-            markPriceSink.tryEmitError(e);
+            // 同样不结束价格流，延迟后重连
+            if (!closed) {
+                scheduler.schedule(() -> subscribeAllMarkPrices().subscribe(), 5, TimeUnit.SECONDS);
+            }
         }
         
         return markPriceSink.asFlux();
@@ -196,7 +191,21 @@ public class BinanceFuturesWebSocketClient {
      * 获取指定交易对的标记价格
      */
     public BigDecimal getMarkPrice(String symbol) {
-        return markPrices.get(symbol);
+        return markPriceTable.getMarkPrice(symbol);
+    }
+
+    /**
+     * 标记价格表（按交易对下标读取，不创建对象）
+     */
+    public MarkPriceTable getMarkPriceTable() {
+        return markPriceTable;
+    }
+
+    /**
+     * 价格表中的交易对数量
+     */
+    public int getMarkPriceCount() {
+        return markPriceTable.size();
     }
 
     /**
@@ -214,10 +223,18 @@ public class BinanceFuturesWebSocketClient {
     }
     
     /**
-     * 获取所有标记价格
+     * 获取所有标记价格（价格表的只读视图，不复制）
      */
     public Map<String, BigDecimal> getAllMarkPrices() {
-        return new HashMap<>(markPrices);
+        return markPriceTable.asMap();
+    }
+
+    /**
+     * 标记价格更新流（不会重新建立连接，只订阅已有的价格推送）
+     * 每条通知对应一次推送，价格从通知携带的价格表读取
+     */
+    public Flux<MarkPriceUpdate> markPriceUpdates() {
+        return markPriceSink.asFlux();
     }
     
     /**
@@ -229,8 +246,16 @@ public class BinanceFuturesWebSocketClient {
      */
     public Flux<AccountInfo> subscribeUserDataStream(String userId, String listenKey) {
         this.currentUserId = userId;
+        connectUserDataStream(userId, listenKey);
+        return accountSink.asFlux();
+    }
+
+    /**
+     * 建立用户数据流连接（重连时复用同一个推送流，订阅者不需要重新订阅）
+     */
+    private void connectUserDataStream(String userId, String listenKey) {
         this.listenKey = listenKey;
-        
+
         try {
             URI uri = new URI(FUTURES_STREAM_ENDPOINT + listenKey);
             
@@ -239,6 +264,8 @@ public class BinanceFuturesWebSocketClient {
                 public void onOpen(ServerHandshake handshake) {
                     log.info("Binance Futures用户数据流连接已建立（代理状态: {}）",
                             (proxy != null && proxy != Proxy.NO_PROXY ? "已使用" : "未使用"));
+                    // 连接（重新）建立前的推送可能已丢失，通知订阅者对账
+                    accountSink.tryEmitNext(resyncEvent(userId));
                 }
                 
                 @Override
@@ -255,6 +282,14 @@ public class BinanceFuturesWebSocketClient {
                             if (accountInfo != null) {
                                 accountSink.tryEmitNext(accountInfo);
                             }
+                        } else if ("ACCOUNT_CONFIG_UPDATE".equals(eventType)) {
+                            AccountInfo leverageUpdate = parseAccountConfigUpdate(data, userId);
+                            if (leverageUpdate != null) {
+                                accountSink.tryEmitNext(leverageUpdate);
+                            }
+                        } else if ("listenKeyExpired".equals(eventType)) {
+                            log.warn("Binance Futures listenKey已过期: userId={}", userId);
+                            accountSink.tryEmitNext(resyncEvent(userId));
                         } else if ("ORDER_TRADE_UPDATE".equals(eventType)) {
                             log.debug("收到Binance Futures订单/成交更新事件");
                             // 订单更新可能影响账户余额，也发送账户更新
@@ -268,19 +303,14 @@ public class BinanceFuturesWebSocketClient {
                 @Override
                 public void onClose(int code, String reason, boolean remote) {
                     log.warn("Binance Futures用户数据流连接关闭: code={}, reason={}", code, reason);
-                    if (remote && futuresApiClient != null && listenKey != null) {
-                        // 尝试重连
-                        scheduler.schedule(() -> {
-                            log.info("尝试重连Binance Futures用户数据流...");
-                            reconnectUserDataStream(userId);
-                        }, 5, TimeUnit.SECONDS);
-                    }
+                    // 除主动关闭外都需要重连（连接失败时也会回调这里）
+                    scheduleUserDataReconnect(userId, 5);
                 }
                 
                 @Override
                 public void onError(Exception ex) {
+                    // 不结束账户流：连接随后会关闭并自动重连，重连后发送对账通知
                     log.error("Binance Futures用户数据流错误: {}", ex.getMessage(), ex);
-                    accountSink.tryEmitError(ex);
                 }
                 
                 @Override
@@ -320,9 +350,12 @@ public class BinanceFuturesWebSocketClient {
             log.info("正在连接Binance Futures用户数据流: {}", uri);
             userDataClient.connect();
             
-            // 定期延长listenKey有效期（每30分钟）
+            // 定期延长listenKey有效期（每30分钟，重连时替换上一个连接的任务）
+            if (keepAliveTask != null) {
+                keepAliveTask.cancel(false);
+            }
             if (futuresApiClient != null && listenKey != null) {
-                scheduler.scheduleAtFixedRate(() -> {
+                keepAliveTask = scheduler.scheduleAtFixedRate(() -> {
                     futuresApiClient.keepAliveListenKey(listenKey)
                             .subscribe(
                                     v -> log.debug("延长Binance Futures listenKey成功"),
@@ -333,38 +366,91 @@ public class BinanceFuturesWebSocketClient {
             
         } catch (Exception e) {
             log.error("连接Binance Futures用户数据流失败: {}", e.getMessage(), e);
-            accountSink.tryEmitError(e);
+            scheduleUserDataReconnect(userId, 5);
         }
-        
-        return accountSink.asFlux();
+    }
+
+    /**
+     * 延迟后重连用户数据流（主动关闭后不再重连）
+     */
+    private void scheduleUserDataReconnect(String userId, long delaySeconds) {
+        if (closed) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            log.info("尝试重连Binance Futures用户数据流...");
+            reconnectUserDataStream(userId);
+        }, delaySeconds, TimeUnit.SECONDS);
     }
     
     /**
      * 重连用户数据流
      */
     private void reconnectUserDataStream(String userId) {
-        if (futuresApiClient != null) {
-            futuresApiClient.createListenKey()
-                    .flatMap(newListenKey -> {
-                        this.listenKey = newListenKey;
-                        return Mono.just(newListenKey);
-                    })
-                    .subscribe(
-                            newListenKey -> {
-                                log.info("重新创建listenKey成功，重连用户数据流");
-                                subscribeUserDataStream(userId, newListenKey).subscribe();
-                            },
-                            error -> {
-                                log.error("重新创建listenKey失败: {}", error.getMessage());
-                                // 延迟后重试
-                                scheduler.schedule(() -> reconnectUserDataStream(userId), 30, TimeUnit.SECONDS);
-                            }
-                    );
+        if (closed) {
+            return;
+        }
+        if (futuresApiClient == null) {
+            // 无法重新创建listenKey，使用原来的listenKey重连
+            connectUserDataStream(userId, listenKey);
+            return;
         }
+        futuresApiClient.createListenKey()
+                .flatMap(newListenKey -> {
+                    this.listenKey = newListenKey;
+                    return Mono.just(newListenKey);
+                })
+                .subscribe(
+                        newListenKey -> {
+                            log.info("重新创建listenKey成功，重连用户数据流");
+                            connectUserDataStream(userId, newListenKey);
+                        },
+                        error -> {
+                            log.error("重新创建listenKey失败: {}", error.getMessage());
+                            // 延迟后重试
+                            scheduleUserDataReconnect(userId, 30);
+                        }
+                );
     }
     
     /**
-     * 解析ACCOUNT_UPDATE事件
+     * 需要对账的通知（metadata.resync=true，不包含账户数据）
+     */
+    private static AccountInfo resyncEvent(String userId) {
+        return AccountInfo.builder()
+                .userId(userId)
+                .timestamp(System.currentTimeMillis())
+                .metadata(Map.of(METADATA_DELTA, true, METADATA_RESYNC, true))
+                .build();
+    }
+
+    /**
+     * 解析ACCOUNT_CONFIG_UPDATE事件（只处理杠杆变化，metadata.leverages为 交易对 -> 杠杆）
+     * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/user-data-streams/Event-Account-Configuration-Update-previous-Leverage-Update
+     */
+    @SuppressWarnings("unchecked")
+    private AccountInfo parseAccountConfigUpdate(Map<String, Object> data, String userId) {
+        Map<String, Object> config = (Map<String, Object>) data.get("ac");
+        if (config == null || config.get("s") == null || !(config.get("l") instanceof Number leverage)) {
+            return null;
+        }
+        log.debug("收到Binance Futures杠杆更新: symbol={}, leverage={}", config.get("s"), leverage);
+        return AccountInfo.builder()
+                .userId(userId)
+                .timestamp(System.currentTimeMillis())
+                .metadata(Map.of(METADATA_DELTA, true,
+                        METADATA_LEVERAGES, Map.of((String) config.get("s"), leverage.intValue())))
+                .build();
+    }
+
+    /**
+     * 解析ACCOUNT_UPDATE事件（增量：只包含变化的余额和持仓，metadata.delta=true）
+     * - 没有USDT余额变化时余额字段为null；只输出钱包余额（wb），可用余额和冻结余额为null
+     *   （cw是全仓钱包余额，不是可用余额），由订阅者沿用已有的值并通过REST对账
+     * - 数量为0的持仓表示已平仓，同样输出（单向持仓模式方向为 BOTH）
+     * - 单向持仓模式（ps=BOTH）保留方向 BOTH，数量带符号（正数为多、负数为空），
+     *   由订阅者按符号确定方向，反手时删除另一个方向的持仓
+     * - 事件中没有杠杆和标记价格，对应字段为null，由订阅者沿用已有的值
      * 参考: https://developers.binance.com/docs/derivatives/usds-margined-futures/user-data-streams/event-account-update
      */
     @SuppressWarnings("unchecked")
@@ -378,23 +464,15 @@ public class BinanceFuturesWebSocketClient {
             
             // 解析账户余额信息
             List<Map<String, Object>> balances = (List<Map<String, Object>>) accountData.get("B");
-            BigDecimal totalWalletBalance = BigDecimal.ZERO;
-            BigDecimal availableBalance = BigDecimal.ZERO;
-            BigDecimal frozenBalance = BigDecimal.ZERO;
+            BigDecimal totalWalletBalance = null;
             
             if (balances != null) {
                 for (Map<String, Object> balance : balances) {
                     String asset = (String) balance.get("a");
                     String walletBalanceStr = (String) balance.get("wb");
-                    String availableBalanceStr = (String) balance.get("cw");
                     
                     if ("USDT".equals(asset)) {
                         totalWalletBalance = new BigDecimal(walletBalanceStr);
-                        availableBalance = new BigDecimal(availableBalanceStr);
-                        frozenBalance = totalWalletBalance.subtract(availableBalance);
-                        if (frozenBalance.compareTo(BigDecimal.ZERO) < 0) {
-                            frozenBalance = BigDecimal.ZERO;
-                        }
                         break;
                     }
                 }
@@ -410,20 +488,26 @@ public class BinanceFuturesWebSocketClient {
                     String symbol = (String) posData.get("s");
                     String positionAmtStr = (String) posData.getOrDefault("pa", "0");
                     BigDecimal positionAmt = new BigDecimal(positionAmtStr);
+                    String positionSide = (String) posData.getOrDefault("ps", "BOTH");
                     
-                    // 只处理有持仓的
-                    if (positionAmt.compareTo(BigDecimal.ZERO) != 0) {
+                    // 已平仓的持仓（数量为0）
+                    if (positionAmt.compareTo(BigDecimal.ZERO) == 0) {
+                        positions.add(Position.builder()
+                                .symbol(symbol)
+                                .side(positionSide)
+                                .quantity(BigDecimal.ZERO)
+                                .available(BigDecimal.ZERO)
+                                .build());
+                    } else {
                         String entryPriceStr = (String) posData.getOrDefault("ep", "0");
-                        String markPriceStr = (String) posData.getOrDefault("mp", "0");
                         String unrealizedPnlStr = (String) posData.getOrDefault("up", "0");
-                        String leverageStr = (String) posData.getOrDefault("l", "1");
                         String isolatedMarginStr = (String) posData.getOrDefault("iw", "0");
-                        String positionSide = (String) posData.getOrDefault("ps", "BOTH");
                         
                         BigDecimal entryPrice = new BigDecimal(entryPriceStr);
-                        BigDecimal markPrice = new BigDecimal(markPriceStr);
+                        // 事件中通常没有标记价格和杠杆
+                        BigDecimal markPrice = posData.get("mp") != null ? new BigDecimal((String) posData.get("mp")) : null;
                         BigDecimal unrealizedPnl = new BigDecimal(unrealizedPnlStr);
-                        BigDecimal leverage = new BigDecimal(leverageStr);
+                        Integer leverage = posData.get("l") != null ? Integer.valueOf(String.valueOf(posData.get("l"))) : null;
                         BigDecimal isolatedMargin = new BigDecimal(isolatedMarginStr);
                         
                         totalUnrealizedProfit = totalUnrealizedProfit.add(unrealizedPnl);
@@ -435,26 +519,27 @@ public class BinanceFuturesWebSocketClient {
                                     .multiply(new BigDecimal("100"));
                         }
                         
-                        // 确定持仓方向
-                        String side = "LONG";
-                        if (positionAmt.compareTo(BigDecimal.ZERO) < 0) {
-                            side = "SHORT";
-                        } else if ("SHORT".equals(positionSide)) {
+                        // 确定持仓方向：单向持仓模式保留 BOTH 和带符号的数量，双向持仓模式按 ps
+                        boolean oneWay = "BOTH".equals(positionSide);
+                        String side;
+                        if (oneWay) {
+                            side = "BOTH";
+                        } else if ("SHORT".equals(positionSide) || positionAmt.compareTo(BigDecimal.ZERO) < 0) {
                             side = "SHORT";
-                        } else if ("LONG".equals(positionSide)) {
+                        } else {
                             side = "LONG";
                         }
                         
                         Position position = Position.builder()
                                 .symbol(symbol)
                                 .side(side)
-                                .quantity(positionAmt.abs())
+                                .quantity(oneWay ? positionAmt : positionAmt.abs())
                                 .available(positionAmt.abs())
                                 .avgPrice(entryPrice)
                                 .currentPrice(markPrice)
                                 .unrealizedPnl(unrealizedPnl)
                                 .pnlPercentage(pnlPercentage)
-                                .leverage(leverage.intValue())
+                                .leverage(leverage)
                                 .margin(isolatedMargin)
                                 .build();
                         
@@ -463,22 +548,21 @@ public class BinanceFuturesWebSocketClient {
                 }
             }
             
-            // 账户权益 = 总钱包余额 + 未实现盈亏
-            BigDecimal equity = totalWalletBalance.add(totalUnrealizedProfit);
+            // 账户权益 = 总钱包余额 + 未实现盈亏（只包含本次变化的持仓，订阅者按全部持仓重新计算）
+            BigDecimal equity = totalWalletBalance != null ? totalWalletBalance.add(totalUnrealizedProfit) : null;
             
             AccountInfo accountInfo = AccountInfo.builder()
                     .userId(userId)
                     .totalBalance(totalWalletBalance)
-                    .availableBalance(availableBalance)
-                    .frozenBalance(frozenBalance)
                     .equity(equity)
                     .unrealizedPnl(totalUnrealizedProfit)
                     .positions(positions)
                     .timestamp(System.currentTimeMillis())
+                    .metadata(Map.of(METADATA_DELTA, true))
                     .build();
             
-            log.debug("解析Binance Futures账户更新: 总钱包余额={}, 可用余额={}, 未实现盈亏={}, 持仓数量={}",
-                    totalWalletBalance, availableBalance, totalUnrealizedProfit, positions.size());
+            log.debug("解析Binance Futures账户更新: 总钱包余额={}, 未实现盈亏={}, 持仓数量={}",
+                    totalWalletBalance, totalUnrealizedProfit, positions.size());
             
             return accountInfo;
         } catch (Exception e) {
@@ -491,6 +575,7 @@ public class BinanceFuturesWebSocketClient {
      * 关闭连接
      */
     public void close() {
+        closed = true;
         if (markPriceClient != null) {
             markPriceClient.close();
         }
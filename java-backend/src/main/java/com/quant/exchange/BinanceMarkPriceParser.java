@@ -0,0 +1,202 @@
+package com.quant.exchange;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.quant.market.MarkPriceTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * Binance全市场标记价格消息（!markPrice@arr@1s）的流式解析器
+ * 使用Jackson流式API逐个字段读取，直接写入 {@link MarkPriceTable}，
+ * 不构建List/Map树，也不为每个交易对创建BigDecimal或String；价格直接从字符解析为定点整数
+ *
+ * 消息格式: [{"e":"markPriceUpdate","E":1562305380000,"s":"BTCUSDT","p":"11794.15000000",...}, ...]
+ * 组合流（/stream?streams=）的消息外层为 {"stream":"!markPrice@arr@1s","data":[...]}，同样支持
+ *
+ * 只能由单个线程（行情连接线程）使用
+ */
+@Slf4j
+public class BinanceMarkPriceParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int SCALE = MarkPriceTable.PRICE_SCALE;
+
+    // 10的幂（0..PRICE_SCALE）
+    private static final long[] POW10 = new long[SCALE + 1];
+
+    // 整数部分再追加一位数字前的上限：整数部分不超过 Long.MAX_VALUE / 10^SCALE，乘以10^SCALE不会溢出
+    private static final long MAX_UNSCALED = Long.MAX_VALUE / 100_000_000L / 10;
+
+    // 回退解析时定点值的上限（不含）
+    private static final double MAX_SCALED = 0x1p63;
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final MarkPriceTable table;
+
+    // 当前对象的交易对名称（解析器的字符缓冲区在读取下一个字段时会被覆盖，需要复制出来）
+    private char[] symbolChars = new char[32];
+
+    private boolean capacityWarned;
+
+    public BinanceMarkPriceParser(MarkPriceTable table) {
+        this.table = table;
+    }
+
+    /**
+     * 解析一条消息并更新价格表
+     *
+     * @return 本条消息更新的交易对数量（大于0时已发布本次更新）
+     */
+    public int parse(String message) throws IOException {
+        int updated = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                if (!seekData(parser)) {
+                    return 0;
+                }
+            } else if (first != JsonToken.START_ARRAY) {
+                return 0;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                int symbolLength = 0;
+                long price = 0;
+                long eventTime = 0;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "s":
+                            if (value == JsonToken.VALUE_STRING) {
+                                symbolLength = copySymbol(parser);
+                            }
+                            break;
+                        case "p":
+                            if (value == JsonToken.VALUE_STRING || value == JsonToken.VALUE_NUMBER_FLOAT
+                                    || value == JsonToken.VALUE_NUMBER_INT) {
+                                price = parseScaled(parser.getTextCharacters(), parser.getTextOffset(),
+                                        parser.getTextLength());
+                            }
+                            break;
+                        case "E":
+                            if (value == JsonToken.VALUE_NUMBER_INT) {
+                                eventTime = parser.getLongValue();
+                            }
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+
+                if (symbolLength == 0 || price <= 0) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("跳过无效的标记价格: symbol={}, price={}",
+                                new String(symbolChars, 0, symbolLength), price);
+                    }
+                    continue;
+                }
+                if (table.put(symbolChars, 0, symbolLength, price, eventTime) >= 0) {
+                    updated++;
+                } else if (!capacityWarned) {
+                    capacityWarned = true;
+                    log.warn("标记价格表已满，忽略新的交易对: capacity={}, symbol={}",
+                            table.size(), new String(symbolChars, 0, symbolLength));
+                }
+            }
+        }
+        if (updated > 0) {
+            table.commit();
+        }
+        return updated;
+    }
+
+    /**
+     * 组合流外层对象：定位到 data 数组的开始（没有 data 数组时返回false）
+     */
+    private static boolean seekData(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private int copySymbol(JsonParser parser) throws IOException {
+        int length = parser.getTextLength();
+        if (length > symbolChars.length) {
+            symbolChars = new char[Math.max(length, symbolChars.length * 2)];
+        }
+        System.arraycopy(parser.getTextCharacters(), parser.getTextOffset(), symbolChars, 0, length);
+        return length;
+    }
+
+    /**
+     * 把十进制数字字符（如 "11794.15000000"）解析为定点整数（× 10^8）
+     * 超过8位的小数四舍五入（按绝对值，负数向远离0的方向）；科学计数法、整数部分过大等其他格式回退到Double.parseDouble
+     *
+     * @return 定点价格，无法解析或超出long范围时返回-1（负数输入返回负值，调用方按小于等于0视为无效）
+     */
+    static long parseScaled(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return -1;
+        }
+        int end = offset + length;
+        int i = offset;
+        boolean negative = chars[i] == '-';
+        if (negative || chars[i] == '+') {
+            i++;
+        }
+        long unscaled = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (fractionDigits < 0) {
+                    if (unscaled >= MAX_UNSCALED) {
+                        return fallback(chars, offset, length);
+                    }
+                    unscaled = unscaled * 10 + (c - '0');
+                } else if (fractionDigits < SCALE) {
+                    unscaled = unscaled * 10 + (c - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == SCALE) {
+                    // 第9位小数决定舍入，之后的位忽略
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return fallback(chars, offset, length);
+            }
+        }
+        int scale = Math.min(Math.max(fractionDigits, 0), SCALE);
+        long scaled = unscaled * POW10[SCALE - scale] + (roundUp ? 1 : 0);
+        return negative ? -scaled : scaled;
+    }
+
+    private static long fallback(char[] chars, int offset, int length) {
+        try {
+            double scaled = Double.parseDouble(new String(chars, offset, length)) * POW10[SCALE];
+            return Double.isFinite(scaled) && Math.abs(scaled) < MAX_SCALED ? Math.round(scaled) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -57,6 +57,14 @@ public interface ExchangeAdapter {
      */
     Flux<AccountInfo> subscribeAccountUpdates(String userId);
     
+    /**
+     * 账户推送是否为增量（只包含变化的余额和持仓，数量为0表示已平仓，metadata.delta=true）
+     * 增量推送的交易所由内存持仓账本维护账户状态，只在必要时通过REST对账；其他交易所的推送按完整账户处理
+     */
+    default boolean supportsAccountDeltas() {
+        return false;
+    }
+    
     /**
      * 订阅市场数据（WebSocket）
      */
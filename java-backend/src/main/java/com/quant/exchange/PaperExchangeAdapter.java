@@ -0,0 +1,381 @@
+package com.quant.exchange;
+
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceTable;
+import com.quant.model.AccountInfo;
+import com.quant.model.ExchangeType;
+import com.quant.model.Order;
+import com.quant.model.Position;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 模拟交易适配器（纸面交易）
+ * 不需要API密钥、不访问交易所账户接口，账户状态保存在内存中（适配器重新初始化后重置）：
+ * - 全仓USDT账户：钱包余额、可用余额 = 钱包余额 + 未实现盈亏 - 占用保证金
+ * - 双向持仓（LONG/SHORT分别持仓），每个交易对单独设置杠杆
+ * - 市价单按当前标记价格立即全部成交，按名义价值扣除手续费；可用余额不足时拒绝开仓
+ * - 账户或持仓变化时通过 {@link #subscribeAccountUpdates} 推送（与Binance的ACCOUNT_UPDATE一致，只在变化时推送）
+ *
+ * 价格默认来自共享的标记价格中心（使用Binance的行情），离线运行时可通过 {@link #setPriceSource} 替换
+ * 订单方向与 {@link BinanceAdapter} 一致：BUY/SELL 为开多/开空，LONG/SHORT 为平多/平空
+ */
+@Slf4j
+@Component("paperAdapter")
+@Scope("prototype")  // 原型作用域：每个用户一个独立的模拟账户
+public class PaperExchangeAdapter implements ExchangeAdapter {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    // 保留的最近订单数量（用于查询订单）
+    private static final int MAX_ORDERS = 1000;
+
+    private static final AtomicLong ORDER_SEQUENCE = new AtomicLong();
+
+    private final MarkPriceHub markPriceHub;
+
+    // 初始资金（USDT）
+    @Value("${exchange.paper.initial-balance:10000}")
+    private BigDecimal initialBalance;
+
+    // 手续费率（吃单，按成交名义价值收取）
+    @Value("${exchange.paper.taker-fee-rate:0.0004}")
+    private BigDecimal takerFeeRate;
+
+    // 没有设置杠杆的交易对使用的杠杆
+    @Value("${exchange.paper.default-leverage:20}")
+    private int defaultLeverage;
+
+    private volatile Function<String, BigDecimal> priceSource;
+    private volatile boolean customPriceSource;
+
+    private String userId;
+    private BigDecimal walletBalance;
+    private BigDecimal totalFees = BigDecimal.ZERO;
+    private BigDecimal realizedPnl = BigDecimal.ZERO;
+
+    // 持仓：Key = symbol:side
+    private final Map<String, PaperPosition> positions = new LinkedHashMap<>();
+    private final Map<String, Integer> leverages = new HashMap<>();
+    private final Map<String, Order> orders = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Order> eldest) {
+            return size() > MAX_ORDERS;
+        }
+    };
+
+    private final Sinks.Many<AccountInfo> accountUpdates = Sinks.many().multicast().directBestEffort();
+
+    public PaperExchangeAdapter(MarkPriceHub markPriceHub) {
+        this.markPriceHub = markPriceHub;
+        this.priceSource = symbol -> markPriceHub.getMarkPrice(ExchangeType.PAPER, symbol);
+    }
+
+    @Override
+    public ExchangeType getExchangeType() {
+        return ExchangeType.PAPER;
+    }
+
+    @Override
+    public void initialize(String apiKey, String secretKey, String passphrase) {
+        // 模拟账户不使用API密钥
+        synchronized (this) {
+            walletBalance = initialBalance;
+        }
+        if (!customPriceSource) {
+            markPriceHub.ensureStarted(ExchangeType.PAPER);
+        }
+        log.info("模拟交易账户已初始化: 初始资金={} USDT, 手续费率={}, 默认杠杆={}倍",
+                initialBalance, takerFeeRate, defaultLeverage);
+    }
+
+    /**
+     * 替换价格来源（离线运行或压测时使用，返回null表示没有价格；在 initialize 之前设置时不建立行情连接）
+     */
+    public void setPriceSource(Function<String, BigDecimal> priceSource) {
+        this.priceSource = priceSource;
+        this.customPriceSource = true;
+    }
+
+    /**
+     * 设置交易对杠杆（已有持仓的保证金按新杠杆计算）
+     */
+    public synchronized void setLeverage(String symbol, int leverage) {
+        if (leverage < 1) {
+            throw new IllegalArgumentException("杠杆必须大于等于1: " + leverage);
+        }
+        leverages.put(symbol, leverage);
+        positions.values().forEach(position -> {
+            if (position.symbol.equals(symbol)) {
+                position.leverage = leverage;
+            }
+        });
+    }
+
+    /**
+     * 当前标记价格（没有价格时返回null）
+     */
+    public BigDecimal getMarkPrice(String symbol) {
+        BigDecimal price = priceSource.apply(symbol);
+        return price != null && price.compareTo(BigDecimal.ZERO) > 0 ? price : null;
+    }
+
+    @Override
+    public Mono<AccountInfo> getAccountInfo(String userId) {
+        return Mono.fromCallable(this::snapshot);
+    }
+
+    @Override
+    public Mono<List<Position>> getPositions(String userId) {
+        return Mono.fromCallable(() -> {
+            synchronized (this) {
+                return positionList();
+            }
+        });
+    }
+
+    @Override
+    public Mono<Order> placeOrder(Order order) {
+        log.debug("模拟交易下单: symbol={}, side={}, type={}, quantity={}",
+                order.getSymbol(), order.getSide(), order.getType(), order.getQuantity());
+
+        if (order.getType() != null && !"MARKET".equals(order.getType())) {
+            return Mono.error(new IllegalArgumentException("模拟交易只支持市价单: " + order.getType()));
+        }
+        BigDecimal quantity = order.getQuantity();
+        if (quantity == null || quantity.compareTo(BigDecimal.ZERO) <= 0) {
+            return Mono.error(new IllegalArgumentException("订单数量无效: " + quantity));
+        }
+        BigDecimal price = getMarkPrice(order.getSymbol());
+        if (price == null) {
+            return Mono.error(new IllegalStateException("没有标记价格，无法成交: " + order.getSymbol()));
+        }
+
+        Order filled;
+        AccountInfo update;
+        synchronized (this) {
+            if (walletBalance == null) {
+                return Mono.error(new IllegalStateException("模拟交易账户未初始化"));
+            }
+            String side = order.getSide();
+            BigDecimal fee = price.multiply(quantity).multiply(takerFeeRate);
+            if ("BUY".equals(side) || "SELL".equals(side)) {
+                String positionSide = "BUY".equals(side) ? "LONG" : "SHORT";
+                BigDecimal requiredMargin = price.multiply(quantity)
+                        .divide(BigDecimal.valueOf(leverageOf(order.getSymbol())), 8, RoundingMode.HALF_UP);
+                BigDecimal available = availableBalance();
+                if (requiredMargin.add(fee).compareTo(available) > 0) {
+                    return Mono.error(new IllegalStateException("可用余额不足: 需要=" + requiredMargin.add(fee)
+                            + ", 可用=" + available));
+                }
+                open(order.getSymbol(), positionSide, quantity, price);
+            } else if ("LONG".equals(side) || "SHORT".equals(side)) {
+                PaperPosition position = positions.get(order.getSymbol() + ":" + side);
+                if (position == null) {
+                    return Mono.error(new IllegalStateException("没有可平的持仓: " + order.getSymbol() + " " + side));
+                }
+                quantity = quantity.min(position.quantity);
+                fee = price.multiply(quantity).multiply(takerFeeRate);
+                close(position, quantity, price);
+            } else {
+                return Mono.error(new IllegalArgumentException("不支持的订单方向: " + side));
+            }
+            walletBalance = walletBalance.subtract(fee);
+            totalFees = totalFees.add(fee);
+
+            filled = Order.builder()
+                    .orderId("PAPER-" + ORDER_SEQUENCE.incrementAndGet())
+                    .symbol(order.getSymbol())
+                    .side(side)
+                    .type("MARKET")
+                    .quantity(quantity)
+                    .price(price)
+                    .status("FILLED")
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            orders.put(filled.getOrderId(), filled);
+            update = snapshot();
+        }
+        accountUpdates.tryEmitNext(update);
+        return Mono.just(filled);
+    }
+
+    private void open(String symbol, String side, BigDecimal quantity, BigDecimal price) {
+        PaperPosition position = positions.computeIfAbsent(symbol + ":" + side,
+                key -> new PaperPosition(symbol, side, leverageOf(symbol)));
+        BigDecimal total = position.quantity.add(quantity);
+        position.entryPrice = position.entryPrice.multiply(position.quantity).add(price.multiply(quantity))
+                .divide(total, 8, RoundingMode.HALF_UP);
+        position.quantity = total;
+    }
+
+    private void close(PaperPosition position, BigDecimal quantity, BigDecimal price) {
+        BigDecimal pnl = pnl(position.side, position.entryPrice, price, quantity);
+        walletBalance = walletBalance.add(pnl);
+        realizedPnl = realizedPnl.add(pnl);
+        position.quantity = position.quantity.subtract(quantity);
+        if (position.quantity.compareTo(BigDecimal.ZERO) <= 0) {
+            positions.remove(position.symbol + ":" + position.side);
+        }
+    }
+
+    private int leverageOf(String symbol) {
+        return leverages.getOrDefault(symbol, defaultLeverage);
+    }
+
+    /**
+     * 可用余额 = 钱包余额 + 未实现盈亏 - 占用保证金
+     */
+    private BigDecimal availableBalance() {
+        BigDecimal available = walletBalance;
+        for (PaperPosition position : positions.values()) {
+            BigDecimal price = getMarkPrice(position.symbol);
+            BigDecimal mark = price != null ? price : position.entryPrice;
+            available = available.add(pnl(position.side, position.entryPrice, mark, position.quantity))
+                    .subtract(position.margin());
+        }
+        return available;
+    }
+
+    private List<Position> positionList() {
+        List<Position> list = new ArrayList<>(positions.size());
+        for (PaperPosition position : positions.values()) {
+            BigDecimal price = getMarkPrice(position.symbol);
+            BigDecimal mark = price != null ? price : position.entryPrice;
+            BigDecimal unrealizedPnl = pnl(position.side, position.entryPrice, mark, position.quantity);
+            BigDecimal margin = position.margin();
+            list.add(Position.builder()
+                    .symbol(position.symbol)
+                    .side(position.side)
+                    .quantity(position.quantity)
+                    .available(position.quantity)
+                    .avgPrice(position.entryPrice)
+                    .currentPrice(mark)
+                    .unrealizedPnl(unrealizedPnl)
+                    // 盈亏百分比 = 未实现盈亏 / 保证金 × 100（与Binance适配器一致）
+                    .pnlPercentage(margin.compareTo(BigDecimal.ZERO) > 0
+                            ? unrealizedPnl.divide(margin, 8, RoundingMode.HALF_UP).multiply(HUNDRED)
+                            : BigDecimal.ZERO)
+                    .leverage(position.leverage)
+                    .margin(margin)
+                    .build());
+        }
+        return list;
+    }
+
+    private synchronized AccountInfo snapshot() {
+        if (walletBalance == null) {
+            throw new IllegalStateException("模拟交易账户未初始化");
+        }
+        List<Position> list = positionList();
+        BigDecimal unrealizedPnl = BigDecimal.ZERO;
+        BigDecimal usedMargin = BigDecimal.ZERO;
+        for (Position position : list) {
+            unrealizedPnl = unrealizedPnl.add(position.getUnrealizedPnl());
+            usedMargin = usedMargin.add(position.getMargin());
+        }
+        BigDecimal equity = walletBalance.add(unrealizedPnl);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("paper", true);
+        metadata.put("realizedPnl", realizedPnl);
+        metadata.put("totalFees", totalFees);
+        return AccountInfo.builder()
+                .userId(userId)
+                .totalBalance(walletBalance)
+                .availableBalance(equity.subtract(usedMargin))
+                .frozenBalance(usedMargin)
+                .equity(equity)
+                .unrealizedPnl(unrealizedPnl)
+                .positions(list)
+                .timestamp(System.currentTimeMillis())
+                .metadata(metadata)
+                .build();
+    }
+
+    private static BigDecimal pnl(String side, BigDecimal entryPrice, BigDecimal price, BigDecimal quantity) {
+        BigDecimal diff = price.subtract(entryPrice);
+        return "LONG".equals(side) ? diff.multiply(quantity) : diff.negate().multiply(quantity);
+    }
+
+    @Override
+    public Mono<Boolean> cancelOrder(String orderId) {
+        // 市价单立即成交，没有可取消的挂单
+        return Mono.just(false);
+    }
+
+    @Override
+    public synchronized Mono<Order> getOrder(String orderId) {
+        Order order = orders.get(orderId);
+        return order != null ? Mono.just(order) : Mono.empty();
+    }
+
+    @Override
+    public Flux<AccountInfo> subscribeAccountUpdates(String userId) {
+        synchronized (this) {
+            this.userId = userId;
+        }
+        return accountUpdates.asFlux();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> subscribeMarketData(String symbol) {
+        return markPriceHub.markPriceUpdates(ExchangeType.PAPER)
+                .filter(update -> {
+                    MarkPriceTable table = update.table();
+                    return table.updatedSince(table.indexOf(symbol), update.sequence());
+                })
+                .map(update -> {
+                    MarkPriceTable table = update.table();
+                    int index = table.indexOf(symbol);
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("symbol", symbol);
+                    data.put("price", table.price(index));
+                    data.put("timestamp", table.eventTime(index));
+                    return data;
+                });
+    }
+
+    @Override
+    public Mono<Boolean> testConnection() {
+        return Mono.just(true);
+    }
+
+    /**
+     * 模拟持仓
+     */
+    private static final class PaperPosition {
+        private final String symbol;
+        private final String side;
+        private int leverage;
+        private BigDecimal quantity = BigDecimal.ZERO;
+        private BigDecimal entryPrice = BigDecimal.ZERO;
+
+        private PaperPosition(String symbol, String side, int leverage) {
+            this.symbol = symbol;
+            this.side = side;
+            this.leverage = leverage;
+        }
+
+        /**
+         * 占用保证金 = 开仓价值 / 杠杆
+         */
+        private BigDecimal margin() {
+            return entryPrice.multiply(quantity).divide(BigDecimal.valueOf(leverage), 8, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.quant.market;
+
+/**
+ * 深度更新（增量或快照），价格为定点整数（× 10^{@link MarkPriceTable#PRICE_SCALE}），数量为0表示删除该档位
+ *
+ * @param symbol 交易对
+ * @param firstUpdateId 本次更新的第一个updateId（U，快照为lastUpdateId）
+ * @param finalUpdateId 本次更新的最后一个updateId（u，快照为lastUpdateId）
+ * @param previousFinalUpdateId 上一次更新的最后一个updateId（pu，快照为-1）
+ * @param eventTime 事件时间（毫秒）
+ * @param bidPrices 买单价格
+ * @param bidQuantities 买单数量
+ * @param askPrices 卖单价格
+ * @param askQuantities 卖单数量
+ */
+public record DepthUpdate(String symbol, long firstUpdateId, long finalUpdateId, long previousFinalUpdateId,
+                          long eventTime, long[] bidPrices, double[] bidQuantities,
+                          long[] askPrices, double[] askQuantities) {
+}
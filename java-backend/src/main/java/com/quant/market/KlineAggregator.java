@@ -0,0 +1,289 @@
+package com.quant.market;
+
+import com.quant.market.indicator.Indicator;
+import com.quant.market.indicator.IndicatorSet;
+import com.quant.model.ExchangeType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多周期K线聚合器（1s/1m/5m/1h）
+ * 由共享的标记价格流和成交流实时生成K线，不调用REST K线接口；
+ * 只聚合策略用到的交易对（第一次构建策略请求时开始跟踪），每个周期一个固定容量的环形数组
+ *
+ * 数据来源：优先使用成交价和成交量；某个周期内超过一根K线的时间没有收到成交时
+ * （未订阅成交流、交易对不活跃或成交流断开），该周期改用标记价格（成交量为0），收到成交后自动切回
+ *
+ * 技术指标：在每根K线收盘时增量更新（见 {@link Indicator}），按交易对+周期+指标定义共享，
+ * 同一交易对的所有用户读取同一份结果；新订阅的指标用已有的历史K线预热
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KlineAggregator {
+
+    private final MarkPriceHub markPriceHub;
+
+    @Value("${market.kline.enabled:false}")
+    private boolean enabled;
+
+    // 每个周期保留的K线数量
+    @Value("${market.kline.capacity:500}")
+    private int capacity;
+
+    // 是否订阅成交流（提供成交量和更细的价格变化）
+    @Value("${market.kline.trade-stream-enabled:false}")
+    private boolean tradeStreamEnabled;
+
+    // 开始跟踪交易对时默认订阅的指标（所有周期）
+    @Value("${market.kline.indicators:sma:5,sma:20,ema:20,rsi:14,atr:14,boll:20:2,vwap}")
+    private List<String> defaultIndicators;
+
+    private final Map<String, SymbolKlines> tracked = new ConcurrentHashMap<>();
+
+    private Disposable markPriceSubscription;
+    private Disposable tradeSubscription;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("K线聚合已关闭");
+            return;
+        }
+        markPriceSubscription = markPriceHub.markPriceUpdates(ExchangeType.BINANCE)
+                .subscribe(this::onMarkPrices,
+                        error -> log.error("K线聚合订阅标记价格失败: {}", error.getMessage()));
+        if (tradeStreamEnabled) {
+            tradeSubscription = markPriceHub.tradeUpdates(ExchangeType.BINANCE)
+                    .subscribe(this::onTrade,
+                            error -> log.error("K线聚合订阅成交流失败: {}", error.getMessage()));
+        }
+        log.info("K线聚合已启动: capacity={}, tradeStream={}", capacity, tradeStreamEnabled);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始跟踪交易对（已跟踪时直接返回）
+     */
+    public void track(String symbol) {
+        if (!enabled || symbol == null || tracked.containsKey(symbol)) {
+            return;
+        }
+        SymbolKlines klines = new SymbolKlines(capacity);
+        if (tracked.putIfAbsent(symbol, klines) == null) {
+            log.info("开始聚合K线: symbol={}", symbol);
+            for (String spec : defaultIndicators) {
+                for (KlineInterval interval : KlineInterval.values()) {
+                    subscribeIndicator(klines, interval, spec);
+                }
+            }
+            if (tradeStreamEnabled) {
+                markPriceHub.subscribeTrades(ExchangeType.BINANCE, symbol);
+            }
+        }
+    }
+
+    /**
+     * 最近n根K线的收盘价（从旧到新，未跟踪时返回空列表）
+     */
+    public List<Double> closes(String symbol, KlineInterval interval, int n) {
+        SymbolKlines klines = tracked.get(symbol);
+        if (klines == null) {
+            return List.of();
+        }
+        synchronized (klines) {
+            return klines.series[interval.ordinal()].lastCloses(n);
+        }
+    }
+
+    /**
+     * 最近n根K线（按周期代码分组，每个周期按列输出 time/open/high/low/close/volume）
+     */
+    public Map<String, Object> bars(String symbol, List<KlineInterval> intervals, int n) {
+        SymbolKlines klines = tracked.get(symbol);
+        Map<String, Object> result = new HashMap<>();
+        if (klines == null) {
+            return result;
+        }
+        synchronized (klines) {
+            for (KlineInterval interval : intervals) {
+                result.put(interval.getCode(), klines.series[interval.ordinal()].lastBars(n));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 当前K线的成交量（没有成交数据时返回null）
+     */
+    public Double lastVolume(String symbol, KlineInterval interval) {
+        SymbolKlines klines = tracked.get(symbol);
+        if (klines == null || klines.lastTradeAt == 0) {
+            return null;
+        }
+        synchronized (klines) {
+            return klines.series[interval.ordinal()].lastVolume();
+        }
+    }
+
+    /**
+     * 订阅技术指标（交易对未跟踪时先开始跟踪；同一指标只计算一份）
+     *
+     * @param spec 指标定义，如 ema:50、boll:20:2
+     * @return 指标输出名称，定义无效时返回null
+     */
+    public String subscribeIndicator(String symbol, KlineInterval interval, String spec) {
+        track(symbol);
+        SymbolKlines klines = tracked.get(symbol);
+        return klines != null ? subscribeIndicator(klines, interval, spec) : null;
+    }
+
+    private String subscribeIndicator(SymbolKlines klines, KlineInterval interval, String spec) {
+        Indicator indicator;
+        try {
+            indicator = Indicator.parse(spec);
+        } catch (IllegalArgumentException e) {
+            log.warn("忽略无效的指标定义: {}", e.getMessage());
+            return null;
+        }
+        synchronized (klines) {
+            int i = interval.ordinal();
+            return klines.indicators[i].add(indicator, klines.series[i]).getName();
+        }
+    }
+
+    /**
+     * 已收盘K线上的指标当前值（按周期代码分组，未就绪的指标不输出）
+     */
+    public Map<String, Object> indicators(String symbol, List<KlineInterval> intervals) {
+        SymbolKlines klines = tracked.get(symbol);
+        Map<String, Object> result = new HashMap<>();
+        if (klines == null) {
+            return result;
+        }
+        synchronized (klines) {
+            for (KlineInterval interval : intervals) {
+                Map<String, Object> values = new HashMap<>();
+                klines.indicators[interval.ordinal()].writeTo(values);
+                result.put(interval.getCode(), values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 运行状态（跟踪的交易对数量、各交易对的数据来源）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        List<String> tradeFed = new ArrayList<>();
+        int indicatorCount = 0;
+        for (Map.Entry<String, SymbolKlines> entry : tracked.entrySet()) {
+            SymbolKlines klines = entry.getValue();
+            if (klines.lastTradeAt != 0) {
+                tradeFed.add(entry.getKey());
+            }
+            synchronized (klines) {
+                for (IndicatorSet set : klines.indicators) {
+                    indicatorCount += set.size();
+                }
+            }
+        }
+        stats.put("enabled", enabled);
+        stats.put("trackedSymbols", tracked.size());
+        stats.put("tradeFedSymbols", tradeFed);
+        stats.put("capacity", capacity);
+        stats.put("indicators", indicatorCount);
+        return stats;
+    }
+
+    private void onMarkPrices(MarkPriceUpdate update) {
+        MarkPriceTable table = update.table();
+        tracked.forEach((symbol, klines) -> {
+            if (klines.priceIndex < 0) {
+                klines.priceIndex = table.indexOf(symbol);
+            }
+            int index = klines.priceIndex;
+            if (!table.updatedSince(index, update.sequence())) {
+                return;
+            }
+            long eventTime = table.eventTime(index);
+            klines.updateFromMarkPrice(eventTime > 0 ? eventTime : System.currentTimeMillis(), table.price(index));
+        });
+    }
+
+    private void onTrade(TradeTick tick) {
+        SymbolKlines klines = tracked.get(tick.symbol());
+        if (klines == null) {
+            return;
+        }
+        klines.updateFromTrade(tick.timeMs(), tick.price(), tick.quantity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (markPriceSubscription != null) {
+            markPriceSubscription.dispose();
+        }
+        if (tradeSubscription != null) {
+            tradeSubscription.dispose();
+        }
+    }
+
+    /**
+     * 单个交易对的全部周期
+     */
+    private static final class SymbolKlines {
+        private final KlineSeries[] series;
+        private final IndicatorSet[] indicators;
+        // 在标记价格表中的下标（缓存）
+        private int priceIndex = -1;
+        // 最后一笔成交的时间（毫秒，0表示没有收到过成交）
+        private volatile long lastTradeAt;
+
+        private SymbolKlines(int capacity) {
+            KlineInterval[] intervals = KlineInterval.values();
+            series = new KlineSeries[intervals.length];
+            indicators = new IndicatorSet[intervals.length];
+            for (KlineInterval interval : intervals) {
+                int i = interval.ordinal();
+                series[i] = new KlineSeries(interval, capacity);
+                indicators[i] = new IndicatorSet();
+                series[i].setListener(indicators[i]);
+            }
+        }
+
+        private synchronized void updateFromTrade(long timeMs, double price, double quantity) {
+            lastTradeAt = Math.max(lastTradeAt, timeMs);
+            for (KlineSeries s : series) {
+                s.update(timeMs, price, quantity);
+            }
+        }
+
+        /**
+         * 标记价格只更新最近一根K线时间内没有成交的周期
+         */
+        private synchronized void updateFromMarkPrice(long timeMs, double price) {
+            long sinceTrade = timeMs - lastTradeAt;
+            for (KlineSeries s : series) {
+                if (lastTradeAt == 0 || sinceTrade > s.getInterval().getMillis()) {
+                    s.update(timeMs, price, 0.0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.quant.market;
+
+/**
+ * K线周期
+ */
+public enum KlineInterval {
+    S1("1s", 1_000L),
+    M1("1m", 60_000L),
+    M5("5m", 300_000L),
+    H1("1h", 3_600_000L);
+
+    private final String code;
+    private final long millis;
+
+    KlineInterval(String code, long millis) {
+        this.code = code;
+        this.millis = millis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * 根据代码解析周期（如 "1m"），无法识别时返回null
+     */
+    public static KlineInterval fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        String normalized = code.trim();
+        for (KlineInterval interval : values()) {
+            if (interval.code.equalsIgnoreCase(normalized)) {
+                return interval;
+            }
+        }
+        return null;
+    }
+}
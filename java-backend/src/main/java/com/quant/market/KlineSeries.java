@@ -0,0 +1,181 @@
+package com.quant.market;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个交易对、单个周期的K线序列
+ * 使用固定容量的基本类型环形数组保存，写入时原地更新当前K线，跨周期时覆盖最旧的一根；
+ * 非线程安全，由调用方同步
+ */
+public final class KlineSeries {
+
+    /**
+     * K线收盘回调（上一根K线在新K线开始时收盘）
+     */
+    public interface BarListener {
+        void onBarClosed(long openTime, double open, double high, double low, double close, double volume);
+    }
+
+    private final KlineInterval interval;
+    private final int capacity;
+
+    private final long[] openTimes;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final double[] volumes;
+
+    // 最新一根K线的位置
+    private int head = -1;
+    private int count;
+
+    private BarListener listener;
+
+    public KlineSeries(KlineInterval interval, int capacity) {
+        this.interval = interval;
+        this.capacity = capacity;
+        this.openTimes = new long[capacity];
+        this.opens = new double[capacity];
+        this.highs = new double[capacity];
+        this.lows = new double[capacity];
+        this.closes = new double[capacity];
+        this.volumes = new double[capacity];
+    }
+
+    /**
+     * 写入一笔价格（成交或标记价格）
+     *
+     * @param timeMs 事件时间（毫秒）
+     * @param price 价格
+     * @param quantity 成交量（标记价格为0）
+     */
+    public void update(long timeMs, double price, double quantity) {
+        long openTime = timeMs - Math.floorMod(timeMs, interval.getMillis());
+        if (count == 0) {
+            newBar(openTime, price);
+        } else {
+            long current = openTimes[head];
+            if (openTime < current) {
+                // 迟到的数据计入当前K线的成交量，不改变价格
+                volumes[head] += quantity;
+                return;
+            }
+            if (openTime > current) {
+                // 中间没有数据的周期用上一根收盘价补齐（成交量为0）
+                long gaps = Math.min((openTime - current) / interval.getMillis() - 1, capacity);
+                double previousClose = closes[head];
+                for (long i = gaps; i > 0; i--) {
+                    newBar(openTime - i * interval.getMillis(), previousClose);
+                }
+                newBar(openTime, price);
+            }
+        }
+        if (price > highs[head]) {
+            highs[head] = price;
+        }
+        if (price < lows[head]) {
+            lows[head] = price;
+        }
+        closes[head] = price;
+        volumes[head] += quantity;
+    }
+
+    public void setListener(BarListener listener) {
+        this.listener = listener;
+    }
+
+    private void newBar(long openTime, double openPrice) {
+        if (count > 0 && listener != null) {
+            listener.onBarClosed(openTimes[head], opens[head], highs[head], lows[head], closes[head], volumes[head]);
+        }
+        head = head + 1 == capacity ? 0 : head + 1;
+        if (count < capacity) {
+            count++;
+        }
+        openTimes[head] = openTime;
+        opens[head] = openPrice;
+        highs[head] = openPrice;
+        lows[head] = openPrice;
+        closes[head] = openPrice;
+        volumes[head] = 0.0;
+    }
+
+    public KlineInterval getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 最新一根K线的成交量（没有K线时返回0）
+     */
+    public double lastVolume() {
+        return count > 0 ? volumes[head] : 0.0;
+    }
+
+    /**
+     * 最近n根K线的收盘价（从旧到新）
+     */
+    public List<Double> lastCloses(int n) {
+        int size = Math.min(n, count);
+        List<Double> result = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            result.add(closes[position(i)]);
+        }
+        return result;
+    }
+
+    /**
+     * 最近n根K线（从旧到新，按列输出：time/open/high/low/close/volume）
+     */
+    public Map<String, Object> lastBars(int n) {
+        int size = Math.min(n, count);
+        List<Long> time = new ArrayList<>(size);
+        List<Double> open = new ArrayList<>(size);
+        List<Double> high = new ArrayList<>(size);
+        List<Double> low = new ArrayList<>(size);
+        List<Double> close = new ArrayList<>(size);
+        List<Double> volume = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            int p = position(i);
+            time.add(openTimes[p]);
+            open.add(opens[p]);
+            high.add(highs[p]);
+            low.add(lows[p]);
+            close.add(closes[p]);
+            volume.add(volumes[p]);
+        }
+        Map<String, Object> bars = new HashMap<>();
+        bars.put("time", time);
+        bars.put("open", open);
+        bars.put("high", high);
+        bars.put("low", low);
+        bars.put("close", close);
+        bars.put("volume", volume);
+        return bars;
+    }
+
+    /**
+     * 按时间顺序回放已收盘的K线（不含当前K线）
+     */
+    public void replayClosed(BarListener target) {
+        for (int i = count - 1; i >= 1; i--) {
+            int p = position(i);
+            target.onBarClosed(openTimes[p], opens[p], highs[p], lows[p], closes[p], volumes[p]);
+        }
+    }
+
+    /**
+     * 倒数第ago根K线在数组中的位置（0表示最新一根）
+     */
+    private int position(int ago) {
+        int p = head - ago;
+        return p < 0 ? p + capacity : p;
+    }
+}
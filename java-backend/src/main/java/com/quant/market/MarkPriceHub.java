@@ -0,0 +1,220 @@
+package com.quant.market;
+
+import com.quant.config.ProxyConfig;
+import com.quant.exchange.BinanceAggTradeClient;
+import com.quant.exchange.BinanceFuturesWebSocketClient;
+import com.quant.model.ExchangeType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 进程级标记价格中心
+ * 每个交易所只建立一条全市场标记价格连接、只维护一张价格表，所有用户共享；
+ * 适配器、AccountService、交易引擎和行情触发器都从这里读取价格，
+ * 内存和CPU开销不随用户数增长
+ *
+ * 目前只有Binance提供全市场标记价格流（!markPrice@arr@1s），其他交易所返回null/空流；
+ * 模拟交易（PAPER）使用Binance的行情；
+ * 归集成交流（<symbol>@aggTrade）同样只建立一条连接，按需订阅交易对
+ */
+@Slf4j
+@Component
+public class MarkPriceHub {
+
+    // 首次启动时等待第一条价格数据的时间（秒）
+    private static final int FIRST_PRICE_WAIT_SECONDS = 5;
+
+    private final ProxyConfig proxyConfig;
+    // 创建全市场标记价格连接（参数为代理，可能为null）
+    private final Function<Proxy, BinanceFuturesWebSocketClient> binanceFeedFactory;
+
+    private volatile BinanceFuturesWebSocketClient binanceFeed;
+    private Disposable binanceSubscription;
+
+    // 对外的价格更新流：由中心自己持有订阅，订阅者全部取消后也不会结束
+    private final Sinks.Many<MarkPriceUpdate> binanceUpdates = Sinks.many().multicast().directBestEffort();
+
+    private volatile BinanceAggTradeClient binanceTradeFeed;
+    private final Sinks.Many<TradeTick> binanceTrades = Sinks.many().multicast().directBestEffort();
+
+    @Autowired
+    public MarkPriceHub(ProxyConfig proxyConfig) {
+        this(proxyConfig, BinanceFuturesWebSocketClient::new);
+    }
+
+    /**
+     * @param binanceFeedFactory 创建标记价格连接（测试中替换为不连接网络的实现）
+     */
+    MarkPriceHub(ProxyConfig proxyConfig, Function<Proxy, BinanceFuturesWebSocketClient> binanceFeedFactory) {
+        this.proxyConfig = proxyConfig;
+        this.binanceFeedFactory = binanceFeedFactory;
+    }
+
+    /**
+     * 确保交易所的标记价格连接已建立（只有第一次调用会建立连接并等待第一条价格数据）
+     */
+    public void ensureStarted(ExchangeType exchangeType) {
+        if (priceSource(exchangeType) != ExchangeType.BINANCE || binanceFeed != null) {
+            return;
+        }
+        BinanceFuturesWebSocketClient feed;
+        synchronized (this) {
+            if (binanceFeed != null) {
+                return;
+            }
+            feed = binanceFeedFactory.apply(createProxy());
+            binanceSubscription = feed.subscribeAllMarkPrices()
+                    .subscribe(
+                            update -> binanceUpdates.tryEmitNext(update),
+                            error -> log.error("Binance标记价格流异常: {}", error.getMessage())
+                    );
+            binanceFeed = feed;
+            log.info("已建立共享的Binance标记价格连接");
+        }
+        // 等待第一条价格数据到达
+        if (feed.waitForPriceData(FIRST_PRICE_WAIT_SECONDS)) {
+            log.info("WebSocket价格数据已就绪");
+        } else {
+            log.warn("等待WebSocket价格数据超时，可能导致首次交易获取价格失败");
+        }
+    }
+
+    /**
+     * 获取标记价格（连接未建立或没有该交易对时返回null）
+     */
+    public BigDecimal getMarkPrice(ExchangeType exchangeType, String symbol) {
+        BinanceFuturesWebSocketClient feed = binanceFeed;
+        if (priceSource(exchangeType) != ExchangeType.BINANCE || feed == null || symbol == null) {
+            return null;
+        }
+        return feed.getMarkPrice(symbol);
+    }
+
+    /**
+     * 价格表（按交易对下标无锁读取定点价格；连接未建立或交易所不支持时返回null）
+     */
+    public MarkPriceTable getTable(ExchangeType exchangeType) {
+        BinanceFuturesWebSocketClient feed = binanceFeed;
+        if (priceSource(exchangeType) != ExchangeType.BINANCE || feed == null) {
+            return null;
+        }
+        return feed.getMarkPriceTable();
+    }
+
+    /**
+     * 标记价格更新流（每条通知对应一次推送，价格从通知携带的价格表读取）
+     */
+    public Flux<MarkPriceUpdate> markPriceUpdates(ExchangeType exchangeType) {
+        if (priceSource(exchangeType) != ExchangeType.BINANCE) {
+            return Flux.empty();
+        }
+        return binanceUpdates.asFlux();
+    }
+
+    /**
+     * 订阅交易对的成交流（同一交易所只建立一条连接，已订阅的交易对不会重复订阅）
+     */
+    public void subscribeTrades(ExchangeType exchangeType, String symbol) {
+        if (priceSource(exchangeType) != ExchangeType.BINANCE || symbol == null) {
+            return;
+        }
+        BinanceAggTradeClient feed = binanceTradeFeed;
+        if (feed == null) {
+            synchronized (this) {
+                feed = binanceTradeFeed;
+                if (feed == null) {
+                    feed = new BinanceAggTradeClient(createProxy(), tick -> binanceTrades.tryEmitNext(tick));
+                    binanceTradeFeed = feed;
+                    log.info("已建立共享的Binance归集成交连接");
+                }
+            }
+        }
+        feed.subscribe(symbol);
+    }
+
+    /**
+     * 成交流（只包含通过 {@link #subscribeTrades} 订阅过的交易对）
+     */
+    public Flux<TradeTick> tradeUpdates(ExchangeType exchangeType) {
+        if (priceSource(exchangeType) != ExchangeType.BINANCE) {
+            return Flux.empty();
+        }
+        return binanceTrades.asFlux();
+    }
+
+    /**
+     * 运行状态（连接数、价格表大小、订阅者数量）
+     */
+    public Map<String, Object> getStats() {
+        BinanceFuturesWebSocketClient feed = binanceFeed;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("binanceConnected", feed != null);
+        stats.put("binanceSymbols", feed != null ? feed.getMarkPriceCount() : 0);
+        stats.put("binanceSequence", feed != null ? feed.getMarkPriceTable().sequence() : 0);
+        stats.put("binanceSubscribers", binanceUpdates.currentSubscriberCount());
+        BinanceAggTradeClient tradeFeed = binanceTradeFeed;
+        stats.put("binanceTradeSymbols", tradeFeed != null ? tradeFeed.getSymbolCount() : 0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (binanceSubscription != null) {
+            binanceSubscription.dispose();
+        }
+        if (binanceFeed != null) {
+            binanceFeed.close();
+        }
+        if (binanceTradeFeed != null) {
+            binanceTradeFeed.close();
+        }
+        binanceUpdates.tryEmitComplete();
+        binanceTrades.tryEmitComplete();
+    }
+
+    /**
+     * 行情来源交易所（模拟交易使用Binance的行情）
+     */
+    private static ExchangeType priceSource(ExchangeType exchangeType) {
+        return exchangeType == ExchangeType.PAPER ? ExchangeType.BINANCE : exchangeType;
+    }
+
+    /**
+     * 创建代理对象
+     */
+    private Proxy createProxy() {
+        if (proxyConfig == null || !proxyConfig.isEnabled()) {
+            return null;
+        }
+
+        String proxyUrl = proxyConfig.getProxyUrl();
+        if (proxyUrl == null || proxyUrl.isEmpty()) {
+            return null;
+        }
+
+        try {
+            URI uri = URI.create(proxyUrl);
+            String host = uri.getHost();
+            int port = uri.getPort() > 0 ? uri.getPort() : 10809;
+
+            log.info("标记价格连接使用代理: {}:{}", host, port);
+            return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(host, port));
+        } catch (Exception e) {
+            log.error("创建代理失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.quant.market;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 按交易对下标存储的标记价格表
+ * 交易对名称在第一次出现时分配连续的整数下标（只创建一次String），价格以定点整数保存在基本类型数组中
+ * （价格 × 10^{@value #PRICE_SCALE}），容量在创建时一次性分配，推送时原地更新
+ *
+ * 线程模型：单写（行情连接线程）多读，读取不加锁、不复制：
+ * - 每个槽位独立发布：写线程以release语义写入，读线程以acquire语义读取，单个价格不会读到中间状态
+ * - 新交易对先写入名称和数据、最后写入哈希槽位，读线程查到下标时该交易对的数据已经可见
+ * - 写线程处理完一条消息后递增 sequence（volatile），可用于判断某个交易对是否在某条消息中更新过
+ * 同一交易对的价格和事件时间分别发布，读取两者时可能来自相邻的两条消息
+ */
+public final class MarkPriceTable {
+
+    /**
+     * 价格定点小数位数（Binance标记价格最多8位小数）
+     */
+    public static final int PRICE_SCALE = 8;
+
+    private static final double PRICE_UNIT = 1e8;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle STRINGS = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private final int capacity;
+
+    // 开放寻址哈希：槽位保存 下标+1，0表示空槽
+    private final int[] slots;
+    private final int mask;
+
+    private final String[] symbols;
+    private final int[] hashes;
+    private final long[] scaledPrices;
+    private final long[] eventTimes;
+    // 最后一次更新该交易对的消息序号
+    private final long[] updatedSeq;
+
+    private volatile int size;
+    private volatile long sequence;
+
+    public MarkPriceTable(int capacity) {
+        this.capacity = capacity;
+        int slotCount = Integer.highestOneBit(Math.max(capacity, 16) * 2 - 1) << 1;
+        this.slots = new int[slotCount];
+        this.mask = slotCount - 1;
+        this.symbols = new String[capacity];
+        this.hashes = new int[capacity];
+        this.scaledPrices = new long[capacity];
+        this.eventTimes = new long[capacity];
+        this.updatedSeq = new long[capacity];
+    }
+
+    /**
+     * 交易对下标（不存在时返回-1），下标分配后不会改变，调用方可以缓存
+     */
+    public int indexOf(String symbol) {
+        if (symbol == null) {
+            return -1;
+        }
+        int hash = hash(symbol);
+        for (int pos = hash & mask; ; pos = (pos + 1) & mask) {
+            int slot = (int) INTS.getAcquire(slots, pos);
+            if (slot == 0) {
+                return -1;
+            }
+            int index = slot - 1;
+            if (hashes[index] == hash && symbol.equals(symbols[index])) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 标记价格（没有该交易对时返回null）
+     */
+    public BigDecimal getMarkPrice(String symbol) {
+        int index = indexOf(symbol);
+        if (index < 0) {
+            return null;
+        }
+        long scaled = scaledPrice(index);
+        return scaled > 0 ? BigDecimal.valueOf(scaled, PRICE_SCALE) : null;
+    }
+
+    /**
+     * 定点价格（价格 × 10^8，没有价格时为0）
+     */
+    public long scaledPrice(int index) {
+        return (long) LONGS.getAcquire(scaledPrices, index);
+    }
+
+    public double price(int index) {
+        return scaledPrice(index) / PRICE_UNIT;
+    }
+
+    public long eventTime(int index) {
+        return (long) LONGS.getAcquire(eventTimes, index);
+    }
+
+    public String symbol(int index) {
+        return (String) STRINGS.getAcquire(symbols, index);
+    }
+
+    /**
+     * 交易对是否在指定序号的消息（或之后的消息）中更新过
+     */
+    public boolean updatedSince(int index, long seq) {
+        return index >= 0 && (long) LONGS.getAcquire(updatedSeq, index) >= seq;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * 按下标遍历当前所有价格（直接读取数组，不复制）
+     */
+    public void forEach(PriceVisitor visitor) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            long scaled = scaledPrice(i);
+            if (scaled > 0) {
+                visitor.visit(i, symbols[i], scaled);
+            }
+        }
+    }
+
+    /**
+     * 只读的Map视图（不复制价格表，读取时直接访问数组；BigDecimal在读取时创建）
+     * 视图是实时的而不是快照：之后写入的价格和新增的交易对在已返回的视图中立即可见，
+     * 两次读取同一交易对可能得到不同的价格；迭代时只包含开始迭代时已有的交易对。
+     * 需要一致的快照时由调用方自行复制（如 {@code new HashMap<>(table.asMap())}）
+     */
+    public Map<String, BigDecimal> asMap() {
+        return new MapView();
+    }
+
+    /**
+     * 写入一个交易对的价格（只能由写线程调用），交易对名称以字符区间传入，已存在时不创建String
+     *
+     * @return 交易对下标，表已满时返回-1
+     */
+    public int put(char[] chars, int offset, int length, long scaledPrice, long eventTime) {
+        int hash = hash(chars, offset, length);
+        int pos = hash & mask;
+        for (; ; pos = (pos + 1) & mask) {
+            int slot = slots[pos];
+            if (slot == 0) {
+                break;
+            }
+            int index = slot - 1;
+            if (hashes[index] == hash && sameChars(symbols[index], chars, offset, length)) {
+                write(index, scaledPrice, eventTime);
+                return index;
+            }
+        }
+        int index = size;
+        if (index >= capacity) {
+            return -1;
+        }
+        hashes[index] = hash;
+        STRINGS.setRelease(symbols, index, new String(chars, offset, length));
+        write(index, scaledPrice, eventTime);
+        // 最后写入槽位：读线程查到下标时名称和价格已经可见
+        INTS.setRelease(slots, pos, index + 1);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * 一条消息处理完成，发布本次更新
+     */
+    public void commit() {
+        sequence = sequence + 1;
+    }
+
+    private void write(int index, long scaledPrice, long eventTime) {
+        LONGS.setRelease(eventTimes, index, eventTime);
+        LONGS.setRelease(updatedSeq, index, sequence + 1);
+        LONGS.setRelease(scaledPrices, index, scaledPrice);
+    }
+
+    private static boolean sameChars(String symbol, char[] chars, int offset, int length) {
+        if (symbol.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String symbol) {
+        int h = 0;
+        for (int i = 0; i < symbol.length(); i++) {
+            h = 31 * h + symbol.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 价格遍历回调
+     */
+    @FunctionalInterface
+    public interface PriceVisitor {
+        void visit(int index, String symbol, long scaledPrice);
+    }
+
+    private final class MapView extends AbstractMap<String, BigDecimal> {
+
+        @Override
+        public BigDecimal get(Object key) {
+            return key instanceof String symbol ? getMarkPrice(symbol) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return MarkPriceTable.this.size;
+        }
+
+        @Override
+        public Set<Entry<String, BigDecimal>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, BigDecimal>> iterator() {
+                    int n = MarkPriceTable.this.size;
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < n;
+                        }
+
+                        @Override
+                        public Entry<String, BigDecimal> next() {
+                            if (next >= n) {
+                                throw new NoSuchElementException();
+                            }
+                            int index = next++;
+                            return new SimpleImmutableEntry<>(symbols[index],
+                                    BigDecimal.valueOf(scaledPrice(index), PRICE_SCALE));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return MarkPriceTable.this.size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.quant.market;
+
+import java.math.BigDecimal;
+
+/**
+ * 一条标记价格推送的通知
+ * 不携带价格副本，价格直接从共享的 {@link MarkPriceTable} 读取
+ *
+ * @param table 价格表
+ * @param sequence 本条消息的序号
+ * @param updatedCount 本条消息更新的交易对数量
+ */
+public record MarkPriceUpdate(MarkPriceTable table, long sequence, int updatedCount) {
+
+    /**
+     * 交易对是否在本条消息（或之后的消息）中更新过
+     */
+    public boolean contains(String symbol) {
+        return table.updatedSince(table.indexOf(symbol), sequence);
+    }
+
+    /**
+     * 交易对的最新标记价格（没有该交易对时返回null）
+     */
+    public BigDecimal getMarkPrice(String symbol) {
+        return table.getMarkPrice(symbol);
+    }
+}
@@ -0,0 +1,228 @@
+package com.quant.market;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个交易对的L2订单簿
+ * 买卖两侧各用一组有序的基本类型数组保存（价格为定点整数，买单降序、卖单升序），
+ * 档位更新用二分查找定位，读取最优价为O(1)；所有方法同步，由深度连接线程写入、策略线程读取
+ */
+public final class OrderBook {
+
+    private static final double PRICE_FACTOR = Math.pow(10, MarkPriceTable.PRICE_SCALE);
+
+    private final String symbol;
+    private final Side bids = new Side(true);
+    private final Side asks = new Side(false);
+
+    private long lastUpdateId;
+    private long eventTime;
+
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public synchronized long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public synchronized long getEventTime() {
+        return eventTime;
+    }
+
+    public synchronized void clear() {
+        bids.clear();
+        asks.clear();
+        lastUpdateId = 0;
+    }
+
+    /**
+     * 用快照替换全部档位
+     */
+    public synchronized void applySnapshot(DepthUpdate snapshot) {
+        bids.clear();
+        asks.clear();
+        apply(snapshot);
+    }
+
+    /**
+     * 应用增量更新（数量为0的档位删除）
+     */
+    public synchronized void apply(DepthUpdate update) {
+        long[] prices = update.bidPrices();
+        double[] quantities = update.bidQuantities();
+        for (int i = 0; i < prices.length; i++) {
+            bids.set(prices[i], quantities[i]);
+        }
+        prices = update.askPrices();
+        quantities = update.askQuantities();
+        for (int i = 0; i < prices.length; i++) {
+            asks.set(prices[i], quantities[i]);
+        }
+        lastUpdateId = update.finalUpdateId();
+        eventTime = update.eventTime();
+    }
+
+    public synchronized int bidLevels() {
+        return bids.count;
+    }
+
+    public synchronized int askLevels() {
+        return asks.count;
+    }
+
+    /**
+     * 买一价（没有买单时返回NaN）
+     */
+    public synchronized double bestBid() {
+        return bids.count > 0 ? bids.prices[0] / PRICE_FACTOR : Double.NaN;
+    }
+
+    /**
+     * 卖一价（没有卖单时返回NaN）
+     */
+    public synchronized double bestAsk() {
+        return asks.count > 0 ? asks.prices[0] / PRICE_FACTOR : Double.NaN;
+    }
+
+    /**
+     * 前levels档的买卖量失衡度：(买量 - 卖量) / (买量 + 卖量)，范围[-1, 1]，没有挂单时返回0
+     */
+    public synchronized double imbalance(int levels) {
+        double bidQuantity = bids.sum(levels);
+        double askQuantity = asks.sum(levels);
+        double total = bidQuantity + askQuantity;
+        return total > 0 ? (bidQuantity - askQuantity) / total : 0.0;
+    }
+
+    /**
+     * 预估市价单的成交均价和滑点（买单吃卖盘，卖单吃买盘）
+     *
+     * @return 对手方没有挂单时返回null
+     */
+    public synchronized SlippageEstimate estimate(boolean buy, double quantity) {
+        Side side = buy ? asks : bids;
+        if (side.count == 0 || !(quantity > 0)) {
+            return null;
+        }
+        double best = side.prices[0] / PRICE_FACTOR;
+        double remaining = quantity;
+        double notional = 0.0;
+        for (int i = 0; i < side.count && remaining > 0; i++) {
+            double fill = Math.min(remaining, side.quantities[i]);
+            notional += fill * (side.prices[i] / PRICE_FACTOR);
+            remaining -= fill;
+        }
+        double filled = quantity - remaining;
+        double average = notional / filled;
+        double slippageBps = (buy ? average - best : best - average) / best * 10_000;
+        return new SlippageEstimate(best, average, filled, slippageBps);
+    }
+
+    /**
+     * 盘口特征（买一/卖一价和量、价差、中间价、前levels档深度和失衡度）
+     */
+    public synchronized Map<String, Object> features(int levels) {
+        Map<String, Object> features = new HashMap<>();
+        if (bids.count == 0 || asks.count == 0) {
+            return features;
+        }
+        double bestBid = bids.prices[0] / PRICE_FACTOR;
+        double bestAsk = asks.prices[0] / PRICE_FACTOR;
+        double bidDepth = bids.sum(levels);
+        double askDepth = asks.sum(levels);
+        features.put("bestBid", bestBid);
+        features.put("bestAsk", bestAsk);
+        features.put("bestBidQty", bids.quantities[0]);
+        features.put("bestAskQty", asks.quantities[0]);
+        features.put("mid", (bestBid + bestAsk) / 2);
+        features.put("spread", bestAsk - bestBid);
+        features.put("bidDepth", bidDepth);
+        features.put("askDepth", askDepth);
+        features.put("imbalance", bidDepth + askDepth > 0 ? (bidDepth - askDepth) / (bidDepth + askDepth) : 0.0);
+        features.put("levels", levels);
+        features.put("updateId", lastUpdateId);
+        features.put("eventTime", eventTime);
+        return features;
+    }
+
+    /**
+     * 一侧的档位：按价格有序的定点价格数组和数量数组
+     */
+    private static final class Side {
+        private final boolean descending;
+        private long[] prices = new long[256];
+        private double[] quantities = new double[256];
+        private int count;
+
+        private Side(boolean descending) {
+            this.descending = descending;
+        }
+
+        private void clear() {
+            count = 0;
+        }
+
+        private void set(long price, double quantity) {
+            int index = find(price);
+            if (index >= 0) {
+                if (quantity > 0) {
+                    quantities[index] = quantity;
+                } else {
+                    System.arraycopy(prices, index + 1, prices, index, count - index - 1);
+                    System.arraycopy(quantities, index + 1, quantities, index, count - index - 1);
+                    count--;
+                }
+                return;
+            }
+            if (!(quantity > 0)) {
+                return;
+            }
+            int insert = -index - 1;
+            if (count == prices.length) {
+                prices = Arrays.copyOf(prices, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            System.arraycopy(prices, insert, prices, insert + 1, count - insert);
+            System.arraycopy(quantities, insert, quantities, insert + 1, count - insert);
+            prices[insert] = price;
+            quantities[insert] = quantity;
+            count++;
+        }
+
+        /**
+         * 二分查找价格，找到时返回下标，否则返回 -(插入位置) - 1
+         */
+        private int find(long price) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = prices[mid];
+                if (value == price) {
+                    return mid;
+                }
+                if (descending ? value > price : value < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private double sum(int levels) {
+            double sum = 0.0;
+            for (int i = 0, n = Math.min(levels, count); i < n; i++) {
+                sum += quantities[i];
+            }
+            return sum;
+        }
+    }
+}
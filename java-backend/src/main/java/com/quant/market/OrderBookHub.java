@@ -0,0 +1,323 @@
+package com.quant.market;
+
+import com.quant.config.ProxyConfig;
+import com.quant.exchange.BinanceDepthClient;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程级订单簿中心（目前只支持Binance Futures）
+ * 每个交易对维护一份本地L2订单簿，所有用户共享，只跟踪策略用到的交易对：
+ * 1. 先订阅 <symbol>@depth@100ms 增量流并缓存增量
+ * 2. 通过REST获取快照（lastUpdateId），丢弃 u <= lastUpdateId 的缓存增量（已包含在快照中）
+ * 3. 第一条应用的增量必须衔接快照：U <= lastUpdateId + 1 <= u，之后每条增量的 pu 必须等于上一条的 u
+ * 4. 检测到序号断档时清空订单簿并重新获取快照
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderBookHub {
+
+    // 同步前最多缓存的增量条数（超过时丢弃最旧的）
+    private static final int MAX_BUFFERED_UPDATES = 1000;
+
+    // 两次快照请求的最小间隔（毫秒）
+    private static final long SNAPSHOT_MIN_INTERVAL_MS = 1000;
+
+    private final ProxyConfig proxyConfig;
+    private final WebClient webClient;
+
+    @Value("${market.orderbook.enabled:false}")
+    private boolean enabled;
+
+    // 快照档位数（Binance Futures支持 5/10/20/50/100/500/1000）
+    @Value("${market.orderbook.snapshot-limit:1000}")
+    private int snapshotLimit;
+
+    // 计算深度和失衡度时使用的档位数
+    @Value("${market.orderbook.feature-levels:10}")
+    private int featureLevels;
+
+    // 市价单预估滑点上限（基点），超过时拒绝下单；0表示只记录不拦截
+    @Value("${market.orderbook.max-slippage-bps:0}")
+    private double maxSlippageBps;
+
+    private final Map<String, ManagedBook> books = new ConcurrentHashMap<>();
+
+    private volatile BinanceDepthClient depthClient;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getMaxSlippageBps() {
+        return maxSlippageBps;
+    }
+
+    /**
+     * 开始维护交易对的订单簿（已跟踪时直接返回）
+     */
+    public void track(String symbol) {
+        if (!enabled || symbol == null || books.containsKey(symbol)) {
+            return;
+        }
+        ManagedBook managed = new ManagedBook(symbol);
+        if (books.putIfAbsent(symbol, managed) != null) {
+            return;
+        }
+        log.info("开始维护订单簿: symbol={}", symbol);
+        client().subscribe(symbol);
+        requestSnapshot(managed);
+    }
+
+    /**
+     * 已同步的订单簿（未跟踪或正在同步时返回null）
+     */
+    public OrderBook getBook(String symbol) {
+        ManagedBook managed = symbol != null ? books.get(symbol) : null;
+        if (managed == null) {
+            return null;
+        }
+        synchronized (managed) {
+            return managed.synced ? managed.book : null;
+        }
+    }
+
+    /**
+     * 预估市价单滑点（订单簿不可用时返回null）
+     */
+    public SlippageEstimate estimateSlippage(String symbol, boolean buy, double quantity) {
+        OrderBook book = getBook(symbol);
+        return book != null ? book.estimate(buy, quantity) : null;
+    }
+
+    /**
+     * 盘口特征（订单簿不可用时返回空Map）
+     */
+    public Map<String, Object> features(String symbol) {
+        OrderBook book = getBook(symbol);
+        return book != null ? book.features(featureLevels) : Map.of();
+    }
+
+    /**
+     * 运行状态（跟踪的交易对、同步状态、重新同步次数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> symbols = new HashMap<>();
+        books.forEach((symbol, managed) -> {
+            Map<String, Object> state = new HashMap<>();
+            synchronized (managed) {
+                state.put("synced", managed.synced);
+                state.put("resyncs", managed.resyncs);
+                state.put("lastUpdateId", managed.book.getLastUpdateId());
+                state.put("bidLevels", managed.book.bidLevels());
+                state.put("askLevels", managed.book.askLevels());
+            }
+            symbols.put(symbol, state);
+        });
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("books", symbols);
+        return stats;
+    }
+
+    private BinanceDepthClient client() {
+        BinanceDepthClient client = depthClient;
+        if (client == null) {
+            synchronized (this) {
+                client = depthClient;
+                if (client == null) {
+                    client = new BinanceDepthClient(createProxy(), webClient, this::onDepth);
+                    depthClient = client;
+                    log.info("已建立共享的Binance深度连接");
+                }
+            }
+        }
+        return client;
+    }
+
+    private void onDepth(DepthUpdate update) {
+        ManagedBook managed = books.get(update.symbol());
+        if (managed == null) {
+            return;
+        }
+        boolean resync;
+        synchronized (managed) {
+            resync = managed.onDiff(update);
+        }
+        if (resync) {
+            requestSnapshot(managed);
+        }
+    }
+
+    private void requestSnapshot(ManagedBook managed) {
+        long delay;
+        synchronized (managed) {
+            if (managed.snapshotPending) {
+                return;
+            }
+            managed.snapshotPending = true;
+            long now = System.currentTimeMillis();
+            delay = Math.max(0, managed.lastSnapshotRequest + SNAPSHOT_MIN_INTERVAL_MS - now);
+            managed.lastSnapshotRequest = now + delay;
+        }
+        client().fetchSnapshot(managed.symbol, snapshotLimit)
+                .delaySubscription(Duration.ofMillis(delay))
+                .subscribe(snapshot -> {
+                    boolean resync;
+                    synchronized (managed) {
+                        managed.snapshotPending = false;
+                        resync = managed.onSnapshot(snapshot);
+                    }
+                    if (resync) {
+                        requestSnapshot(managed);
+                    } else {
+                        log.info("订单簿已同步: symbol={}, lastUpdateId={}", managed.symbol, snapshot.finalUpdateId());
+                    }
+                }, error -> {
+                    synchronized (managed) {
+                        managed.snapshotPending = false;
+                    }
+                    requestSnapshot(managed);
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (depthClient != null) {
+            depthClient.close();
+        }
+    }
+
+    /**
+     * 创建代理对象
+     */
+    private Proxy createProxy() {
+        if (proxyConfig == null || !proxyConfig.isEnabled()) {
+            return null;
+        }
+
+        String proxyUrl = proxyConfig.getProxyUrl();
+        if (proxyUrl == null || proxyUrl.isEmpty()) {
+            return null;
+        }
+
+        try {
+            URI uri = URI.create(proxyUrl);
+            String host = uri.getHost();
+            int port = uri.getPort() > 0 ? uri.getPort() : 10809;
+
+            log.info("深度连接使用代理: {}:{}", host, port);
+            return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(host, port));
+        } catch (Exception e) {
+            log.error("创建代理失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 单个交易对的订单簿及同步状态（由调用方在实例上同步）
+     */
+    static final class ManagedBook {
+        private final String symbol;
+        private final OrderBook book;
+        private final ArrayDeque<DepthUpdate> buffer = new ArrayDeque<>();
+
+        private boolean synced;
+        // 快照之后还没有应用过增量（第一条增量按 U <= lastUpdateId + 1 <= u 校验）
+        private boolean awaitingFirst;
+        private boolean snapshotPending;
+        private long lastSnapshotRequest;
+        private long resyncs;
+
+        ManagedBook(String symbol) {
+            this.symbol = symbol;
+            this.book = new OrderBook(symbol);
+        }
+
+        /**
+         * 处理增量
+         *
+         * @return 是否需要重新获取快照
+         */
+        boolean onDiff(DepthUpdate update) {
+            if (!synced) {
+                buffer.addLast(update);
+                if (buffer.size() > MAX_BUFFERED_UPDATES) {
+                    buffer.pollFirst();
+                }
+                return false;
+            }
+            long lastUpdateId = book.getLastUpdateId();
+            if (awaitingFirst) {
+                // 已包含在快照中
+                if (update.finalUpdateId() <= lastUpdateId) {
+                    return false;
+                }
+                if (update.firstUpdateId() > lastUpdateId + 1) {
+                    return gap(update, lastUpdateId);
+                }
+                awaitingFirst = false;
+            } else if (update.previousFinalUpdateId() != lastUpdateId) {
+                return gap(update, lastUpdateId);
+            }
+            book.apply(update);
+            return false;
+        }
+
+        /**
+         * 应用快照并回放缓存的增量
+         *
+         * @return 是否需要重新获取快照（快照早于缓存的增量或回放时出现断档）
+         */
+        boolean onSnapshot(DepthUpdate snapshot) {
+            book.applySnapshot(snapshot);
+            synced = true;
+            awaitingFirst = true;
+            while (!buffer.isEmpty()) {
+                if (onDiff(buffer.pollFirst())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isSynced() {
+            return synced;
+        }
+
+        long resyncs() {
+            return resyncs;
+        }
+
+        OrderBook book() {
+            return book;
+        }
+
+        private boolean gap(DepthUpdate update, long lastUpdateId) {
+            log.warn("订单簿序号断档，重新同步: symbol={}, lastUpdateId={}, U={}, u={}, pu={}",
+                    symbol, lastUpdateId, update.firstUpdateId(), update.finalUpdateId(),
+                    update.previousFinalUpdateId());
+            synced = false;
+            awaitingFirst = false;
+            resyncs++;
+            book.clear();
+            // 回放快照时剩余的缓存增量比断档的这条更新，保留给下一次快照使用
+            buffer.addFirst(update);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.quant.market;
+
+/**
+ * 市价单滑点预估（按当前订单簿逐档成交计算）
+ *
+ * @param bestPrice 对手方最优价
+ * @param averagePrice 预估成交均价
+ * @param filledQuantity 订单簿可成交数量（小于下单数量时表示深度不足）
+ * @param slippageBps 成交均价相对最优价的不利偏离（基点）
+ */
+public record SlippageEstimate(double bestPrice, double averagePrice, double filledQuantity, double slippageBps) {
+}
@@ -0,0 +1,12 @@
+package com.quant.market;
+
+/**
+ * 一笔成交（归集成交）
+ *
+ * @param symbol 交易对
+ * @param price 成交价格
+ * @param quantity 成交数量
+ * @param timeMs 成交时间（毫秒）
+ */
+public record TradeTick(String symbol, double price, double quantity, long timeMs) {
+}
@@ -0,0 +1,36 @@
+package com.quant.market.indicator;
+
+/**
+ * 平均真实波幅（Wilder平滑）
+ */
+public final class Atr extends Indicator {
+
+    private final int period;
+    private double lastClose = Double.NaN;
+    private int count;
+    private double atr;
+
+    public Atr(int period) {
+        super("atr_" + period);
+        this.period = period;
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double volume) {
+        double trueRange = high - low;
+        if (!Double.isNaN(lastClose)) {
+            trueRange = Math.max(trueRange, Math.max(Math.abs(high - lastClose), Math.abs(low - lastClose)));
+        }
+        lastClose = close;
+        if (count < period) {
+            atr += trueRange;
+            if (++count == period) {
+                atr /= period;
+                publish(atr);
+            }
+            return;
+        }
+        atr = (atr * (period - 1) + trueRange) / period;
+        publish(atr);
+    }
+}
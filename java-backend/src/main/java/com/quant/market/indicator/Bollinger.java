@@ -0,0 +1,72 @@
+package com.quant.market.indicator;
+
+import java.util.Map;
+
+/**
+ * 布林带（收盘价），滑动窗口维护累计和与平方和
+ * 输出 <name>_upper / <name>_middle / <name>_lower，当前值为中轨
+ */
+public final class Bollinger extends Indicator {
+
+    private final double[] window;
+    private final double multiplier;
+    private int index;
+    private int count;
+    private double sum;
+    private double sumSquares;
+
+    private double upper = Double.NaN;
+    private double lower = Double.NaN;
+
+    public Bollinger(int period, double multiplier) {
+        super("boll_" + period + "_" + formatMultiplier(multiplier));
+        this.window = new double[period];
+        this.multiplier = multiplier;
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double volume) {
+        if (count == window.length) {
+            double removed = window[index];
+            sum -= removed;
+            sumSquares -= removed * removed;
+        } else {
+            count++;
+        }
+        window[index] = close;
+        sum += close;
+        sumSquares += close * close;
+        index = index + 1 == window.length ? 0 : index + 1;
+        if (count < window.length) {
+            return;
+        }
+        double mean = sum / count;
+        // 浮点误差可能使方差略小于0
+        double deviation = Math.sqrt(Math.max(sumSquares / count - mean * mean, 0.0));
+        upper = mean + multiplier * deviation;
+        lower = mean - multiplier * deviation;
+        publish(mean);
+    }
+
+    public double getUpper() {
+        return upper;
+    }
+
+    public double getLower() {
+        return lower;
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> out) {
+        if (!isReady()) {
+            return;
+        }
+        out.put(getName() + "_upper", upper);
+        out.put(getName() + "_middle", getValue());
+        out.put(getName() + "_lower", lower);
+    }
+
+    private static String formatMultiplier(double multiplier) {
+        return multiplier == Math.rint(multiplier) ? String.valueOf((long) multiplier) : String.valueOf(multiplier);
+    }
+}
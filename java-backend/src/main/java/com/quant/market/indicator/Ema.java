@@ -0,0 +1,32 @@
+package com.quant.market.indicator;
+
+/**
+ * 指数移动平均（收盘价），以前period根的简单平均作为初始值
+ */
+public final class Ema extends Indicator {
+
+    private final int period;
+    private final double alpha;
+    private int count;
+    private double ema;
+
+    public Ema(int period) {
+        super("ema_" + period);
+        this.period = period;
+        this.alpha = 2.0 / (period + 1);
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double volume) {
+        if (count < period) {
+            ema += close;
+            if (++count == period) {
+                ema /= period;
+                publish(ema);
+            }
+            return;
+        }
+        ema += alpha * (close - ema);
+        publish(ema);
+    }
+}
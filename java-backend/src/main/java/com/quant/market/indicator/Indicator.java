@@ -0,0 +1,102 @@
+package com.quant.market.indicator;
+
+import java.util.Map;
+
+/**
+ * 增量技术指标
+ * 每根K线收盘时调用一次 {@link #onBar}，更新为O(1)；当前值和上一个值同时保留（便于判断交叉）
+ *
+ * 指标定义字符串（不区分大小写）：
+ * - sma:20 / ema:20 / rsi:14 / atr:14
+ * - boll:20:2（周期、标准差倍数，倍数默认2）
+ * - vwap（按UTC自然日重置）
+ */
+public abstract class Indicator {
+
+    private final String name;
+
+    private double value = Double.NaN;
+    private double previous = Double.NaN;
+
+    protected Indicator(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 输出名称（如 sma_20），同一K线序列上名称相同的指标只保留一个
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 一根K线收盘
+     */
+    public abstract void onBar(long openTime, double open, double high, double low, double close, double volume);
+
+    public boolean isReady() {
+        return !Double.isNaN(value);
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getPrevious() {
+        return previous;
+    }
+
+    protected void publish(double newValue) {
+        previous = value;
+        value = newValue;
+    }
+
+    /**
+     * 写出当前值（未就绪时不写），上一个值以 _prev 后缀写出
+     */
+    public void writeTo(Map<String, Object> out) {
+        if (!isReady()) {
+            return;
+        }
+        out.put(name, value);
+        if (!Double.isNaN(previous)) {
+            out.put(name + "_prev", previous);
+        }
+    }
+
+    /**
+     * 根据定义字符串创建指标
+     *
+     * @throws IllegalArgumentException 无法识别的定义
+     */
+    public static Indicator parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("指标定义为空");
+        }
+        String[] parts = spec.trim().toLowerCase().split(":");
+        try {
+            return switch (parts[0]) {
+                case "sma" -> new Sma(period(parts));
+                case "ema" -> new Ema(period(parts));
+                case "rsi" -> new Rsi(period(parts));
+                case "atr" -> new Atr(period(parts));
+                case "boll" -> new Bollinger(period(parts), parts.length > 2 ? Double.parseDouble(parts[2]) : 2.0);
+                case "vwap" -> new Vwap();
+                default -> throw new IllegalArgumentException("无法识别的指标: " + spec);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("指标参数无效: " + spec);
+        }
+    }
+
+    private static int period(String[] parts) {
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("缺少指标周期: " + String.join(":", parts));
+        }
+        int period = Integer.parseInt(parts[1]);
+        if (period <= 0) {
+            throw new IllegalArgumentException("指标周期必须大于0: " + String.join(":", parts));
+        }
+        return period;
+    }
+}
@@ -0,0 +1,55 @@
+package com.quant.market.indicator;
+
+import com.quant.market.KlineSeries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条K线序列上订阅的全部指标（按名称去重，所有用户共享）
+ * 非线程安全，与K线序列使用同一把锁
+ */
+public final class IndicatorSet implements KlineSeries.BarListener {
+
+    private final List<Indicator> indicators = new ArrayList<>();
+
+    /**
+     * 添加指标（同名指标已存在时返回已有实例）
+     *
+     * @param history 已收盘的历史K线，用于新指标预热
+     */
+    public Indicator add(Indicator indicator, KlineSeries history) {
+        for (Indicator existing : indicators) {
+            if (existing.getName().equals(indicator.getName())) {
+                return existing;
+            }
+        }
+        if (history != null) {
+            history.replayClosed(indicator::onBar);
+        }
+        indicators.add(indicator);
+        return indicator;
+    }
+
+    public boolean isEmpty() {
+        return indicators.isEmpty();
+    }
+
+    public int size() {
+        return indicators.size();
+    }
+
+    @Override
+    public void onBarClosed(long openTime, double open, double high, double low, double close, double volume) {
+        for (int i = 0, n = indicators.size(); i < n; i++) {
+            indicators.get(i).onBar(openTime, open, high, low, close, volume);
+        }
+    }
+
+    public void writeTo(Map<String, Object> out) {
+        for (int i = 0, n = indicators.size(); i < n; i++) {
+            indicators.get(i).writeTo(out);
+        }
+    }
+}
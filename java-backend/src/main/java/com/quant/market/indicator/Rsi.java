@@ -0,0 +1,43 @@
+package com.quant.market.indicator;
+
+/**
+ * 相对强弱指数（Wilder平滑）
+ */
+public final class Rsi extends Indicator {
+
+    private final int period;
+    private double lastClose = Double.NaN;
+    private int changes;
+    private double avgGain;
+    private double avgLoss;
+
+    public Rsi(int period) {
+        super("rsi_" + period);
+        this.period = period;
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double volume) {
+        if (Double.isNaN(lastClose)) {
+            lastClose = close;
+            return;
+        }
+        double change = close - lastClose;
+        lastClose = close;
+        double gain = change > 0 ? change : 0.0;
+        double loss = change < 0 ? -change : 0.0;
+        if (changes < period) {
+            avgGain += gain;
+            avgLoss += loss;
+            if (++changes < period) {
+                return;
+            }
+            avgGain /= period;
+            avgLoss /= period;
+        } else {
+            avgGain = (avgGain * (period - 1) + gain) / period;
+            avgLoss = (avgLoss * (period - 1) + loss) / period;
+        }
+        publish(avgLoss == 0.0 ? (avgGain == 0.0 ? 50.0 : 100.0) : 100.0 - 100.0 / (1.0 + avgGain / avgLoss));
+    }
+}
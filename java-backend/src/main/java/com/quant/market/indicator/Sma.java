@@ -0,0 +1,32 @@
+package com.quant.market.indicator;
+
+/**
+ * 简单移动平均（收盘价），滑动窗口维护累计和
+ */
+public final class Sma extends Indicator {
+
+    private final double[] window;
+    private int index;
+    private int count;
+    private double sum;
+
+    public Sma(int period) {
+        super("sma_" + period);
+        this.window = new double[period];
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double volume) {
+        if (count == window.length) {
+            sum -= window[index];
+        } else {
+            count++;
+        }
+        window[index] = close;
+        sum += close;
+        index = index + 1 == window.length ? 0 : index + 1;
+        if (count == window.length) {
+            publish(sum / count);
+        }
+    }
+}
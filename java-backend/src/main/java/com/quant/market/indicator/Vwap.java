@@ -0,0 +1,34 @@
+package com.quant.market.indicator;
+
+/**
+ * 成交量加权平均价（典型价格 (high+low+close)/3），按UTC自然日重置
+ * 没有成交量的K线（仅标记价格）不参与计算
+ */
+public final class Vwap extends Indicator {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private long day = Long.MIN_VALUE;
+    private double priceVolume;
+    private double volume;
+
+    public Vwap() {
+        super("vwap");
+    }
+
+    @Override
+    public void onBar(long openTime, double open, double high, double low, double close, double barVolume) {
+        long barDay = Math.floorDiv(openTime, DAY_MILLIS);
+        if (barDay != day) {
+            day = barDay;
+            priceVolume = 0.0;
+            volume = 0.0;
+        }
+        if (!(barVolume > 0)) {
+            return;
+        }
+        priceVolume += (high + low + close) / 3.0 * barVolume;
+        volume += barVolume;
+        publish(priceVolume / volume);
+    }
+}
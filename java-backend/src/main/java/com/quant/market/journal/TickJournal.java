@@ -0,0 +1,288 @@
+package com.quant.market.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 行情Tick日志（写入端）
+ * 只追加的内存映射二进制文件，按UTC自然日滚动（<name>-yyyyMMdd.ticks），每条记录定长32字节：
+ *
+ * <pre>
+ * 0  long  事件时间（毫秒，最后写入，读取端遇到0即认为到达末尾）
+ * 8  long  价格（定点整数，× 10^8）
+ * 16 long  数量（定点整数，× 10^8，标记价格为0）
+ * 24 int   交易对编号（见同名 .symbols 文件，每行一个交易对，行号即编号）
+ * 28 byte  记录类型（{@link #TYPE_MARK_PRICE} / {@link #TYPE_TRADE}）
+ * </pre>
+ *
+ * 文件按块（默认64MB）映射，追加时只写映射内存，不分配对象；交易对编号在写入端生命周期内保持不变，
+ * 滚动到新的一天时把已知交易对整体写入新的字典文件
+ */
+@Slf4j
+public final class TickJournal implements AutoCloseable {
+
+    public static final int MAGIC = 0x514A5431; // "QJT1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+
+    public static final int OFFSET_EVENT_TIME = 0;
+    public static final int OFFSET_PRICE = 8;
+    public static final int OFFSET_QUANTITY = 16;
+    public static final int OFFSET_SYMBOL = 24;
+    public static final int OFFSET_TYPE = 28;
+
+    public static final byte TYPE_MARK_PRICE = 1;
+    public static final byte TYPE_TRADE = 2;
+
+    public static final String TICKS_SUFFIX = ".ticks";
+    public static final String SYMBOLS_SUFFIX = ".symbols";
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Path directory;
+    private final String name;
+    private final long chunkBytes;
+
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+
+    private long currentDay = Long.MIN_VALUE;
+    private FileChannel channel;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private Path symbolsFile;
+    private long records;
+
+    /**
+     * @param directory 日志目录
+     * @param name 日志名称（如交易所名），作为文件名前缀
+     * @param chunkBytes 每次映射的字节数（向下取整为记录长度的整数倍）
+     * @throws UncheckedIOException 无法打开当天的日志文件
+     */
+    public TickJournal(Path directory, String name, long chunkBytes) {
+        this.directory = directory;
+        this.name = name;
+        this.chunkBytes = Math.max(RECORD_SIZE, chunkBytes - chunkBytes % RECORD_SIZE);
+        // 先打开当天的文件，重启后沿用已有字典中的交易对编号
+        roll(Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS));
+    }
+
+    /**
+     * 交易对编号（新交易对追加到当天的字典文件）
+     */
+    public synchronized int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        int newId = symbols.size();
+        symbols.add(symbol);
+        symbolIds.put(symbol, newId);
+        appendSymbols(List.of(symbol));
+        return newId;
+    }
+
+    /**
+     * 追加一条记录（事件时间所在的自然日晚于当前文件时滚动到新文件）
+     */
+    public synchronized void append(byte type, int symbolId, long eventTime, long scaledPrice, long scaledQuantity) {
+        if (eventTime <= 0) {
+            return;
+        }
+        long day = Math.floorDiv(eventTime, DAY_MILLIS);
+        if (day > currentDay) {
+            roll(day);
+        }
+        if (chunk == null) {
+            throw new IllegalStateException("Tick日志已关闭");
+        }
+        if (!chunk.hasRemaining()) {
+            mapChunk(chunkStart + chunkBytes);
+        }
+        int p = chunk.position();
+        chunk.putLong(p + OFFSET_PRICE, scaledPrice);
+        chunk.putLong(p + OFFSET_QUANTITY, scaledQuantity);
+        chunk.putInt(p + OFFSET_SYMBOL, symbolId);
+        chunk.put(p + OFFSET_TYPE, type);
+        chunk.putLong(p + OFFSET_EVENT_TIME, eventTime);
+        chunk.position(p + RECORD_SIZE);
+        records++;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * 当前写入的文件
+     */
+    public synchronized Path getCurrentFile() {
+        return ticksFile(currentDay);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (chunk != null) {
+            chunk.force();
+            chunk = null;
+        }
+        closeChannel();
+    }
+
+    private void roll(long day) {
+        close();
+        currentDay = day;
+        Path file = ticksFile(day);
+        boolean firstOpen = symbolsFile == null;
+        symbolsFile = directory.resolve(baseName(day) + SYMBOLS_SUFFIX);
+        try {
+            Files.createDirectories(directory);
+            boolean exists = Files.exists(file) && Files.size(file) >= HEADER_SIZE;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (exists) {
+                checkHeader(channel, file);
+                if (firstOpen) {
+                    loadSymbols();
+                }
+                long end = findEnd();
+                mapChunk(end - (end - HEADER_SIZE) % chunkBytes);
+                chunk.position((int) (end - chunkStart));
+                log.info("继续写入Tick日志: file={}, records={}", file, (end - HEADER_SIZE) / RECORD_SIZE);
+            } else {
+                writeHeader();
+                Files.deleteIfExists(symbolsFile);
+                appendSymbols(symbols);
+                mapChunk(HEADER_SIZE);
+                log.info("创建Tick日志: file={}", file);
+            }
+        } catch (IOException e) {
+            closeChannel();
+            throw new UncheckedIOException("打开Tick日志失败: " + file, e);
+        }
+    }
+
+    private void mapChunk(long start) {
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, chunkBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunkStart = start;
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射Tick日志失败", e);
+        }
+    }
+
+    /**
+     * 已有文件的写入位置：第一条事件时间为0的记录
+     */
+    private long findEnd() throws IOException {
+        long size = channel.size();
+        ByteBuffer time = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = HEADER_SIZE;
+        while (position + RECORD_SIZE <= size) {
+            time.clear();
+            channel.read(time, position + OFFSET_EVENT_TIME);
+            if (time.getLong(0) == 0) {
+                break;
+            }
+            position += RECORD_SIZE;
+        }
+        return position;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(HEADER_SIZE);
+        header.clear();
+        channel.write(header, 0);
+    }
+
+    static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("不是Tick日志文件或版本不兼容: " + file);
+        }
+    }
+
+    private void loadSymbols() throws IOException {
+        if (!Files.exists(symbolsFile)) {
+            return;
+        }
+        for (String symbol : Files.readAllLines(symbolsFile, StandardCharsets.UTF_8)) {
+            if (!symbol.isEmpty() && !symbolIds.containsKey(symbol)) {
+                symbolIds.put(symbol, symbols.size());
+                symbols.add(symbol);
+            }
+        }
+    }
+
+    private void appendSymbols(List<String> newSymbols) {
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (String symbol : newSymbols) {
+                lines.append(symbol).append('\n');
+            }
+            Files.writeString(symbolsFile, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("写入Tick日志交易对字典失败: file={}, error={}", symbolsFile, e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭Tick日志失败: {}", e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private Path ticksFile(long day) {
+        return directory.resolve(baseName(day) + TICKS_SUFFIX);
+    }
+
+    private String baseName(long day) {
+        return name + "-" + LocalDate.ofEpochDay(day).format(DAY_FORMAT);
+    }
+
+    /**
+     * 日志目录下指定名称的全部日志文件（按日期排序）
+     */
+    public static List<Path> files(Path directory, String name) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(p -> {
+                        String fileName = p.getFileName().toString();
+                        return fileName.startsWith(name + "-") && fileName.endsWith(TICKS_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.quant.market.journal;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 行情Tick日志（读取端）
+ * 以只读方式按块映射日志文件，顺序遍历记录；字段直接从映射内存读取，遍历过程中不分配对象
+ *
+ * <pre>
+ * try (TickJournalReader reader = new TickJournalReader(file)) {
+ *     while (reader.next()) {
+ *         reader.eventTime(); reader.symbol(); reader.price();
+ *     }
+ * }
+ * </pre>
+ *
+ * 可以读取正在写入的文件（读到事件时间为0的记录即停止，之后可再次调用 {@link #next()} 继续读取新写入的记录）
+ */
+public final class TickJournalReader implements AutoCloseable {
+
+    private static final long CHUNK_BYTES = 64L * 1024 * 1024;
+    private static final double SCALE_FACTOR = 1e8;
+
+    private final FileChannel channel;
+    private final Path symbolsFile;
+    private List<String> symbols;
+
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long chunkEnd;
+    // 当前记录在块内的偏移（-1表示还没有读取记录）
+    private int offset = -1;
+    private long nextPosition = TickJournal.HEADER_SIZE;
+
+    public TickJournalReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            TickJournal.checkHeader(channel, file);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        String fileName = file.getFileName().toString();
+        this.symbolsFile = file.resolveSibling(
+                fileName.substring(0, fileName.length() - TickJournal.TICKS_SUFFIX.length()) + TickJournal.SYMBOLS_SUFFIX);
+        this.symbols = loadSymbols();
+    }
+
+    /**
+     * 移动到下一条记录
+     *
+     * @return 没有更多记录时返回false
+     */
+    public boolean next() throws IOException {
+        if (nextPosition + TickJournal.RECORD_SIZE > chunkEnd && !map(nextPosition)) {
+            return false;
+        }
+        int candidate = (int) (nextPosition - chunkStart);
+        if (chunk.getLong(candidate + TickJournal.OFFSET_EVENT_TIME) == 0) {
+            return false;
+        }
+        offset = candidate;
+        nextPosition += TickJournal.RECORD_SIZE;
+        return true;
+    }
+
+    private boolean map(long position) throws IOException {
+        long size = channel.size();
+        if (position + TickJournal.RECORD_SIZE > size) {
+            return false;
+        }
+        long length = Math.min(CHUNK_BYTES, size - position);
+        length -= length % TickJournal.RECORD_SIZE;
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        chunkStart = position;
+        chunkEnd = position + length;
+        return true;
+    }
+
+    public long eventTime() {
+        return chunk.getLong(offset + TickJournal.OFFSET_EVENT_TIME);
+    }
+
+    public byte type() {
+        return chunk.get(offset + TickJournal.OFFSET_TYPE);
+    }
+
+    public int symbolId() {
+        return chunk.getInt(offset + TickJournal.OFFSET_SYMBOL);
+    }
+
+    /**
+     * 交易对名称（字典中没有该编号时重新加载字典，写入端可能刚追加了新交易对）
+     */
+    public String symbol() throws IOException {
+        int id = symbolId();
+        if (id >= symbols.size()) {
+            symbols = loadSymbols();
+        }
+        return id < symbols.size() ? symbols.get(id) : null;
+    }
+
+    public long scaledPrice() {
+        return chunk.getLong(offset + TickJournal.OFFSET_PRICE);
+    }
+
+    public long scaledQuantity() {
+        return chunk.getLong(offset + TickJournal.OFFSET_QUANTITY);
+    }
+
+    public double price() {
+        return scaledPrice() / SCALE_FACTOR;
+    }
+
+    public double quantity() {
+        return scaledQuantity() / SCALE_FACTOR;
+    }
+
+    private List<String> loadSymbols() throws IOException {
+        return Files.exists(symbolsFile) ? Files.readAllLines(symbolsFile, StandardCharsets.UTF_8) : List.of();
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.quant.market.journal;
+
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceTable;
+import com.quant.market.MarkPriceUpdate;
+import com.quant.market.TradeTick;
+import com.quant.model.ExchangeType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 行情Tick日志服务
+ * 把共享行情中心收到的每条标记价格和归集成交写入内存映射日志（见 {@link TickJournal}），
+ * 用于问题排查时回放和回测，不依赖数据库；写入在行情连接线程上完成，不分配对象
+ *
+ * 默认关闭（market.journal.enabled）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TickJournalService {
+
+    private static final double SCALE_FACTOR = Math.pow(10, MarkPriceTable.PRICE_SCALE);
+
+    private final MarkPriceHub markPriceHub;
+
+    @Value("${market.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${market.journal.dir:data/journal}")
+    private String directory;
+
+    // 每次映射的文件块大小（MB）
+    @Value("${market.journal.chunk-mb:64}")
+    private int chunkMb;
+
+    private TickJournal binanceJournal;
+
+    // 标记价格表下标 -> 日志交易对编号（-1表示尚未分配）
+    private int[] journalIds = new int[0];
+
+    private Disposable markPriceSubscription;
+    private Disposable tradeSubscription;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            binanceJournal = new TickJournal(Path.of(directory), ExchangeType.BINANCE.name().toLowerCase(),
+                    chunkMb * 1024L * 1024L);
+        } catch (Exception e) {
+            log.error("打开Tick日志失败，不记录行情: dir={}, error={}", directory, e.getMessage(), e);
+            return;
+        }
+        markPriceSubscription = markPriceHub.markPriceUpdates(ExchangeType.BINANCE)
+                .subscribe(this::onMarkPrices,
+                        error -> log.error("Tick日志订阅标记价格失败: {}", error.getMessage()));
+        tradeSubscription = markPriceHub.tradeUpdates(ExchangeType.BINANCE)
+                .subscribe(this::onTrade,
+                        error -> log.error("Tick日志订阅成交流失败: {}", error.getMessage()));
+        log.info("Tick日志已启动: dir={}, file={}", directory, binanceJournal.getCurrentFile());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 日志目录
+     */
+    public Path getDirectory() {
+        return Path.of(directory);
+    }
+
+    /**
+     * 运行状态（当前文件、写入的记录数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        TickJournal journal = binanceJournal;
+        if (journal != null) {
+            stats.put("binanceFile", String.valueOf(journal.getCurrentFile()));
+            stats.put("binanceRecords", journal.getRecords());
+        }
+        return stats;
+    }
+
+    private void onMarkPrices(MarkPriceUpdate update) {
+        MarkPriceTable table = update.table();
+        long sequence = update.sequence();
+        int size = table.size();
+        if (journalIds.length < size) {
+            int oldLength = journalIds.length;
+            journalIds = Arrays.copyOf(journalIds, Math.max(size, oldLength * 2));
+            Arrays.fill(journalIds, oldLength, journalIds.length, -1);
+        }
+        try {
+            for (int i = 0; i < size; i++) {
+                if (!table.updatedSince(i, sequence)) {
+                    continue;
+                }
+                int id = journalIds[i];
+                if (id < 0) {
+                    id = binanceJournal.symbolId(table.symbol(i));
+                    journalIds[i] = id;
+                }
+                binanceJournal.append(TickJournal.TYPE_MARK_PRICE, id, table.eventTime(i), table.scaledPrice(i), 0L);
+            }
+        } catch (Exception e) {
+            log.error("写入Tick日志失败: {}", e.getMessage());
+        }
+    }
+
+    private void onTrade(TradeTick tick) {
+        try {
+            binanceJournal.append(TickJournal.TYPE_TRADE, binanceJournal.symbolId(tick.symbol()), tick.timeMs(),
+                    Math.round(tick.price() * SCALE_FACTOR), Math.round(tick.quantity() * SCALE_FACTOR));
+        } catch (Exception e) {
+            log.error("写入Tick日志失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (markPriceSubscription != null) {
+            markPriceSubscription.dispose();
+        }
+        if (tradeSubscription != null) {
+            tradeSubscription.dispose();
+        }
+        if (binanceJournal != null) {
+            binanceJournal.close();
+        }
+    }
+}
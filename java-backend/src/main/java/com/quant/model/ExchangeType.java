@@ -5,7 +5,8 @@ package com.quant.model;
  */
 public enum ExchangeType {
     OKX("OKX", "欧易交易所"),
-    BINANCE("BINANCE", "币安交易所");
+    BINANCE("BINANCE", "币安交易所"),
+    PAPER("PAPER", "模拟交易");
     
     private final String code;
     private final String name;
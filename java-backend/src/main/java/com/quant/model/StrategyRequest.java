@@ -16,6 +16,11 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 public class StrategyRequest {
+    /**
+     * 请求ID（批量调用时用于匹配响应）
+     */
+    private String requestId;
+    
     /**
      * 策略名称
      */
@@ -17,6 +17,11 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 public class StrategyResponse {
+    /**
+     * 对应的请求ID（批量调用时用于匹配请求）
+     */
+    private String requestId;
+    
     /**
      * 交易信号：BUY, SELL, HOLD
      */
@@ -0,0 +1,100 @@
+package com.quant.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单次策略执行的交易上下文快照
+ * 每次执行只采集一次账户、持仓、价格、盈利/补仓次数和最近平仓记录，
+ * 策略请求和风控校验都基于同一份快照，创建后不可修改
+ */
+@Getter
+@Builder
+public class TradingContext {
+
+    /**
+     * 用户ID
+     */
+    private final String userId;
+
+    /**
+     * 交易对（如：BTCUSDT）
+     */
+    private final String symbol;
+
+    /**
+     * 快照采集时间戳
+     */
+    private final long timestamp;
+
+    /**
+     * 账户和持仓是否获取成功（网络错误时为false，此时不能执行策略，避免误开仓/补仓）
+     */
+    private final boolean fetchSuccess;
+
+    /**
+     * 获取失败原因
+     */
+    private final String error;
+
+    /**
+     * 当前价格（优先取持仓的当前价格，否则取交易所实时价格）
+     */
+    private final BigDecimal price;
+
+    /**
+     * 多仓（无持仓时为null）
+     */
+    private final Position longPosition;
+
+    /**
+     * 空仓（无持仓时为null）
+     */
+    private final Position shortPosition;
+
+    /**
+     * 盈利次数和补仓次数
+     */
+    private final int longProfitCount;
+    private final int longAddCount;
+    private final int shortProfitCount;
+    private final int shortAddCount;
+
+    /**
+     * 最近平仓记录（用于冷却期检查）
+     */
+    private final List<Map<String, Object>> recentClosePositions;
+
+    /**
+     * 获取失败的快照
+     */
+    public static TradingContext failed(String userId, String symbol, String error) {
+        return TradingContext.builder()
+                .userId(userId)
+                .symbol(symbol)
+                .timestamp(System.currentTimeMillis())
+                .fetchSuccess(false)
+                .error(error)
+                .price(BigDecimal.ZERO)
+                .recentClosePositions(List.of())
+                .build();
+    }
+
+    /**
+     * 是否有有效价格
+     */
+    public boolean hasValidPrice() {
+        return price != null && price.compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    /**
+     * 快照已存在的时间（毫秒）
+     */
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - timestamp;
+    }
+}
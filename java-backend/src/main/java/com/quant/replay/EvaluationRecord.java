@@ -0,0 +1,48 @@
+package com.quant.replay;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
+import com.quant.strategy.StrategyEngine;
+
+/**
+ * 一次策略执行的录制记录（交易上下文快照 + 策略请求 + 策略响应 + 下单结果）
+ *
+ * @param decisionTime 风控检查时的时间（毫秒），回放时作为风控和冷却期的当前时间
+ * @param strategyName 策略名称
+ * @param engine 执行引擎
+ * @param context 交易上下文快照（账户快照）
+ * @param request 策略请求（JVM基本类型通道不构建请求，为null）
+ * @param response 策略响应
+ * @param orderResult 下单结果（OrderService返回值、{@link #REJECTED_RISK}，没有结果时为null）
+ */
+public record EvaluationRecord(long decisionTime,
+                               String strategyName,
+                               StrategyEngine engine,
+                               TradingContext context,
+                               StrategyRequest request,
+                               StrategyResponse response,
+                               String orderResult) {
+
+    /**
+     * 未通过风控检查
+     */
+    public static final String REJECTED_RISK = "REJECTED_RISK";
+
+    /**
+     * 下单结果去掉时间戳后缀（ORDER_SUCCESS_1700000000000 -> ORDER_SUCCESS），用于比对
+     */
+    public static String resultType(String orderResult) {
+        if (orderResult == null) {
+            return null;
+        }
+        int end = orderResult.length();
+        while (end > 0 && Character.isDigit(orderResult.charAt(end - 1))) {
+            end--;
+        }
+        if (end < orderResult.length() && end > 0 && orderResult.charAt(end - 1) == '_') {
+            end--;
+        }
+        return orderResult.substring(0, end);
+    }
+}
@@ -0,0 +1,259 @@
+package com.quant.replay;
+
+import com.quant.model.Position;
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
+import com.quant.strategy.StrategyEngine;
+import com.quant.transport.StrategyWireCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 策略执行录制文件
+ *
+ * 文件格式（大端）：
+ * [int32 魔数 "QRP1"][int32 版本] 之后是连续的记录帧 [int32 长度][负载]
+ *
+ * 负载使用 {@link StrategyWireCodec} 的值编码：
+ * decisionTime, strategyName, engine, orderResult, 上下文Map, 是否有请求, [请求], 是否有响应, [响应]
+ *
+ * 上下文中的金额（价格、数量、盈亏）按字符串编码，回放时还原为同样精度的BigDecimal；
+ * 请求和响应与发给Python服务的编码一致（BigDecimal编码为浮点数）
+ * 进程异常退出时最后一帧可能不完整，读取时忽略
+ */
+public final class ReplayFile {
+
+    private static final int MAGIC = 0x51525031;
+    private static final int VERSION = 1;
+
+    private ReplayFile() {
+    }
+
+    /**
+     * 追加写入
+     */
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final DataOutputStream out;
+        private long records;
+
+        public Writer(Path path) throws IOException {
+            this.path = path;
+            boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024));
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.flush();
+            }
+        }
+
+        /**
+         * 写入一条记录并刷新到文件
+         */
+        public void write(EvaluationRecord record) throws IOException {
+            byte[] payload = encode(record);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+            records++;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * 顺序读取
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+
+        public Reader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("不是录制文件: " + path);
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("不支持的录制文件版本: " + version);
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 下一条记录（读完或最后一帧不完整时返回null）
+         */
+        public EvaluationRecord next() throws IOException {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > StrategyWireCodec.MAX_FRAME_SIZE) {
+                    throw new IOException("录制帧长度无效: " + length);
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                return null;
+            }
+            return decode(ByteBuffer.wrap(payload));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static byte[] encode(EvaluationRecord record) {
+        StrategyRequest request = record.request();
+        StrategyResponse response = record.response();
+        byte[] head = StrategyWireCodec.encodeValues(
+                record.decisionTime(),
+                record.strategyName(),
+                record.engine(),
+                record.orderResult(),
+                contextToMap(record.context()),
+                request != null);
+        byte[] requestBytes = request != null ? StrategyWireCodec.encodeRequest(request) : new byte[0];
+        byte[] responseFlag = StrategyWireCodec.encodeValues(response != null);
+        byte[] responseBytes = response != null ? StrategyWireCodec.encodeResponse(response) : new byte[0];
+
+        ByteBuffer buffer = ByteBuffer.allocate(head.length + requestBytes.length
+                + responseFlag.length + responseBytes.length);
+        buffer.put(head).put(requestBytes).put(responseFlag).put(responseBytes);
+        return buffer.array();
+    }
+
+    @SuppressWarnings("unchecked")
+    static EvaluationRecord decode(ByteBuffer buffer) {
+        long decisionTime = (Long) StrategyWireCodec.decodeValue(buffer);
+        String strategyName = (String) StrategyWireCodec.decodeValue(buffer);
+        StrategyEngine engine = StrategyEngine.from(StrategyWireCodec.decodeValue(buffer), StrategyEngine.PYTHON);
+        String orderResult = (String) StrategyWireCodec.decodeValue(buffer);
+        TradingContext context = contextFromMap((Map<String, Object>) StrategyWireCodec.decodeValue(buffer));
+        StrategyRequest request = Boolean.TRUE.equals(StrategyWireCodec.decodeValue(buffer))
+                ? StrategyWireCodec.decodeRequest(buffer) : null;
+        StrategyResponse response = Boolean.TRUE.equals(StrategyWireCodec.decodeValue(buffer))
+                ? StrategyWireCodec.decodeResponse(buffer) : null;
+        return new EvaluationRecord(decisionTime, strategyName, engine, context, request, response, orderResult);
+    }
+
+    private static Map<String, Object> contextToMap(TradingContext context) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("userId", context.getUserId());
+        map.put("symbol", context.getSymbol());
+        map.put("timestamp", context.getTimestamp());
+        map.put("fetchSuccess", context.isFetchSuccess());
+        map.put("error", context.getError());
+        map.put("price", decimalText(context.getPrice()));
+        map.put("longPosition", positionToMap(context.getLongPosition()));
+        map.put("shortPosition", positionToMap(context.getShortPosition()));
+        map.put("longProfitCount", context.getLongProfitCount());
+        map.put("longAddCount", context.getLongAddCount());
+        map.put("shortProfitCount", context.getShortProfitCount());
+        map.put("shortAddCount", context.getShortAddCount());
+        map.put("recentClosePositions", context.getRecentClosePositions());
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TradingContext contextFromMap(Map<String, Object> map) {
+        Object recentCloses = map.get("recentClosePositions");
+        return TradingContext.builder()
+                .userId((String) map.get("userId"))
+                .symbol((String) map.get("symbol"))
+                .timestamp(toLong(map.get("timestamp")))
+                .fetchSuccess(Boolean.TRUE.equals(map.get("fetchSuccess")))
+                .error((String) map.get("error"))
+                .price(toDecimal(map.get("price")))
+                .longPosition(positionFromMap((Map<String, Object>) map.get("longPosition")))
+                .shortPosition(positionFromMap((Map<String, Object>) map.get("shortPosition")))
+                .longProfitCount((int) toLong(map.get("longProfitCount")))
+                .longAddCount((int) toLong(map.get("longAddCount")))
+                .shortProfitCount((int) toLong(map.get("shortProfitCount")))
+                .shortAddCount((int) toLong(map.get("shortAddCount")))
+                .recentClosePositions(recentCloses != null
+                        ? (List<Map<String, Object>>) recentCloses : List.of())
+                .build();
+    }
+
+    private static Map<String, Object> positionToMap(Position position) {
+        if (position == null) {
+            return null;
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("symbol", position.getSymbol());
+        map.put("side", position.getSide());
+        map.put("quantity", decimalText(position.getQuantity()));
+        map.put("available", decimalText(position.getAvailable()));
+        map.put("avgPrice", decimalText(position.getAvgPrice()));
+        map.put("currentPrice", decimalText(position.getCurrentPrice()));
+        map.put("unrealizedPnl", decimalText(position.getUnrealizedPnl()));
+        map.put("pnlPercentage", decimalText(position.getPnlPercentage()));
+        map.put("leverage", position.getLeverage());
+        map.put("margin", decimalText(position.getMargin()));
+        return map;
+    }
+
+    private static Position positionFromMap(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        Object leverage = map.get("leverage");
+        return Position.builder()
+                .symbol((String) map.get("symbol"))
+                .side((String) map.get("side"))
+                .quantity(toDecimal(map.get("quantity")))
+                .available(toDecimal(map.get("available")))
+                .avgPrice(toDecimal(map.get("avgPrice")))
+                .currentPrice(toDecimal(map.get("currentPrice")))
+                .unrealizedPnl(toDecimal(map.get("unrealizedPnl")))
+                .pnlPercentage(toDecimal(map.get("pnlPercentage")))
+                .leverage(leverage != null ? (int) toLong(leverage) : null)
+                .margin(toDecimal(map.get("margin")))
+                .build();
+    }
+
+    private static String decimalText(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        return value != null ? new BigDecimal(value.toString()) : null;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+}
@@ -0,0 +1,35 @@
+package com.quant.replay;
+
+/**
+ * 回放模式
+ */
+public enum ReplayMode {
+    /**
+     * 不等待，逐条尽快回放（比实时快）
+     */
+    MAX_SPEED,
+
+    /**
+     * 按录制时的时间间隔除以倍速等待后回放
+     */
+    ACCELERATED,
+
+    /**
+     * 单步：每次调用 step 回放指定条数
+     */
+    STEP;
+
+    /**
+     * 解析请求参数，无法识别时返回默认值
+     */
+    public static ReplayMode from(Object value, ReplayMode defaultMode) {
+        if (value == null) {
+            return defaultMode;
+        }
+        try {
+            return ReplayMode.valueOf(String.valueOf(value).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultMode;
+        }
+    }
+}
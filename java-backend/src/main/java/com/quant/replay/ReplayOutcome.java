@@ -0,0 +1,12 @@
+package com.quant.replay;
+
+import com.quant.model.StrategyResponse;
+
+/**
+ * 回放一条记录的结果
+ *
+ * @param response 策略响应
+ * @param orderResult 下单结果（含义同 {@link EvaluationRecord#orderResult()}）
+ */
+public record ReplayOutcome(StrategyResponse response, String orderResult) {
+}
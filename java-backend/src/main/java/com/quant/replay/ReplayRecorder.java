@@ -0,0 +1,104 @@
+package com.quant.replay;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 策略执行录制器
+ * 把交易引擎每次执行的上下文快照、策略请求、策略响应和下单结果写入录制文件（见 {@link ReplayFile}），
+ * 用于离线回放（见 {@link ReplayRunner}）；每次启动写一个新文件
+ *
+ * 默认关闭（strategy.replay.record-enabled）
+ */
+@Slf4j
+@Component
+public class ReplayRecorder {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${strategy.replay.record-enabled:false}")
+    private boolean enabled;
+
+    @Value("${strategy.replay.dir:data/replay}")
+    private String directory;
+
+    private ReplayFile.Writer writer;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            writer = new ReplayFile.Writer(dir.resolve("evaluations-" + LocalDateTime.now().format(FILE_TIME) + ".rpl"));
+            log.info("策略执行录制已启动: file={}", writer.getPath());
+        } catch (IOException e) {
+            log.error("打开录制文件失败，不录制策略执行: dir={}, error={}", directory, e.getMessage(), e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    public Path getDirectory() {
+        return Path.of(directory);
+    }
+
+    /**
+     * 写入一条记录（写入失败只记录日志，不影响交易流程）
+     */
+    public synchronized void record(EvaluationRecord record) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(record);
+        } catch (Exception e) {
+            if (failures.incrementAndGet() == 1) {
+                log.error("写入录制文件失败: file={}, error={}", writer.getPath(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 运行状态（当前文件、已录制条数、写入失败次数）
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", writer != null);
+        stats.put("file", writer != null ? writer.getPath().toString() : null);
+        stats.put("records", writer != null ? writer.getRecords() : 0);
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("关闭录制文件失败: {}", e.getMessage());
+        }
+        writer = null;
+    }
+}
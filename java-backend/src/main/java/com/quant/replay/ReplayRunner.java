@@ -0,0 +1,412 @@
+package com.quant.replay;
+
+import com.quant.model.StrategyResponse;
+import com.quant.service.OrderService;
+import com.quant.service.TradingEngine;
+import com.quant.strategy.StrategyEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 录制回放
+ * 按顺序读取录制文件，每条记录用录制的快照和请求重新执行策略，经风控后交给独立的订单服务下单：
+ * - 订单服务连接每个用户各自的模拟交易所（见 {@link SimulatedExchangeAdapter}），不访问实盘账户、数据库和Redis
+ * - 风控和开仓冷却期使用录制时的决策时间，相同的录制文件和引擎得到相同的信号和下单结果
+ * - 逐条比对回放的信号、下单结果与录制时的结果，并计算结果摘要（两次回放摘要相同说明结果一致）
+ *
+ * 回放模式见 {@link ReplayMode}；MAX_SPEED/ACCELERATED 在后台线程执行，STEP 在调用线程执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReplayRunner {
+
+    // 每个会话保留的不一致记录数量
+    private static final int MAX_MISMATCHES = 20;
+
+    // ACCELERATED模式单次最长等待时间（毫秒），录制中断很久时不会一直等待
+    private static final long MAX_WAIT_MS = 10_000;
+
+    private final TradingEngine tradingEngine;
+    private final ReplayRecorder replayRecorder;
+
+    // 保留的会话数量（超出时删除最早结束的会话）
+    @Value("${strategy.replay.max-sessions:10}")
+    private int maxSessions;
+
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final AtomicLong sessionSequence = new AtomicLong();
+
+    /**
+     * 录制目录下的录制文件（按文件名排序）
+     */
+    public List<String> listFiles() {
+        Path dir = replayRecorder.getDirectory();
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".rpl"))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("列出录制文件失败: dir={}, error={}", dir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 开始回放
+     *
+     * @param fileName 录制目录下的文件名
+     * @param mode 回放模式
+     * @param speed ACCELERATED模式的倍速
+     * @param engine 执行引擎（为null时使用录制时的引擎）
+     */
+    public Map<String, Object> start(String fileName, ReplayMode mode, double speed, StrategyEngine engine)
+            throws IOException {
+        if (mode == ReplayMode.ACCELERATED && !(speed > 0)) {
+            throw new IllegalArgumentException("倍速必须大于0: " + speed);
+        }
+        // 只允许读取录制目录下的文件
+        Path file = replayRecorder.getDirectory().resolve(Path.of(fileName).getFileName());
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("录制文件不存在: " + fileName);
+        }
+
+        Session session = new Session("replay-" + sessionSequence.incrementAndGet(), file, mode, speed, engine);
+        synchronized (sessions) {
+            evictFinished();
+            sessions.put(session.id, session);
+        }
+        log.info("开始回放: session={}, file={}, mode={}, speed={}, engine={}",
+                session.id, file, mode, speed, engine);
+        if (mode != ReplayMode.STEP) {
+            Thread thread = new Thread(session::run, session.id);
+            thread.setDaemon(true);
+            session.thread = thread;
+            thread.start();
+        }
+        return session.status();
+    }
+
+    /**
+     * 单步回放（只用于STEP模式的会话）
+     *
+     * @return 会话状态，会话不存在时返回null
+     */
+    public Map<String, Object> step(String sessionId, int count) {
+        Session session = getSession(sessionId);
+        if (session == null) {
+            return null;
+        }
+        if (session.mode != ReplayMode.STEP) {
+            throw new IllegalStateException("会话不是单步模式: " + sessionId);
+        }
+        for (int i = 0; i < count && session.processNext(); i++) {
+            // 逐条回放
+        }
+        return session.status();
+    }
+
+    /**
+     * 会话状态（会话不存在时返回null）
+     */
+    public Map<String, Object> status(String sessionId) {
+        Session session = getSession(sessionId);
+        return session != null ? session.status() : null;
+    }
+
+    /**
+     * 全部会话的状态
+     */
+    public List<Map<String, Object>> sessions() {
+        List<Session> list;
+        synchronized (sessions) {
+            list = new ArrayList<>(sessions.values());
+        }
+        List<Map<String, Object>> result = new ArrayList<>(list.size());
+        for (Session session : list) {
+            result.add(session.status());
+        }
+        return result;
+    }
+
+    /**
+     * 停止回放（会话不存在时返回false）
+     */
+    public boolean stop(String sessionId) {
+        Session session = getSession(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.stop();
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (sessions) {
+            sessions.values().forEach(Session::stop);
+        }
+    }
+
+    private Session getSession(String sessionId) {
+        synchronized (sessions) {
+            return sessions.get(sessionId);
+        }
+    }
+
+    private void evictFinished() {
+        var iterator = sessions.values().iterator();
+        while (sessions.size() >= maxSessions && iterator.hasNext()) {
+            if (iterator.next().finished) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 回放会话
+     */
+    private final class Session {
+        private final String id;
+        private final Path file;
+        private final ReplayMode mode;
+        private final double speed;
+        private final StrategyEngine engine;
+
+        private final Map<String, SimulatedExchangeAdapter> adapters = new LinkedHashMap<>();
+        private final OrderService orderService;
+        private final ReplayFile.Reader reader;
+        private volatile Thread thread;
+
+        // 回放时钟：当前记录的决策时间
+        private volatile long replayTime;
+        private long previousDecisionTime;
+
+        private volatile String state = "RUNNING";
+        private volatile boolean finished;
+        private volatile boolean stopped;
+        private String error;
+
+        private long processed;
+        private long signalMismatches;
+        private long orderMismatches;
+        private long failures;
+        // 结果摘要（FNV-1a，依次累加每条记录的信号和下单结果）
+        private long digest = 0xcbf29ce484222325L;
+        private final List<Map<String, Object>> mismatches = new ArrayList<>();
+
+        private Session(String id, Path file, ReplayMode mode, double speed, StrategyEngine engine)
+                throws IOException {
+            this.id = id;
+            this.file = file;
+            this.mode = mode;
+            this.speed = speed;
+            this.engine = engine;
+            this.reader = new ReplayFile.Reader(file);
+            this.orderService = new OrderService(
+                    new SimulatedPositionOperations(this::adapter), null, () -> replayTime);
+        }
+
+        private SimulatedExchangeAdapter adapter(String userId) {
+            return adapters.computeIfAbsent(userId, key -> new SimulatedExchangeAdapter(key, () -> replayTime));
+        }
+
+        private void run() {
+            while (!stopped && processNext()) {
+                // 逐条回放
+            }
+        }
+
+        /**
+         * 回放下一条记录（读完、停止或出错时返回false）
+         */
+        private boolean processNext() {
+            EvaluationRecord record;
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                try {
+                    record = reader.next();
+                } catch (Exception e) {
+                    finish("FAILED", e.getMessage());
+                    log.error("读取录制文件失败: session={}, file={}, error={}", id, file, e.getMessage(), e);
+                    return false;
+                }
+                if (record == null) {
+                    finish("FINISHED", null);
+                    return false;
+                }
+            }
+            if (mode == ReplayMode.ACCELERATED && !await(record.decisionTime())) {
+                return false;
+            }
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                replay(record);
+            }
+            return true;
+        }
+
+        /**
+         * 按录制时的时间间隔除以倍速等待（被停止时返回false）
+         */
+        private boolean await(long decisionTime) {
+            long previous = previousDecisionTime;
+            previousDecisionTime = decisionTime;
+            if (previous == 0 || decisionTime <= previous) {
+                return true;
+            }
+            long waitMs = Math.min((long) ((decisionTime - previous) / speed), MAX_WAIT_MS);
+            try {
+                Thread.sleep(waitMs);
+                return !stopped;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void replay(EvaluationRecord record) {
+            replayTime = record.decisionTime();
+            adapter(record.context().getUserId()).syncPositions(record.context());
+
+            ReplayOutcome outcome;
+            try {
+                outcome = tradingEngine.replay(record, engine, orderService).block();
+            } catch (Exception e) {
+                failures++;
+                processed++;
+                addMismatch(record, null, "ERROR: " + e.getMessage());
+                return;
+            }
+            processed++;
+
+            String expectedSignal = signalOf(record.response());
+            String actualSignal = outcome != null ? signalOf(outcome.response()) : null;
+            String expectedResult = EvaluationRecord.resultType(record.orderResult());
+            String actualResult = outcome != null ? EvaluationRecord.resultType(outcome.orderResult()) : null;
+            boolean signalMatched = Objects.equals(expectedSignal, actualSignal);
+            boolean resultMatched = Objects.equals(expectedResult, actualResult);
+            if (!signalMatched) {
+                signalMismatches++;
+            }
+            if (!resultMatched) {
+                orderMismatches++;
+            }
+            if (!signalMatched || !resultMatched) {
+                addMismatch(record, actualSignal, actualResult);
+            }
+            updateDigest(actualSignal);
+            updateDigest(actualResult);
+        }
+
+        private void addMismatch(EvaluationRecord record, String actualSignal, String actualResult) {
+            if (mismatches.size() >= MAX_MISMATCHES) {
+                return;
+            }
+            Map<String, Object> mismatch = new HashMap<>();
+            mismatch.put("index", processed - 1);
+            mismatch.put("decisionTime", record.decisionTime());
+            mismatch.put("userId", record.context().getUserId());
+            mismatch.put("symbol", record.context().getSymbol());
+            mismatch.put("recordedSignal", signalOf(record.response()));
+            mismatch.put("recordedResult", record.orderResult());
+            mismatch.put("replayedSignal", actualSignal);
+            mismatch.put("replayedResult", actualResult);
+            mismatches.add(mismatch);
+        }
+
+        private void updateDigest(String value) {
+            byte[] bytes = (value != null ? value : "-").getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                digest ^= b & 0xff;
+                digest *= 0x100000001b3L;
+            }
+            digest ^= '|';
+            digest *= 0x100000001b3L;
+        }
+
+        private void finish(String finalState, String finalError) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            state = finalState;
+            error = finalError;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("关闭录制文件失败: {}", e.getMessage());
+            }
+            log.info("回放结束: session={}, state={}, processed={}, signalMismatches={}, orderMismatches={}",
+                    id, finalState, processed, signalMismatches, orderMismatches);
+        }
+
+        private void stop() {
+            stopped = true;
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+            synchronized (this) {
+                finish("STOPPED", null);
+            }
+        }
+
+        private synchronized Map<String, Object> status() {
+            int orders = 0;
+            BigDecimal realizedPnl = BigDecimal.ZERO;
+            for (SimulatedExchangeAdapter adapter : adapters.values()) {
+                orders += adapter.getOrders().size();
+                realizedPnl = realizedPnl.add(adapter.getRealizedPnl());
+            }
+            Map<String, Object> status = new HashMap<>();
+            status.put("sessionId", id);
+            status.put("file", file.getFileName().toString());
+            status.put("mode", mode.name());
+            status.put("speed", speed);
+            status.put("engine", engine != null ? engine.name() : "RECORDED");
+            status.put("state", state);
+            status.put("error", error);
+            status.put("processed", processed);
+            status.put("replayTime", replayTime);
+            status.put("signalMismatches", signalMismatches);
+            status.put("orderMismatches", orderMismatches);
+            status.put("failures", failures);
+            status.put("digest", Long.toHexString(digest));
+            status.put("users", adapters.size());
+            status.put("orders", orders);
+            status.put("realizedPnl", realizedPnl);
+            status.put("mismatches", new ArrayList<>(mismatches));
+            return status;
+        }
+
+        private static String signalOf(StrategyResponse response) {
+            return response != null ? response.getSignal() : null;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.quant.replay;
+
+import com.quant.exchange.ExchangeAdapter;
+import com.quant.model.AccountInfo;
+import com.quant.model.ExchangeType;
+import com.quant.model.Order;
+import com.quant.model.Position;
+import com.quant.model.TradingContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 回放用的模拟交易所（单个用户，双向持仓）
+ * 不访问网络：每次回放前用录制的账户快照覆盖该交易对的持仓和价格，
+ * 订单按当前价格立即全部成交，订单号按顺序生成（SIM-1, SIM-2...），相同输入得到相同结果
+ *
+ * 订单方向与 {@link com.quant.exchange.BinanceAdapter} 一致：
+ * BUY/SELL 为开多/开空，LONG/SHORT 为平多/平空
+ */
+public class SimulatedExchangeAdapter implements ExchangeAdapter {
+
+    private final String userId;
+    private final LongSupplier clock;
+
+    // 持仓：Key = symbol:side
+    private final Map<String, Position> positions = new LinkedHashMap<>();
+    private final Map<String, BigDecimal> prices = new LinkedHashMap<>();
+    // 交易对的杠杆设置（新开仓位使用）
+    private final Map<String, Integer> leverages = new LinkedHashMap<>();
+
+    private long orderSequence;
+    private final List<Order> orders = new ArrayList<>();
+    private BigDecimal realizedPnl = BigDecimal.ZERO;
+
+    public SimulatedExchangeAdapter(String userId, LongSupplier clock) {
+        this.userId = userId;
+        this.clock = clock;
+    }
+
+    /**
+     * 用录制的快照覆盖交易对的价格和多空持仓
+     */
+    public synchronized void syncPositions(TradingContext context) {
+        String symbol = context.getSymbol();
+        if (context.hasValidPrice()) {
+            prices.put(symbol, context.getPrice());
+        }
+        syncPosition(symbol, "LONG", context.getLongPosition());
+        syncPosition(symbol, "SHORT", context.getShortPosition());
+    }
+
+    private void syncPosition(String symbol, String side, Position position) {
+        String key = symbol + ":" + side;
+        if (position == null || position.getQuantity() == null
+                || position.getQuantity().compareTo(BigDecimal.ZERO) <= 0) {
+            positions.remove(key);
+        } else {
+            positions.put(key, copy(position));
+        }
+    }
+
+    /**
+     * 交易对的当前价格（没有价格时返回null）
+     */
+    public synchronized BigDecimal getPrice(String symbol) {
+        return prices.get(symbol);
+    }
+
+    /**
+     * 设置交易对的杠杆（没有持仓时开仓使用）
+     */
+    public synchronized void setLeverage(String symbol, int leverage) {
+        leverages.put(symbol, leverage);
+    }
+
+    /**
+     * 已成交的订单（按成交顺序）
+     */
+    public synchronized List<Order> getOrders() {
+        return new ArrayList<>(orders);
+    }
+
+    /**
+     * 平仓已实现盈亏（按开仓均价和成交价计算，不含手续费）
+     */
+    public synchronized BigDecimal getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    @Override
+    public ExchangeType getExchangeType() {
+        return ExchangeType.PAPER;
+    }
+
+    @Override
+    public void initialize(String apiKey, String secretKey, String passphrase) {
+    }
+
+    @Override
+    public synchronized Mono<AccountInfo> getAccountInfo(String userId) {
+        List<Position> list = snapshot();
+        BigDecimal unrealized = BigDecimal.ZERO;
+        for (Position position : list) {
+            unrealized = unrealized.add(position.getUnrealizedPnl());
+        }
+        return Mono.just(AccountInfo.builder()
+                .userId(this.userId)
+                .positions(list)
+                .unrealizedPnl(unrealized)
+                .timestamp(clock.getAsLong())
+                .build());
+    }
+
+    @Override
+    public synchronized Mono<List<Position>> getPositions(String userId) {
+        return Mono.just(snapshot());
+    }
+
+    @Override
+    public synchronized Mono<Order> placeOrder(Order order) {
+        BigDecimal price = prices.get(order.getSymbol());
+        if (price == null) {
+            return Mono.error(new IllegalStateException("模拟交易所没有价格: " + order.getSymbol()));
+        }
+        BigDecimal quantity = order.getQuantity();
+        if (quantity == null || quantity.compareTo(BigDecimal.ZERO) <= 0) {
+            return Mono.error(new IllegalArgumentException("订单数量无效: " + quantity));
+        }
+
+        String side = order.getSide();
+        if ("BUY".equals(side) || "SELL".equals(side)) {
+            open(order.getSymbol(), "BUY".equals(side) ? "LONG" : "SHORT", quantity, price);
+        } else if ("LONG".equals(side) || "SHORT".equals(side)) {
+            if (!close(order.getSymbol(), side, quantity, price)) {
+                return Mono.error(new IllegalStateException("没有可平的持仓: " + order.getSymbol() + " " + side));
+            }
+        } else {
+            return Mono.error(new IllegalArgumentException("不支持的订单方向: " + side));
+        }
+
+        Order filled = Order.builder()
+                .orderId("SIM-" + (++orderSequence))
+                .symbol(order.getSymbol())
+                .side(side)
+                .type(order.getType())
+                .quantity(quantity)
+                .price(price)
+                .status("FILLED")
+                .timestamp(clock.getAsLong())
+                .build();
+        orders.add(filled);
+        return Mono.just(filled);
+    }
+
+    private void open(String symbol, String side, BigDecimal quantity, BigDecimal price) {
+        String key = symbol + ":" + side;
+        Position position = positions.get(key);
+        if (position == null) {
+            positions.put(key, Position.builder()
+                    .symbol(symbol)
+                    .side(side)
+                    .quantity(quantity)
+                    .available(quantity)
+                    .avgPrice(price)
+                    .leverage(leverageOf(symbol))
+                    .build());
+            return;
+        }
+        BigDecimal total = position.getQuantity().add(quantity);
+        BigDecimal cost = position.getAvgPrice().multiply(position.getQuantity()).add(price.multiply(quantity));
+        position.setAvgPrice(cost.divide(total, 8, RoundingMode.HALF_UP));
+        position.setQuantity(total);
+        position.setAvailable(total);
+    }
+
+    private boolean close(String symbol, String side, BigDecimal quantity, BigDecimal price) {
+        String key = symbol + ":" + side;
+        Position position = positions.get(key);
+        if (position == null) {
+            return false;
+        }
+        BigDecimal closed = quantity.min(position.getQuantity());
+        BigDecimal diff = price.subtract(position.getAvgPrice());
+        realizedPnl = realizedPnl.add("LONG".equals(side) ? diff.multiply(closed) : diff.negate().multiply(closed));
+        BigDecimal remaining = position.getQuantity().subtract(closed);
+        if (remaining.compareTo(BigDecimal.ZERO) <= 0) {
+            positions.remove(key);
+        } else {
+            position.setQuantity(remaining);
+            position.setAvailable(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 同交易对已有持仓的杠杆（没有持仓时使用杠杆设置）
+     */
+    private Integer leverageOf(String symbol) {
+        for (Position position : positions.values()) {
+            if (symbol.equals(position.getSymbol()) && position.getLeverage() != null) {
+                return position.getLeverage();
+            }
+        }
+        return leverages.get(symbol);
+    }
+
+    /**
+     * 持仓副本（按当前价格计算未实现盈亏和盈亏比例）
+     */
+    private List<Position> snapshot() {
+        List<Position> list = new ArrayList<>(positions.size());
+        for (Position position : positions.values()) {
+            Position copy = copy(position);
+            BigDecimal price = prices.get(position.getSymbol());
+            if (price != null && copy.getAvgPrice() != null && copy.getAvgPrice().compareTo(BigDecimal.ZERO) > 0) {
+                BigDecimal diff = price.subtract(copy.getAvgPrice());
+                BigDecimal pnl = "LONG".equals(copy.getSide()) ? diff.multiply(copy.getQuantity())
+                        : diff.negate().multiply(copy.getQuantity());
+                int leverage = copy.getLeverage() != null ? copy.getLeverage() : 1;
+                BigDecimal margin = copy.getAvgPrice().multiply(copy.getQuantity())
+                        .divide(BigDecimal.valueOf(leverage), 8, RoundingMode.HALF_UP);
+                copy.setCurrentPrice(price);
+                copy.setUnrealizedPnl(pnl);
+                copy.setMargin(margin);
+                copy.setPnlPercentage(margin.compareTo(BigDecimal.ZERO) > 0
+                        ? pnl.multiply(BigDecimal.valueOf(100)).divide(margin, 4, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO);
+            } else if (copy.getUnrealizedPnl() == null) {
+                copy.setUnrealizedPnl(BigDecimal.ZERO);
+            }
+            list.add(copy);
+        }
+        return list;
+    }
+
+    private static Position copy(Position position) {
+        return Position.builder()
+                .symbol(position.getSymbol())
+                .side(position.getSide())
+                .quantity(position.getQuantity())
+                .available(position.getAvailable())
+                .avgPrice(position.getAvgPrice())
+                .currentPrice(position.getCurrentPrice())
+                .unrealizedPnl(position.getUnrealizedPnl())
+                .pnlPercentage(position.getPnlPercentage())
+                .leverage(position.getLeverage())
+                .margin(position.getMargin())
+                .build();
+    }
+
+    @Override
+    public Mono<Boolean> cancelOrder(String orderId) {
+        // 订单立即成交，没有可取消的订单
+        return Mono.just(false);
+    }
+
+    @Override
+    public synchronized Mono<Order> getOrder(String orderId) {
+        for (Order order : orders) {
+            if (order.getOrderId().equals(orderId)) {
+                return Mono.just(order);
+            }
+        }
+        return Mono.empty();
+    }
+
+    @Override
+    public Flux<AccountInfo> subscribeAccountUpdates(String userId) {
+        return Flux.empty();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> subscribeMarketData(String symbol) {
+        return Flux.empty();
+    }
+
+    @Override
+    public Mono<Boolean> testConnection() {
+        return Mono.just(true);
+    }
+}
@@ -0,0 +1,138 @@
+package com.quant.replay;
+
+import com.quant.model.Order;
+import com.quant.model.Position;
+import com.quant.service.PositionOperations;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 回放用的开仓/平仓操作
+ * 数量计算与 {@link com.quant.service.AccountService} 一致（名义价值 = 保证金 × 杠杆，数量 = 名义价值 / 当前价格，
+ * 没有杠杆时双向策略默认50倍、其他策略1倍），订单提交到用户的模拟交易所；
+ * 不写数据库、不更新Redis计数、不推送账户信息
+ */
+@Slf4j
+public class SimulatedPositionOperations implements PositionOperations {
+
+    private final Function<String, SimulatedExchangeAdapter> adapters;
+
+    /**
+     * @param adapters userId -> 模拟交易所
+     */
+    public SimulatedPositionOperations(Function<String, SimulatedExchangeAdapter> adapters) {
+        this.adapters = adapters;
+    }
+
+    @Override
+    public Mono<Boolean> openPositionReactive(String userId, String symbol, String side,
+                                              BigDecimal quantity, BigDecimal margin, String strategyType) {
+        SimulatedExchangeAdapter adapter = adapters.apply(userId);
+        return adapter.getPositions(userId)
+                .map(positions -> openQuantity(adapter, positions, symbol, side, quantity, margin, strategyType))
+                .flatMap(openQuantity -> {
+                    if (openQuantity.compareTo(BigDecimal.ZERO) <= 0) {
+                        log.warn("回放开仓数量或保证金无效: userId={}, symbol={}, side={}, quantity={}, margin={}",
+                                userId, symbol, side, quantity, margin);
+                        return Mono.just(false);
+                    }
+                    Order order = Order.builder()
+                            .symbol(symbol)
+                            .side("LONG".equals(side) ? "BUY" : "SELL")
+                            .quantity(openQuantity)
+                            .type("MARKET")
+                            .build();
+                    return adapter.placeOrder(order).map(filled -> filled.getOrderId() != null);
+                })
+                .onErrorResume(error -> {
+                    log.warn("回放开仓失败: userId={}, symbol={}, side={}, error={}",
+                            userId, symbol, side, error.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> closePositionReactive(String userId, String symbol, String side,
+                                               BigDecimal quantity, BigDecimal margin, String strategyName) {
+        SimulatedExchangeAdapter adapter = adapters.apply(userId);
+        return adapter.getPositions(userId)
+                .flatMap(positions -> {
+                    Position target = find(positions, symbol, side);
+                    if (target == null) {
+                        log.warn("回放未找到持仓: userId={}, symbol={}, side={}", userId, symbol, side);
+                        return Mono.just(false);
+                    }
+                    BigDecimal closeQuantity = target.getQuantity();
+                    if (margin != null && margin.compareTo(BigDecimal.ZERO) > 0 && target.getCurrentPrice() != null
+                            && target.getCurrentPrice().compareTo(BigDecimal.ZERO) > 0) {
+                        int leverage = target.getLeverage() != null ? target.getLeverage() : 1;
+                        closeQuantity = margin.multiply(new BigDecimal(leverage))
+                                .divide(target.getCurrentPrice(), 8, RoundingMode.HALF_UP)
+                                .min(target.getQuantity());
+                    } else if (quantity != null && quantity.compareTo(BigDecimal.ZERO) > 0) {
+                        closeQuantity = quantity.min(target.getQuantity());
+                    }
+                    if (closeQuantity.compareTo(BigDecimal.ZERO) <= 0) {
+                        return Mono.just(false);
+                    }
+                    Order order = Order.builder()
+                            .symbol(symbol)
+                            .side(side)
+                            .quantity(closeQuantity)
+                            .type("MARKET")
+                            .build();
+                    return adapter.placeOrder(order).map(filled -> filled.getOrderId() != null);
+                })
+                .onErrorResume(error -> {
+                    log.warn("回放平仓失败: userId={}, symbol={}, side={}, error={}",
+                            userId, symbol, side, error.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private static BigDecimal openQuantity(SimulatedExchangeAdapter adapter, List<Position> positions,
+                                           String symbol, String side, BigDecimal quantity,
+                                           BigDecimal margin, String strategyType) {
+        if (margin == null || margin.compareTo(BigDecimal.ZERO) <= 0) {
+            return quantity != null ? quantity : BigDecimal.ZERO;
+        }
+        // 优先使用同方向持仓的价格和杠杆，其次同交易对的其他持仓
+        Position reference = find(positions, symbol, side);
+        if (reference == null) {
+            for (Position position : positions) {
+                if (symbol.equals(position.getSymbol())) {
+                    reference = position;
+                    break;
+                }
+            }
+        }
+        BigDecimal price = reference != null ? reference.getCurrentPrice() : null;
+        Integer leverage = reference != null ? reference.getLeverage() : null;
+        if (price == null || price.compareTo(BigDecimal.ZERO) <= 0) {
+            // 没有持仓时使用快照中的价格（实盘从交易所获取标记价格）
+            price = adapter.getPrice(symbol);
+        }
+        if (leverage == null) {
+            leverage = "DUAL_DIRECTION".equals(strategyType) ? 50 : 1;
+            adapter.setLeverage(symbol, leverage);
+        }
+        if (price == null || price.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalStateException("无法获取当前价格，无法根据保证金计算数量");
+        }
+        return margin.multiply(new BigDecimal(leverage)).divide(price, 8, RoundingMode.HALF_UP);
+    }
+
+    private static Position find(List<Position> positions, String symbol, String side) {
+        for (Position position : positions) {
+            if (symbol.equals(position.getSymbol()) && side.equals(position.getSide())) {
+                return position;
+            }
+        }
+        return null;
+    }
+}
@@ -26,6 +26,12 @@ public interface ClosePositionRecordRepository extends JpaRepository<ClosePositi
      */
     List<ClosePositionRecord> findByUserIdAndSymbolOrderByCreatedAtDesc(String userId, String symbol);
     
+    /**
+     * 查询用户在指定交易对、指定时间之后的平仓记录（用于冷却期检查）
+     */
+    List<ClosePositionRecord> findByUserIdAndSymbolAndCreatedAtAfterOrderByCreatedAtDesc(
+            String userId, String symbol, LocalDateTime since);
+    
     /**
      * 根据用户ID和平仓类型查询平仓记录
      */
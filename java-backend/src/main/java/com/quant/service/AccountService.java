@@ -1,14 +1,20 @@
 package com.quant.service;
 
+import com.quant.account.MarkToMarketEngine;
+import com.quant.account.PositionLedger;
+import com.quant.exchange.BinanceFuturesWebSocketClient;
 import com.quant.exchange.ExchangeAdapter;
 import com.quant.exchange.ExchangeAdapterFactory;
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceUpdate;
 import com.quant.model.AccountInfo;
 import com.quant.model.ExchangeType;
 import com.quant.model.Position;
 import com.quant.model.User;
+import com.quant.websocket.AccountPushService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -25,18 +31,25 @@ import java.util.concurrent.TimeUnit;
 /**
  * 账户服务
  * 管理用户账户信息，实时同步交易所数据，并通过WebSocket推送
+ *
+ * 账户推送为增量的交易所（Binance期货）由每个用户的 {@link PositionLedger} 维护余额和持仓：
+ * 用户数据流的增量直接更新账本，读取和定时推送都使用账本，
+ * REST（账户 + 持仓）只用于初始同步、定期对账以及数据流重连或推送丢失后的对账；
+ * 持仓盈亏由 {@link MarkToMarketEngine} 在标记价格变化时按交易对重算，定时推送只推送有变化的账本
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class AccountService {
+public class AccountService implements PositionOperations {
     
     private final ExchangeAdapterFactory adapterFactory;
     private final AuthService authService;
     private final ExchangeConfigService exchangeConfigService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final AccountPushService accountPushService;
     private final ClosePositionRecordService closePositionRecordService;
     private final ProfitCountService profitCountService;
+    private final MarkPriceHub markPriceHub;
+    private final MarkToMarketEngine markToMarketEngine;
     
     // 缓存账户信息（userId -> AccountInfo）
     private final Map<String, AccountInfo> accountCache = new ConcurrentHashMap<>();
@@ -50,6 +63,17 @@ public class AccountService {
     // 存储每个用户的交易所适配器
     private final Map<String, ExchangeAdapter> userAdapters = new ConcurrentHashMap<>();
     
+    // 持仓账本（仅账户推送为增量的交易所，userId -> 账本）
+    private final Map<String, PositionLedger> ledgers = new ConcurrentHashMap<>();
+    
+    // 持仓账本的定期对账间隔（毫秒）
+    @Value("${account.ledger.reconcile-interval-ms:60000}")
+    private long reconcileIntervalMs;
+    
+    // 下单后等待账户推送的超时时间（毫秒），超时未收到视为推送丢失并对账
+    @Value("${account.ledger.gap-timeout-ms:5000}")
+    private long gapTimeoutMs;
+    
         // 持仓信息缓存有效期（毫秒），2秒内不重复获取（提高频率以实时更新盈亏）
         private static final long POSITIONS_CACHE_TTL = 2000;
     
@@ -72,7 +96,9 @@ public class AccountService {
             com.quant.model.ExchangeConfig config = exchangeConfigService.getConfig(
                     userId, user.getExchangeType());
             
-            if (config == null || config.getApiKey() == null || config.getSecretKey() == null) {
+            // 模拟交易不需要API密钥
+            boolean paper = user.getExchangeType() == com.quant.model.ExchangeType.PAPER;
+            if (!paper && (config == null || config.getApiKey() == null || config.getSecretKey() == null)) {
                 log.warn("用户 {} 的交易所 {} 配置不完整", userId, user.getExchangeType());
                 return null;
             }
@@ -82,9 +108,9 @@ public class AccountService {
             
             // 初始化适配器（设置API密钥）
             adapter.initialize(
-                config.getApiKey(),
-                config.getSecretKey(),
-                config.getPassphrase()
+                config != null ? config.getApiKey() : null,
+                config != null ? config.getSecretKey() : null,
+                config != null ? config.getPassphrase() : null
             );
             
             // 存储适配器
@@ -104,9 +130,28 @@ public class AccountService {
     private void subscribeAccountUpdates(String userId, ExchangeAdapter adapter) {
         // log.info("开始订阅账户更新: userId={}", userId);
         
+        // 增量推送的交易所使用新的持仓账本（重新初始化时丢弃旧账本）
+        PositionLedger ledger;
+        PositionLedger previous;
+        if (adapter.supportsAccountDeltas()) {
+            ledger = new PositionLedger(userId);
+            previous = ledgers.put(userId, ledger);
+        } else {
+            ledger = null;
+            previous = ledgers.remove(userId);
+        }
+        if (previous != null) {
+            markToMarketEngine.untrack(adapter.getExchangeType(), previous);
+        }
+        
         adapter.subscribeAccountUpdates(userId)
                 .subscribe(
                     accountInfo -> {
+                        if (ledger != null) {
+                            onAccountDelta(userId, adapter, ledger, accountInfo);
+                            return;
+                        }
+                        
                         // log.info("收到账户更新事件: userId={}, totalBalance={}", 
                         //         userId, accountInfo.getTotalBalance());
                         
@@ -156,9 +201,15 @@ public class AccountService {
                     },
                     error -> {
                         log.error("账户更新订阅失败: userId={}, error={}", userId, error.getMessage(), error);
+                        if (ledger != null) {
+                            ledger.streamDown();
+                        }
                     },
                     () -> {
                         log.warn("账户更新订阅流已结束: userId={}", userId);
+                        if (ledger != null) {
+                            ledger.streamDown();
+                        }
                     }
                 );
         
@@ -168,7 +219,10 @@ public class AccountService {
             try {
 //                log.info("连接建立后主动推送一次账户信息（含持仓）: userId={}", userId);
                 AccountInfo currentAccountInfo = getAccountInfo(userId);
-                if (currentAccountInfo != null) {
+                if (currentAccountInfo != null && ledger != null) {
+                    // 持仓账本已包含持仓
+                    pushAccountInfo(userId, currentAccountInfo);
+                } else if (currentAccountInfo != null) {
                     // 确保包含持仓信息
                     enrichAccountInfoWithPositions(userId, adapter, currentAccountInfo)
                             .subscribe(
@@ -193,6 +247,53 @@ public class AccountService {
         }, 3, TimeUnit.SECONDS);
     }
     
+    /**
+     * 处理增量推送：更新账本并推送（账本还没有同步时只更新，不推送）
+     */
+    @SuppressWarnings("unchecked")
+    private void onAccountDelta(String userId, ExchangeAdapter adapter, PositionLedger ledger, AccountInfo delta) {
+        Map<String, Object> metadata = delta.getMetadata();
+        if (metadata != null && Boolean.TRUE.equals(metadata.get(BinanceFuturesWebSocketClient.METADATA_RESYNC))) {
+            log.info("账户数据流需要对账: userId={}", userId);
+            ledger.resync();
+            return;
+        }
+        Map<String, Integer> leverages = metadata != null
+                ? (Map<String, Integer>) metadata.get(BinanceFuturesWebSocketClient.METADATA_LEVERAGES) : null;
+        ledger.applyDelta(delta, leverages, System.currentTimeMillis());
+        markToMarketEngine.track(adapter.getExchangeType(), ledger);
+        if (ledger.isSynced() && ledger.consumeDirty()) {
+            AccountInfo accountInfo = ledger.account();
+            accountCache.put(userId, accountInfo);
+            pushAccountInfo(userId, accountInfo);
+        }
+    }
+    
+    /**
+     * 从交易所REST获取账户和持仓，与账本对账
+     */
+    private Mono<AccountInfo> reconcile(String userId, ExchangeAdapter adapter, PositionLedger ledger) {
+        long requestTime = System.currentTimeMillis();
+        return Mono.zip(adapter.getAccountInfo(userId), adapter.getPositions(userId))
+                .map(tuple -> {
+                    ledger.applySnapshot(tuple.getT1(), tuple.getT2(), requestTime);
+                    markToMarketEngine.track(adapter.getExchangeType(), ledger);
+                    log.debug("持仓账本已对账: userId={}, 持仓数量={}, 耗时={}ms",
+                            userId, tuple.getT2().size(), System.currentTimeMillis() - requestTime);
+                    AccountInfo accountInfo = ledger.account();
+                    accountCache.put(userId, accountInfo);
+                    return accountInfo;
+                });
+    }
+    
+    /**
+     * 持仓账本状态（没有账本时返回null）
+     */
+    public Map<String, Object> getLedgerStats(String userId) {
+        PositionLedger ledger = ledgers.get(userId);
+        return ledger != null ? ledger.stats() : null;
+    }
+    
     /**
      * 为账户信息添加持仓数据（带缓存，避免频繁请求）
      * 注意：即使使用缓存，也会使用实时标记价格更新盈亏
@@ -291,16 +392,18 @@ public class AccountService {
             return positions;
         }
         
-        // 只对Binance期货持仓进行实时价格更新
-        if (adapter instanceof com.quant.exchange.BinanceAdapter) {
-            com.quant.exchange.BinanceAdapter binanceAdapter = (com.quant.exchange.BinanceAdapter) adapter;
-            
-            // 使用公共方法获取实时标记价格
+        // 只对有标记价格流的交易所（Binance期货）进行实时价格更新，直接无锁读取共享价格表
+        com.quant.market.MarkPriceTable priceTable =
+                adapter != null ? markPriceHub.getTable(adapter.getExchangeType()) : null;
+        if (priceTable != null) {
             try {
                 List<Position> updatedPositions = new ArrayList<>();
                 for (Position pos : positions) {
-                    java.math.BigDecimal realTimeMarkPrice = binanceAdapter.getRealTimeMarkPrice(pos.getSymbol());
-                    if (realTimeMarkPrice != null && realTimeMarkPrice.compareTo(java.math.BigDecimal.ZERO) > 0) {
+                    int symbolIndex = priceTable.indexOf(pos.getSymbol());
+                    long scaledPrice = symbolIndex >= 0 ? priceTable.scaledPrice(symbolIndex) : 0;
+                    if (scaledPrice > 0) {
+                        java.math.BigDecimal realTimeMarkPrice =
+                                java.math.BigDecimal.valueOf(scaledPrice, com.quant.market.MarkPriceTable.PRICE_SCALE);
                         // 使用实时标记价格更新
                         BigDecimal newUnrealizedPnl;
                         if ("LONG".equals(pos.getSide())) {
@@ -378,6 +481,23 @@ public class AccountService {
      * 获取账户信息（从缓存或API）
      */
     public AccountInfo getAccountInfo(String userId) {
+        // 有持仓账本的用户直接读取账本，还没有同步时先同步一次
+        PositionLedger ledger = ledgers.get(userId);
+        ExchangeAdapter ledgerAdapter = userAdapters.get(userId);
+        if (ledger != null && ledgerAdapter != null) {
+            if (ledger.isSynced()) {
+                return ledger.account();
+            }
+            try {
+                AccountInfo accountInfo = reconcile(userId, ledgerAdapter, ledger).block();
+                if (accountInfo != null) {
+                    return accountInfo;
+                }
+            } catch (Exception e) {
+                log.error("同步持仓账本失败: userId={}, error={}", userId, e.getMessage(), e);
+            }
+        }
+        
         AccountInfo cached = accountCache.get(userId);
         if (cached != null) {
             return cached;
@@ -444,21 +564,31 @@ public class AccountService {
      * 2. 即使账户状态没有变化，也推送缓存的数据（轻量级推送）
      * 3. 作为WebSocket推送的补充，确保数据持续更新
      * 4. 对于期货持仓，通过定期刷新可以获取实时标记价格并更新盈亏
+     * 5. 有持仓账本的用户只在需要对账时请求REST，其余时间按账本和实时标记价格推送
+     * 6. 续期本节点的账户推送所有权（多节点时只有所有者推送，其他节点的账本只用于REST查询）
      * 
      * 频率：每3秒刷新一次（提高频率以实时更新期货盈亏）
      */
     @Scheduled(fixedRate = 3000) // 每3秒刷新一次（提高频率以实时更新盈亏）
     public void refreshAccountInfo() {
+        accountPushService.renewOwnership();
         if (userAdapters.isEmpty()) {
             log.debug("定时刷新：没有活跃用户");
             return;
         }
 
 //        log.info("========== 定时刷新账户信息开始: 用户数量={} ==========", userAdapters.size());
+        long now = System.currentTimeMillis();
         userAdapters.forEach((userId, adapter) -> {
             try {
 //                log.info("开始定时刷新用户账户: userId={}", userId);
                 
+                PositionLedger ledger = ledgers.get(userId);
+                if (ledger != null) {
+                    refreshLedger(userId, adapter, ledger, now);
+                    return;
+                }
+                
                 // 强制刷新持仓信息以获取实时标记价格（即使有缓存也刷新，因为价格在变化）
                 // 这样可以使用WebSocket的实时标记价格更新盈亏
                 adapter.getAccountInfo(userId)
@@ -496,20 +626,84 @@ public class AccountService {
     }
     
     /**
-     * 获取实时价格
+     * 定时刷新有持仓账本的用户：需要对账时请求REST，否则直接推送账本
+     */
+    private void refreshLedger(String userId, ExchangeAdapter adapter, PositionLedger ledger, long now) {
+        if (!ledger.needsReconcile(now, reconcileIntervalMs, gapTimeoutMs)) {
+            // 盈亏已由盯市引擎更新，上次推送后没有变化时不推送
+            if (ledger.consumeDirty()) {
+                AccountInfo accountInfo = ledger.account();
+                accountCache.put(userId, accountInfo);
+                pushAccountInfo(userId, accountInfo);
+            }
+            return;
+        }
+        reconcile(userId, adapter, ledger).subscribe(
+                accountInfo -> {
+                    if (ledger.consumeDirty()) {
+                        pushAccountInfo(userId, accountInfo);
+                    }
+                },
+                error -> {
+                    log.error("持仓账本对账失败: userId={}, error={}", userId, error.getMessage(), error);
+                    if (ledger.isSynced() && ledger.consumeDirty()) {
+                        pushAccountInfo(userId, ledger.account());
+                    }
+                }
+        );
+    }
+    
+    /**
+     * 强制从交易所API刷新账户信息（有持仓账本时立即对账）
+     */
+    public AccountInfo refreshFromExchange(String userId) {
+        PositionLedger ledger = ledgers.get(userId);
+        ExchangeAdapter adapter = userAdapters.get(userId);
+        clearCache(userId);
+        if (ledger != null && adapter != null) {
+            try {
+                AccountInfo accountInfo = reconcile(userId, adapter, ledger).block();
+                if (accountInfo != null) {
+                    return accountInfo;
+                }
+            } catch (Exception e) {
+                log.error("持仓账本对账失败: userId={}, error={}", userId, e.getMessage(), e);
+            }
+        }
+        return getAccountInfo(userId);
+    }
+    
+    /**
+     * 获取实时价格（从共享的标记价格中心读取）
      */
     public BigDecimal getRealTimePrice(String userId, String symbol) {
         ExchangeAdapter adapter = userAdapters.get(userId);
         if (adapter == null) {
             return null;
         }
+        return markPriceHub.getMarkPrice(adapter.getExchangeType(), symbol);
+    }
 
-        if (adapter instanceof com.quant.exchange.BinanceAdapter) {
-            com.quant.exchange.BinanceAdapter binanceAdapter = (com.quant.exchange.BinanceAdapter) adapter;
-            return binanceAdapter.getRealTimeMarkPrice(symbol);
+    /**
+     * 订阅用户交易所的实时标记价格更新（同一交易所的所有用户共享一条价格流）
+     * 适配器未初始化时会先尝试初始化；不支持标记价格流的交易所返回空流
+     */
+    public reactor.core.publisher.Flux<MarkPriceUpdate> subscribeMarkPrices(String userId) {
+        ExchangeAdapter adapter = userAdapters.get(userId);
+        if (adapter == null) {
+            log.info("用户 {} 的适配器未初始化，尝试初始化...", userId);
+            try {
+                initializeUserExchange(userId).block(); // 同步初始化
+                adapter = userAdapters.get(userId);
+            } catch (Exception e) {
+                log.error("初始化用户交易所失败: userId={}, error={}", userId, e.getMessage());
+            }
         }
 
-        return null;
+        if (adapter == null) {
+            return reactor.core.publisher.Flux.empty();
+        }
+        return markPriceHub.markPriceUpdates(adapter.getExchangeType());
     }
 
     /**
@@ -529,6 +723,12 @@ public class AccountService {
             }
         }
         
+        // 有持仓账本时读取账本
+        PositionLedger ledger = ledgers.get(userId);
+        if (adapter != null && ledger != null && ledger.isSynced()) {
+            return ledger.positions();
+        }
+        
         if (adapter != null) {
             try {
                 return adapter.getPositions(userId)
@@ -543,11 +743,16 @@ public class AccountService {
     
     /**
      * 清除缓存（强制刷新）
+     * 有持仓账本时保留账本（下单后的变化由增量推送更新），超时未收到推送时在定时刷新中对账
      */
     public void clearCache(String userId) {
         accountCache.remove(userId);
         positionsCache.remove(userId);
         positionsLastUpdate.remove(userId);
+        PositionLedger ledger = ledgers.get(userId);
+        if (ledger != null) {
+            ledger.expectUpdate(System.currentTimeMillis());
+        }
     }
     
     /**
@@ -727,6 +932,7 @@ public class AccountService {
      * @param margin 平仓保证金（USDT），如果提供则根据保证金计算数量
      * @param strategyName 策略名称（策略平仓时记录，可选）
      */
+    @Override
     public Mono<Boolean> closePositionReactive(String userId, String symbol, String side, 
                                                java.math.BigDecimal quantity, java.math.BigDecimal margin, String strategyName) {
         ExchangeAdapter adapter = userAdapters.get(userId);
@@ -975,6 +1181,7 @@ public class AccountService {
                 
                 log.info("按保证金开仓: userId={}, symbol={}, side={}, 保证金={} USDT, 杠杆={}, 当前价格={}, 计算数量={}", 
                         userId, symbol, side, margin, leverage, currentPrice, openQuantity);
+                applyPaperLeverage(adapter, symbol, leverage);
             } catch (Exception e) {
                 log.error("根据保证金计算开仓数量失败: userId={}, symbol={}, side={}, margin={}, error={}", 
                         userId, symbol, side, margin, e.getMessage(), e);
@@ -1072,6 +1279,7 @@ public class AccountService {
      * @param margin 保证金（实际价值，USDT）
      * @param strategyType 策略类型（用于确定默认杠杆，如DUAL_DIRECTION默认50倍）
      */
+    @Override
     public Mono<Boolean> openPositionReactive(String userId, String symbol, String side, 
                                              java.math.BigDecimal quantity, java.math.BigDecimal margin, String strategyType) {
         ExchangeAdapter adapter = userAdapters.get(userId);
@@ -1127,6 +1335,12 @@ public class AccountService {
                             }
                         }
                         
+                        // 模拟交易使用模拟账户的价格来源
+                        if ((currentPrice == null || currentPrice.compareTo(java.math.BigDecimal.ZERO) <= 0)
+                                && adapter instanceof com.quant.exchange.PaperExchangeAdapter paperAdapter) {
+                            currentPrice = paperAdapter.getMarkPrice(symbol);
+                        }
+                        
                         // 如果获取不到杠杆，根据策略类型使用默认值
                         if (leverage == null) {
                             if ("DUAL_DIRECTION".equals(strategyType)) {
@@ -1153,6 +1367,7 @@ public class AccountService {
                         
                         log.info("按保证金开仓: userId={}, symbol={}, side={}, 保证金={} USDT, 杠杆={}倍, 名义价值={} USDT, 当前价格={}, 计算数量={}", 
                                 userId, symbol, side, margin, leverage, notionalValue, currentPrice, calculatedQuantity);
+                        applyPaperLeverage(adapter, symbol, leverage);
                         
                         return calculatedQuantity;
                     })
@@ -1223,37 +1438,22 @@ public class AccountService {
                 .onErrorReturn(false);
     }
     
+    /**
+     * 模拟交易：按计算开仓数量时使用的杠杆设置模拟账户的杠杆，使占用的保证金与请求的保证金一致
+     * （否则模拟账户按 exchange.paper.default-leverage 计算）；实盘杠杆由交易所账户配置决定
+     */
+    private void applyPaperLeverage(ExchangeAdapter adapter, String symbol, int leverage) {
+        if (adapter instanceof com.quant.exchange.PaperExchangeAdapter paperAdapter) {
+            paperAdapter.setLeverage(symbol, leverage);
+        }
+    }
+
     /**
      * 推送账户信息给指定用户
      */
     private void pushAccountInfo(String userId, AccountInfo accountInfo) {
-        try {
-            // 构建完整的目标路径
-            String destination = "/user/" + userId + "/account";
-//            log.info("准备推送账户信息: destination={}, userId={}, totalBalance={}, 持仓数量={}",
-//                    destination, userId, accountInfo.getTotalBalance(),
-//                    accountInfo.getPositions() != null ? accountInfo.getPositions().size() : 0);
-            
-            // 方法1：使用convertAndSendToUser推送（Spring会自动添加/user前缀）
-            // 注意：第一个参数应该是Principal的name，Spring会将其转换为/user/{username}/destination
-            messagingTemplate.convertAndSendToUser(
-                userId,  // 这应该是Principal.getName()返回的值
-                "/account",
-                accountInfo
-            );
-            
-            // 方法2：直接发送到完整路径（确保消息能够到达）
-            // 注意：这需要消息代理支持/user前缀（已在WebSocketConfig中配置）
-            messagingTemplate.convertAndSend(destination, accountInfo);
-            
-//            log.info("已尝试两种推送方式: convertAndSendToUser + convertAndSend");
-//
-//            log.info("推送账户信息到WebSocket完成: userId={}, destination={}, totalBalance={}, 持仓数量={}",
-//                    userId, destination, accountInfo.getTotalBalance(),
-//                    accountInfo.getPositions() != null ? accountInfo.getPositions().size() : 0);
-        } catch (Exception e) {
-            log.error("推送账户信息失败: userId={}, error={}", userId, e.getMessage(), e);
-        }
+        // 按用户合并并只推送与上次推送相比的增量
+        accountPushService.publish(userId, accountInfo);
     }
 }
 
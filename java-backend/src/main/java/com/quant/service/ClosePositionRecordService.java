@@ -139,6 +139,14 @@ public class ClosePositionRecordService {
         return repository.findByUserIdAndSymbolOrderByCreatedAtDesc(userId, symbol);
     }
     
+    /**
+     * 查询用户在指定交易对、指定时间之后的平仓记录
+     */
+    public java.util.List<ClosePositionRecord> getRecentClosePositionRecords(String userId, String symbol,
+                                                                           java.time.LocalDateTime since) {
+        return repository.findByUserIdAndSymbolAndCreatedAtAfterOrderByCreatedAtDesc(userId, symbol, since);
+    }
+    
     /**
      * 统计用户的总盈亏
      */
@@ -1,8 +1,8 @@
 package com.quant.service;
 
 import com.quant.model.StrategyResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -11,20 +11,40 @@ import java.math.BigDecimal;
 /**
  * 订单服务
  * 负责实际交易订单的执行
+ * 
+ * 实盘通过 {@link AccountService} 下单；回放时使用模拟交易所和回放时钟创建独立实例
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class OrderService {
 
-    private final AccountService accountService;
+    private final PositionOperations positionOperations;
     private final ProfitCountService profitCountService;
+    // 当前时间（毫秒），用于冷却期判断
+    private final java.util.function.LongSupplier clock;
 
     // 开仓冷却期缓存：Key = userId:symbol:side, Value = 上次开仓时间戳
     private final java.util.Map<String, Long> lastOpenTimeCache = new java.util.concurrent.ConcurrentHashMap<>();
     // 开仓冷却期（毫秒）：30秒内不允许同一方向重复开仓
     private static final long OPEN_COOLDOWN_MS = 30_000;
     
+    @Autowired
+    public OrderService(AccountService accountService, ProfitCountService profitCountService) {
+        this(accountService, profitCountService, System::currentTimeMillis);
+    }
+    
+    /**
+     * @param positionOperations 开仓/平仓操作
+     * @param profitCountService 补仓次数服务（可为null）
+     * @param clock 当前时间（毫秒）
+     */
+    public OrderService(PositionOperations positionOperations, ProfitCountService profitCountService,
+                        java.util.function.LongSupplier clock) {
+        this.positionOperations = positionOperations;
+        this.profitCountService = profitCountService;
+        this.clock = clock;
+    }
+    
     /**
      * 执行交易订单
      */
@@ -87,7 +107,7 @@ public class OrderService {
                 String shortCooldownKey = userId + ":" + symbol + ":SHORT";
                 Long lastLongOpenTime = lastOpenTimeCache.get(longCooldownKey);
                 Long lastShortOpenTime = lastOpenTimeCache.get(shortCooldownKey);
-                long now = System.currentTimeMillis();
+                long now = clock.getAsLong();
                 if ((lastLongOpenTime != null && (now - lastLongOpenTime) < OPEN_COOLDOWN_MS) ||
                     (lastShortOpenTime != null && (now - lastShortOpenTime) < OPEN_COOLDOWN_MS)) {
                     log.info("双向开仓冷却期内，跳过开仓: userId={}, symbol={}", userId, symbol);
@@ -98,8 +118,8 @@ public class OrderService {
                         userId, symbol, margin);
 
                 // 同时开多空两个仓位（响应式），双向策略使用50倍杠杆
-                Mono<Boolean> longMono = accountService.openPositionReactive(userId, symbol, "LONG", null, margin, "DUAL_DIRECTION");
-                Mono<Boolean> shortMono = accountService.openPositionReactive(userId, symbol, "SHORT", null, margin, "DUAL_DIRECTION");
+                Mono<Boolean> longMono = positionOperations.openPositionReactive(userId, symbol, "LONG", null, margin, "DUAL_DIRECTION");
+                Mono<Boolean> shortMono = positionOperations.openPositionReactive(userId, symbol, "SHORT", null, margin, "DUAL_DIRECTION");
 
                 return Mono.zip(longMono, shortMono)
                         .map(tuple -> {
@@ -107,7 +127,7 @@ public class OrderService {
                             boolean shortSuccess = tuple.getT2();
 
                             // 更新冷却期缓存
-                            long currentTime = System.currentTimeMillis();
+                            long currentTime = clock.getAsLong();
                             if (longSuccess) {
                                 lastOpenTimeCache.put(longCooldownKey, currentTime);
                             }
@@ -157,12 +177,12 @@ public class OrderService {
             }
             
             // 调用AccountService平仓（响应式版本，全部平仓，不指定数量，传递策略名称）
-            return accountService.closePositionReactive(userId, symbol, side, null, null, strategyName)
+            return positionOperations.closePositionReactive(userId, symbol, side, null, null, strategyName)
                     .map(success -> {
                         if (success) {
-                            return "CLOSE_ORDER_SUCCESS_" + System.currentTimeMillis();
+                            return "CLOSE_ORDER_SUCCESS_" + clock.getAsLong();
                         } else {
-                            return "CLOSE_ORDER_FAILED_" + System.currentTimeMillis();
+                            return "CLOSE_ORDER_FAILED_" + clock.getAsLong();
                         }
                     });
         }
@@ -184,7 +204,7 @@ public class OrderService {
         // 开仓冷却期检查：防止同一方向短时间内重复开仓（解决持仓数据延迟导致的重复开仓问题）
         String cooldownKey = userId + ":" + symbol + ":" + side;
         Long lastOpenTime = lastOpenTimeCache.get(cooldownKey);
-        long now = System.currentTimeMillis();
+        long now = clock.getAsLong();
         if (lastOpenTime != null && (now - lastOpenTime) < OPEN_COOLDOWN_MS) {
             long remainingSeconds = (OPEN_COOLDOWN_MS - (now - lastOpenTime)) / 1000;
             log.info("开仓冷却期内，跳过开仓: userId={}, symbol={}, side={}, 剩余冷却时间={}秒",
@@ -215,19 +235,19 @@ public class OrderService {
             
             // 调用AccountService按保证金开仓（响应式），传递策略类型
             final String finalCooldownKey = cooldownKey;
-            return accountService.openPositionReactive(userId, symbol, side, null, margin, strategyType)
+            return positionOperations.openPositionReactive(userId, symbol, side, null, margin, strategyType)
                     .flatMap(success -> {
                         if (success) {
                             // 开仓成功，更新冷却期缓存
-                            lastOpenTimeCache.put(finalCooldownKey, System.currentTimeMillis());
+                            lastOpenTimeCache.put(finalCooldownKey, clock.getAsLong());
                             // 如果是补仓操作，增加补仓次数
                             if (isAddPosition && !isRebalance && profitCountService != null) {
                                 return profitCountService.incrementAddCount(userId, symbol, finalSide)
-                                        .thenReturn("ORDER_SUCCESS_" + System.currentTimeMillis());
+                                        .thenReturn("ORDER_SUCCESS_" + clock.getAsLong());
                             }
-                            return Mono.just("ORDER_SUCCESS_" + System.currentTimeMillis());
+                            return Mono.just("ORDER_SUCCESS_" + clock.getAsLong());
                         } else {
-                            return Mono.just("ORDER_FAILED_" + System.currentTimeMillis());
+                            return Mono.just("ORDER_FAILED_" + clock.getAsLong());
                         }
                     });
         } else {
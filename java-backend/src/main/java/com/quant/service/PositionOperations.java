@@ -0,0 +1,34 @@
+package com.quant.service;
+
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * 开仓/平仓操作
+ * 实盘由 {@link AccountService} 通过用户的交易所适配器执行；回放时由模拟交易所实现
+ */
+public interface PositionOperations {
+
+    /**
+     * 开仓
+     *
+     * @param side 持仓方向 (LONG/SHORT)
+     * @param quantity 开仓数量（与margin二选一）
+     * @param margin 保证金（USDT）
+     * @param strategyType 策略类型（用于确定默认杠杆，如DUAL_DIRECTION默认50倍）
+     */
+    Mono<Boolean> openPositionReactive(String userId, String symbol, String side,
+                                       BigDecimal quantity, BigDecimal margin, String strategyType);
+
+    /**
+     * 平仓
+     *
+     * @param side 持仓方向 (LONG/SHORT)
+     * @param quantity 平仓数量，如果为null则平全部
+     * @param margin 平仓保证金（USDT），如果提供则根据保证金计算数量
+     * @param strategyName 策略名称（策略平仓时记录，可选）
+     */
+    Mono<Boolean> closePositionReactive(String userId, String symbol, String side,
+                                        BigDecimal quantity, BigDecimal margin, String strategyName);
+}
@@ -184,5 +184,38 @@ public class ProfitCountService {
                     return counts;
                 }));
     }
-}
+    
+    /**
+     * 一次获取多空两个方向的盈利次数和补仓次数（单次Redis MGET）
+     * 如果key不存在，会自动初始化为0（与 getCounts 保持一致）
+     * 同步方法：在调用线程上阻塞访问Redis
+     */
+    public PositionCounts getPositionCounts(String userId, String symbol) {
+        java.util.List<String> keys = java.util.List.of(
+                getProfitCountKey(userId, symbol, "LONG"),
+                getAddCountKey(userId, symbol, "LONG"),
+                getProfitCountKey(userId, symbol, "SHORT"),
+                getAddCountKey(userId, symbol, "SHORT")
+        );
+        java.util.List<String> values = redisTemplate.opsForValue().multiGet(keys);
 
+        int[] counts = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            String value = values != null ? values.get(i) : null;
+            if (value != null) {
+                counts[i] = Integer.parseInt(value);
+            } else {
+                // 只在key首次缺失时写入，正常情况下只有一次MGET
+                redisTemplate.opsForValue().setIfAbsent(keys.get(i), "0");
+            }
+        }
+        return new PositionCounts(counts[0], counts[1], counts[2], counts[3]);
+    }
+
+    /**
+     * 多空两个方向的盈利次数和补仓次数
+     */
+    public record PositionCounts(int longProfitCount, int longAddCount,
+                                 int shortProfitCount, int shortAddCount) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.quant.service;
 
 import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -24,6 +25,20 @@ public class RiskController {
     @Value("${risk.control.min-confidence:0.6}")
     private BigDecimal minConfidence;
     
+    /**
+     * 基于交易上下文快照验证策略信号
+     * 快照无效（持仓获取失败或无价格）时始终拒绝，其余规则受风控开关控制
+     */
+    public boolean validateSignal(StrategyResponse response, TradingContext context) {
+        if (!context.isFetchSuccess() || !context.hasValidPrice()) {
+            log.warn("交易上下文无效，拒绝策略信号: userId={}, symbol={}, signal={}",
+                    context.getUserId(), context.getSymbol(), response.getSignal());
+            return false;
+        }
+        
+        return validateSignal(response);
+    }
+    
     /**
      * 验证策略信号是否通过风控
      */
@@ -1,30 +1,73 @@
 package com.quant.service;
 
 import com.quant.model.StrategyConfig;
+import com.quant.strategy.StrategyEngine;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 策略执行服务
  * 负责管理策略的执行循环
+ *
+ * 触发模式（策略配置 triggerMode，默认取 strategy.execution.trigger-mode）：
+ * - LOOP：每10秒轮询执行一次（占用一个线程，默认）
+ * - WHEEL：由时间轮统一调度，周期和抖动可配置，见 {@link StrategyScheduler}
+ * - TICK：标记价格推送驱动执行，见 {@link StrategyTickTrigger}
+ *
+ * 执行引擎（策略配置 engine，默认取 strategy.execution.engine）：
+ * - PYTHON：调用Python策略服务
+ * - JVM：进程内执行Java策略实现，不依赖Python服务
+ * - SHADOW：以Python结果下单，同时执行Java策略并比对结果
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class StrategyExecutionService {
 
     private final TradingEngine tradingEngine;
     private final StrategyManager strategyManager;
     private final StrategyConfigService strategyConfigService;
+    private final StrategyTickTrigger strategyTickTrigger;
+    private final StrategyScheduler strategyScheduler;
+    private final Executor strategyExecutor;  // 策略循环执行器（线程池或虚拟线程，见AsyncConfig）
+
+    public StrategyExecutionService(
+            TradingEngine tradingEngine,
+            StrategyManager strategyManager,
+            StrategyConfigService strategyConfigService,
+            StrategyTickTrigger strategyTickTrigger,
+            StrategyScheduler strategyScheduler,
+            @Qualifier("taskExecutor") Executor strategyExecutor) {
+        this.tradingEngine = tradingEngine;
+        this.strategyManager = strategyManager;
+        this.strategyConfigService = strategyConfigService;
+        this.strategyTickTrigger = strategyTickTrigger;
+        this.strategyScheduler = strategyScheduler;
+        this.strategyExecutor = strategyExecutor;
+    }
+
+    @Value("${strategy.execution.trigger-mode:LOOP}")
+    private String defaultTriggerMode;
+
+    @Value("${strategy.execution.engine:PYTHON}")
+    private String defaultEngine;
+
+    // 行情触发模式默认参数
+    private static final long DEFAULT_DEBOUNCE_MS = 200;
+    private static final long DEFAULT_MIN_INTERVAL_MS = 1000;
+
+    // 时间轮调度模式默认参数
+    private static final long DEFAULT_INTERVAL_MS = 10000;
+    private static final long DEFAULT_JITTER_MS = 500;
 
     // 存储运行中的策略：userId -> strategyName -> isRunning
     private final Map<String, Map<String, AtomicBoolean>> runningStrategies = new ConcurrentHashMap<>();
@@ -78,8 +121,10 @@ public class StrategyExecutionService {
         log.info("启动策略: userId={}, strategyName={}, strategyType={}, exchangeType={}",
                 userId, strategyName, strategyType, exchangeType);
 
-        // 检查Python策略服务是否可用
-        if (!checkPythonServiceAvailable()) {
+        // 检查Python策略服务是否可用（JVM引擎不依赖Python服务）
+        Map<String, Object> config = strategyConfigService.getStrategyConfig(userId, strategyName);
+        StrategyEngine engine = getEngine(config);
+        if (engine != StrategyEngine.JVM && !checkPythonServiceAvailable()) {
             log.error("Python策略服务不可用，无法启动策略");
             return false;
         }
@@ -101,8 +146,44 @@ public class StrategyExecutionService {
         // 更新数据库状态
         strategyConfigService.enableStrategy(userId, strategyName, exchangeType);
 
-        // 启动策略执行循环（异步执行）
-        executeStrategyLoop(userId, strategyName, strategyType, exchangeType);
+        String triggerMode = getTriggerMode(config);
+        if ("TICK".equalsIgnoreCase(triggerMode) || "WHEEL".equalsIgnoreCase(triggerMode)) {
+            List<String> symbols = getStrategySymbols(userId, strategyName);
+            if (symbols == null || symbols.isEmpty()) {
+                symbols = java.util.Arrays.asList("BTC/USDT");
+                log.warn("策略未配置交易对，使用默认: BTC/USDT");
+            }
+            List<String> normalizedSymbols = symbols.stream().map(this::normalizeSymbol).toList();
+            String pythonStrategyName = convertToPythonStrategyName(strategyName, strategyType);
+
+            // 行情触发模式：注册到标记价格流，不占用线程
+            if ("TICK".equalsIgnoreCase(triggerMode)) {
+                boolean registered = strategyTickTrigger.register(userId, strategyName,
+                        pythonStrategyName, normalizedSymbols,
+                        getLongParam(config, "debounceMs", DEFAULT_DEBOUNCE_MS),
+                        getLongParam(config, "minIntervalMs", DEFAULT_MIN_INTERVAL_MS), engine);
+                if (registered) {
+                    return true;
+                }
+                log.warn("行情触发注册失败，回退到时间轮调度: userId={}, strategyName={}", userId, strategyName);
+            }
+
+            // 时间轮调度模式：由调度器统一安排执行时间，不占用线程
+            strategyScheduler.schedule(userId, strategyName, pythonStrategyName, normalizedSymbols,
+                    getLongParam(config, "intervalMs", DEFAULT_INTERVAL_MS),
+                    getLongParam(config, "jitterMs", DEFAULT_JITTER_MS), engine);
+            return true;
+        }
+
+        // 启动策略执行循环（提交到策略执行器，每个策略独占一个线程）
+        try {
+            strategyExecutor.execute(() -> executeStrategyLoop(userId, strategyName, strategyType, engine));
+        } catch (RejectedExecutionException e) {
+            log.error("策略执行器已满，无法启动策略: userId={}, strategyName={}, error={}",
+                    userId, strategyName, e.getMessage());
+            userStrategies.remove(strategyName);
+            return false;
+        }
 
         return true;
     }
@@ -131,6 +212,8 @@ public class StrategyExecutionService {
         // 停止策略
         isRunning.set(false);
         userStrategies.remove(strategyName);
+        strategyTickTrigger.unregister(userId, strategyName);
+        strategyScheduler.unschedule(userId, strategyName);
 
         // 更新数据库状态
         strategyConfigService.disableStrategy(userId, strategyName);
@@ -157,12 +240,11 @@ public class StrategyExecutionService {
     }
     
     /**
-     * 策略执行循环（异步执行）
+     * 策略执行循环（在策略执行器线程中运行，直到策略被停止）
      */
-    @Async
-    public void executeStrategyLoop(String userId, String strategyName, String strategyType, String exchangeType) {
-        log.info("开始策略执行循环: userId={}, strategyName={}, strategyType={}", 
-                userId, strategyName, strategyType);
+    private void executeStrategyLoop(String userId, String strategyName, String strategyType, StrategyEngine engine) {
+        log.info("开始策略执行循环: userId={}, strategyName={}, strategyType={}, engine={}", 
+                userId, strategyName, strategyType, engine);
         
         // 获取策略运行状态
         Map<String, AtomicBoolean> userStrategies = runningStrategies.get(userId);
@@ -197,7 +279,7 @@ public class StrategyExecutionService {
                     String normalizedSymbol = normalizeSymbol(symbol);
                     
                     // 执行交易流程（传递userId）
-                    tradingEngine.executeTrading(userId, normalizedSymbol, pythonStrategyName)
+                    tradingEngine.executeTrading(userId, normalizedSymbol, pythonStrategyName, engine)
                             .doOnSuccess(v -> log.debug("策略执行成功: userId={}, strategyName={}, symbol={}", 
                                     userId, strategyName, symbol))
                             .doOnError(error -> log.error("策略执行失败: userId={}, strategyName={}, error={}", 
@@ -289,6 +371,40 @@ public class StrategyExecutionService {
         return null;
     }
     
+    /**
+     * 获取策略的触发模式（WHEEL/TICK/LOOP）
+     */
+    private String getTriggerMode(Map<String, Object> config) {
+        Object mode = config != null ? config.get("triggerMode") : null;
+        return mode != null ? String.valueOf(mode) : defaultTriggerMode;
+    }
+
+    /**
+     * 获取策略的执行引擎（PYTHON/JVM/SHADOW）
+     */
+    private StrategyEngine getEngine(Map<String, Object> config) {
+        StrategyEngine fallback = StrategyEngine.from(defaultEngine, StrategyEngine.PYTHON);
+        return StrategyEngine.from(config != null ? config.get("engine") : null, fallback);
+    }
+
+    /**
+     * 从策略配置中读取数值参数
+     */
+    private long getLongParam(Map<String, Object> config, String name, long defaultValue) {
+        Object value = config != null ? config.get(name) : null;
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                log.warn("策略参数格式错误，使用默认值: {}={}, default={}", name, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * 标准化交易对格式
      * 将用户输入的格式转换为交易所API需要的格式
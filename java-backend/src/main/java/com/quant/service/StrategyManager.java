@@ -2,14 +2,25 @@ package com.quant.service;
 
 import com.quant.model.StrategyRequest;
 import com.quant.model.StrategyResponse;
-import lombok.RequiredArgsConstructor;
+import com.quant.transport.StrategyTcpClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 策略管理器
@@ -17,6 +28,18 @@ import java.time.Duration;
  * 
  * 集成方式：RESTful API（推荐）
  * 也可切换为：进程调用、消息队列等
+ * 
+ * 批量合并（python.strategy.batch.enabled，默认关闭，需要Python服务提供批量接口）：
+ * 同一时间窗口内到期的策略请求合并为一次 /api/strategy/execute-batch 调用，
+ * 响应按 requestId 匹配回各自的请求；单个请求失败只影响该请求（返回默认响应）
+ * - 同时进行中的批量调用最多 {@value #BATCH_CONCURRENCY} 个，其余批次在合并管道中排队（公平背压，不会溢出）
+ * - 排队超过 python.strategy.batch.max-queue-ms 的请求在发送前直接返回默认响应，不再调用Python服务
+ * - 调用方的超时 = 合并窗口 + 最长排队时间 + 调用超时（排队超时的请求在调用方超时之前已经得到默认响应）
+ * - 合并管道异常终止时重新建立，期间无法入队的请求立即返回默认响应
+ * 
+ * 传输方式（python.strategy.transport）：
+ * - http：JSON over HTTP（默认）
+ * - tcp：与Python服务保持一条长连接，二进制编码，见 {@link StrategyTcpClient}
  */
 @Slf4j
 @Service
@@ -24,12 +47,15 @@ public class StrategyManager {
     
     private final WebClient webClient;  // 通用WebClient（用于交易所API）
     private final WebClient pythonStrategyWebClient;  // Python服务专用WebClient（不使用代理）
+    private final StrategyTcpClient strategyTcpClient;  // Python服务TCP长连接（transport=tcp时使用）
     
     public StrategyManager(
             WebClient webClient,
-            @org.springframework.beans.factory.annotation.Qualifier("pythonStrategyWebClient") WebClient pythonStrategyWebClient) {
+            @org.springframework.beans.factory.annotation.Qualifier("pythonStrategyWebClient") WebClient pythonStrategyWebClient,
+            StrategyTcpClient strategyTcpClient) {
         this.webClient = webClient;
         this.pythonStrategyWebClient = pythonStrategyWebClient;
+        this.strategyTcpClient = strategyTcpClient;
     }
     
     @Value("${python.strategy.api.url:http://localhost:8000}")
@@ -38,6 +64,77 @@ public class StrategyManager {
     @Value("${python.strategy.api.timeout:5000}")
     private int timeoutMs;
     
+    @Value("${python.strategy.transport:http}")
+    private String transport;
+    
+    @Value("${python.strategy.batch.enabled:false}")
+    private boolean batchEnabled;
+    
+    @Value("${python.strategy.batch.window-ms:50}")
+    private long batchWindowMs;
+    
+    @Value("${python.strategy.batch.max-size:200}")
+    private int batchMaxSize;
+    
+    @Value("${python.strategy.batch.max-queue-ms:5000}")
+    private long batchMaxQueueMs;
+    
+    // 同时进行中的批量调用数
+    private static final int BATCH_CONCURRENCY = 4;
+    
+    private final AtomicLong requestSequence = new AtomicLong();
+    
+    // 等待合并的请求（管道重建时替换）
+    private volatile Sinks.Many<PendingRequest> pendingRequests;
+    private volatile Disposable batchSubscription;
+    private volatile boolean shuttingDown;
+    
+    // 排队超时而未发送的请求数
+    private final AtomicLong expiredRequests = new AtomicLong();
+    
+    // Python服务不支持批量接口时（旧版本）回退为逐个调用
+    private volatile boolean batchSupported = true;
+    
+    @PostConstruct
+    public void init() {
+        if (!batchEnabled) {
+            return;
+        }
+        startPipeline();
+        log.info("策略批量合并已启用: windowMs={}, maxSize={}, maxQueueMs={}", batchWindowMs, batchMaxSize,
+                batchMaxQueueMs);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        if (batchSubscription != null) {
+            batchSubscription.dispose();
+        }
+    }
+    
+    /**
+     * 建立合并管道
+     * bufferTimeout 使用公平背压：下游（最多 BATCH_CONCURRENCY 个进行中的批次）没有请求时不发出批次，
+     * 请求留在 sink 中排队，而不是抛出 OverflowException 终止管道
+     */
+    private synchronized void startPipeline() {
+        Sinks.Many<PendingRequest> sink = Sinks.many().unicast().onBackpressureBuffer();
+        pendingRequests = sink;
+        batchSubscription = sink.asFlux()
+                .bufferTimeout(batchMaxSize, Duration.ofMillis(batchWindowMs), true)
+                .flatMap(this::dispatchBatch, BATCH_CONCURRENCY)
+                .subscribe(
+                        v -> { },
+                        error -> {
+                            log.error("策略批量合并管道异常终止，重新建立: {}", error.getMessage(), error);
+                            if (!shuttingDown) {
+                                startPipeline();
+                            }
+                        }
+                );
+    }
+    
     /**
      * 调用Python策略获取交易信号
      * 
@@ -47,12 +144,179 @@ public class StrategyManager {
     public Mono<StrategyResponse> executeStrategy(StrategyRequest request) {
 //        log.info("调用Python策略: {}", request.getStrategyName());
         
-        // 使用Python服务专用WebClient（不使用代理）
-        return pythonStrategyWebClient.post()
-                .uri(pythonApiUrl + "/api/strategy/execute")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(StrategyResponse.class)
+        // 批量合并：放入当前时间窗口，由合并管道统一发送
+        if (batchEnabled && batchSupported) {
+            return Mono.defer(() -> {
+                        Sinks.One<StrategyResponse> result = Sinks.one();
+                        try {
+                            pendingRequests.emitNext(new PendingRequest(request, result, System.nanoTime()),
+                                    Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+                        } catch (Sinks.EmissionException e) {
+                            // 管道已终止（正在重建或应用关闭）
+                            return Mono.error(e);
+                        }
+                        return result.asMono();
+                    })
+                    .timeout(Duration.ofMillis(batchWindowMs + batchMaxQueueMs + timeoutMs))
+                    .onErrorResume(error -> {
+                        log.warn("策略调用失败，使用默认响应: {}", error.getMessage());
+                        return Mono.just(StrategyResponse.defaultResponse());
+                    });
+        }
+        
+        return executeSingle(request);
+    }
+    
+    /**
+     * 批量调用Python策略
+     * 
+     * @param requests 策略请求列表（未设置requestId时自动分配）
+     * @return 与请求顺序一一对应的响应列表；整批失败或单个请求缺失响应时，对应位置为默认响应
+     */
+    public Mono<List<StrategyResponse>> executeStrategies(List<StrategyRequest> requests) {
+        if (requests.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        for (StrategyRequest request : requests) {
+            if (request.getRequestId() == null) {
+                request.setRequestId(nextRequestId());
+            }
+        }
+        
+        long start = System.nanoTime();
+        Mono<List<StrategyResponse>> call = isTcpTransport()
+                ? strategyTcpClient.executeBatch(requests)
+                : pythonStrategyWebClient.post()
+                        .uri(pythonApiUrl + "/api/strategy/execute-batch")
+                        .bodyValue(Map.of("requests", requests))
+                        .retrieve()
+                        .bodyToMono(BatchResponse.class)
+                        .map(BatchResponse::getResponses);
+        return call
+                .timeout(Duration.ofMillis(timeoutMs))
+                .map(responses -> {
+                    log.debug("Python策略批量调用完成: transport={}, size={}, elapsedMs={}", transport,
+                            requests.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+                    return matchResponses(requests, responses);
+                })
+                .onErrorResume(WebClientResponseException.NotFound.class, error -> {
+                    // 旧版本Python服务没有批量接口，回退为逐个调用
+                    log.warn("Python策略服务不支持批量接口，回退为逐个调用");
+                    batchSupported = false;
+                    return Flux.fromIterable(requests)
+                            .concatMap(this::executeSingle)
+                            .collectList();
+                })
+                .onErrorResume(error -> {
+                    log.error("Python策略批量调用失败: size={}, error={}", requests.size(), error.getMessage());
+                    List<StrategyResponse> fallback = new ArrayList<>(requests.size());
+                    for (StrategyRequest request : requests) {
+                        fallback.add(defaultResponse(request.getRequestId()));
+                    }
+                    return Mono.just(fallback);
+                });
+    }
+    
+    /**
+     * 按requestId把响应匹配回请求，缺失的请求使用默认响应
+     */
+    private List<StrategyResponse> matchResponses(List<StrategyRequest> requests, List<StrategyResponse> responses) {
+        Map<String, StrategyResponse> byId = new HashMap<>();
+        if (responses != null) {
+            for (StrategyResponse response : responses) {
+                if (response.getRequestId() != null) {
+                    byId.put(response.getRequestId(), response);
+                }
+            }
+        }
+        
+        List<StrategyResponse> matched = new ArrayList<>(requests.size());
+        for (StrategyRequest request : requests) {
+            StrategyResponse response = byId.get(request.getRequestId());
+            if (response == null) {
+                log.warn("批量响应中缺少请求结果，使用默认响应: requestId={}, strategyName={}, symbol={}",
+                        request.getRequestId(), request.getStrategyName(), request.getSymbol());
+                response = defaultResponse(request.getRequestId());
+            }
+            matched.add(response);
+        }
+        return matched;
+    }
+    
+    /**
+     * 发送一个时间窗口内合并的请求，并把结果分发给各自的调用方
+     * 排队过久的请求不发送（调用方很快会超时，结果已无意义）；任何异常都转换为默认响应，不会终止合并管道
+     */
+    private Mono<Void> dispatchBatch(List<PendingRequest> batch) {
+        long now = System.nanoTime();
+        long maxQueueNanos = Duration.ofMillis(batchMaxQueueMs).toNanos();
+        List<PendingRequest> live = new ArrayList<>(batch.size());
+        for (PendingRequest pending : batch) {
+            if (now - pending.enqueuedNanos() > maxQueueNanos) {
+                expiredRequests.incrementAndGet();
+                pending.result().tryEmitValue(defaultResponse(pending.request().getRequestId()));
+            } else {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            return Mono.empty();
+        }
+        List<StrategyRequest> requests = new ArrayList<>(live.size());
+        for (PendingRequest pending : live) {
+            requests.add(pending.request());
+        }
+        return Mono.defer(() -> executeStrategies(requests))
+                .onErrorResume(error -> {
+                    log.error("Python策略批量调用异常: size={}, error={}", requests.size(), error.getMessage(), error);
+                    List<StrategyResponse> fallback = new ArrayList<>(requests.size());
+                    for (StrategyRequest request : requests) {
+                        fallback.add(defaultResponse(request.getRequestId()));
+                    }
+                    return Mono.just(fallback);
+                })
+                .doOnNext(responses -> {
+                    for (int i = 0; i < live.size(); i++) {
+                        live.get(i).result().tryEmitValue(responses.get(i));
+                    }
+                })
+                .then();
+    }
+    
+    /**
+     * 排队超时而未发送的请求数（用于监控）
+     */
+    public long getExpiredRequests() {
+        return expiredRequests.get();
+    }
+    
+    private boolean isTcpTransport() {
+        return "tcp".equalsIgnoreCase(transport);
+    }
+    
+    private String nextRequestId() {
+        return Long.toString(requestSequence.incrementAndGet());
+    }
+    
+    private static StrategyResponse defaultResponse(String requestId) {
+        StrategyResponse response = StrategyResponse.defaultResponse();
+        response.setRequestId(requestId);
+        return response;
+    }
+    
+    /**
+     * 单个请求直接调用 /api/strategy/execute
+     */
+    private Mono<StrategyResponse> executeSingle(StrategyRequest request) {
+        // 使用Python服务专用WebClient（不使用代理）或TCP长连接
+        Mono<StrategyResponse> call = isTcpTransport()
+                ? strategyTcpClient.execute(request)
+                : pythonStrategyWebClient.post()
+                        .uri(pythonApiUrl + "/api/strategy/execute")
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToMono(StrategyResponse.class);
+        return call
                 .timeout(Duration.ofMillis(timeoutMs))
                 .doOnError(error -> log.error("Python策略调用失败: {}", error.getMessage()))
                 .onErrorResume(error -> {
@@ -66,6 +330,15 @@ public class StrategyManager {
      * 健康检查：验证Python策略服务是否可用
      */
     public Mono<Boolean> healthCheck() {
+        if (isTcpTransport()) {
+            return strategyTcpClient.ping()
+                    .timeout(Duration.ofMillis(2000))
+                    .onErrorResume(error -> {
+                        log.warn("Python策略服务健康检查失败（TCP）: {}", error.getMessage());
+                        return Mono.just(false);
+                    });
+        }
+        
         // 使用Python服务专用WebClient（不使用代理）
         return pythonStrategyWebClient.get()
                 .uri(pythonApiUrl + "/health")
@@ -82,5 +355,18 @@ public class StrategyManager {
                     return Mono.just(false);
                 });
     }
+    
+    /**
+     * 等待合并发送的请求
+     */
+    private record PendingRequest(StrategyRequest request, Sinks.One<StrategyResponse> result, long enqueuedNanos) {
+    }
+    
+    /**
+     * 批量接口响应体
+     */
+    @lombok.Data
+    private static class BatchResponse {
+        private List<StrategyResponse> responses;
+    }
 }
-
@@ -0,0 +1,379 @@
+package com.quant.service;
+
+import com.quant.strategy.StrategyEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 策略调度器（时间轮）
+ * 统一调度所有 (userId, strategyName, symbol) 的策略执行
+ *
+ * 与每个策略独立 sleep 的区别：
+ * 1. 所有策略共用一个调度线程，策略执行在 boundedElastic 上进行
+ * 2. 每个任务的初始相位由 key 的哈希决定，并在每个周期叠加随机抖动，
+ *    服务重启后一起恢复的策略不会在同一时刻集中请求Python服务和交易所
+ * 3. 每个策略可在配置中设置 intervalMs（执行周期）和 jitterMs（抖动范围）
+ * 4. 执行开始时间晚于计划时间超过阈值时记录延迟告警，并统计延迟数据
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StrategyScheduler {
+
+    private final TradingEngine tradingEngine;
+
+    @Value("${strategy.scheduler.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${strategy.scheduler.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${strategy.scheduler.lag-warn-ms:1000}")
+    private long lagWarnMs;
+
+    // 已调度的任务：userId:strategyName -> 该策略所有交易对的任务
+    private final Map<String, List<Job>> jobs = new ConcurrentHashMap<>();
+
+    // 延迟统计
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong lateRuns = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    private volatile HashedWheelTimer timer;
+
+    /**
+     * 调度策略（每个交易对一个任务）
+     *
+     * @param symbols 已标准化的交易对（如 BTCUSDT）
+     * @param intervalMs 执行周期
+     * @param jitterMs 每次执行时间的随机抖动范围（±jitterMs）
+     * @param engine 策略执行引擎
+     */
+    public void schedule(String userId, String strategyName, String pythonStrategyName,
+                         List<String> symbols, long intervalMs, long jitterMs, StrategyEngine engine) {
+        unschedule(userId, strategyName);
+
+        long interval = Math.max(tickMs, intervalMs);
+        long jitter = Math.max(0, Math.min(jitterMs, interval / 2));
+        long now = System.nanoTime();
+
+        List<Job> strategyJobs = symbols.stream().map(symbol -> {
+            Job job = new Job(userId, strategyName, pythonStrategyName, symbol, engine,
+                    TimeUnit.MILLISECONDS.toNanos(interval), TimeUnit.MILLISECONDS.toNanos(jitter));
+            job.baseNanos = now + initialPhase(userId + ":" + strategyName + ":" + symbol, job.intervalNanos);
+            job.round = 0;
+            return job;
+        }).toList();
+
+        jobs.put(key(userId, strategyName), strategyJobs);
+        strategyJobs.forEach(this::scheduleNext);
+
+        log.info("策略已加入时间轮调度: userId={}, strategyName={}, symbols={}, intervalMs={}, jitterMs={}, engine={}",
+                userId, strategyName, symbols, interval, jitter, engine);
+    }
+
+    /**
+     * 取消策略调度（停止策略时调用）
+     */
+    public void unschedule(String userId, String strategyName) {
+        List<Job> removed = jobs.remove(key(userId, strategyName));
+        if (removed != null) {
+            removed.forEach(job -> job.active.set(false));
+            log.info("策略已移出时间轮调度: userId={}, strategyName={}", userId, strategyName);
+        }
+    }
+
+    public boolean isScheduled(String userId, String strategyName) {
+        return jobs.containsKey(key(userId, strategyName));
+    }
+
+    /**
+     * 调度统计（执行次数、延迟次数、跳过次数、最大延迟）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("scheduledStrategies", jobs.size());
+        stats.put("scheduledJobs", jobs.values().stream().mapToInt(List::size).sum());
+        stats.put("totalRuns", totalRuns.get());
+        stats.put("lateRuns", lateRuns.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        stats.put("lagWarnMs", lagWarnMs);
+        return stats;
+    }
+
+    /**
+     * 计算下一次执行时间并放入时间轮
+     * 计划时间 = 基准相位 + 周期 × 轮次 + 随机抖动（不累积漂移）
+     */
+    private void scheduleNext(Job job) {
+        if (!job.active.get()) {
+            return;
+        }
+        long deadline = deadline(job.baseNanos, job.intervalNanos, job.round, jitterOffset(job.jitterNanos));
+        job.round++;
+        job.deadlineNanos = deadline;
+        timer().newTimeout(() -> dispatch(job), deadline);
+    }
+
+    /**
+     * 时间轮线程中调用：只负责派发，策略执行在 boundedElastic 上进行
+     */
+    private void dispatch(Job job) {
+        if (!job.active.get()) {
+            return;
+        }
+        long deadline = job.deadlineNanos;
+        scheduleNext(job);
+
+        // 上一次执行尚未完成时跳过本次
+        if (!job.running.compareAndSet(false, true)) {
+            skippedRuns.incrementAndGet();
+            log.warn("上一次策略执行尚未完成，跳过本次调度: userId={}, strategyName={}, symbol={}",
+                    job.userId, job.strategyName, job.symbol);
+            return;
+        }
+
+        Mono.defer(() -> {
+                    recordLag(job, deadline);
+                    return tradingEngine.executeTrading(job.userId, job.symbol, job.pythonStrategyName, job.engine);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> job.running.set(false))
+                .subscribe(
+                        v -> { },
+                        error -> log.error("时间轮策略执行失败: userId={}, strategyName={}, symbol={}, error={}",
+                                job.userId, job.strategyName, job.symbol, error.getMessage())
+                );
+    }
+
+    private void recordLag(Job job, long deadline) {
+        long lagMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline);
+        totalRuns.incrementAndGet();
+        maxLagMs.accumulateAndGet(lagMs, Math::max);
+        if (lagMs > lagWarnMs) {
+            lateRuns.incrementAndGet();
+            log.warn("策略执行延迟: userId={}, strategyName={}, symbol={}, lagMs={}",
+                    job.userId, job.strategyName, job.symbol, lagMs);
+        }
+    }
+
+    /**
+     * 初始相位：按key哈希均匀分布在一个周期内 [0, intervalNanos)
+     */
+    static long initialPhase(String jobKey, long intervalNanos) {
+        return Math.floorMod(jobKey.hashCode(), intervalNanos);
+    }
+
+    /**
+     * 本轮随机抖动，范围 [-jitterNanos, jitterNanos]
+     */
+    static long jitterOffset(long jitterNanos) {
+        return jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1) : 0;
+    }
+
+    /**
+     * 第 round 轮的计划时间：以基准相位为起点计算，抖动只影响本轮，不会累积
+     */
+    static long deadline(long baseNanos, long intervalNanos, long round, long offsetNanos) {
+        return baseNanos + intervalNanos * round + offsetNanos;
+    }
+
+    private HashedWheelTimer timer() {
+        HashedWheelTimer current = timer;
+        if (current == null) {
+            synchronized (this) {
+                current = timer;
+                if (current == null) {
+                    current = new HashedWheelTimer(TimeUnit.MILLISECONDS.toNanos(tickMs), wheelSize);
+                    current.start();
+                    timer = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(list -> list.forEach(job -> job.active.set(false)));
+        jobs.clear();
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    private static String key(String userId, String strategyName) {
+        return userId + ":" + strategyName;
+    }
+
+    private static class Job {
+        private final String userId;
+        private final String strategyName;
+        private final String pythonStrategyName;
+        private final String symbol;
+        private final StrategyEngine engine;
+        private final long intervalNanos;
+        private final long jitterNanos;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private long baseNanos;
+        private long round;
+        private volatile long deadlineNanos;
+
+        private Job(String userId, String strategyName, String pythonStrategyName, String symbol,
+                    StrategyEngine engine, long intervalNanos, long jitterNanos) {
+            this.userId = userId;
+            this.strategyName = strategyName;
+            this.pythonStrategyName = pythonStrategyName;
+            this.symbol = symbol;
+            this.engine = engine;
+            this.intervalNanos = intervalNanos;
+            this.jitterNanos = jitterNanos;
+        }
+    }
+
+    /**
+     * 哈希时间轮
+     * 单线程按固定刻度推进，每个槽位保存到期轮数不同的任务；添加任务为无锁入队，O(1)
+     */
+    static class HashedWheelTimer {
+
+        private final long tickNanos;
+        private final int mask;
+        private final Queue<Timeout>[] buckets;
+        private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private long startNanos;
+        private long tick;
+        private Thread worker;
+
+        @SuppressWarnings("unchecked")
+        HashedWheelTimer(long tickNanos, int wheelSize) {
+            this.tickNanos = tickNanos;
+            int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+            this.mask = size - 1;
+            this.buckets = (Queue<Timeout>[]) new Queue<?>[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+        }
+
+        void start() {
+            if (running.compareAndSet(false, true)) {
+                startNanos = System.nanoTime();
+                worker = new Thread(this::run, "strategy-wheel-timer");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        void stop() {
+            running.set(false);
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+
+        /**
+         * 添加任务（任意线程调用）
+         *
+         * @param deadlineNanos System.nanoTime() 时间域的到期时间
+         */
+        void newTimeout(Runnable task, long deadlineNanos) {
+            pending.add(new Timeout(task, deadlineNanos));
+        }
+
+        private void run() {
+            while (running.get()) {
+                long deadline = startNanos + (tick + 1) * tickNanos;
+                long sleepNanos = deadline - System.nanoTime();
+                if (sleepNanos > 0) {
+                    LockSupport.parkNanos(sleepNanos);
+                    continue;
+                }
+                transferPending();
+                expire(buckets[(int) (tick & mask)], deadline);
+                tick++;
+            }
+        }
+
+        private void transferPending() {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                long ticks = ticksFor(timeout.deadlineNanos);
+                timeout.remainingRounds = roundsFor(ticks);
+                buckets[slotOf(ticks)].add(timeout);
+            }
+        }
+
+        /**
+         * 到期时间所在的刻度（已经过期的任务放在当前刻度，下一次推进时执行）
+         */
+        long ticksFor(long deadlineNanos) {
+            return Math.max((deadlineNanos - startNanos) / tickNanos, tick);
+        }
+
+        int slotOf(long ticks) {
+            return (int) (ticks & mask);
+        }
+
+        /**
+         * 任务放入槽位后还需等待的整圈数
+         */
+        long roundsFor(long ticks) {
+            return (ticks - tick) / buckets.length;
+        }
+
+        int wheelSize() {
+            return buckets.length;
+        }
+
+        private void expire(Queue<Timeout> bucket, long tickDeadline) {
+            int size = bucket.size();
+            for (int i = 0; i < size; i++) {
+                Timeout timeout = bucket.poll();
+                if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadline) {
+                    try {
+                        timeout.task.run();
+                    } catch (Exception e) {
+                        log.error("时间轮任务执行异常: {}", e.getMessage(), e);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                    bucket.add(timeout);
+                }
+            }
+        }
+    }
+
+    private static class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
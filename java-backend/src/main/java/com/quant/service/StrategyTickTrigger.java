@@ -0,0 +1,293 @@
+package com.quant.service;
+
+import com.quant.market.MarkPriceUpdate;
+import com.quant.strategy.StrategyEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 行情驱动的策略触发器
+ * 订阅标记价格流（!markPrice@arr@1s），当策略关注的交易对收到新价格时触发一次策略执行
+ *
+ * 与轮询模式的区别：
+ * 1. 不占用常驻线程，空闲策略不消耗任何线程
+ * 2. 信号延迟跟随行情推送，而不是固定的10秒
+ *
+ * 触发控制（每个策略可单独配置）：
+ * - debounceMs：合并窗口，每次价格更新都把执行推迟到 debounceMs 之后，价格停下来后按最新状态执行一次；
+ *   持续推送时最多推迟 max(debounceMs, minIntervalMs)，不会一直不执行
+ * - minIntervalMs：同一交易对两次执行之间的最小间隔
+ * - 执行期间收到的价格更新不会丢弃，执行结束后再补一次执行
+ */
+@Slf4j
+@Service
+public class StrategyTickTrigger {
+
+    private final AccountService accountService;
+    private final TradingEngine tradingEngine;
+    // 只负责延迟调度的单线程
+    private final ScheduledExecutorService scheduler;
+    // 当前时间（毫秒）
+    private final LongSupplier clock;
+    // 策略执行的线程（默认boundedElastic）
+    private final Scheduler executionScheduler;
+
+    // 已注册的策略：userId:strategyName -> 注册信息
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StrategyTickTrigger(AccountService accountService, TradingEngine tradingEngine) {
+        this(accountService, tradingEngine, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "strategy-tick-trigger");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis, Schedulers.boundedElastic());
+    }
+
+    /**
+     * @param scheduler 延迟调度（测试中使用手动推进的调度器）
+     * @param clock 当前时间（毫秒），与 scheduler 的时间一致
+     * @param executionScheduler 策略执行的线程
+     */
+    StrategyTickTrigger(AccountService accountService, TradingEngine tradingEngine,
+                        ScheduledExecutorService scheduler, LongSupplier clock, Scheduler executionScheduler) {
+        this.accountService = accountService;
+        this.tradingEngine = tradingEngine;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.executionScheduler = executionScheduler;
+    }
+
+    /**
+     * 注册行情驱动的策略
+     *
+     * @param symbols 已标准化的交易对（如 BTCUSDT）
+     * @param engine 策略执行引擎
+     * @return 是否注册成功（交易所不支持标记价格流时返回false）
+     */
+    public boolean register(String userId, String strategyName, String pythonStrategyName,
+                            List<String> symbols, long debounceMs, long minIntervalMs, StrategyEngine engine) {
+        String key = key(userId, strategyName);
+        unregister(userId, strategyName);
+
+        Registration registration = new Registration(userId, strategyName, pythonStrategyName, engine,
+                Math.max(0, debounceMs), Math.max(0, minIntervalMs));
+        for (String symbol : symbols) {
+            registration.symbols.put(symbol, new SymbolState());
+        }
+
+        registration.subscription = accountService.subscribeMarkPrices(userId)
+                .subscribe(
+                        prices -> onPrices(registration, prices),
+                        error -> {
+                            log.error("行情触发订阅异常: userId={}, strategyName={}, error={}",
+                                    userId, strategyName, error.getMessage());
+                            deactivate(key, registration);
+                        },
+                        () -> {
+                            log.warn("行情触发订阅已结束: userId={}, strategyName={}", userId, strategyName);
+                            deactivate(key, registration);
+                        }
+                );
+
+        if (registration.subscription.isDisposed()) {
+            log.warn("用户交易所不支持标记价格流，无法使用行情触发: userId={}, strategyName={}", userId, strategyName);
+            return false;
+        }
+
+        registrations.put(key, registration);
+        log.info("行情触发策略已注册: userId={}, strategyName={}, symbols={}, debounceMs={}, minIntervalMs={}",
+                userId, strategyName, symbols, registration.debounceMs, registration.minIntervalMs);
+        return true;
+    }
+
+    /**
+     * 取消注册（停止策略时调用）
+     */
+    public void unregister(String userId, String strategyName) {
+        Registration registration = registrations.remove(key(userId, strategyName));
+        if (registration == null) {
+            return;
+        }
+        cancel(registration);
+        log.info("行情触发策略已取消: userId={}, strategyName={}", userId, strategyName);
+    }
+
+    public boolean isRegistered(String userId, String strategyName) {
+        return registrations.containsKey(key(userId, strategyName));
+    }
+
+    /**
+     * 价格流结束或出错：移除注册（只移除这一次注册，重新注册后的不受影响），isRegistered 随之返回false
+     */
+    private void deactivate(String key, Registration registration) {
+        if (registrations.remove(key, registration)) {
+            cancel(registration);
+        }
+    }
+
+    /**
+     * 停止注册：不再响应价格，取消尚未开始的执行
+     */
+    private void cancel(Registration registration) {
+        registration.active.set(false);
+        if (registration.subscription != null) {
+            registration.subscription.dispose();
+        }
+        registration.symbols.values().forEach(state -> {
+            synchronized (state) {
+                if (state.pending != null) {
+                    state.pending.cancel(false);
+                }
+                state.dirty = false;
+            }
+        });
+    }
+
+    private void onPrices(Registration registration, MarkPriceUpdate update) {
+        if (!registration.active.get()) {
+            return;
+        }
+        registration.symbols.forEach((symbol, state) -> {
+            if (update.contains(symbol)) {
+                arm(registration, symbol, state);
+            }
+        });
+    }
+
+    /**
+     * 安排一次执行：
+     * - 正在执行时只记录有新价格，执行结束后补一次
+     * - 否则取消尚未开始的执行，推迟到本次价格之后 debounceMs（不超过第一次推迟时的最长等待），且满足最小间隔
+     */
+    private void arm(Registration registration, String symbol, SymbolState state) {
+        synchronized (state) {
+            if (state.running) {
+                state.dirty = true;
+                return;
+            }
+            long now = clock.getAsLong();
+            if (state.pending != null && !state.pending.isDone()) {
+                state.pending.cancel(false);
+            } else {
+                state.firstTickAt = now;
+            }
+            long maxWait = Math.max(registration.debounceMs, registration.minIntervalMs);
+            long settleAt = Math.min(now + registration.debounceMs, state.firstTickAt + maxWait);
+            long runAt = Math.max(settleAt, state.lastRunAt + registration.minIntervalMs);
+            state.pending = scheduler.schedule(() -> fire(registration, symbol, state),
+                    Math.max(0, runAt - now), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void fire(Registration registration, String symbol, SymbolState state) {
+        synchronized (state) {
+            if (!registration.active.get()) {
+                return;
+            }
+            // 上一次执行尚未完成：执行结束后补一次
+            if (state.running) {
+                state.dirty = true;
+                log.debug("上一次策略执行尚未完成，结束后再执行: userId={}, strategyName={}, symbol={}",
+                        registration.userId, registration.strategyName, symbol);
+                return;
+            }
+            state.running = true;
+            state.dirty = false;
+            state.lastRunAt = clock.getAsLong();
+        }
+
+        Mono.defer(() -> tradingEngine.executeTrading(registration.userId, symbol,
+                        registration.pythonStrategyName, registration.engine))
+                .subscribeOn(executionScheduler)
+                .doFinally(signal -> finish(registration, symbol, state))
+                .subscribe(
+                        v -> { },
+                        error -> log.error("行情触发策略执行失败: userId={}, strategyName={}, symbol={}, error={}",
+                                registration.userId, registration.strategyName, symbol, error.getMessage())
+                );
+    }
+
+    /**
+     * 执行结束：执行期间有新价格时按最新状态再安排一次
+     */
+    private void finish(Registration registration, String symbol, SymbolState state) {
+        boolean rerun;
+        synchronized (state) {
+            state.running = false;
+            rerun = state.dirty;
+            state.dirty = false;
+        }
+        if (rerun && registration.active.get()) {
+            arm(registration, symbol, state);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registrations.values().forEach(registration -> {
+            registration.active.set(false);
+            if (registration.subscription != null) {
+                registration.subscription.dispose();
+            }
+        });
+        registrations.clear();
+        scheduler.shutdownNow();
+    }
+
+    private static String key(String userId, String strategyName) {
+        return userId + ":" + strategyName;
+    }
+
+    private static class Registration {
+        private final String userId;
+        private final String strategyName;
+        private final String pythonStrategyName;
+        private final StrategyEngine engine;
+        private final long debounceMs;
+        private final long minIntervalMs;
+        private final Map<String, SymbolState> symbols = new ConcurrentHashMap<>();
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private volatile Disposable subscription;
+
+        private Registration(String userId, String strategyName, String pythonStrategyName,
+                             StrategyEngine engine, long debounceMs, long minIntervalMs) {
+            this.userId = userId;
+            this.strategyName = strategyName;
+            this.pythonStrategyName = pythonStrategyName;
+            this.engine = engine;
+            this.debounceMs = debounceMs;
+            this.minIntervalMs = minIntervalMs;
+        }
+    }
+
+    /**
+     * 单个交易对的触发状态（由对象锁保护）
+     */
+    private static class SymbolState {
+        private ScheduledFuture<?> pending;
+        // 本轮第一次推迟执行的时间
+        private long firstTickAt;
+        // 上次执行的时间（从未执行时不受最小间隔限制）
+        private long lastRunAt = Long.MIN_VALUE / 2;
+        private boolean running;
+        // 执行期间收到了新价格
+        private boolean dirty;
+    }
+}
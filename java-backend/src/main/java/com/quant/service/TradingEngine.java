@@ -1,23 +1,40 @@
 package com.quant.service;
 
+import com.quant.market.KlineAggregator;
+import com.quant.market.KlineInterval;
+import com.quant.market.OrderBookHub;
 import com.quant.model.StrategyRequest;
 import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
+import com.quant.replay.EvaluationRecord;
+import com.quant.replay.ReplayOutcome;
+import com.quant.replay.ReplayRecorder;
+import com.quant.strategy.BaseStrategy;
+import com.quant.strategy.PrimitiveStrategy;
+import com.quant.strategy.StrategyEngine;
+import com.quant.strategy.StrategyFactory;
+import com.quant.strategy.StrategySignal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 交易引擎
  * 核心交易逻辑控制
  * 
  * 流程：
- * 1. 收集市场数据
- * 2. 调用Python策略获取信号
+ * 1. 采集交易上下文快照（{@link TradingContext}）
+ * 2. 调用策略获取信号（Python服务或JVM内的Java实现，见 {@link StrategyEngine}）
  * 3. 风险控制检查
  * 4. 执行交易订单
+ * 
+ * 开启录制时每次执行的快照、请求、响应和下单结果写入录制文件，可通过 {@link #replay} 离线回放
  */
 @Slf4j
 @Service
@@ -30,6 +47,36 @@ public class TradingEngine {
     private final AccountService accountService;
     private final ProfitCountService profitCountService;
     private final ClosePositionRecordService closePositionRecordService;
+    private final StrategyFactory strategyFactory;
+    private final KlineAggregator klineAggregator;
+    private final OrderBookHub orderBookHub;
+    private final ReplayRecorder replayRecorder;
+    
+    // 传递给策略的K线数量和周期（第一个周期的收盘价同时作为 prices 传递）
+    @Value("${market.kline.history-bars:100}")
+    private int historyBars;
+    
+    @Value("${market.kline.request-intervals:1m}")
+    private java.util.List<String> requestIntervals;
+    
+    private java.util.List<KlineInterval> klineIntervals;
+    
+    // 传递给策略的均线周期
+    @Value("${strategy.params.ma-period:20}")
+    private int maPeriod;
+    
+    // 影子模式比对统计
+    private final AtomicLong shadowCompared = new AtomicLong();
+    private final AtomicLong shadowMismatched = new AtomicLong();
+    private final AtomicLong jvmEvaluations = new AtomicLong();
+    private final AtomicLong jvmTotalNanos = new AtomicLong();
+    
+    // 账户信息
+    private static final java.util.Map<String, Object> ACCOUNT_INFO =
+            java.util.Map.of("balance", 100000.0, "available", 100000.0);
+    
+    // 传递给策略的平仓记录时间范围（秒）
+    private static final long RECENT_CLOSE_SECONDS = 60;
 
     /**
      * 执行交易流程
@@ -39,305 +86,490 @@ public class TradingEngine {
     }
     
     /**
-     * 执行交易流程（带userId）
+     * 执行交易流程（带userId，使用Python策略服务）
      */
     public Mono<Void> executeTrading(String userId, String symbol, String strategyName) {
+        return executeTrading(userId, symbol, strategyName, StrategyEngine.PYTHON);
+    }
+    
+    /**
+     * 执行交易流程（带userId，指定策略执行引擎）
+     */
+    public Mono<Void> executeTrading(String userId, String symbol, String strategyName, StrategyEngine engine) {
 //        log.info("开始执行交易流程: userId={}, symbol={}, strategyName={}", userId, symbol, strategyName);
         
-        // 0. 先尝试获取持仓信息，确保网络连接正常
+        // 0. 采集交易上下文快照（账户、持仓、价格、计数、最近平仓记录只获取一次）
         // 如果获取持仓失败（网络错误），直接返回，不执行策略，避免误开仓/补仓
+        TradingContext context;
         try {
-            java.util.Map<String, Object> positionInfo = getCurrentPosition(userId, symbol);
-            
-            // 检查是否成功获取持仓信息
-            // 如果获取失败，positionInfo会包含错误标志
-            Boolean positionFetchSuccess = (Boolean) positionInfo.get("_fetchSuccess");
-            if (positionFetchSuccess != null && !positionFetchSuccess) {
-                log.error("获取持仓信息失败，停止执行交易流程，避免误开仓/补仓: userId={}, symbol={}", userId, symbol);
-                return Mono.empty();
-            }
-            
-            // 检查价格数据是否有效
-            java.util.Map<String, Object> marketData = fetchMarketData(userId, symbol);
-            Double price = (Double) marketData.get("price");
-            if (price == null || price <= 0) {
-                log.error("无法获取有效价格数据，停止执行交易流程: userId={}, symbol={}, price={}", userId, symbol, price);
-                return Mono.empty();
-            }
-            
+            context = buildContext(userId, symbol);
         } catch (Exception e) {
             log.error("获取持仓或市场数据时发生异常，停止执行交易流程，避免误开仓/补仓: userId={}, symbol={}, error={}", 
                     userId, symbol, e.getMessage(), e);
             return Mono.empty();
         }
         
-        // 1. 构建策略请求（此时已经确认数据获取成功）
+        if (!context.isFetchSuccess()) {
+            log.error("获取持仓信息失败，停止执行交易流程，避免误开仓/补仓: userId={}, symbol={}, error={}",
+                    userId, symbol, context.getError());
+            return Mono.empty();
+        }
+        
+        // 检查价格数据是否有效
+        if (!context.hasValidPrice()) {
+            log.error("无法获取有效价格数据，停止执行交易流程: userId={}, symbol={}, price={}",
+                    userId, symbol, context.getPrice());
+            return Mono.empty();
+        }
+        
+        // JVM引擎且策略支持基本类型通道：直接基于快照执行，不构建请求Map，HOLD信号不分配对象
+        if (engine == StrategyEngine.JVM
+                && strategyFactory.getStrategyByPythonName(strategyName) instanceof PrimitiveStrategy primitive) {
+            StrategySignal signal;
+            try {
+                signal = evaluatePrimitive(primitive, context);
+            } catch (Exception e) {
+                log.error("交易流程执行失败: {}", e.getMessage(), e);
+                return Mono.empty();
+            }
+            if (signal.isHold()) {
+                if (replayRecorder.isEnabled()) {
+                    record(strategyName, engine, context, null, signal.toResponse(null), null, System.currentTimeMillis());
+                }
+                return Mono.empty();
+            }
+            return submit(strategyName, engine, context, null, signal.toResponse(null));
+        }
+        
+        // 1. 基于快照构建策略请求（此时已经确认数据获取成功）
         StrategyRequest request = StrategyRequest.builder()
                 .strategyName(strategyName)
                 .symbol(symbol)
-                .marketData(fetchMarketData(userId, symbol))
-                .strategyParams(getStrategyParams(userId, symbol, strategyName))
-                .position(getCurrentPosition(userId, symbol))
-                .account(getAccountInfo())
+                .marketData(buildMarketData(context))
+                .strategyParams(buildStrategyParams(context))
+                .position(buildPosition(context))
+                .account(ACCOUNT_INFO)
                 .build();
         
-        // 2. 调用Python策略
-        return strategyManager.executeStrategy(request)
-                .flatMap(response -> {
-                    // 3. 风险控制检查
-                    if (!riskController.validateSignal(response)) {
-                        log.warn("策略信号未通过风控检查: {}", response.getSignal());
-                        return Mono.empty();
-                    }
-                    
-                    // 4. 执行订单
-                    return orderService.executeOrder(userId, symbol, response)
-//                            .doOnSuccess(orderId ->
-//                                log.info("订单执行成功: orderId={}", orderId))
-                            .doOnError(error -> 
-                                log.error("订单执行失败: {}", error.getMessage()))
-                            .then();
-                })
+        // 2. 调用策略
+        return evaluate(request, engine)
+                .flatMap(response -> submit(strategyName, engine, context, request, response))
                 .onErrorResume(error -> {
                     log.error("交易流程执行失败: {}", error.getMessage());
                     return Mono.empty();
                 });
     }
     
-    // 辅助方法
-    private java.util.Map<String, Object> fetchMarketData(String userId, String symbol) {
+    /**
+     * 风控检查并执行订单
+     */
+    private Mono<Void> submit(String strategyName, StrategyEngine engine, TradingContext context,
+                              StrategyRequest request, StrategyResponse response) {
+        long decisionTime = System.currentTimeMillis();
+        
+        // 3. 风险控制检查（与请求使用同一份快照）
+        if (!riskController.validateSignal(response, context)) {
+            log.warn("策略信号未通过风控检查: {}", response.getSignal());
+            record(strategyName, engine, context, request, response, EvaluationRecord.REJECTED_RISK, decisionTime);
+            return Mono.empty();
+        }
+        
+        // 4. 执行订单
+        return orderService.executeOrder(context.getUserId(), context.getSymbol(), response)
+//                .doOnSuccess(orderId ->
+//                    log.info("订单执行成功: orderId={}", orderId))
+                .doOnNext(result -> record(strategyName, engine, context, request, response, result, decisionTime))
+                .doOnError(error -> 
+                    log.error("订单执行失败: {}", error.getMessage()))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("交易流程执行失败: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    private void record(String strategyName, StrategyEngine engine, TradingContext context,
+                        StrategyRequest request, StrategyResponse response, String orderResult, long decisionTime) {
+        if (replayRecorder.isEnabled()) {
+            replayRecorder.record(new EvaluationRecord(decisionTime, strategyName, engine, context,
+                    request, response, orderResult));
+        }
+    }
+    
+    /**
+     * 回放一条录制记录
+     * 使用录制的快照和请求重新执行策略（不重新采集账户和行情），以录制的快照做风控检查，
+     * 再交给指定的订单服务下单（回放时为连接模拟交易所的独立实例，不影响实盘账户）
+     * 
+     * @param engine 执行引擎（为null时使用录制时的引擎）
+     */
+    public Mono<ReplayOutcome> replay(EvaluationRecord record, StrategyEngine engine, OrderService orders) {
+        TradingContext context = record.context();
+        StrategyEngine replayEngine = engine != null ? engine : record.engine();
+        
+        Mono<StrategyResponse> responseMono;
+        if (record.request() == null) {
+            // 录制时走的是基本类型通道
+            if (!(strategyFactory.getStrategyByPythonName(record.strategyName()) instanceof PrimitiveStrategy primitive)) {
+                return Mono.error(new IllegalStateException("策略不支持基本类型通道: " + record.strategyName()));
+            }
+            StrategySignal signal = evaluatePrimitive(primitive, context);
+            if (signal.isHold()) {
+                return Mono.just(new ReplayOutcome(signal.toResponse(null), null));
+            }
+            responseMono = Mono.just(signal.toResponse(null));
+        } else {
+            responseMono = evaluate(record.request(), replayEngine);
+        }
+        
+        return responseMono.flatMap(response -> {
+            if (!riskController.validateSignal(response, context)) {
+                return Mono.just(new ReplayOutcome(response, EvaluationRecord.REJECTED_RISK));
+            }
+            return orders.executeOrder(context.getUserId(), context.getSymbol(), response)
+                    .map(result -> new ReplayOutcome(response, result))
+                    .defaultIfEmpty(new ReplayOutcome(response, null));
+        });
+    }
+    
+    private StrategySignal evaluatePrimitive(PrimitiveStrategy strategy, TradingContext context) {
+        long start = System.nanoTime();
+        StrategySignal signal = strategy.evaluate(context);
+        jvmTotalNanos.addAndGet(System.nanoTime() - start);
+        jvmEvaluations.incrementAndGet();
+        return signal;
+    }
+    
+    /**
+     * 按执行引擎获取策略信号
+     * - PYTHON：调用Python策略服务
+     * - JVM：在进程内执行Java策略（没有对应Java实现时回退到Python）
+     * - SHADOW：以Python结果为准，同时执行Java策略并比对
+     */
+    private Mono<StrategyResponse> evaluate(StrategyRequest request, StrategyEngine engine) {
+        if (engine == null || engine == StrategyEngine.PYTHON) {
+            return strategyManager.executeStrategy(request);
+        }
+        
+        BaseStrategy jvmStrategy = strategyFactory.getStrategyByPythonName(request.getStrategyName());
+        if (jvmStrategy == null) {
+            log.warn("策略没有Java实现，使用Python策略服务: strategyName={}", request.getStrategyName());
+            return strategyManager.executeStrategy(request);
+        }
+        
+        if (engine == StrategyEngine.JVM) {
+            return Mono.fromCallable(() -> executeJvm(jvmStrategy, request));
+        }
+        
+        return strategyManager.executeStrategy(request)
+                .doOnNext(pythonResponse -> {
+                    try {
+                        compareShadow(request, pythonResponse, executeJvm(jvmStrategy, request));
+                    } catch (Exception e) {
+                        shadowMismatched.incrementAndGet();
+                        log.error("影子模式Java策略执行异常: symbol={}, error={}", request.getSymbol(), e.getMessage(), e);
+                    }
+                });
+    }
+    
+    private StrategyResponse executeJvm(BaseStrategy strategy, StrategyRequest request) {
+        long start = System.nanoTime();
+        StrategyResponse response = strategy.execute(request);
+        jvmTotalNanos.addAndGet(System.nanoTime() - start);
+        jvmEvaluations.incrementAndGet();
+        return response;
+    }
+    
+    /**
+     * 比对Python与Java策略的结果（信号、仓位比例、开仓金额、补仓类型）
+     */
+    private void compareShadow(StrategyRequest request, StrategyResponse python, StrategyResponse jvm) {
+        // Python服务不可用时返回的默认响应不参与比对
+        if (python.getError() != null) {
+            return;
+        }
+        shadowCompared.incrementAndGet();
+        
+        boolean same = Objects.equals(python.getSignal(), jvm.getSignal())
+                && sameNumber(python.getPosition(), jvm.getPosition())
+                && sameNumber(metadataValue(python, "margin"), metadataValue(jvm, "margin"))
+                && Objects.equals(metadataValue(python, "addPositionType"), metadataValue(jvm, "addPositionType"));
+        if (!same) {
+            shadowMismatched.incrementAndGet();
+            log.warn("影子模式结果不一致: symbol={}, python=[signal={}, position={}, metadata={}], " +
+                            "jvm=[signal={}, position={}, metadata={}], position={}",
+                    request.getSymbol(), python.getSignal(), python.getPosition(), python.getMetadata(),
+                    jvm.getSignal(), jvm.getPosition(), jvm.getMetadata(), request.getPosition());
+        }
+    }
+    
+    private static Object metadataValue(StrategyResponse response, String key) {
+        return response.getMetadata() != null ? response.getMetadata().get(key) : null;
+    }
+    
+    private static boolean sameNumber(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof Number na && b instanceof Number nb) {
+            return Math.abs(na.doubleValue() - nb.doubleValue()) < 1e-9;
+        }
+        return a.equals(b);
+    }
+    
+    /**
+     * 执行引擎统计（Java策略执行次数与平均耗时、影子模式比对次数与不一致次数、Python批量排队超时次数）
+     */
+    public java.util.Map<String, Object> getEngineStats() {
+        long evaluations = jvmEvaluations.get();
+        java.util.Map<String, Object> stats = new java.util.HashMap<>();
+        stats.put("jvmEvaluations", evaluations);
+        stats.put("jvmAvgMicros", evaluations > 0 ? jvmTotalNanos.get() / evaluations / 1000.0 : 0.0);
+        stats.put("shadowCompared", shadowCompared.get());
+        stats.put("shadowMismatched", shadowMismatched.get());
+        stats.put("pythonBatchExpired", strategyManager.getExpiredRequests());
+        return stats;
+    }
+    
+    /**
+     * 采集交易上下文快照
+     * 账户信息只获取一次，持仓只扫描一次，盈利/补仓次数一次MGET，平仓记录只查询最近60秒
+     * （包级可见，供基准测试使用）
+     */
+    TradingContext buildContext(String userId, String symbol) {
+        long now = System.currentTimeMillis();
+        
+        // 没有userId时返回空持仓（标记为成功，因为可能是真的没有持仓），价格无效会在上层拦截
+        if (userId == null || accountService == null) {
+            return TradingContext.builder()
+                    .userId(userId)
+                    .symbol(symbol)
+                    .timestamp(now)
+                    .fetchSuccess(true)
+                    .price(BigDecimal.ZERO)
+                    .recentClosePositions(java.util.List.of())
+                    .build();
+        }
+        
+        com.quant.model.AccountInfo accountInfo;
+        try {
+            accountInfo = accountService.getAccountInfo(userId);
+        } catch (org.springframework.web.reactive.function.client.WebClientRequestException e) {
+            // 网络连接错误（如代理连接失败）
+            log.error("获取持仓信息时发生网络连接错误，停止交易流程: userId={}, symbol={}, error={}", 
+                    userId, symbol, e.getMessage());
+            return TradingContext.failed(userId, symbol, "网络连接错误: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("获取持仓信息失败: userId={}, symbol={}, error={}", userId, symbol, e.getMessage(), e);
+            return TradingContext.failed(userId, symbol, "获取持仓信息异常: " + e.getMessage());
+        }
+        
+        // 检查是否成功获取账户信息
+        if (accountInfo == null) {
+            log.error("获取账户信息返回null，可能网络连接失败: userId={}, symbol={}", userId, symbol);
+            return TradingContext.failed(userId, symbol, "账户信息获取失败");
+        }
+        if (accountInfo.getPositions() == null) {
+            // 账户信息存在但持仓列表为null，可能是网络错误
+            log.warn("账户信息存在但持仓列表为null，可能网络连接异常: userId={}, symbol={}", userId, symbol);
+            return TradingContext.failed(userId, symbol, "持仓列表获取失败");
+        }
+        
+        // 一次扫描：查找指定交易对的多空持仓（可能同时有两个方向），并取持仓的当前价格
+        com.quant.model.Position longPosition = null;
+        com.quant.model.Position shortPosition = null;
         BigDecimal price = BigDecimal.ZERO;
-
-        // 从持仓或交易所API获取真实价格
-        if (userId != null && accountService != null) {
+        for (com.quant.model.Position pos : accountInfo.getPositions()) {
+            if (!symbol.equals(pos.getSymbol())) {
+                continue;
+            }
+            if ("LONG".equals(pos.getSide())) {
+                longPosition = pos;
+            } else if ("SHORT".equals(pos.getSide())) {
+                shortPosition = pos;
+            }
+            if (price.compareTo(BigDecimal.ZERO) <= 0 && pos.getCurrentPrice() != null
+                    && pos.getCurrentPrice().compareTo(BigDecimal.ZERO) > 0) {
+                price = pos.getCurrentPrice();
+                log.debug("从持仓获取价格: symbol={}, price={}", symbol, price);
+            }
+        }
+        
+        // 如果没有持仓价格，尝试从交易所API获取
+        if (price.compareTo(BigDecimal.ZERO) <= 0) {
             try {
-                com.quant.model.AccountInfo accountInfo = accountService.getAccountInfo(userId);
-                if (accountInfo != null && accountInfo.getPositions() != null) {
-                    for (com.quant.model.Position pos : accountInfo.getPositions()) {
-                        if (pos.getSymbol().equals(symbol) && pos.getCurrentPrice() != null
-                                && pos.getCurrentPrice().compareTo(BigDecimal.ZERO) > 0) {
-                            price = pos.getCurrentPrice();
-                            log.debug("从持仓获取价格: symbol={}, price={}", symbol, price);
-                            break;
-                        }
-                    }
-                }
-
-                // 如果没有持仓价格，尝试从交易所API获取
-                if (price.compareTo(BigDecimal.ZERO) <= 0) {
-                    BigDecimal apiPrice = accountService.getRealTimePrice(userId, symbol);
-                    if (apiPrice != null && apiPrice.compareTo(BigDecimal.ZERO) > 0) {
-                        price = apiPrice;
-                        log.debug("从API获取价格: symbol={}, price={}", symbol, price);
-                    }
+                BigDecimal apiPrice = accountService.getRealTimePrice(userId, symbol);
+                if (apiPrice != null && apiPrice.compareTo(BigDecimal.ZERO) > 0) {
+                    price = apiPrice;
+                    log.debug("从API获取价格: symbol={}, price={}", symbol, price);
                 }
             } catch (Exception e) {
                 log.warn("获取实时价格失败: userId={}, symbol={}, error={}", userId, symbol, e.getMessage());
             }
         }
-
-        if (price.compareTo(BigDecimal.ZERO) <= 0) {
-            log.error("无法获取实时价格: userId={}, symbol={}", userId, symbol);
-        }
-
-        return java.util.Map.of(
-            "price", price.doubleValue(),
-            "volume", 1000000,
-            "timestamp", System.currentTimeMillis()
-        );
-    }
-    
-    private java.util.Map<String, Object> getStrategyParams(String userId, String symbol, String strategyName) {
-        java.util.Map<String, Object> params = new java.util.HashMap<>();
-        params.put("ma_period", 20);
         
-        // 添加最近平仓记录信息（用于冷却期检查）
-        if (userId != null && symbol != null && closePositionRecordService != null) {
+        // 从Redis获取盈利次数和补仓次数（多空两个方向一次获取）
+        // 注意：pnlPercentage 已经是相对于保证金的百分比（已包含杠杆效应），不需要再乘以杠杆
+        ProfitCountService.PositionCounts counts = null;
+        if (profitCountService != null) {
             try {
-                // 获取最近60秒内的平仓记录
-                java.time.LocalDateTime now = java.time.LocalDateTime.now();
-                java.time.LocalDateTime startTime = now.minusSeconds(60);
-                java.util.List<com.quant.model.ClosePositionRecord> recentCloses = 
-                    closePositionRecordService.getClosePositionRecords(userId, symbol);
-                
-                // 过滤出最近60秒内的平仓记录
-                java.util.List<java.util.Map<String, Object>> recentCloseList = new java.util.ArrayList<>();
-                for (com.quant.model.ClosePositionRecord record : recentCloses) {
-                    if (record.getCreatedAt() != null && 
-                        record.getCreatedAt().isAfter(startTime) && 
-                        record.getCreatedAt().isBefore(now)) {
-                        java.util.Map<String, Object> closeInfo = new java.util.HashMap<>();
-                        closeInfo.put("side", record.getSide());
-                        closeInfo.put("closeTime", record.getCreatedAt().atZone(java.time.ZoneId.systemDefault())
-                            .toInstant().toEpochMilli());
-                        closeInfo.put("closeType", record.getCloseType());
-                        recentCloseList.add(closeInfo);
-                    }
-                }
-                
-                if (!recentCloseList.isEmpty()) {
-                    params.put("recentClosePositions", recentCloseList);
-                    log.debug("传递最近平仓记录到策略: userId={}, symbol={}, count={}", 
-                        userId, symbol, recentCloseList.size());
-                }
+                counts = profitCountService.getPositionCounts(userId, symbol);
             } catch (Exception e) {
-                log.warn("获取最近平仓记录失败: userId={}, symbol={}, error={}", 
-                    userId, symbol, e.getMessage());
+                log.warn("从Redis获取盈利次数失败: userId={}, symbol={}, error={}", userId, symbol, e.getMessage());
             }
         }
         
-        return params;
+        return TradingContext.builder()
+                .userId(userId)
+                .symbol(symbol)
+                .timestamp(now)
+                .fetchSuccess(true)
+                .price(price)
+                .longPosition(longPosition)
+                .shortPosition(shortPosition)
+                .longProfitCount(counts != null ? counts.longProfitCount() : 0)
+                .longAddCount(counts != null ? counts.longAddCount() : 0)
+                .shortProfitCount(counts != null ? counts.shortProfitCount() : 0)
+                .shortAddCount(counts != null ? counts.shortAddCount() : 0)
+                .recentClosePositions(fetchRecentClosePositions(userId, symbol))
+                .build();
     }
     
-    private java.util.Map<String, Object> getCurrentPosition(String userId, String symbol) {
-        // 从AccountService获取真实持仓信息
-        if (userId != null && accountService != null) {
-            try {
-                com.quant.model.AccountInfo accountInfo = accountService.getAccountInfo(userId);
-                
-                // 检查是否成功获取账户信息
-                if (accountInfo == null) {
-                    log.error("获取账户信息返回null，可能网络连接失败: userId={}, symbol={}", userId, symbol);
-                    java.util.Map<String, Object> errorPosition = new java.util.HashMap<>();
-                    errorPosition.put("_fetchSuccess", false);
-                    errorPosition.put("_error", "账户信息获取失败");
-                    return errorPosition;
-                }
-                
-                if (accountInfo.getPositions() != null) {
-                    // 初始化多空持仓信息
-                    BigDecimal longQuantity = BigDecimal.ZERO;
-                    BigDecimal shortQuantity = BigDecimal.ZERO;
-                    BigDecimal longOpenRate = BigDecimal.ZERO;
-                    BigDecimal shortOpenRate = BigDecimal.ZERO;
-                    BigDecimal longProfitPct = BigDecimal.ZERO;
-                    BigDecimal shortProfitPct = BigDecimal.ZERO;
-                    Integer longLeverage = 0;
-                    Integer shortLeverage = 0;
-                    Integer longProfitCount = 0;
-                    Integer shortProfitCount = 0;
-                    Integer longAddCount = 0;
-                    Integer shortAddCount = 0;
-                    
-                    // 查找指定交易对的所有持仓（可能同时有多空两个方向）
-                    for (com.quant.model.Position pos : accountInfo.getPositions()) {
-                        if (pos.getSymbol().equals(symbol)) {
-                            if ("LONG".equals(pos.getSide())) {
-                                longQuantity = pos.getQuantity() != null ? pos.getQuantity() : BigDecimal.ZERO;
-                                longOpenRate = pos.getAvgPrice() != null ? pos.getAvgPrice() : BigDecimal.ZERO;
-                                // 获取盈利百分比（从Position对象中获取，这是相对于保证金的盈亏百分比）
-                                longProfitPct = pos.getPnlPercentage() != null ? pos.getPnlPercentage() : BigDecimal.ZERO;
-                                // 获取杠杆倍数
-                                longLeverage = pos.getLeverage() != null ? pos.getLeverage() : 0;
-                            } else if ("SHORT".equals(pos.getSide())) {
-                                shortQuantity = pos.getQuantity() != null ? pos.getQuantity() : BigDecimal.ZERO;
-                                shortOpenRate = pos.getAvgPrice() != null ? pos.getAvgPrice() : BigDecimal.ZERO;
-                                // 获取盈利百分比（从Position对象中获取，这是相对于保证金的盈亏百分比）
-                                shortProfitPct = pos.getPnlPercentage() != null ? pos.getPnlPercentage() : BigDecimal.ZERO;
-                                // 获取杠杆倍数
-                                shortLeverage = pos.getLeverage() != null ? pos.getLeverage() : 0;
-                            }
-                        }
-                    }
-                    
-                    // 从Redis获取盈利次数和补仓次数
-                    if (userId != null && profitCountService != null) {
-                        try {
-                            // 注意：pnlPercentage 已经是相对于保证金的百分比（已包含杠杆效应）
-                            // 不需要再乘以杠杆
-
-                            // 获取盈利次数和补仓次数
-                            java.util.Map<String, Integer> longCounts = profitCountService.getCounts(userId, symbol, "LONG")
-                                    .block(); // 同步等待
-                            java.util.Map<String, Integer> shortCounts = profitCountService.getCounts(userId, symbol, "SHORT")
-                                    .block(); // 同步等待
-
-                            if (longCounts != null) {
-                                longProfitCount = longCounts.getOrDefault("profitCount", 0);
-                                longAddCount = longCounts.getOrDefault("addCount", 0);
-                            }
-                            if (shortCounts != null) {
-                                shortProfitCount = shortCounts.getOrDefault("profitCount", 0);
-                                shortAddCount = shortCounts.getOrDefault("addCount", 0);
-                            }
-                        } catch (Exception e) {
-                            log.warn("从Redis获取盈利次数失败: userId={}, symbol={}, error={}", userId, symbol, e.getMessage());
-                        }
-                    }
-                    
-                    // 构建返回的持仓信息
-                    java.util.Map<String, Object> positionMap = new java.util.HashMap<>();
-                    positionMap.put("longQuantity", longQuantity);
-                    positionMap.put("shortQuantity", shortQuantity);
-                    positionMap.put("longOpenRate", longOpenRate);
-                    positionMap.put("shortOpenRate", shortOpenRate);
-                    positionMap.put("longProfitPct", longProfitPct);  // 盈利百分比（相对于保证金）
-                    positionMap.put("shortProfitPct", shortProfitPct);  // 盈利百分比（相对于保证金）
-                    positionMap.put("longLeverage", longLeverage);  // 杠杆倍数
-                    positionMap.put("shortLeverage", shortLeverage);  // 杠杆倍数
-                    positionMap.put("longProfitCount", longProfitCount);  // 盈利次数（暂时为0，需要从策略参数中获取）
-                    positionMap.put("shortProfitCount", shortProfitCount);  // 盈利次数（暂时为0，需要从策略参数中获取）
-                    positionMap.put("longAddCount", longAddCount);  // 补仓次数（暂时为0，需要从策略参数中获取）
-                    positionMap.put("shortAddCount", shortAddCount);  // 补仓次数（暂时为0，需要从策略参数中获取）
-                    positionMap.put("quantity", longQuantity.add(shortQuantity)); // 总持仓数量
-                    // 平均价格（如果有持仓）
-                    if (longQuantity.compareTo(BigDecimal.ZERO) > 0 || shortQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                        if (longQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                            positionMap.put("avgPrice", longOpenRate);
-                        } else {
-                            positionMap.put("avgPrice", shortOpenRate);
-                        }
-                    } else {
-                        positionMap.put("avgPrice", BigDecimal.ZERO);
-                    }
-                    
-                    log.debug("获取持仓信息: userId={}, symbol={}, longQuantity={}, shortQuantity={}, longOpenRate={}, shortOpenRate={}", 
-                            userId, symbol, longQuantity, shortQuantity, longOpenRate, shortOpenRate);
-                    
-                    // 标记成功获取
-                    positionMap.put("_fetchSuccess", true);
-                    return positionMap;
+    /**
+     * 获取最近60秒内的平仓记录（由数据库按时间过滤）
+     */
+    private java.util.List<java.util.Map<String, Object>> fetchRecentClosePositions(String userId, String symbol) {
+        if (symbol == null || closePositionRecordService == null) {
+            return java.util.List.of();
+        }
+        try {
+            java.time.LocalDateTime startTime = java.time.LocalDateTime.now().minusSeconds(RECENT_CLOSE_SECONDS);
+            java.util.List<com.quant.model.ClosePositionRecord> recentCloses =
+                    closePositionRecordService.getRecentClosePositionRecords(userId, symbol, startTime);
+            if (recentCloses.isEmpty()) {
+                return java.util.List.of();
+            }
+            
+            java.util.List<java.util.Map<String, Object>> recentCloseList = new java.util.ArrayList<>(recentCloses.size());
+            for (com.quant.model.ClosePositionRecord record : recentCloses) {
+                java.util.Map<String, Object> closeInfo = new java.util.HashMap<>();
+                closeInfo.put("side", record.getSide());
+                closeInfo.put("closeTime", record.getCreatedAt().atZone(java.time.ZoneId.systemDefault())
+                    .toInstant().toEpochMilli());
+                closeInfo.put("closeType", record.getCloseType());
+                recentCloseList.add(closeInfo);
+            }
+            return java.util.Collections.unmodifiableList(recentCloseList);
+        } catch (Exception e) {
+            log.warn("获取最近平仓记录失败: userId={}, symbol={}, error={}", 
+                userId, symbol, e.getMessage());
+            return java.util.List.of();
+        }
+    }
+    
+    // 辅助方法：基于快照构建策略请求的各部分
+    private java.util.Map<String, Object> buildMarketData(TradingContext context) {
+        java.util.Map<String, Object> marketData = new java.util.HashMap<>();
+        marketData.put("price", context.getPrice().doubleValue());
+        marketData.put("timestamp", context.getTimestamp());
+        
+        // 最近N根K线和已收盘K线上的技术指标（由共享行情流实时聚合，不调用REST接口）
+        java.util.List<KlineInterval> intervals = klineIntervals();
+        Double volume = null;
+        if (klineAggregator.isEnabled() && !intervals.isEmpty()) {
+            String symbol = context.getSymbol();
+            klineAggregator.track(symbol);
+            marketData.put("prices", klineAggregator.closes(symbol, intervals.get(0), historyBars));
+            marketData.put("klines", klineAggregator.bars(symbol, intervals, historyBars));
+            marketData.put("interval", intervals.get(0).getCode());
+            marketData.put("indicators", klineAggregator.indicators(symbol, intervals));
+            volume = klineAggregator.lastVolume(symbol, intervals.get(0));
+        }
+        // 盘口特征（本地订单簿尚未同步时不传）
+        if (orderBookHub.isEnabled()) {
+            orderBookHub.track(context.getSymbol());
+            java.util.Map<String, Object> orderBook = orderBookHub.features(context.getSymbol());
+            if (!orderBook.isEmpty()) {
+                marketData.put("orderBook", orderBook);
+            }
+        }
+        // 没有成交数据时沿用占位成交量
+        marketData.put("volume", volume != null ? volume : 1000000);
+        return marketData;
+    }
+    
+    private java.util.List<KlineInterval> klineIntervals() {
+        java.util.List<KlineInterval> intervals = klineIntervals;
+        if (intervals == null) {
+            intervals = new java.util.ArrayList<>();
+            for (String code : requestIntervals) {
+                KlineInterval interval = KlineInterval.fromCode(code);
+                if (interval != null) {
+                    intervals.add(interval);
                 } else {
-                    // 账户信息存在但持仓列表为null，可能是网络错误
-                    log.warn("账户信息存在但持仓列表为null，可能网络连接异常: userId={}, symbol={}", userId, symbol);
-                    java.util.Map<String, Object> errorPosition = new java.util.HashMap<>();
-                    errorPosition.put("_fetchSuccess", false);
-                    errorPosition.put("_error", "持仓列表获取失败");
-                    return errorPosition;
+                    log.warn("无法识别的K线周期，已忽略: {}", code);
                 }
-            } catch (org.springframework.web.reactive.function.client.WebClientRequestException e) {
-                // 网络连接错误（如代理连接失败）
-                log.error("获取持仓信息时发生网络连接错误，停止交易流程: userId={}, symbol={}, error={}", 
-                        userId, symbol, e.getMessage());
-                java.util.Map<String, Object> errorPosition = new java.util.HashMap<>();
-                errorPosition.put("_fetchSuccess", false);
-                errorPosition.put("_error", "网络连接错误: " + e.getMessage());
-                return errorPosition;
-            } catch (Exception e) {
-                // 其他异常
-                log.error("获取持仓信息失败: userId={}, symbol={}, error={}", userId, symbol, e.getMessage(), e);
-                java.util.Map<String, Object> errorPosition = new java.util.HashMap<>();
-                errorPosition.put("_fetchSuccess", false);
-                errorPosition.put("_error", "获取持仓信息异常: " + e.getMessage());
-                return errorPosition;
             }
+            klineIntervals = java.util.List.copyOf(intervals);
         }
+        return intervals;
+    }
+    
+    java.util.Map<String, Object> buildStrategyParams(TradingContext context) {
+        java.util.Map<String, Object> params = new java.util.HashMap<>();
+        params.put("ma_period", maPeriod);
         
-        // 默认返回空持仓（但标记为成功，因为可能是真的没有持仓）
-        java.util.Map<String, Object> emptyPosition = new java.util.HashMap<>();
-        emptyPosition.put("longQuantity", BigDecimal.ZERO);
-        emptyPosition.put("shortQuantity", BigDecimal.ZERO);
-        emptyPosition.put("longOpenRate", BigDecimal.ZERO);
-        emptyPosition.put("shortOpenRate", BigDecimal.ZERO);
-        emptyPosition.put("quantity", BigDecimal.ZERO);
-        emptyPosition.put("avgPrice", BigDecimal.ZERO);
-        emptyPosition.put("_fetchSuccess", true);  // 标记为成功（可能是真的没有持仓）
-        return emptyPosition;
+        // 添加最近平仓记录信息（用于冷却期检查）
+        if (!context.getRecentClosePositions().isEmpty()) {
+            params.put("recentClosePositions", context.getRecentClosePositions());
+            log.debug("传递最近平仓记录到策略: userId={}, symbol={}, count={}", 
+                context.getUserId(), context.getSymbol(), context.getRecentClosePositions().size());
+        }
+        
+        return params;
+    }
+    
+    java.util.Map<String, Object> buildPosition(TradingContext context) {
+        com.quant.model.Position longPos = context.getLongPosition();
+        com.quant.model.Position shortPos = context.getShortPosition();
+        
+        BigDecimal longQuantity = longPos != null ? nonNull(longPos.getQuantity()) : BigDecimal.ZERO;
+        BigDecimal shortQuantity = shortPos != null ? nonNull(shortPos.getQuantity()) : BigDecimal.ZERO;
+        BigDecimal longOpenRate = longPos != null ? nonNull(longPos.getAvgPrice()) : BigDecimal.ZERO;
+        BigDecimal shortOpenRate = shortPos != null ? nonNull(shortPos.getAvgPrice()) : BigDecimal.ZERO;
+        
+        java.util.Map<String, Object> positionMap = new java.util.HashMap<>();
+        positionMap.put("longQuantity", longQuantity);
+        positionMap.put("shortQuantity", shortQuantity);
+        positionMap.put("longOpenRate", longOpenRate);
+        positionMap.put("shortOpenRate", shortOpenRate);
+        // 盈利百分比（相对于保证金）
+        positionMap.put("longProfitPct", longPos != null ? nonNull(longPos.getPnlPercentage()) : BigDecimal.ZERO);
+        positionMap.put("shortProfitPct", shortPos != null ? nonNull(shortPos.getPnlPercentage()) : BigDecimal.ZERO);
+        // 杠杆倍数
+        positionMap.put("longLeverage", longPos != null && longPos.getLeverage() != null ? longPos.getLeverage() : 0);
+        positionMap.put("shortLeverage", shortPos != null && shortPos.getLeverage() != null ? shortPos.getLeverage() : 0);
+        // 盈利次数和补仓次数（来自Redis）
+        positionMap.put("longProfitCount", context.getLongProfitCount());
+        positionMap.put("shortProfitCount", context.getShortProfitCount());
+        positionMap.put("longAddCount", context.getLongAddCount());
+        positionMap.put("shortAddCount", context.getShortAddCount());
+        positionMap.put("quantity", longQuantity.add(shortQuantity)); // 总持仓数量
+        // 平均价格（如果有持仓）
+        if (longQuantity.compareTo(BigDecimal.ZERO) > 0) {
+            positionMap.put("avgPrice", longOpenRate);
+        } else if (shortQuantity.compareTo(BigDecimal.ZERO) > 0) {
+            positionMap.put("avgPrice", shortOpenRate);
+        } else {
+            positionMap.put("avgPrice", BigDecimal.ZERO);
+        }
+        
+        log.debug("获取持仓信息: userId={}, symbol={}, longQuantity={}, shortQuantity={}, longOpenRate={}, shortOpenRate={}", 
+                context.getUserId(), context.getSymbol(), longQuantity, shortQuantity, longOpenRate, shortOpenRate);
+        return positionMap;
     }
     
-    private java.util.Map<String, Object> getAccountInfo() {
-        // 获取账户信息
-        return java.util.Map.of("balance", 100000.0, "available", 100000.0);
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
     }
 }
-
@@ -0,0 +1,52 @@
+package com.quant.strategy;
+
+/**
+ * 双向策略输入（可复用的享元对象）
+ * 字段全部为基本类型，由调用方每次执行前填充；缺失的价格类数据用 NaN 表示
+ */
+public final class DualDirectionInput {
+
+    // 当前价格（NaN表示缺失）
+    public double price;
+
+    // 行情时间戳（毫秒，0表示使用当前时间）
+    public long timestampMs;
+
+    public double longQuantity;
+    public double shortQuantity;
+
+    // 开仓均价（NaN表示缺失）
+    public double longOpenRate;
+    public double shortOpenRate;
+
+    // 盈利百分比（相对于保证金，已包含杠杆效应）
+    public double longProfitPct;
+    public double shortProfitPct;
+
+    public int longProfitCount;
+    public int shortProfitCount;
+    public int longAddCount;
+    public int shortAddCount;
+
+    // 最近一次平仓时间（毫秒，0表示没有最近平仓记录）
+    public long lastCloseTimeMs;
+
+    /**
+     * 重置为空持仓
+     */
+    public void reset() {
+        price = Double.NaN;
+        timestampMs = 0;
+        longQuantity = 0.0;
+        shortQuantity = 0.0;
+        longOpenRate = Double.NaN;
+        shortOpenRate = Double.NaN;
+        longProfitPct = 0.0;
+        shortProfitPct = 0.0;
+        longProfitCount = 0;
+        shortProfitCount = 0;
+        longAddCount = 0;
+        shortAddCount = 0;
+        lastCloseTimeMs = 0;
+    }
+}
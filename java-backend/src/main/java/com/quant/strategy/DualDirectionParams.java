@@ -0,0 +1,33 @@
+package com.quant.strategy;
+
+/**
+ * 双向策略参数
+ * 实盘使用 {@link #DEFAULTS}（与 python-strategies/strategies/dual_direction_strategy.py 一致），
+ * 回测和参数寻优时按需替换
+ *
+ * @param takeProfitPct 平仓条件：盈利百分比（相对于保证金）
+ * @param winsPerAdd 每多少次盈利获得一次补仓机会
+ * @param cooldownSeconds 补齐仓位的冷却期（秒）
+ * @param openMargin 开仓金额（USDT）
+ * @param addMargin 补仓金额（USDT）
+ */
+public record DualDirectionParams(double takeProfitPct, int winsPerAdd, int cooldownSeconds,
+                                  double openMargin, double addMargin) {
+
+    public static final DualDirectionParams DEFAULTS = new DualDirectionParams(50.0, 4, 60, 1.0, 0.5);
+
+    public DualDirectionParams {
+        if (!(takeProfitPct > 0)) {
+            throw new IllegalArgumentException("平仓盈利百分比必须大于0: " + takeProfitPct);
+        }
+        if (winsPerAdd < 1) {
+            throw new IllegalArgumentException("补仓所需盈利次数必须大于等于1: " + winsPerAdd);
+        }
+        if (cooldownSeconds < 0) {
+            throw new IllegalArgumentException("冷却期不能为负数: " + cooldownSeconds);
+        }
+        if (!(openMargin > 0) || !(addMargin > 0)) {
+            throw new IllegalArgumentException("开仓/补仓金额必须大于0: open=" + openMargin + ", add=" + addMargin);
+        }
+    }
+}
@@ -1,78 +1,401 @@
 package com.quant.strategy;
 
+import com.quant.model.Position;
 import com.quant.model.StrategyRequest;
 import com.quant.model.StrategyResponse;
 import com.quant.model.StrategyType;
+import com.quant.model.TradingContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 双向策略实现
  * 同时持有多空仓位，通过价差获利
+ *
+ * 与 python-strategies/strategies/dual_direction_strategy.py 的规则保持一致：
+ * 1. 平仓：同时持有多空时，某方向盈利达到50%则平掉该方向
+ * 2. 初始开仓：没有任何持仓时同时开多空（各1U）
+ * 3. 补齐仓位：只有单边持仓时开另一方向（1U），最近60秒内有平仓则等待冷却期
+ * 4. 补仓：某方向盈利次数为4的倍数时，另一方向亏损且补仓次数未达上限则补仓（0.5U）
+ * 以上阈值和金额为默认参数（{@link DualDirectionParams#DEFAULTS}），回测时可通过 {@link #offline} 替换
+ *
+ * 决策逻辑只依赖基本类型输入（{@link DualDirectionInput}）并写入可复用的 {@link StrategySignal}；
+ * Map请求（{@link #execute}）和交易上下文快照（{@link #evaluate(TradingContext)}）都转换为同一输入后执行
  */
 @Slf4j
 @Component
-public class DualDirectionStrategy implements BaseStrategy {
-    
+public class DualDirectionStrategy implements BaseStrategy, PrimitiveStrategy {
+
+    // 每个线程复用一组输入/输出对象，执行过程中不分配对象
+    private static final ThreadLocal<DualDirectionInput> INPUT = ThreadLocal.withInitial(DualDirectionInput::new);
+    private static final ThreadLocal<StrategySignal> SIGNAL = ThreadLocal.withInitial(StrategySignal::new);
+
+    private final DualDirectionParams params;
+
+    // 是否输出逐条信号日志（离线回测时关闭，避免大量日志拖慢仿真）
+    private final boolean signalLogging;
+
+    public DualDirectionStrategy() {
+        this(DualDirectionParams.DEFAULTS, true);
+    }
+
+    private DualDirectionStrategy(DualDirectionParams params, boolean signalLogging) {
+        this.params = params;
+        this.signalLogging = signalLogging;
+    }
+
+    /**
+     * 离线仿真用的策略实例（使用指定参数，不输出逐条信号日志）
+     */
+    public static DualDirectionStrategy offline(DualDirectionParams params) {
+        return new DualDirectionStrategy(params, false);
+    }
+
+    public DualDirectionParams getParams() {
+        return params;
+    }
+
+    /**
+     * Map请求适配：把请求转换为基本类型输入后执行，结果转换为StrategyResponse
+     */
     @Override
     public StrategyResponse execute(StrategyRequest request) {
-        log.info("执行双向策略: {}", request.getStrategyName());
-        
-        // 双向策略逻辑
-        // 1. 同时开多空仓位
-        // 2. 通过价差变化获利
-        // 3. 动态调整多空比例
-        
-        Double currentPrice = (Double) request.getMarketData().get("price");
-        if (currentPrice == null) {
-            return StrategyResponse.defaultResponse();
-        }
-        
-        // 获取当前持仓
-        Map<String, Object> position = request.getPosition();
-        Double longQuantity = position != null ? (Double) position.get("longQuantity") : 0.0;
-        Double shortQuantity = position != null ? (Double) position.get("shortQuantity") : 0.0;
-        
-        // 双向策略：保持多空平衡，根据市场情况调整
-        String signal = "HOLD";
-        double positionRatio = 0.0;
-        
-        // 如果多空不平衡，进行调整
-        if (longQuantity < shortQuantity) {
-            signal = "BUY";
-            positionRatio = 0.5; // 增加多头
-        } else if (longQuantity > shortQuantity) {
-            signal = "SELL";
-            positionRatio = 0.0; // 减少多头（或增加空头）
-        }
-        
+        Map<String, Object> marketData = orEmpty(request.getMarketData());
+        Map<String, Object> strategyParams = orEmpty(request.getStrategyParams());
+        Map<String, Object> position = orEmpty(request.getPosition());
+
+        // 0. 网络异常检测：检查数据有效性，防止断网导致误开仓
+        // 检查1：验证 _fetchSuccess 标志
+        if (Boolean.FALSE.equals(position.get("_fetchSuccess"))) {
+            Object error = position.getOrDefault("_error", "未知错误");
+            log.error("持仓数据获取失败，停止策略执行: {}", error);
+            return holdSignal("持仓数据获取失败: " + error);
+        }
+
+        DualDirectionInput in = INPUT.get();
+        in.reset();
+        in.price = toDouble(marketData.get("price"), Double.NaN);
+        in.timestampMs = (long) toDouble(marketData.get("timestamp"), 0.0);
+        in.longQuantity = toDouble(position.get("longQuantity"), 0.0);
+        in.shortQuantity = toDouble(position.get("shortQuantity"), 0.0);
+        in.longOpenRate = toDouble(position.get("longOpenRate"), Double.NaN);
+        in.shortOpenRate = toDouble(position.get("shortOpenRate"), Double.NaN);
+        in.longProfitCount = toInt(position.get("longProfitCount"));
+        in.longProfitPct = toDouble(position.get("longProfitPct"), 0.0);
+        in.longAddCount = toInt(position.get("longAddCount"));
+        in.shortProfitCount = toInt(position.get("shortProfitCount"));
+        in.shortProfitPct = toDouble(position.get("shortProfitPct"), 0.0);
+        in.shortAddCount = toInt(position.get("shortAddCount"));
+
+        // 如果position中没有盈利信息，尝试从strategy_params的对方向持仓中获取
+        // （开仓价格数据异常时保留原值，由数据完整性检查拦截）
+        if (!position.containsKey("longProfitPct") && !position.containsKey("longProfitCount")) {
+            Map<String, Object> opposite = findOppositePosition(strategyParams, false);
+            if (opposite != null) {
+                in.longProfitCount = toInt(opposite.get("profitCount"));
+                in.longProfitPct = toDouble(opposite.get("profitPct"), 0.0);
+                in.longAddCount = toInt(opposite.get("addCount"));
+                if (!(in.longQuantity > 0) || in.longOpenRate > 0) {
+                    in.longOpenRate = toDouble(opposite.get("openRate"), Double.NaN);
+                }
+            }
+        }
+        if (!position.containsKey("shortProfitPct") && !position.containsKey("shortProfitCount")) {
+            Map<String, Object> opposite = findOppositePosition(strategyParams, true);
+            if (opposite != null) {
+                in.shortProfitCount = toInt(opposite.get("profitCount"));
+                in.shortProfitPct = toDouble(opposite.get("profitPct"), 0.0);
+                in.shortAddCount = toInt(opposite.get("addCount"));
+                if (!(in.shortQuantity > 0) || in.shortOpenRate > 0) {
+                    in.shortOpenRate = toDouble(opposite.get("openRate"), Double.NaN);
+                }
+            }
+        }
+
+        // 最近平仓时间（只需要最近一次，用于冷却期检查）
+        Object recent = strategyParams.get("recentClosePositions");
+        if (recent instanceof List<?> recentClosePositions) {
+            for (Object item : recentClosePositions) {
+                if (item instanceof Map<?, ?> closeInfo) {
+                    in.lastCloseTimeMs = Math.max(in.lastCloseTimeMs, (long) toDouble(closeInfo.get("closeTime"), 0.0));
+                }
+            }
+        }
+
+        StrategySignal signal = SIGNAL.get();
+        evaluate(in, signal);
+        return signal.toResponse(request.getRequestId());
+    }
+
+    /**
+     * 基本类型通道：直接从交易上下文快照填充输入，不构建请求Map
+     */
+    @Override
+    public StrategySignal evaluate(TradingContext context) {
+        DualDirectionInput in = INPUT.get();
+        in.reset();
+        in.price = context.getPrice() != null ? context.getPrice().doubleValue() : Double.NaN;
+        in.timestampMs = context.getTimestamp();
+
+        Position longPosition = context.getLongPosition();
+        if (longPosition != null) {
+            in.longQuantity = doubleValue(longPosition.getQuantity());
+            in.longOpenRate = doubleValue(longPosition.getAvgPrice());
+            in.longProfitPct = doubleValue(longPosition.getPnlPercentage());
+        }
+        Position shortPosition = context.getShortPosition();
+        if (shortPosition != null) {
+            in.shortQuantity = doubleValue(shortPosition.getQuantity());
+            in.shortOpenRate = doubleValue(shortPosition.getAvgPrice());
+            in.shortProfitPct = doubleValue(shortPosition.getPnlPercentage());
+        }
+        in.longProfitCount = context.getLongProfitCount();
+        in.longAddCount = context.getLongAddCount();
+        in.shortProfitCount = context.getShortProfitCount();
+        in.shortAddCount = context.getShortAddCount();
+
+        // 按下标遍历，避免创建迭代器（通常为空列表）
+        List<Map<String, Object>> recentClosePositions = context.getRecentClosePositions();
+        if (recentClosePositions != null) {
+            for (int i = 0; i < recentClosePositions.size(); i++) {
+                if (recentClosePositions.get(i).get("closeTime") instanceof Number closeTime) {
+                    in.lastCloseTimeMs = Math.max(in.lastCloseTimeMs, closeTime.longValue());
+                }
+            }
+        }
+
+        StrategySignal signal = SIGNAL.get();
+        evaluate(in, signal);
+        return signal;
+    }
+
+    /**
+     * 策略决策（只读写基本类型字段，不分配对象；日志只在触发信号等少数情况下输出）
+     */
+    public void evaluate(DualDirectionInput in, StrategySignal out) {
+        out.reset();
+
+        // 检查2：验证价格数据有效性（价格必须大于0）
+        double currentPrice = in.price;
+        if (!(currentPrice > 0)) {
+            log.error("价格数据无效，停止策略执行: price={}", currentPrice);
+            out.invalid(StrategySignal.Reason.INVALID_PRICE, currentPrice);
+            return;
+        }
+
+        // 检查3：验证持仓数据完整性（有持仓但开仓价格为0，说明数据异常）
+        double longQuantity = in.longQuantity;
+        double shortQuantity = in.shortQuantity;
+        if (longQuantity > 0 && !(in.longOpenRate > 0)) {
+            log.error("多头持仓数据异常：有持仓但开仓价格为0，可能是网络问题: longQuantity={}", longQuantity);
+            out.invalid(StrategySignal.Reason.LONG_DATA_INVALID, currentPrice);
+            return;
+        }
+        if (shortQuantity > 0 && !(in.shortOpenRate > 0)) {
+            log.error("空头持仓数据异常：有持仓但开仓价格为0，可能是网络问题: shortQuantity={}", shortQuantity);
+            out.invalid(StrategySignal.Reason.SHORT_DATA_INVALID, currentPrice);
+            return;
+        }
+
+        // 确保数量非负
+        longQuantity = Math.max(0.0, longQuantity);
+        shortQuantity = Math.max(0.0, shortQuantity);
+
+        // 1. 盈利次数、补仓次数、盈利百分比（相对于保证金，已包含杠杆效应）
+        int longProfitCount = in.longProfitCount;
+        int longAddCount = in.longAddCount;
+        double longProfitPct = in.longProfitPct;
+        int shortProfitCount = in.shortProfitCount;
+        int shortAddCount = in.shortAddCount;
+        double shortProfitPct = in.shortProfitPct;
+
+        // 没有提供盈利百分比时，使用价格差计算（不准确，仅作备用）
+        if (longQuantity > 0 && in.longOpenRate > 0 && longProfitPct == 0.0) {
+            longProfitPct = (currentPrice - in.longOpenRate) / in.longOpenRate * 100;
+            if (signalLogging) {
+                log.warn("多头持仓未提供盈利百分比，使用价格差计算（不准确）: {}%", String.format("%.2f", longProfitPct));
+            }
+        }
+        if (shortQuantity > 0 && in.shortOpenRate > 0 && shortProfitPct == 0.0) {
+            shortProfitPct = (in.shortOpenRate - currentPrice) / in.shortOpenRate * 100;
+            if (signalLogging) {
+                log.warn("空头持仓未提供盈利百分比，使用价格差计算（不准确）: {}%", String.format("%.2f", shortProfitPct));
+            }
+        }
+
+        out.setState(currentPrice, longQuantity, shortQuantity, longProfitPct, shortProfitPct,
+                longProfitCount, shortProfitCount, longAddCount, shortAddCount);
+
+        // 2. 策略决策
+        double takeProfitPct = params.takeProfitPct();
+        int winsPerAdd = params.winsPerAdd();
+        // 2.1 平仓条件：盈利达到阈值（默认50%）时平仓（只有同时有多空持仓时才允许平仓，避免单边持仓时误平仓）
+        boolean dual = longQuantity > 0 && shortQuantity > 0;
+        if (dual && longProfitPct >= takeProfitPct) {
+            out.decide(StrategySignal.Action.SELL, 1.0, 0.9, StrategySignal.Reason.TAKE_PROFIT_LONG);
+        } else if (dual && shortProfitPct >= takeProfitPct) {
+            // 平空头 = 买入
+            out.decide(StrategySignal.Action.BUY, 1.0, 0.9, StrategySignal.Reason.TAKE_PROFIT_SHORT);
+        }
+
+        // 2.2 初始开仓：没有任何持仓时同时开多空（不受冷却期限制）
+        if (longQuantity == 0 && shortQuantity == 0) {
+            out.decide(StrategySignal.Action.DUAL_OPEN, 0.5, 0.6, StrategySignal.Reason.DUAL_OPEN);
+            out.setMargin(params.openMargin());
+        } else if (out.isHold() && (longQuantity > 0) != (shortQuantity > 0)) {
+            // 2.3 单边持仓：补齐另一方向，最近平仓后需等待冷却期
+            if (inCooldown(in)) {
+                out.setReason(StrategySignal.Reason.COOLDOWN);
+            } else if (longQuantity > 0) {
+                out.decide(StrategySignal.Action.SELL, 0.5, 0.6, StrategySignal.Reason.REBALANCE_OPEN_SHORT);
+                out.setAddType(StrategySignal.AddType.REBALANCE);
+                out.setMargin(params.openMargin());
+            } else {
+                out.decide(StrategySignal.Action.BUY, 0.5, 0.6, StrategySignal.Reason.REBALANCE_OPEN_LONG);
+                out.setAddType(StrategySignal.AddType.REBALANCE);
+                out.setMargin(params.openMargin());
+            }
+        } else if (dual && longProfitCount >= winsPerAdd) {
+            // 2.4 补仓：多头盈利次数为4的倍数，空头亏损时补空头
+            int maxAddAllowed = longProfitCount / winsPerAdd;
+            if (longProfitCount % winsPerAdd != 0) {
+                holdReason(out, StrategySignal.Reason.ADD_WINDOW_NOT_REACHED);
+            } else if (shortProfitPct < 0 && shortAddCount < maxAddAllowed) {
+                // 增加空头 = 卖出
+                out.decide(StrategySignal.Action.SELL, 0.5, 0.7, StrategySignal.Reason.ADD_SHORT);
+                out.setAddType(StrategySignal.AddType.ADD);
+                out.setMargin(params.addMargin());
+                out.setMaxAddAllowed(maxAddAllowed);
+            } else if (shortAddCount >= maxAddAllowed) {
+                holdReason(out, StrategySignal.Reason.ADD_LIMIT_REACHED);
+            }
+        } else if (dual && shortProfitCount >= winsPerAdd) {
+            // 2.4 补仓：空头盈利次数为4的倍数，多头亏损时补多头
+            int maxAddAllowed = shortProfitCount / winsPerAdd;
+            if (shortProfitCount % winsPerAdd != 0) {
+                holdReason(out, StrategySignal.Reason.ADD_WINDOW_NOT_REACHED);
+            } else if (longProfitPct < 0 && longAddCount < maxAddAllowed) {
+                // 增加多头 = 买入
+                out.decide(StrategySignal.Action.BUY, 0.5, 0.7, StrategySignal.Reason.ADD_LONG);
+                out.setAddType(StrategySignal.AddType.ADD);
+                out.setMargin(params.addMargin());
+                out.setMaxAddAllowed(maxAddAllowed);
+            } else if (longAddCount >= maxAddAllowed) {
+                holdReason(out, StrategySignal.Reason.ADD_LIMIT_REACHED);
+            }
+        }
+
+        if (!signalLogging) {
+            return;
+        }
+        if (!out.isHold()) {
+            log.info("双向策略触发信号: signal={}, reason={}", out.getAction(), out.reasonText());
+        } else if (log.isDebugEnabled()) {
+            log.debug("双向策略决策: signal=HOLD, reason={}, longProfitPct={}, shortProfitPct={}",
+                    out.getReason(), longProfitPct, shortProfitPct);
+        }
+    }
+
+    /**
+     * 冷却期检查：最近平仓时间距当前不足冷却期时返回true
+     */
+    private boolean inCooldown(DualDirectionInput in) {
+        if (in.lastCloseTimeMs <= 0) {
+            return false;
+        }
+        long currentTimeMs = in.timestampMs != 0 ? in.timestampMs : System.currentTimeMillis();
+        double diffSeconds = (currentTimeMs - in.lastCloseTimeMs) / 1000.0;
+        if (diffSeconds < params.cooldownSeconds()) {
+            if (signalLogging && log.isInfoEnabled()) {
+                log.info("冷却期内，跳过补齐仓位: 最近{}秒内有平仓（冷却期{}秒）",
+                        String.format("%.1f", diffSeconds), params.cooldownSeconds());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录未触发补仓的原因（已有平仓信号时不覆盖）
+     */
+    private static void holdReason(StrategySignal out, StrategySignal.Reason reason) {
+        if (out.isHold()) {
+            out.setReason(reason);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> findOppositePosition(Map<String, Object> strategyParams, boolean isShort) {
+        Object opposite = strategyParams.get("oppositePositions");
+        if (!(opposite instanceof List<?> list)) {
+            return null;
+        }
+        for (Object item : list) {
+            if (item instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get("isShort")) == isShort) {
+                return (Map<String, Object>) map;
+            }
+        }
+        return null;
+    }
+
+    private StrategyResponse holdSignal(String reason) {
         Map<String, Object> metadata = new HashMap<>();
-        metadata.put("longQuantity", longQuantity);
-        metadata.put("shortQuantity", shortQuantity);
-        metadata.put("strategy", "DualDirectionStrategy");
-        
+        metadata.put("reason", reason);
         return StrategyResponse.builder()
-                .signal(signal)
-                .position(BigDecimal.valueOf(positionRatio))
-                .confidence(BigDecimal.valueOf(0.6))
+                .signal("HOLD")
+                .position(BigDecimal.ZERO)
+                .confidence(BigDecimal.ZERO)
                 .metadata(metadata)
                 .build();
     }
-    
+
+    private static Map<String, Object> orEmpty(Map<String, Object> map) {
+        return map != null ? map : Collections.emptyMap();
+    }
+
+    /**
+     * 数值转换（兼容BigDecimal/Integer/Double/字符串），无法转换时返回null
+     */
+    private static Double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String str && !str.isEmpty()) {
+            try {
+                return Double.parseDouble(str);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static double toDouble(Object value, double defaultValue) {
+        Double result = toDouble(value);
+        return result != null ? result : defaultValue;
+    }
+
+    private static double doubleValue(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+
+    private static int toInt(Object value) {
+        return (int) toDouble(value, 0.0);
+    }
+
     @Override
     public StrategyType getStrategyType() {
         return StrategyType.DUAL_DIRECTION;
     }
-    
+
     @Override
     public String getStrategyName() {
         return "双向策略";
     }
 }
-
-
-
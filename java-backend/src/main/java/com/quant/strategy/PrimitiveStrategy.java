@@ -0,0 +1,17 @@
+package com.quant.strategy;
+
+import com.quant.model.TradingContext;
+
+/**
+ * 基本类型信号通道
+ * 直接从交易上下文快照读取基本类型数据，写入可复用的 {@link StrategySignal}，
+ * 不构建请求Map，执行过程中不分配对象（JVM引擎优先使用此接口）
+ */
+public interface PrimitiveStrategy {
+
+    /**
+     * 执行策略
+     * 返回的信号对象属于当前线程并会被下一次执行覆盖，需要保留时应先调用 {@link StrategySignal#toResponse(String)}
+     */
+    StrategySignal evaluate(TradingContext context);
+}
@@ -0,0 +1,36 @@
+package com.quant.strategy;
+
+/**
+ * 策略执行引擎
+ * 每个策略可在配置中通过 engine 参数单独选择
+ */
+public enum StrategyEngine {
+    /**
+     * 调用Python策略服务（默认）
+     */
+    PYTHON,
+
+    /**
+     * 在JVM进程内执行Java策略实现，不经过Python服务
+     */
+    JVM,
+
+    /**
+     * 影子模式：以Python结果下单，同时在JVM内执行并比对两者结果（用于验证Java实现与Python一致）
+     */
+    SHADOW;
+
+    /**
+     * 解析配置值，无法识别时返回默认值
+     */
+    public static StrategyEngine from(Object value, StrategyEngine defaultEngine) {
+        if (value == null) {
+            return defaultEngine;
+        }
+        try {
+            return StrategyEngine.valueOf(String.valueOf(value).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultEngine;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.quant.strategy;
 
 import com.quant.model.StrategyType;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,25 +13,41 @@ import java.util.Map;
  * 根据策略类型创建对应的策略实例
  */
 @Component
-@RequiredArgsConstructor
 public class StrategyFactory {
-    
-    private final Map<String, BaseStrategy> strategies;
-    
+
+    private final Map<StrategyType, BaseStrategy> strategies = new EnumMap<>(StrategyType.class);
+
+    // Python策略名称 -> Java策略（启动时生成，查找时不拼接字符串）
+    private final Map<String, BaseStrategy> strategiesByPythonName = new HashMap<>();
+
+    public StrategyFactory(List<BaseStrategy> strategyBeans) {
+        // 按策略自身声明的类型注册（不依赖Bean名称）
+        for (BaseStrategy strategy : strategyBeans) {
+            strategies.put(strategy.getStrategyType(), strategy);
+            strategiesByPythonName.put(strategy.getStrategyType().getCode().toLowerCase() + "_strategy", strategy);
+        }
+    }
+
     /**
      * 根据策略类型获取策略实例
      */
     public BaseStrategy getStrategy(StrategyType strategyType) {
-        String beanName = strategyType.getCode().toLowerCase() + "Strategy";
-        BaseStrategy strategy = strategies.get(beanName);
-        
+        BaseStrategy strategy = strategies.get(strategyType);
+
         if (strategy == null) {
             throw new IllegalArgumentException("不支持的策略类型: " + strategyType);
         }
-        
+
         return strategy;
     }
-}
-
-
 
+    /**
+     * 根据Python策略名称获取对应的Java策略实例
+     * Python策略名称格式：策略类型小写 + _strategy（如 dual_direction_strategy）
+     *
+     * @return 策略实例，没有对应的Java实现时返回null
+     */
+    public BaseStrategy getStrategyByPythonName(String pythonStrategyName) {
+        return pythonStrategyName != null ? strategiesByPythonName.get(pythonStrategyName) : null;
+    }
+}
@@ -0,0 +1,248 @@
+package com.quant.strategy;
+
+import com.quant.model.StrategyResponse;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 策略信号（可复用的输出对象）
+ * 字段全部为基本类型和枚举，策略每次执行时覆盖写入，执行过程中不分配对象；
+ * 只有需要下单时才通过 {@link #toResponse(String)} 转换为 StrategyResponse
+ */
+public final class StrategySignal {
+
+    /**
+     * 交易动作
+     */
+    public enum Action {
+        HOLD, BUY, SELL, DUAL_OPEN
+    }
+
+    /**
+     * 补仓类型
+     */
+    public enum AddType {
+        NONE, ADD, REBALANCE
+    }
+
+    /**
+     * 决策原因
+     */
+    public enum Reason {
+        NONE,
+        // 数据校验失败（直接返回HOLD）
+        INVALID_PRICE,
+        LONG_DATA_INVALID,
+        SHORT_DATA_INVALID,
+        // 平仓
+        TAKE_PROFIT_LONG,
+        TAKE_PROFIT_SHORT,
+        // 开仓 / 补齐仓位
+        DUAL_OPEN,
+        REBALANCE_OPEN_SHORT,
+        REBALANCE_OPEN_LONG,
+        COOLDOWN,
+        // 补仓
+        ADD_SHORT,
+        ADD_LONG,
+        ADD_WINDOW_NOT_REACHED,
+        ADD_LIMIT_REACHED
+    }
+
+    private Action action = Action.HOLD;
+    private AddType addType = AddType.NONE;
+    private Reason reason = Reason.NONE;
+    private double positionRatio;
+    private double confidence;
+    // 开仓/补仓金额，NaN表示没有
+    private double margin = Double.NaN;
+
+    // 决策时使用的持仓数据（写入metadata，便于排查）
+    private double price;
+    private double longQuantity;
+    private double shortQuantity;
+    private double longProfitPct;
+    private double shortProfitPct;
+    private int longProfitCount;
+    private int shortProfitCount;
+    private int longAddCount;
+    private int shortAddCount;
+    // 补仓原因中的允许补仓次数
+    private int maxAddAllowed;
+
+    /**
+     * 重置为HOLD
+     */
+    public void reset() {
+        action = Action.HOLD;
+        addType = AddType.NONE;
+        reason = Reason.NONE;
+        positionRatio = 0.0;
+        confidence = 0.6;
+        margin = Double.NaN;
+        price = 0.0;
+        longQuantity = 0.0;
+        shortQuantity = 0.0;
+        longProfitPct = 0.0;
+        shortProfitPct = 0.0;
+        longProfitCount = 0;
+        shortProfitCount = 0;
+        longAddCount = 0;
+        shortAddCount = 0;
+        maxAddAllowed = 0;
+    }
+
+    /**
+     * 数据校验失败：HOLD，置信度为0
+     */
+    void invalid(Reason reason, double price) {
+        this.action = Action.HOLD;
+        this.reason = reason;
+        this.positionRatio = 0.0;
+        this.confidence = 0.0;
+        this.price = price;
+    }
+
+    void decide(Action action, double positionRatio, double confidence, Reason reason) {
+        this.action = action;
+        this.positionRatio = positionRatio;
+        this.confidence = confidence;
+        this.reason = reason;
+    }
+
+    void setAddType(AddType addType) {
+        this.addType = addType;
+    }
+
+    void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    void setReason(Reason reason) {
+        this.reason = reason;
+    }
+
+    void setMaxAddAllowed(int maxAddAllowed) {
+        this.maxAddAllowed = maxAddAllowed;
+    }
+
+    void setState(double price, double longQuantity, double shortQuantity,
+                  double longProfitPct, double shortProfitPct,
+                  int longProfitCount, int shortProfitCount, int longAddCount, int shortAddCount) {
+        this.price = price;
+        this.longQuantity = longQuantity;
+        this.shortQuantity = shortQuantity;
+        this.longProfitPct = longProfitPct;
+        this.shortProfitPct = shortProfitPct;
+        this.longProfitCount = longProfitCount;
+        this.shortProfitCount = shortProfitCount;
+        this.longAddCount = longAddCount;
+        this.shortAddCount = shortAddCount;
+    }
+
+    public boolean isHold() {
+        return action == Action.HOLD;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public AddType getAddType() {
+        return addType;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public double getPositionRatio() {
+        return positionRatio;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public boolean hasMargin() {
+        return !Double.isNaN(margin);
+    }
+
+    /**
+     * 是否为数据校验失败导致的HOLD
+     */
+    public boolean isInvalid() {
+        return reason == Reason.INVALID_PRICE || reason == Reason.LONG_DATA_INVALID
+                || reason == Reason.SHORT_DATA_INVALID;
+    }
+
+    /**
+     * 原因描述（与Python策略返回的reason一致；未触发任何动作时为空字符串）
+     */
+    public String reasonText() {
+        switch (reason) {
+            case INVALID_PRICE:
+                return "价格数据无效: " + (Double.isNaN(price) ? "null" : String.valueOf(price));
+            case LONG_DATA_INVALID:
+                return "多头持仓数据异常，疑似网络问题";
+            case SHORT_DATA_INVALID:
+                return "空头持仓数据异常，疑似网络问题";
+            case TAKE_PROFIT_LONG:
+                return String.format("多头盈利%.2f%%达到平仓条件（双向策略，需要>=50%%）", longProfitPct);
+            case TAKE_PROFIT_SHORT:
+                return String.format("空头盈利%.2f%%达到平仓条件（双向策略，需要>=50%%）", shortProfitPct);
+            case DUAL_OPEN:
+                return "初始开仓：同时开多空（各1U）";
+            case REBALANCE_OPEN_SHORT:
+                return "只有多头持仓，需要开空头（补齐双向仓位）";
+            case REBALANCE_OPEN_LONG:
+                return "只有空头持仓，需要开多头（补齐双向仓位）";
+            case ADD_SHORT:
+                return String.format("多头盈利%d次，空头亏损%.2f%%，需要补空头（已补%d/%d）",
+                        longProfitCount, shortProfitPct, shortAddCount, maxAddAllowed);
+            case ADD_LONG:
+                return String.format("空头盈利%d次，多头亏损%.2f%%，需要补多头（已补%d/%d）",
+                        shortProfitCount, longProfitPct, longAddCount, maxAddAllowed);
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * 转换为StrategyResponse（下单或返回给调用方时使用）
+     */
+    public StrategyResponse toResponse(String requestId) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("reason", reasonText());
+        if (!isInvalid()) {
+            metadata.put("longQuantity", longQuantity);
+            metadata.put("shortQuantity", shortQuantity);
+            metadata.put("longProfitCount", longProfitCount);
+            metadata.put("longProfitPct", longProfitPct);
+            metadata.put("longAddCount", longAddCount);
+            metadata.put("shortProfitCount", shortProfitCount);
+            metadata.put("shortProfitPct", shortProfitPct);
+            metadata.put("shortAddCount", shortAddCount);
+            metadata.put("strategy", "DualDirectionStrategy");
+            if (addType != AddType.NONE) {
+                metadata.put("addPositionType", addType.name());
+            }
+            if (hasMargin()) {
+                metadata.put("margin", margin);
+            }
+        }
+        return StrategyResponse.builder()
+                .requestId(requestId)
+                .signal(action.name())
+                .position(BigDecimal.valueOf(positionRatio))
+                .confidence(BigDecimal.valueOf(confidence))
+                .metadata(metadata)
+                .build();
+    }
+}
@@ -0,0 +1,235 @@
+package com.quant.transport;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Python策略服务TCP客户端
+ * 与Python策略服务保持一条长连接，多个请求通过关联ID在同一连接上并发进行（多路复用）
+ *
+ * 1. 首次调用时建立连接，连接断开后该连接上进行中的请求失败，下一次调用自动重连
+ *    （进行中的请求按连接记录，旧连接断开不影响已在新连接上发出的请求）
+ * 2. 写入加锁保证帧完整，读取由单独的守护线程完成并按关联ID分发响应
+ * 3. 编码格式见 {@link StrategyWireCodec}
+ */
+@Slf4j
+@Component
+public class StrategyTcpClient {
+
+    @Value("${python.strategy.tcp.host:127.0.0.1}")
+    private String host;
+
+    @Value("${python.strategy.tcp.port:8001}")
+    private int port;
+
+    @Value("${python.strategy.tcp.connect-timeout:2000}")
+    private int connectTimeoutMs;
+
+    private final AtomicLong correlationSequence = new AtomicLong();
+
+    private final Object writeLock = new Object();
+    private volatile Connection connection;
+
+    /**
+     * 执行单个策略请求
+     */
+    public Mono<StrategyResponse> execute(StrategyRequest request) {
+        return send(StrategyWireCodec.FRAME_EXECUTE, StrategyWireCodec.encodeRequest(request))
+                .map(frame -> {
+                    expectType(frame, StrategyWireCodec.FRAME_RESULT);
+                    return StrategyWireCodec.decodeResponse(frame.payload());
+                });
+    }
+
+    /**
+     * 批量执行策略请求（响应带requestId，由调用方匹配）
+     */
+    public Mono<List<StrategyResponse>> executeBatch(List<StrategyRequest> requests) {
+        return send(StrategyWireCodec.FRAME_EXECUTE_BATCH, StrategyWireCodec.encodeBatchRequest(requests))
+                .map(frame -> {
+                    expectType(frame, StrategyWireCodec.FRAME_BATCH_RESULT);
+                    return StrategyWireCodec.decodeBatchResponse(frame.payload());
+                });
+    }
+
+    /**
+     * 健康检查（PING/PONG）
+     */
+    public Mono<Boolean> ping() {
+        return send(StrategyWireCodec.FRAME_PING, new byte[0])
+                .map(frame -> frame.type() == StrategyWireCodec.FRAME_PONG);
+    }
+
+    /**
+     * 发送一帧并等待对应关联ID的响应帧
+     * 建立连接和写入是阻塞操作，放在 boundedElastic 上执行
+     */
+    private Mono<Frame> send(byte frameType, byte[] payload) {
+        return Mono.defer(() -> {
+                    long correlationId = correlationSequence.incrementAndGet();
+                    CompletableFuture<Frame> future = new CompletableFuture<>();
+                    Connection current = null;
+                    try {
+                        current = connect();
+                        current.inFlight.put(correlationId, future);
+                        if (current.closed) {
+                            // 注册前连接已关闭，关闭时不会再处理这个请求
+                            throw new IOException("Python策略服务TCP连接已断开");
+                        }
+                        byte[] frame = StrategyWireCodec.encodeFrame(correlationId, frameType, payload);
+                        synchronized (writeLock) {
+                            current.output.write(frame);
+                            current.output.flush();
+                        }
+                    } catch (IOException e) {
+                        if (current != null) {
+                            current.inFlight.remove(correlationId);
+                            closeConnection(current, e);
+                        }
+                        return Mono.error(e);
+                    }
+                    // 调用方超时取消时移除等待项
+                    Connection sent = current;
+                    return Mono.fromFuture(future)
+                            .doFinally(signal -> sent.inFlight.remove(correlationId));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Connection connect() throws IOException {
+        Connection current = connection;
+        if (current != null && !current.closed) {
+            return current;
+        }
+        synchronized (this) {
+            current = connection;
+            if (current != null && !current.closed) {
+                return current;
+            }
+            Socket socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+
+            current = new Connection(socket);
+            Connection started = current;
+            Thread reader = new Thread(() -> readLoop(started), "strategy-tcp-reader");
+            reader.setDaemon(true);
+            reader.start();
+            connection = current;
+            log.info("已连接Python策略服务TCP端口: {}:{}", host, port);
+            return current;
+        }
+    }
+
+    /**
+     * 读取线程：解析响应帧并按关联ID完成对应的请求
+     */
+    private void readLoop(Connection current) {
+        try {
+            DataInputStream input = current.input;
+            while (!current.closed) {
+                int length = input.readInt();
+                if (length < StrategyWireCodec.FRAME_HEADER_SIZE || length > StrategyWireCodec.MAX_FRAME_SIZE) {
+                    throw new IOException("非法的帧长度: " + length);
+                }
+                long correlationId = input.readLong();
+                byte type = input.readByte();
+                byte[] payload = new byte[length - StrategyWireCodec.FRAME_HEADER_SIZE];
+                input.readFully(payload);
+
+                CompletableFuture<Frame> future = current.inFlight.remove(correlationId);
+                if (future == null) {
+                    // 调用方已超时
+                    log.debug("收到已超时请求的响应，丢弃: correlationId={}", correlationId);
+                    continue;
+                }
+                if (type == StrategyWireCodec.FRAME_ERROR) {
+                    future.completeExceptionally(new IllegalStateException(
+                            "Python策略服务返回错误: " + StrategyWireCodec.decodeError(ByteBuffer.wrap(payload))));
+                } else {
+                    future.complete(new Frame(type, ByteBuffer.wrap(payload)));
+                }
+            }
+        } catch (Exception e) {
+            if (!current.closed) {
+                log.warn("Python策略服务TCP连接断开: {}", e.getMessage());
+            }
+        } finally {
+            closeConnection(current, new IOException("Python策略服务TCP连接已断开"));
+        }
+    }
+
+    private void closeConnection(Exception cause) {
+        Connection current = connection;
+        if (current != null) {
+            closeConnection(current, cause);
+        }
+    }
+
+    private synchronized void closeConnection(Connection current, Exception cause) {
+        if (!current.closed) {
+            current.closed = true;
+            try {
+                current.socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响重连
+            }
+        }
+        if (connection == current) {
+            connection = null;
+        }
+        // 只有这条连接上进行中的请求失败
+        current.inFlight.values().forEach(future -> future.completeExceptionally(cause));
+        current.inFlight.clear();
+    }
+
+    private static void expectType(Frame frame, byte expected) {
+        if (frame.type() != expected) {
+            throw new IllegalStateException("非预期的响应帧类型: " + frame.type());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closeConnection(new IOException("客户端已关闭"));
+    }
+
+    private record Frame(byte type, ByteBuffer payload) {
+    }
+
+    private static class Connection {
+        private final Socket socket;
+        private final OutputStream output;
+        private final DataInputStream input;
+        // 在这条连接上进行中的请求：关联ID -> 等待响应
+        private final Map<Long, CompletableFuture<Frame>> inFlight = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.quant.transport;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java与Python策略服务之间的二进制编码（与 python-strategies/wire_codec.py 保持一致）
+ *
+ * 帧格式（大端）：
+ * [int32 长度（不含自身）][int64 关联ID][byte 帧类型][负载]
+ *
+ * 值编码：1字节类型标记 + 数据
+ * - NULL / TRUE / FALSE：无数据
+ * - INT64 / FLOAT64：8字节
+ * - STRING：varint长度 + UTF-8
+ * - LIST：varint个数 + 元素
+ * - MAP：varint个数 + (STRING键, 值)
+ *
+ * StrategyRequest/StrategyResponse 的顶层字段按固定顺序编码，不写字段名
+ * BigDecimal 编码为 FLOAT64（与JSON传输时Python收到的类型一致）
+ */
+public final class StrategyWireCodec {
+
+    // 帧类型：请求
+    public static final byte FRAME_EXECUTE = 0x01;
+    public static final byte FRAME_EXECUTE_BATCH = 0x02;
+    public static final byte FRAME_PING = 0x03;
+
+    // 帧类型：响应
+    public static final byte FRAME_RESULT = (byte) 0x81;
+    public static final byte FRAME_BATCH_RESULT = (byte) 0x82;
+    public static final byte FRAME_PONG = (byte) 0x83;
+    public static final byte FRAME_ERROR = (byte) 0xFF;
+
+    // 帧头：关联ID(8) + 帧类型(1)
+    public static final int FRAME_HEADER_SIZE = 9;
+
+    // 单帧最大长度（防止异常数据导致分配过大内存）
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_INT64 = 3;
+    private static final byte TAG_FLOAT64 = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_MAP = 7;
+
+    private StrategyWireCodec() {
+    }
+
+    /**
+     * 编码完整帧（含长度前缀）
+     */
+    public static byte[] encodeFrame(long correlationId, byte frameType, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + FRAME_HEADER_SIZE + payload.length);
+        buffer.putInt(FRAME_HEADER_SIZE + payload.length);
+        buffer.putLong(correlationId);
+        buffer.put(frameType);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    public static byte[] encodeRequest(StrategyRequest request) {
+        Writer writer = new Writer();
+        writeRequest(writer, request);
+        return writer.toByteArray();
+    }
+
+    public static byte[] encodeBatchRequest(List<StrategyRequest> requests) {
+        Writer writer = new Writer();
+        writer.writeVarint(requests.size());
+        for (StrategyRequest request : requests) {
+            writeRequest(writer, request);
+        }
+        return writer.toByteArray();
+    }
+
+    public static StrategyResponse decodeResponse(ByteBuffer payload) {
+        return readResponse(payload);
+    }
+
+    public static List<StrategyResponse> decodeBatchResponse(ByteBuffer payload) {
+        int count = readVarint(payload);
+        List<StrategyResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            responses.add(readResponse(payload));
+        }
+        return responses;
+    }
+
+    public static StrategyRequest decodeRequest(ByteBuffer payload) {
+        return readRequest(payload);
+    }
+
+    public static byte[] encodeResponse(StrategyResponse response) {
+        Writer writer = new Writer();
+        writeResponse(writer, response);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 按顺序编码多个值（用于录制文件等不需要帧头的场景）
+     */
+    public static byte[] encodeValues(Object... values) {
+        Writer writer = new Writer();
+        for (Object value : values) {
+            writer.writeValue(value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static Object decodeValue(ByteBuffer payload) {
+        return readValue(payload);
+    }
+
+    public static String decodeError(ByteBuffer payload) {
+        Object message = readValue(payload);
+        return message != null ? message.toString() : "未知错误";
+    }
+
+    private static void writeRequest(Writer writer, StrategyRequest request) {
+        writer.writeValue(request.getRequestId());
+        writer.writeValue(request.getStrategyName());
+        writer.writeValue(request.getSymbol());
+        writer.writeValue(request.getMarketData());
+        writer.writeValue(request.getStrategyParams());
+        writer.writeValue(request.getPosition());
+        writer.writeValue(request.getAccount());
+    }
+
+    private static void writeResponse(Writer writer, StrategyResponse response) {
+        writer.writeValue(response.getRequestId());
+        writer.writeValue(response.getSignal());
+        writer.writeValue(response.getPosition());
+        writer.writeValue(response.getTargetPrice());
+        writer.writeValue(response.getStopLoss());
+        writer.writeValue(response.getTakeProfit());
+        writer.writeValue(response.getConfidence());
+        writer.writeValue(response.getMetadata());
+        writer.writeValue(response.getError());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StrategyRequest readRequest(ByteBuffer buffer) {
+        return StrategyRequest.builder()
+                .requestId((String) readValue(buffer))
+                .strategyName((String) readValue(buffer))
+                .symbol((String) readValue(buffer))
+                .marketData((Map<String, Object>) readValue(buffer))
+                .strategyParams((Map<String, Object>) readValue(buffer))
+                .position((Map<String, Object>) readValue(buffer))
+                .account((Map<String, Object>) readValue(buffer))
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StrategyResponse readResponse(ByteBuffer buffer) {
+        return StrategyResponse.builder()
+                .requestId((String) readValue(buffer))
+                .signal((String) readValue(buffer))
+                .position(toDecimal(readValue(buffer)))
+                .targetPrice(toDecimal(readValue(buffer)))
+                .stopLoss(toDecimal(readValue(buffer)))
+                .takeProfit(toDecimal(readValue(buffer)))
+                .confidence(toDecimal(readValue(buffer)))
+                .metadata((Map<String, Object>) readValue(buffer))
+                .error((String) readValue(buffer))
+                .build();
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Long l) {
+            return BigDecimal.valueOf(l);
+        }
+        return BigDecimal.valueOf(((Number) value).doubleValue());
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_INT64:
+                return buffer.getLong();
+            case TAG_FLOAT64:
+                return buffer.getDouble();
+            case TAG_STRING:
+                return readString(buffer);
+            case TAG_LIST: {
+                int count = readVarint(buffer);
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int count = readVarint(buffer);
+                Map<String, Object> map = new HashMap<>(Math.max(4, count * 2));
+                for (int i = 0; i < count; i++) {
+                    String key = (String) readValue(buffer);
+                    map.put(key, readValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("未知的值类型标记: " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) {
+            // 截断的数据：与读取其他类型时一致
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalArgumentException("varint过长");
+            }
+        }
+    }
+
+    /**
+     * 值编码器
+     */
+    private static class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        private void writeValue(Object value) {
+            try {
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else if (value instanceof Boolean b) {
+                    out.writeByte(b ? TAG_TRUE : TAG_FALSE);
+                } else if (value instanceof Integer || value instanceof Long
+                        || value instanceof Short || value instanceof Byte) {
+                    out.writeByte(TAG_INT64);
+                    out.writeLong(((Number) value).longValue());
+                } else if (value instanceof Number n) {
+                    // BigDecimal / Double / Float
+                    out.writeByte(TAG_FLOAT64);
+                    out.writeDouble(n.doubleValue());
+                } else if (value instanceof Map<?, ?> map) {
+                    out.writeByte(TAG_MAP);
+                    writeVarint(map.size());
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        writeValue(String.valueOf(entry.getKey()));
+                        writeValue(entry.getValue());
+                    }
+                } else if (value instanceof Collection<?> collection) {
+                    out.writeByte(TAG_LIST);
+                    writeVarint(collection.size());
+                    for (Object element : collection) {
+                        writeValue(element);
+                    }
+                } else {
+                    // String 以及其他类型（如枚举）按字符串编码
+                    byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(TAG_STRING);
+                    writeVarint(utf8.length);
+                    out.write(utf8);
+                }
+            } catch (IOException e) {
+                // ByteArrayOutputStream 不会抛出IO异常
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeVarint(int value) {
+            try {
+                while ((value & ~0x7F) != 0) {
+                    out.writeByte((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                out.writeByte(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
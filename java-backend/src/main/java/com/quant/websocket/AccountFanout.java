@@ -0,0 +1,388 @@
+package com.quant.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 账户推送的直接分发（不经过 SimpMessagingTemplate 和内存消息代理）
+ * - 从 {@link PushBus} 接收帧（多节点时包括其他节点生成的帧），只写入本节点的连接
+ * - 推送内容由生成帧的节点序列化一次，同一份字节写入该用户的订阅（/user/{userId}/account）
+ *   和管理端的全用户订阅（{@value #ADMIN_DESTINATION}），每个连接只额外编码STOMP帧头
+ * - 订阅关系由入站通道拦截器根据 SUBSCRIBE / UNSUBSCRIBE 记录：用户只能订阅自己的账户，
+ *   管理端目标只允许 account.push.admin-users 中的用户订阅
+ * - 本节点上某个用户的最后一个订阅结束时经总线通知所有节点，生成帧的节点丢弃该用户的推送状态；
+ *   多节点时仍有该用户订阅的节点重新请求快照
+ * - 每个连接一个有界发送队列，由发送线程池逐帧写出，慢连接只会积压自己的队列：
+ *   同一用户的新快照使队列中该用户更早的帧（旧快照和基于旧快照的增量）过期并被丢弃；
+ *   队列满时丢弃最早的帧（丢弃快照时连同基于它的增量），客户端根据帧序号发现缺失后请求快照
+ * - 连接在握手后包装为 {@link ConcurrentWebSocketSessionDecorator}，消息代理和本类的写入共用同一个发送缓冲，
+ *   超过发送时间或缓冲上限的连接被关闭
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountFanout implements WebSocketHandlerDecoratorFactory, ChannelInterceptor, PushBus.Listener {
+
+    /**
+     * 管理端订阅的全用户账户推送目标（帧中带有 userId）
+     */
+    public static final String ADMIN_DESTINATION = "/topic/accounts";
+
+    private static final String USER_PREFIX = "/user/";
+    private static final String USER_SUFFIX = "/account";
+
+    private static final StompEncoder STOMP_ENCODER = new StompEncoder();
+
+    private final PushBus pushBus;
+
+    // 每个连接最多排队的帧数
+    @Value("${account.push.max-queued-frames:16}")
+    private int maxQueuedFrames;
+
+    // 发送线程数
+    @Value("${account.push.sender-threads:2}")
+    private int senderThreads;
+
+    // 允许订阅全用户推送的用户ID
+    @Value("${account.push.admin-users:}")
+    private Set<String> adminUsers;
+
+    // 连接发送限制（由 WebSocketConfig 设置，与消息代理使用相同的限制）
+    private int sendTimeLimitMs = 10_000;
+    private int sendBufferSizeLimit = 512 * 1024;
+
+    // 连接ID -> 发送队列
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    // 目标 -> 订阅
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private ExecutorService sender;
+
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "account-fanout-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pushBus.subscribe(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * 设置连接的发送时间和缓冲上限
+     */
+    public void setSessionLimits(int sendTimeLimitMs, int sendBufferSizeLimit) {
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+    }
+
+    @Override
+    public void onFrame(String userId, byte[] body, boolean snapshot) {
+        publish(userId, body, snapshot);
+    }
+
+    @Override
+    public void onSessionsClosed(String userId) {
+        // 其他节点上的连接关闭后生成帧的节点不再推送，本节点仍有订阅时重新请求快照
+        if (pushBus.isRelay() && hasSubscribers(userId)) {
+            pushBus.requestSnapshot(userId);
+        }
+    }
+
+    /**
+     * 本节点是否有该用户账户的订阅
+     */
+    public boolean hasSubscribers(String userId) {
+        return subscribers.containsKey(USER_PREFIX + userId + USER_SUFFIX);
+    }
+
+    /**
+     * 把一帧账户推送写入本节点上该用户和管理端的所有订阅
+     *
+     * @param body 已序列化的JSON（所有订阅共用，不能再修改）
+     * @param snapshot 是否为完整快照（快照使队列中该用户更早的帧过期）
+     * @return 写入的订阅数量
+     */
+    public int publish(String userId, byte[] body, boolean snapshot) {
+        return publish(USER_PREFIX + userId + USER_SUFFIX, userId, body, snapshot)
+                + publish(ADMIN_DESTINATION, userId, body, snapshot);
+    }
+
+    private int publish(String destination, String userId, byte[] body, boolean snapshot) {
+        Set<Subscriber> targets = subscribers.get(destination);
+        if (targets == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Subscriber subscriber : targets) {
+            subscriber.outbox.offer(new Frame(destination, subscriber.subscriptionId, userId, snapshot, body));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 分发统计（用于监控）
+     */
+    public Map<String, Object> getStats() {
+        int subscriptions = 0;
+        for (Set<Subscriber> targets : subscribers.values()) {
+            subscriptions += targets.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", outboxes.size());
+        stats.put("subscriptions", subscriptions);
+        stats.put("frames", frames.get());
+        stats.put("bytes", bytes.get());
+        stats.put("superseded", superseded.get());
+        stats.put("dropped", dropped.get());
+        stats.put("rejectedSubscriptions", rejected.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    // ========== 连接 ==========
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                WebSocketSession concurrent = new ConcurrentWebSocketSessionDecorator(
+                        session, sendTimeLimitMs, sendBufferSizeLimit);
+                outboxes.put(session.getId(), new Outbox(concurrent));
+                super.afterConnectionEstablished(concurrent);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                Outbox outbox = outboxes.remove(session.getId());
+                if (outbox != null) {
+                    outbox.close();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // ========== 订阅 ==========
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination(), accessor.getUser());
+        } else if (accessor.getCommand() == StompCommand.UNSUBSCRIBE) {
+            Outbox outbox = accessor.getSessionId() != null ? outboxes.get(accessor.getSessionId()) : null;
+            if (outbox != null && accessor.getSubscriptionId() != null) {
+                outbox.unsubscribe(accessor.getSubscriptionId());
+            }
+        }
+        return message;
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination, Principal user) {
+        if (destination == null || subscriptionId == null || sessionId == null) {
+            return;
+        }
+        boolean userDestination = destination.startsWith(USER_PREFIX) && destination.endsWith(USER_SUFFIX);
+        if (!userDestination && !ADMIN_DESTINATION.equals(destination)) {
+            return;
+        }
+        String userId = user != null ? user.getName() : null;
+        boolean allowed = userId != null && (userDestination
+                ? destination.equals(USER_PREFIX + userId + USER_SUFFIX)
+                : adminUsers.contains(userId));
+        if (!allowed) {
+            rejected.incrementAndGet();
+            log.warn("拒绝账户推送订阅: userId={}, destination={}", userId, destination);
+            return;
+        }
+        Outbox outbox = outboxes.get(sessionId);
+        if (outbox != null) {
+            outbox.subscribe(subscriptionId, destination);
+        }
+    }
+
+    /**
+     * 编码为STOMP MESSAGE帧（帧头按订阅生成，消息体直接复用）
+     */
+    private byte[] encode(Frame frame) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination(frame.destination());
+        accessor.setSubscriptionId(frame.subscriptionId());
+        accessor.setMessageId(Long.toString(messageIds.incrementAndGet()));
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return STOMP_ENCODER.encode(accessor.getMessageHeaders(), frame.body());
+    }
+
+    /**
+     * 一个订阅
+     */
+    private record Subscriber(Outbox outbox, String subscriptionId) {
+    }
+
+    /**
+     * 待发送的一帧（body 为所有订阅共用的序列化结果）
+     */
+    record Frame(String destination, String subscriptionId, String userId, boolean snapshot, byte[] body) {
+    }
+
+    /**
+     * 单个连接的订阅和有界发送队列
+     */
+    final class Outbox {
+        private final WebSocketSession session;
+        // 订阅ID -> 目标
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Outbox(WebSocketSession session) {
+            this.session = session;
+        }
+
+        private void subscribe(String subscriptionId, String destination) {
+            subscriptions.put(subscriptionId, destination);
+            subscribers.computeIfAbsent(destination, key -> new CopyOnWriteArraySet<>())
+                    .add(new Subscriber(this, subscriptionId));
+        }
+
+        private void unsubscribe(String subscriptionId) {
+            String destination = subscriptions.remove(subscriptionId);
+            Set<Subscriber> targets = destination != null ? subscribers.get(destination) : null;
+            if (targets != null) {
+                targets.remove(new Subscriber(this, subscriptionId));
+                if (targets.isEmpty() && subscribers.remove(destination, targets)
+                        && destination.startsWith(USER_PREFIX)) {
+                    pushBus.sessionsClosed(destination.substring(USER_PREFIX.length(),
+                            destination.length() - USER_SUFFIX.length()));
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            for (String subscriptionId : subscriptions.keySet()) {
+                unsubscribe(subscriptionId);
+            }
+        }
+
+        void offer(Frame frame) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (frame.snapshot()) {
+                    // 同一订阅中该用户更早的帧已被新快照取代
+                    int before = queue.size();
+                    queue.removeIf(queued -> queued.subscriptionId().equals(frame.subscriptionId())
+                            && queued.userId().equals(frame.userId()));
+                    superseded.addAndGet(before - queue.size());
+                }
+                if (queue.size() >= maxQueuedFrames) {
+                    Frame oldest = queue.pollFirst();
+                    int count = 1;
+                    if (oldest.snapshot()) {
+                        // 排在快照之后的同一用户的增量都基于这个快照，一并丢弃
+                        int before = queue.size();
+                        queue.removeIf(queued -> queued.subscriptionId().equals(oldest.subscriptionId())
+                                && queued.userId().equals(oldest.userId()));
+                        count += before - queue.size();
+                    }
+                    dropped.addAndGet(count);
+                }
+                queue.addLast(frame);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            sender.execute(this::drain);
+        }
+
+        /**
+         * 逐帧写出，直到队列为空（同一连接同时只有一个发送任务）
+         */
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = closed ? null : queue.pollFirst();
+                    if (frame == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    byte[] encoded = encode(frame);
+                    session.sendMessage(new TextMessage(encoded));
+                    frames.incrementAndGet();
+                    bytes.addAndGet(encoded.length);
+                } catch (Exception e) {
+                    // 超过发送限制时连接已被关闭，关闭回调会清理订阅
+                    failures.incrementAndGet();
+                    log.warn("账户推送写入失败: sessionId={}, error={}", session.getId(), e.getMessage());
+                    synchronized (this) {
+                        queue.clear();
+                        draining = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.quant.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quant.model.AccountInfo;
+import com.quant.model.Position;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 账户信息推送（/user/{userId}/account）
+ * - 合并：同一用户在合并窗口内的多次更新只推送最后一次（每个窗口最多一帧）
+ * - 增量：与上次推送给该用户的状态比较，只推送变化的账户字段和持仓（持仓内只推送变化的字段，
+ *   symbol、side 始终携带），平掉的持仓放在 removed 中；没有变化时不推送
+ * - 帧格式：type 为 snapshot（完整账户信息）或 delta；seq 为该用户的帧序号，delta 的 baseSeq 为它所基于的帧，
+ *   客户端发现 baseSeq 与本地不一致时通过 /app/account/request 请求完整快照
+ * - 客户端请求以及距离上次快照超过快照间隔时推送完整快照，修复客户端可能丢失的增量
+ * - 用户的推送状态在客户端请求快照时建立（客户端连接后总是请求快照），该用户在所有节点上都没有订阅时丢弃；
+ *   没有推送状态的用户的更新不推送（管理端只收到有连接的用户的帧）
+ *
+ * 每帧只序列化一次，经 {@link PushBus} 发布，由各节点的 {@link AccountFanout} 把同一份字节写入该用户和管理端的所有订阅
+ *（帧中带有 userId）。序号和增量基准保存在生成帧的节点：多节点时只有持有该用户推送所有权的节点响应快照请求和推送，
+ * 所有权由账户定时刷新续期，失去所有权的节点丢弃推送状态（账本仍用于REST查询）
+ *
+ * 同一用户的所有连接订阅同一个目标，基准状态按用户（而不是按连接）保存：新连接请求快照时该用户的所有连接都会收到快照
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountPushService {
+
+    public static final String TYPE_SNAPSHOT = "snapshot";
+    public static final String TYPE_DELTA = "delta";
+
+    private final PushBus pushBus;
+    private final AccountFanout accountFanout;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 合并窗口（毫秒）
+    @Value("${account.push.coalesce-ms:200}")
+    private long coalesceMs;
+
+    // 完整快照间隔（毫秒）
+    @Value("${account.push.snapshot-interval-ms:60000}")
+    private long snapshotIntervalMs;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "account-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 提交账户信息更新（在合并窗口结束时推送最新的一次；该用户没有连接或本节点没有推送所有权时忽略）
+     */
+    public void publish(String userId, AccountInfo accountInfo) {
+        if (userId == null || accountInfo == null) {
+            return;
+        }
+        Channel channel = channels.get(userId);
+        if (channel == null) {
+            return;
+        }
+        if (!pushBus.acquire(userId)) {
+            drop(channel);
+            return;
+        }
+        synchronized (channel) {
+            if (channel.closed) {
+                return;
+            }
+            boolean scheduled = channel.pending != null;
+            channel.pending = accountInfo;
+            if (!scheduled) {
+                scheduler.schedule(() -> flush(channel), coalesceMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 立即推送完整快照（客户端请求或重新订阅时，调用方已取得推送所有权），之后的增量以此为基准
+     */
+    public void sendSnapshot(String userId, AccountInfo accountInfo) {
+        if (userId == null || accountInfo == null) {
+            return;
+        }
+        while (true) {
+            Channel channel = channels.computeIfAbsent(userId, Channel::new);
+            synchronized (channel) {
+                // 已关闭的推送状态已从表中移除，重新建立
+                if (channel.closed) {
+                    continue;
+                }
+                // 等待中的更新不会比当前快照新
+                channel.pending = null;
+                try {
+                    send(channel, accountInfo, true);
+                } catch (JsonProcessingException e) {
+                    log.error("序列化账户信息失败: userId={}, error={}", userId, e.getMessage(), e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取得或续期该用户的推送所有权（单节点时总是成功；多节点时由成功的节点响应快照请求）
+     */
+    public boolean claim(String userId) {
+        return userId != null && pushBus.acquire(userId);
+    }
+
+    /**
+     * 续期本节点正在推送的用户的所有权（由账户定时刷新调用），失去所有权的用户不再由本节点推送
+     */
+    public void renewOwnership() {
+        for (Channel channel : channels.values()) {
+            if (!pushBus.acquire(channel.userId)) {
+                log.info("账户推送所有权已由其他节点持有: userId={}", channel.userId);
+                drop(channel);
+            }
+        }
+    }
+
+    /**
+     * 某个节点上该用户的最后一个连接已关闭：本节点也没有该用户的订阅时丢弃推送状态并放弃所有权
+     * （其他节点仍有订阅时会重新请求快照）
+     */
+    public void close(String userId) {
+        if (userId == null || accountFanout.hasSubscribers(userId)) {
+            return;
+        }
+        Channel channel = channels.get(userId);
+        if (channel != null) {
+            drop(channel);
+            pushBus.release(userId);
+        }
+    }
+
+    /**
+     * 推送统计（用于监控）
+     */
+    public Map<String, Object> getStats() {
+        long snapshots = 0;
+        long deltas = 0;
+        long skipped = 0;
+        long bytes = 0;
+        for (Channel channel : channels.values()) {
+            snapshots += channel.snapshots;
+            deltas += channel.deltas;
+            skipped += channel.skipped;
+            bytes += channel.bytes;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", channels.size());
+        stats.put("snapshots", snapshots);
+        stats.put("deltas", deltas);
+        stats.put("unchanged", skipped);
+        stats.put("serializedBytes", bytes);
+        stats.put("bus", pushBus.getStats());
+        stats.put("fanout", accountFanout.getStats());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        // 其他节点可以立即接管本节点推送的用户
+        for (Channel channel : channels.values()) {
+            drop(channel);
+            pushBus.release(channel.userId);
+        }
+    }
+
+    /**
+     * 丢弃用户的推送状态（之后的更新不再推送，等待中的更新也不再发送）
+     */
+    private void drop(Channel channel) {
+        synchronized (channel) {
+            channel.closed = true;
+            channel.pending = null;
+        }
+        channels.remove(channel.userId, channel);
+    }
+
+    private void flush(Channel channel) {
+        try {
+            synchronized (channel) {
+                AccountInfo latest = channel.pending;
+                channel.pending = null;
+                if (latest != null) {
+                    send(channel, latest, false);
+                }
+            }
+        } catch (Exception e) {
+            log.error("推送账户信息失败: userId={}, error={}", channel.userId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 推送一帧（调用方持有 channel 锁）
+     */
+    private void send(Channel channel, AccountInfo accountInfo, boolean forceSnapshot) throws JsonProcessingException {
+        long now = System.currentTimeMillis();
+        boolean snapshot = forceSnapshot || channel.sent == null || now - channel.snapshotTime >= snapshotIntervalMs;
+        Map<String, Object> frame;
+        if (snapshot) {
+            frame = snapshot(accountInfo);
+        } else {
+            // 账本未变化时返回的是同一个对象
+            frame = accountInfo != channel.sent ? delta(channel.sent, accountInfo) : null;
+            if (frame == null) {
+                channel.skipped++;
+                return;
+            }
+        }
+        long seq = channel.seq + 1;
+        frame.put("userId", channel.userId);
+        frame.put("type", snapshot ? TYPE_SNAPSHOT : TYPE_DELTA);
+        frame.put("seq", seq);
+        if (!snapshot) {
+            frame.put("baseSeq", channel.seq);
+        }
+        byte[] body = objectMapper.writeValueAsBytes(frame);
+        pushBus.publish(channel.userId, body, snapshot);
+        channel.bytes += body.length;
+        channel.seq = seq;
+        channel.sent = accountInfo;
+        if (snapshot) {
+            channel.snapshotTime = now;
+            channel.snapshots++;
+        } else {
+            channel.deltas++;
+        }
+    }
+
+    private static Map<String, Object> snapshot(AccountInfo accountInfo) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("totalBalance", accountInfo.getTotalBalance());
+        frame.put("availableBalance", accountInfo.getAvailableBalance());
+        frame.put("frozenBalance", accountInfo.getFrozenBalance());
+        frame.put("equity", accountInfo.getEquity());
+        frame.put("unrealizedPnl", accountInfo.getUnrealizedPnl());
+        frame.put("positions", accountInfo.getPositions() != null ? accountInfo.getPositions() : List.of());
+        frame.put("timestamp", accountInfo.getTimestamp());
+        frame.put("metadata", accountInfo.getMetadata());
+        return frame;
+    }
+
+    /**
+     * 两次账户信息之间的增量（没有变化时返回null）
+     */
+    private static Map<String, Object> delta(AccountInfo previous, AccountInfo current) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        putIfChanged(frame, "totalBalance", previous.getTotalBalance(), current.getTotalBalance());
+        putIfChanged(frame, "availableBalance", previous.getAvailableBalance(), current.getAvailableBalance());
+        putIfChanged(frame, "frozenBalance", previous.getFrozenBalance(), current.getFrozenBalance());
+        putIfChanged(frame, "equity", previous.getEquity(), current.getEquity());
+        putIfChanged(frame, "unrealizedPnl", previous.getUnrealizedPnl(), current.getUnrealizedPnl());
+        putIfChanged(frame, "metadata", previous.getMetadata(), current.getMetadata());
+
+        Map<String, Position> before = new HashMap<>();
+        if (previous.getPositions() != null) {
+            for (Position position : previous.getPositions()) {
+                before.put(key(position), position);
+            }
+        }
+        List<Map<String, Object>> changed = new ArrayList<>();
+        if (current.getPositions() != null) {
+            for (Position position : current.getPositions()) {
+                Map<String, Object> diff = diff(before.remove(key(position)), position);
+                if (diff != null) {
+                    changed.add(diff);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            frame.put("positions", changed);
+        }
+        if (!before.isEmpty()) {
+            List<Map<String, Object>> removed = new ArrayList<>(before.size());
+            for (Position position : before.values()) {
+                Map<String, Object> ref = new LinkedHashMap<>();
+                ref.put("symbol", position.getSymbol());
+                ref.put("side", position.getSide());
+                removed.add(ref);
+            }
+            frame.put("removed", removed);
+        }
+        if (frame.isEmpty()) {
+            return null;
+        }
+        // 时间戳单独变化不推送
+        if (!Objects.equals(previous.getTimestamp(), current.getTimestamp())) {
+            frame.put("timestamp", current.getTimestamp());
+        }
+        return frame;
+    }
+
+    /**
+     * 单个持仓的增量（新持仓为全部字段，没有变化时返回null）
+     */
+    private static Map<String, Object> diff(Position previous, Position current) {
+        Map<String, Object> diff = new LinkedHashMap<>();
+        Position base = previous != null ? previous : new Position();
+        putIfChanged(diff, "quantity", base.getQuantity(), current.getQuantity());
+        putIfChanged(diff, "available", base.getAvailable(), current.getAvailable());
+        putIfChanged(diff, "avgPrice", base.getAvgPrice(), current.getAvgPrice());
+        putIfChanged(diff, "currentPrice", base.getCurrentPrice(), current.getCurrentPrice());
+        putIfChanged(diff, "unrealizedPnl", base.getUnrealizedPnl(), current.getUnrealizedPnl());
+        putIfChanged(diff, "pnlPercentage", base.getPnlPercentage(), current.getPnlPercentage());
+        putIfChanged(diff, "leverage", base.getLeverage(), current.getLeverage());
+        putIfChanged(diff, "margin", base.getMargin(), current.getMargin());
+        if (previous != null && diff.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("symbol", current.getSymbol());
+        result.put("side", current.getSide());
+        result.putAll(diff);
+        return result;
+    }
+
+    private static void putIfChanged(Map<String, Object> frame, String field, Object previous, Object current) {
+        boolean same = previous instanceof BigDecimal a && current instanceof BigDecimal b
+                ? a.compareTo(b) == 0
+                : Objects.equals(previous, current);
+        if (!same) {
+            frame.put(field, current);
+        }
+    }
+
+    private static String key(Position position) {
+        return position.getSymbol() + ":" + position.getSide();
+    }
+
+    /**
+     * 单个用户的推送状态
+     */
+    private static final class Channel {
+        private final String userId;
+        // 合并窗口内最新的账户信息（null表示没有等待推送的更新）
+        private AccountInfo pending;
+        // 上次推送的账户信息（增量的基准）
+        private AccountInfo sent;
+        private long seq;
+        private long snapshotTime;
+        // 已丢弃（已从表中移除）
+        private boolean closed;
+
+        private long snapshots;
+        private long deltas;
+        private long skipped;
+        private long bytes;
+
+        private Channel(String userId) {
+            this.userId = userId;
+        }
+    }
+}
@@ -2,12 +2,12 @@ package com.quant.websocket;
 
 import com.quant.model.AccountInfo;
 import com.quant.service.AccountService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
@@ -22,7 +22,30 @@ import java.security.Principal;
 public class AccountWebSocketController {
     
     private final AccountService accountService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final AccountPushService accountPushService;
+    private final PushBus pushBus;
+    
+    /**
+     * 响应快照请求：由持有该用户推送所有权的节点响应，没有节点持有时由最先取得所有权的节点响应
+     * （单节点时总是本节点），保证同一用户的帧序号只由一个节点维护；
+     * 该用户的连接关闭时丢弃推送状态
+     */
+    @PostConstruct
+    public void init() {
+        pushBus.subscribe(new PushBus.Listener() {
+            @Override
+            public void onSnapshotRequest(String userId) {
+                if (accountPushService.claim(userId)) {
+                    accountPushService.sendSnapshot(userId, accountService.getAccountInfo(userId));
+                }
+            }
+
+            @Override
+            public void onSessionsClosed(String userId) {
+                accountPushService.close(userId);
+            }
+        });
+    }
     
     /**
      * 获取用户ID（从Principal或Header中）
@@ -59,34 +82,14 @@ public class AccountWebSocketController {
     }
     
     /**
-     * 客户端请求账户信息
-     * 使用SimpMessagingTemplate动态发送到用户特定的目标
+     * 客户端请求账户信息（连接或发现增量不连续时）
+     * 推送完整快照，之后的推送以此为基准发送增量（请求经推送总线转发到生成该用户推送帧的节点）
      */
     @MessageMapping("/account/request")
     public void requestAccount(Principal principal, SimpMessageHeaderAccessor headerAccessor) {
         String userId = getUserId(principal, headerAccessor);
         // log.info("用户 {} 请求账户信息", userId);
         
-        // 获取账户信息
-        AccountInfo accountInfo = accountService.getAccountInfo(userId);
-        
-        // 构建完整的目标路径
-        String destination = "/user/" + userId + "/account";
-        // log.info("准备发送账户信息: destination={}, userId={}, totalBalance={}, 持仓数量={}", 
-        //         destination, userId, accountInfo.getTotalBalance(),
-        //         accountInfo.getPositions() != null ? accountInfo.getPositions().size() : 0);
-        
-        // 使用SimpMessagingTemplate动态发送到用户特定的目标
-        messagingTemplate.convertAndSendToUser(
-            userId,
-            "/account",
-            accountInfo
-        );
-        
-        // 同时尝试直接发送到完整路径（作为备用方案）
-        messagingTemplate.convertAndSend(destination, accountInfo);
-        
-//        log.info("账户信息已发送: userId={}, destination={}", userId, destination);
+        pushBus.requestSnapshot(userId);
     }
 }
-
@@ -0,0 +1,69 @@
+package com.quant.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单节点内存推送总线：在发布线程中同步投递给本节点的监听者，本节点总是持有所有用户的推送所有权
+ */
+public class LocalPushBus implements PushBus {
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    @Override
+    public void publish(String userId, byte[] body, boolean snapshot) {
+        frames.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.onFrame(userId, body, snapshot);
+        }
+    }
+
+    @Override
+    public void requestSnapshot(String userId) {
+        requests.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.onSnapshotRequest(userId);
+        }
+    }
+
+    @Override
+    public void sessionsClosed(String userId) {
+        for (Listener listener : listeners) {
+            listener.onSessionsClosed(userId);
+        }
+    }
+
+    @Override
+    public boolean acquire(String userId) {
+        return true;
+    }
+
+    @Override
+    public void release(String userId) {
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isRelay() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", "local");
+        stats.put("frames", frames.get());
+        stats.put("snapshotRequests", requests.get());
+        return stats;
+    }
+}
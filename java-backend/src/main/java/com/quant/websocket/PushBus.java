@@ -0,0 +1,84 @@
+package com.quant.websocket;
+
+import java.util.Map;
+
+/**
+ * 账户推送总线：推送帧和快照请求经由总线到达所有节点
+ * - local：单节点内存分发（默认，也用作测试中的替身），发布即同步投递给本节点的监听者
+ * - redis：通过Redis发布订阅在多个节点间转发，本节点发布的消息也经由Redis回到本节点，
+ *   任意节点都可以服务任意用户的WebSocket连接
+ *
+ * 帧的序号和增量基准由生成帧的节点维护，其他节点只负责写入本地连接；同一用户同时只有一个节点生成帧，
+ * 由该节点持有的所有权（{@link #acquire}）决定
+ */
+public interface PushBus {
+
+    /**
+     * 发布一帧账户推送
+     *
+     * @param body 已序列化的JSON（投递给监听者后不能再修改）
+     * @param snapshot 是否为完整快照
+     */
+    void publish(String userId, byte[] body, boolean snapshot);
+
+    /**
+     * 请求生成该用户推送帧的节点发送完整快照（客户端连接或发现增量不连续时）
+     */
+    void requestSnapshot(String userId);
+
+    /**
+     * 通知所有节点：该用户在本节点上的最后一个连接已关闭
+     */
+    void sessionsClosed(String userId);
+
+    /**
+     * 取得或续期本节点为该用户生成推送帧的所有权（多节点时同一用户同时只有一个节点持有）
+     *
+     * @return 本节点持有所有权时返回true，已由其他节点持有时返回false
+     */
+    boolean acquire(String userId);
+
+    /**
+     * 放弃本节点持有的所有权，其他节点可以立即取得
+     */
+    void release(String userId);
+
+    /**
+     * 注册监听者（在发布之前注册）
+     */
+    void subscribe(Listener listener);
+
+    /**
+     * 是否跨节点转发（为false时所有连接和交易循环都在本节点）
+     */
+    boolean isRelay();
+
+    /**
+     * 总线统计（用于监控）
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * 总线监听者
+     */
+    interface Listener {
+
+        /**
+         * 收到一帧账户推送
+         */
+        default void onFrame(String userId, byte[] body, boolean snapshot) {
+        }
+
+        /**
+         * 收到快照请求
+         */
+        default void onSnapshotRequest(String userId) {
+        }
+
+        /**
+         * 某个节点上该用户的最后一个连接已关闭
+         */
+        default void onSessionsClosed(String userId) {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.quant.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 账户推送总线配置（account.push.relay.mode）：
+ * - local（默认）：单节点，所有WebSocket连接和交易循环在同一个JVM中
+ * - redis：通过Redis发布订阅转发推送帧和快照请求，多个节点可以部署在负载均衡之后，任意节点服务任意用户的连接；
+ *   每个用户的推送帧只由持有Redis租约的节点生成
+ */
+@Slf4j
+@Configuration
+public class PushBusConfig {
+
+    @Value("${account.push.relay.mode:local}")
+    private String mode;
+
+    @Value("${account.push.relay.channel:quant:account-push}")
+    private String channel;
+
+    @Value("${account.push.relay.owner-ttl-ms:15000}")
+    private long ownerTtlMs;
+
+    @Bean
+    public PushBus pushBus(RedisConnectionFactory connectionFactory, RedisTemplate<String, String> redisTemplate) {
+        if ("redis".equalsIgnoreCase(mode)) {
+            RedisPushBus bus = new RedisPushBus(connectionFactory, redisTemplate, channel, ownerTtlMs);
+            bus.start();
+            return bus;
+        }
+        if (!"local".equalsIgnoreCase(mode)) {
+            log.warn("不支持的账户推送总线模式: {}，使用local", mode);
+        }
+        return new LocalPushBus();
+    }
+}
@@ -0,0 +1,244 @@
+package com.quant.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Redis发布订阅的推送总线（多节点）
+ * - 所有节点订阅同一个频道，本节点发布的消息也经由Redis回到本节点，不在本地重复投递
+ * - 消息格式：类型（S 快照 / D 增量 / R 快照请求 / C 连接关闭）+ '\n' + userId + '\n' + JSON（只有帧带JSON）；
+ *   Jackson输出的JSON中没有换行，接收方按前两个换行切分，帧内容按原始字节转发，不重新解析
+ * - 帧和连接关闭通知在单个线程中按到达顺序交给监听者，保证同一用户的帧顺序（增量依赖前一帧）；
+ *   快照请求需要读取账户信息，在另一个线程中处理，不阻塞帧的转发
+ * - 推送所有权是Redis中的租约（{channel}:owner:{userId} = 节点ID，过期时间 ownerTtlMs），
+ *   持有者续期，没有持有者时由最先写入的节点取得；本节点在三分之一租期内不重复访问Redis
+ *
+ * Redis断开期间发布的帧会丢失，客户端通过帧序号发现缺失后请求快照
+ */
+@Slf4j
+public class RedisPushBus implements PushBus {
+
+    private static final byte TYPE_SNAPSHOT = 'S';
+    private static final byte TYPE_DELTA = 'D';
+    private static final byte TYPE_REQUEST = 'R';
+    private static final byte TYPE_CLOSED = 'C';
+
+    // 本节点持有时续期，没有持有者时取得
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then redis.call('pexpire', KEYS[1], ARGV[2]) return 1 end "
+                    + "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end return 0",
+            Long.class);
+
+    // 只删除本节点持有的租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String channel;
+    private final long ownerTtlMs;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedisMessageListenerContainer container;
+    private final ExecutorService dispatcher;
+    private final ExecutorService requestExecutor;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // 本节点持有的租约：userId -> 上次在Redis中取得或续期的时间
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public RedisPushBus(RedisConnectionFactory connectionFactory, RedisTemplate<String, String> redisTemplate,
+                        String channel, long ownerTtlMs) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.ownerTtlMs = ownerTtlMs;
+        this.dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "account-push-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requestExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "account-push-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(dispatcher);
+        container.addMessageListener(this::onMessage, new ChannelTopic(channel));
+    }
+
+    public void start() {
+        container.afterPropertiesSet();
+        container.start();
+        log.info("账户推送总线已订阅Redis频道: channel={}", channel);
+    }
+
+    public void shutdown() throws Exception {
+        container.destroy();
+        dispatcher.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    @Override
+    public void publish(String userId, byte[] body, boolean snapshot) {
+        send(snapshot ? TYPE_SNAPSHOT : TYPE_DELTA, userId, new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void requestSnapshot(String userId) {
+        send(TYPE_REQUEST, userId, "");
+    }
+
+    @Override
+    public void sessionsClosed(String userId) {
+        send(TYPE_CLOSED, userId, "");
+    }
+
+    @Override
+    public boolean acquire(String userId) {
+        long now = System.currentTimeMillis();
+        Long renewedAt = leases.get(userId);
+        if (renewedAt != null && now - renewedAt < ownerTtlMs / 3) {
+            return true;
+        }
+        try {
+            Long result = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(ownerKey(userId)), nodeId,
+                    Long.toString(ownerTtlMs));
+            if (result != null && result == 1L) {
+                leases.put(userId, now);
+                return true;
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error("取得账户推送所有权失败: userId={}, error={}", userId, e.getMessage());
+        }
+        leases.remove(userId);
+        return false;
+    }
+
+    @Override
+    public void release(String userId) {
+        if (leases.remove(userId) == null) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(ownerKey(userId)), nodeId);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error("释放账户推送所有权失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isRelay() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", "redis");
+        stats.put("channel", channel);
+        stats.put("ownedUsers", leases.size());
+        stats.put("published", published.get());
+        stats.put("received", received.get());
+        stats.put("malformed", malformed.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    private String ownerKey(String userId) {
+        return channel + ":owner:" + userId;
+    }
+
+    private void send(byte type, String userId, String body) {
+        try {
+            redisTemplate.convertAndSend(channel, (char) type + "\n" + userId + "\n" + body);
+            published.incrementAndGet();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error("发布账户推送失败: userId={}, channel={}, error={}", userId, channel, e.getMessage());
+        }
+    }
+
+    void onMessage(Message message, byte[] pattern) {
+        byte[] payload = message.getBody();
+        int first = indexOf(payload, 0);
+        int second = first > 0 ? indexOf(payload, first + 1) : -1;
+        if (first != 1 || second < 0) {
+            malformed.incrementAndGet();
+            return;
+        }
+        received.incrementAndGet();
+        String userId = new String(payload, first + 1, second - first - 1, StandardCharsets.UTF_8);
+        byte type = payload[0];
+        if (type == TYPE_REQUEST) {
+            requestExecutor.execute(() -> {
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onSnapshotRequest(userId);
+                    } catch (Exception e) {
+                        log.error("处理快照请求失败: userId={}, error={}", userId, e.getMessage(), e);
+                    }
+                }
+            });
+            return;
+        }
+        if (type == TYPE_CLOSED) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onSessionsClosed(userId);
+                } catch (Exception e) {
+                    log.error("处理连接关闭通知失败: userId={}, error={}", userId, e.getMessage(), e);
+                }
+            }
+            return;
+        }
+        // 所有监听者共用同一份帧内容
+        byte[] body = Arrays.copyOfRange(payload, second + 1, payload.length);
+        for (Listener listener : listeners) {
+            try {
+                listener.onFrame(userId, body, type == TYPE_SNAPSHOT);
+            } catch (Exception e) {
+                log.error("处理账户推送失败: userId={}, error={}", userId, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static int indexOf(byte[] payload, int from) {
+        for (int i = from; i < payload.length; i++) {
+            if (payload[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,11 +1,14 @@
 package com.quant.websocket;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 /**
@@ -18,6 +21,19 @@ import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private final WebSocketAuthInterceptor authInterceptor;
+    private final AccountFanout accountFanout;
+    
+    // 单个连接发送一条消息的时间上限（毫秒），超过后关闭慢连接
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    
+    // 单个连接的发送缓冲上限（字节），超过后关闭慢连接
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    
+    // 入站消息大小上限（字节）
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
@@ -53,5 +69,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .addInterceptors(authInterceptor)
                 .withSockJS(); // 启用SockJS支持，提供降级方案
     }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // 慢连接保护：消息代理和账户推送共用同一组发送限制
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+        accountFanout.setSessionLimits(sendTimeLimitMs, sendBufferSizeLimit);
+        // 账户推送直接写入连接（不经过消息代理）
+        registration.addDecoratorFactory(accountFanout);
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 记录账户推送的订阅
+        registration.interceptors(accountFanout);
+    }
 }
-
@@ -0,0 +1,137 @@
+package com.quant.account;
+
+import com.quant.market.MarkPriceHub;
+import com.quant.market.MarkPriceTable;
+import com.quant.market.MarkPriceUpdate;
+import com.quant.model.AccountInfo;
+import com.quant.model.ExchangeType;
+import com.quant.model.Position;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 盯市引擎：登记时按当前价格重算、只重算价格变化的交易对、重新登记和取消登记
+ */
+class MarkToMarketEngineTest {
+
+    private final MarkPriceHub markPriceHub = mock(MarkPriceHub.class);
+    private final MarkPriceTable table = new MarkPriceTable(16);
+    private final Sinks.Many<MarkPriceUpdate> updates = Sinks.many().multicast().directBestEffort();
+    private MarkToMarketEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        when(markPriceHub.getTable(ExchangeType.BINANCE)).thenReturn(table);
+        when(markPriceHub.markPriceUpdates(ExchangeType.BINANCE)).thenReturn(updates.asFlux());
+        engine = new MarkToMarketEngine(markPriceHub);
+    }
+
+    @Test
+    void trackMarksWithCurrentPriceThenFollowsChangedSymbolsOnly() {
+        publish("BTCUSDT", 6_100_000_000_000L);
+        PositionLedger ledger = ledger(position("BTCUSDT", "LONG", "0.01", "60000"));
+
+        engine.track(ExchangeType.BINANCE, ledger);
+
+        // 登记前已经推送的价格直接从价格表读取
+        assertThat(ledger.positions().get(0).getUnrealizedPnl()).isEqualByComparingTo("10");
+        ledger.consumeDirty();
+
+        publish("ETHUSDT", 300_000_000_000L);
+        assertThat(ledger.consumeDirty()).isFalse();
+
+        publish("BTCUSDT", 6_200_000_000_000L);
+        assertThat(ledger.consumeDirty()).isTrue();
+        assertThat(ledger.positions().get(0).getUnrealizedPnl()).isEqualByComparingTo("20");
+
+        Map<String, Object> stats = stats();
+        assertThat(stats.get("symbols")).isEqualTo(1);
+        assertThat(stats.get("ledgers")).isEqualTo(1);
+        assertThat(stats.get("updates")).isEqualTo(2L);
+        assertThat(stats.get("symbolChanges")).isEqualTo(1L);
+        assertThat(stats.get("positionsRecomputed")).isEqualTo(1L);
+    }
+
+    @Test
+    void everyLedgerHoldingSymbolIsRevalued() {
+        PositionLedger first = ledger(position("BTCUSDT", "LONG", "0.01", "60000"));
+        PositionLedger second = ledger(position("BTCUSDT", "SHORT", "0.02", "60000"),
+                position("ETHUSDT", "LONG", "1", "3000"));
+        engine.track(ExchangeType.BINANCE, first);
+        engine.track(ExchangeType.BINANCE, second);
+
+        publish("BTCUSDT", 6_100_000_000_000L);
+
+        assertThat(first.positions().get(0).getUnrealizedPnl()).isEqualByComparingTo("10");
+        assertThat(second.positions().get(0).getUnrealizedPnl()).isEqualByComparingTo("-20");
+        // ETH没有价格变化，保持快照中的盈亏
+        assertThat(second.positions().get(1).getUnrealizedPnl()).isEqualByComparingTo("0");
+        assertThat(second.positions().get(1).getCurrentPrice()).isNull();
+        assertThat(stats().get("symbols")).isEqualTo(2);
+    }
+
+    @Test
+    void retrackDropsClosedSymbolsAndUntrackRemovesLedger() {
+        PositionLedger ledger = ledger(position("BTCUSDT", "LONG", "0.01", "60000"),
+                position("ETHUSDT", "LONG", "1", "3000"));
+        engine.track(ExchangeType.BINANCE, ledger);
+
+        // ETH平仓后重新登记
+        ledger.applyDelta(AccountInfo.builder()
+                .positions(List.of(position("ETHUSDT", "LONG", "0", "0")))
+                .build(), null, 200);
+        engine.track(ExchangeType.BINANCE, ledger);
+        assertThat(stats().get("symbols")).isEqualTo(1);
+        ledger.consumeDirty();
+
+        publish("ETHUSDT", 310_000_000_000L);
+        assertThat(ledger.consumeDirty()).isFalse();
+
+        engine.untrack(ExchangeType.BINANCE, ledger);
+        assertThat(stats().get("symbols")).isEqualTo(0);
+        assertThat(stats().get("ledgers")).isEqualTo(0);
+
+        publish("BTCUSDT", 6_100_000_000_000L);
+        assertThat(ledger.consumeDirty()).isFalse();
+        assertThat(ledger.positions().get(0).getCurrentPrice()).isNull();
+    }
+
+    /**
+     * 模拟行情线程写入一条标记价格推送
+     */
+    private void publish(String symbol, long scaledPrice) {
+        table.put(symbol.toCharArray(), 0, symbol.length(), scaledPrice, System.currentTimeMillis());
+        table.commit();
+        updates.tryEmitNext(new MarkPriceUpdate(table, table.sequence(), 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) engine.getStats().get(ExchangeType.BINANCE.name());
+    }
+
+    private static PositionLedger ledger(Position... positions) {
+        PositionLedger ledger = new PositionLedger("user-1");
+        ledger.applySnapshot(AccountInfo.builder().totalBalance(new BigDecimal("1000")).build(), List.of(positions), 100);
+        return ledger;
+    }
+
+    private static Position position(String symbol, String side, String quantity, String avgPrice) {
+        return Position.builder()
+                .symbol(symbol)
+                .side(side)
+                .quantity(new BigDecimal(quantity))
+                .avgPrice(new BigDecimal(avgPrice))
+                .leverage(20)
+                .build();
+    }
+}
@@ -0,0 +1,266 @@
+package com.quant.account;
+
+import com.quant.model.AccountInfo;
+import com.quant.model.Position;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 持仓账本：快照与增量的合并规则、单向持仓平仓和反手、杠杆未知和只有钱包余额时对账、盯市和定点乘法
+ */
+class PositionLedgerTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final PositionLedger ledger = new PositionLedger("user-1");
+
+    @Test
+    void snapshotSyncsLedgerAndMarkToMarketRevalues() {
+        assertThat(ledger.isSynced()).isFalse();
+        assertThat(ledger.needsReconcile(100, NEVER, NEVER)).isTrue();
+
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 100);
+
+        assertThat(ledger.isSynced()).isTrue();
+        assertThat(ledger.needsReconcile(101, NEVER, NEVER)).isFalse();
+        assertThat(ledger.consumeDirty()).isTrue();
+        assertThat(ledger.consumeDirty()).isFalse();
+
+        assertThat(ledger.markToMarket("BTCUSDT", 6_100_000_000_000L)).isEqualTo(1);
+        // 价格没有变化、其他交易对不重算
+        assertThat(ledger.markToMarket("BTCUSDT", 6_100_000_000_000L)).isZero();
+        assertThat(ledger.markToMarket("ETHUSDT", 300_000_000_000L)).isZero();
+        assertThat(ledger.consumeDirty()).isTrue();
+
+        AccountInfo account = ledger.account();
+        Position position = account.getPositions().get(0);
+        // 盈亏 (61000 - 60000) × 0.01 = 10，保证金 60000 × 0.01 / 50 = 12
+        assertThat(position.getUnrealizedPnl()).isEqualByComparingTo("10");
+        assertThat(position.getMargin()).isEqualByComparingTo("12");
+        assertThat(position.getPnlPercentage()).isEqualByComparingTo("83.33333333");
+        assertThat(position.getCurrentPrice()).isEqualByComparingTo("61000");
+        assertThat(account.getEquity()).isEqualByComparingTo("1010");
+        // 版本没有变化时返回同一个对象
+        assertThat(ledger.account()).isSameAs(account);
+    }
+
+    @Test
+    void deltaNewerThanSnapshotWins() {
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 100);
+        ledger.applyDelta(delta("900", position("BTCUSDT", "LONG", "0.02", "60500", null)), null, 200);
+
+        // 请求在增量之前发出、在增量之后返回的快照
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 150);
+
+        AccountInfo account = ledger.account();
+        assertThat(account.getTotalBalance()).isEqualByComparingTo("900");
+        assertThat(account.getPositions()).hasSize(1);
+        Position position = account.getPositions().get(0);
+        assertThat(position.getQuantity()).isEqualByComparingTo("0.02");
+        assertThat(position.getAvgPrice()).isEqualByComparingTo("60500");
+        // 增量中没有杠杆时沿用已有持仓的杠杆
+        assertThat(position.getLeverage()).isEqualTo(50);
+
+        // 增量之后发出的快照覆盖账本
+        ledger.applySnapshot(balance("950"), List.of(position("BTCUSDT", "LONG", "0.03", "61000", 50)), 300);
+        assertThat(ledger.account().getTotalBalance()).isEqualByComparingTo("950");
+        assertThat(ledger.positions().get(0).getQuantity()).isEqualByComparingTo("0.03");
+    }
+
+    @Test
+    void positionClosedAfterRequestIsNotResurrected() {
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 100);
+        ledger.applyDelta(delta(null, position("BTCUSDT", "LONG", "0", "0", null)), null, 200);
+        assertThat(ledger.positions()).hasSize(0);
+
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 150);
+        assertThat(ledger.positions()).hasSize(0);
+
+        // 平仓之后发出的快照中仍有持仓（重新开仓）时以快照为准
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 300);
+        assertThat(ledger.positions()).hasSize(1);
+    }
+
+    @Test
+    void newPositionAfterRequestIsKept() {
+        ledger.applySnapshot(balance("1000"), List.of(), 100);
+        ledger.applyDelta(delta(null, position("ETHUSDT", "SHORT", "1", "3000", 20)), null, 200);
+
+        ledger.applySnapshot(balance("1000"), List.of(), 150);
+
+        assertThat(ledger.positions()).hasSize(1);
+        assertThat(ledger.positions().get(0).getSide()).isEqualTo("SHORT");
+    }
+
+    @Test
+    void bothSideRemovesLongAndShort() {
+        ledger.applySnapshot(balance("1000"), List.of(
+                position("ETHUSDT", "LONG", "1", "3000", 20),
+                position("ETHUSDT", "SHORT", "1", "3100", 20),
+                position("BTCUSDT", "LONG", "0.01", "60000", 50)), 100);
+
+        ledger.applyDelta(delta(null, position("ETHUSDT", "BOTH", "0", "0", null)), null, 200);
+
+        assertThat(ledger.positions()).hasSize(1);
+        assertThat(ledger.positions().get(0).getSymbol()).isEqualTo("BTCUSDT");
+        assertThat(ledger.symbols()).containsExactly("BTCUSDT");
+    }
+
+    @Test
+    void oneWayFlipReplacesOppositeSide() {
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 100);
+
+        // 单向持仓模式反手：数量带符号，负数为空
+        ledger.applyDelta(delta(null, position("BTCUSDT", "BOTH", "-0.02", "59000", null)), null, 200);
+
+        assertThat(ledger.positions()).hasSize(1);
+        Position position = find("BTCUSDT", "SHORT");
+        assertThat(position.getQuantity()).isEqualByComparingTo("0.02");
+        assertThat(position.getAvgPrice()).isEqualByComparingTo("59000");
+        assertThat(position.getLeverage()).isEqualTo(50);
+
+        // 反手之前发出的快照不会恢复原来的多仓
+        ledger.applySnapshot(balance("1000"), List.of(position("BTCUSDT", "LONG", "0.01", "60000", 50)), 150);
+        assertThat(ledger.positions()).hasSize(1);
+        assertThat(ledger.positions().get(0).getSide()).isEqualTo("SHORT");
+
+        // 再次反手
+        ledger.applyDelta(delta(null, position("BTCUSDT", "BOTH", "0.03", "61000", null)), null, 300);
+        assertThat(ledger.positions()).hasSize(1);
+        assertThat(find("BTCUSDT", "LONG").getQuantity()).isEqualByComparingTo("0.03");
+    }
+
+    @Test
+    void unknownLeverageMarksLedgerStaleUntilResolved() {
+        ledger.applySnapshot(balance("1000"), List.of(), 100);
+        assertThat(ledger.needsReconcile(150, NEVER, NEVER)).isFalse();
+
+        // 新交易对的开仓增量不带杠杆
+        ledger.applyDelta(delta(null, position("SOLUSDT", "LONG", "10", "150", null)), null, 200);
+        assertThat(ledger.needsReconcile(201, NEVER, NEVER)).isTrue();
+        assertThat(ledger.positions().get(0).getLeverage()).isNull();
+
+        // 较早的快照中也没有这个交易对：杠杆仍然未知，继续对账
+        ledger.applySnapshot(balance("1000"), List.of(), 150);
+        assertThat(ledger.needsReconcile(201, NEVER, NEVER)).isTrue();
+
+        // 快照中同一交易对的杠杆补到增量新开的持仓上
+        ledger.applySnapshot(balance("1000"), List.of(position("SOLUSDT", "SHORT", "1", "160", 10)), 180);
+        assertThat(ledger.needsReconcile(201, NEVER, NEVER)).isFalse();
+        Position solLong = find("SOLUSDT", "LONG");
+        assertThat(solLong.getLeverage()).isEqualTo(10);
+        // 保证金 150 × 10 / 10
+        assertThat(solLong.getMargin()).isEqualByComparingTo("150");
+
+        // 杠杆变化推送更新同一交易对的全部持仓
+        ledger.applyDelta(new AccountInfo(), Map.of("SOLUSDT", 5), 300);
+        assertThat(find("SOLUSDT", "LONG").getLeverage()).isEqualTo(5);
+        assertThat(find("SOLUSDT", "LONG").getMargin()).isEqualByComparingTo("300");
+        assertThat(find("SOLUSDT", "SHORT").getLeverage()).isEqualTo(5);
+    }
+
+    @Test
+    void walletOnlyBalanceDeltaKeepsAvailableBalanceAndReconciles() {
+        ledger.applySnapshot(AccountInfo.builder()
+                .totalBalance(new BigDecimal("1000"))
+                .availableBalance(new BigDecimal("800"))
+                .frozenBalance(new BigDecimal("200"))
+                .build(), List.of(), 100);
+
+        // 增量只有钱包余额
+        ledger.applyDelta(AccountInfo.builder().totalBalance(new BigDecimal("990")).build(), null, 200);
+
+        AccountInfo account = ledger.account();
+        assertThat(account.getTotalBalance()).isEqualByComparingTo("990");
+        assertThat(account.getAvailableBalance()).isEqualByComparingTo("800");
+        assertThat(account.getFrozenBalance()).isEqualByComparingTo("200");
+        assertThat(ledger.needsReconcile(201, NEVER, NEVER)).isTrue();
+
+        ledger.applySnapshot(AccountInfo.builder()
+                .totalBalance(new BigDecimal("990"))
+                .availableBalance(new BigDecimal("780"))
+                .frozenBalance(new BigDecimal("210"))
+                .build(), List.of(), 300);
+        assertThat(ledger.account().getAvailableBalance()).isEqualByComparingTo("780");
+        assertThat(ledger.needsReconcile(301, NEVER, NEVER)).isFalse();
+    }
+
+    @Test
+    void missingDeltaAfterOrderTriggersReconcile() {
+        ledger.applySnapshot(balance("1000"), List.of(), 100);
+        ledger.expectUpdate(200);
+
+        assertThat(ledger.needsReconcile(1_000, NEVER, 5_000)).isFalse();
+        assertThat(ledger.needsReconcile(5_200, NEVER, 5_000)).isTrue();
+
+        ledger.applyDelta(delta("990", null), null, 300);
+        assertThat(ledger.needsReconcile(5_200, NEVER, 5_000)).isFalse();
+        assertThat(ledger.needsReconcile(10_100, 10_000, 5_000)).isTrue();
+
+        ledger.resync();
+        assertThat(ledger.needsReconcile(400, NEVER, NEVER)).isTrue();
+        ledger.applySnapshot(balance("990"), List.of(), 400);
+        ledger.streamDown();
+        assertThat(ledger.needsReconcile(401, NEVER, NEVER)).isTrue();
+    }
+
+    @Test
+    void multiplyMatchesBigIntegerBeyondLongProduct() {
+        // 65120.1 × 10000：定点数的乘积约6.5e24，超出long
+        assertThat(PositionLedger.multiply(6_512_010_000_000L, 1_000_000_000_000L))
+                .isEqualTo(65_120_100_000_000_000L);
+        assertThat(PositionLedger.multiply(-6_512_010_000_000L, 1_000_000_000_000L))
+                .isEqualTo(-65_120_100_000_000_000L);
+        assertThat(PositionLedger.multiply(0L, 1_000_000_000_000L)).isZero();
+
+        SplittableRandom random = new SplittableRandom(1);
+        BigInteger unit = BigInteger.valueOf(100_000_000L);
+        for (int i = 0; i < 10_000; i++) {
+            // 结果不超过long范围：|a| < 2^50，|b| < 2^38
+            long a = random.nextLong(-(1L << 50), 1L << 50);
+            long b = random.nextLong(-(1L << 38), 1L << 38);
+            long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(unit).longValueExact();
+            assertThat(PositionLedger.multiply(a, b)).isEqualTo(expected);
+        }
+    }
+
+    private Position find(String symbol, String side) {
+        for (Position position : ledger.positions()) {
+            if (position.getSymbol().equals(symbol) && position.getSide().equals(side)) {
+                return position;
+            }
+        }
+        throw new AssertionError("没有持仓: " + symbol + " " + side);
+    }
+
+    private static AccountInfo balance(String total) {
+        return AccountInfo.builder()
+                .totalBalance(new BigDecimal(total))
+                .availableBalance(new BigDecimal(total))
+                .frozenBalance(BigDecimal.ZERO)
+                .build();
+    }
+
+    private static AccountInfo delta(String total, Position position) {
+        AccountInfo delta = total != null ? balance(total) : new AccountInfo();
+        delta.setPositions(position != null ? List.of(position) : null);
+        return delta;
+    }
+
+    private static Position position(String symbol, String side, String quantity, String avgPrice, Integer leverage) {
+        return Position.builder()
+                .symbol(symbol)
+                .side(side)
+                .quantity(new BigDecimal(quantity))
+                .avgPrice(new BigDecimal(avgPrice))
+                .leverage(leverage)
+                .build();
+    }
+}
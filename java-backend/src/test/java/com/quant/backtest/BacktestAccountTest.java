@@ -0,0 +1,107 @@
+package com.quant.backtest;
+
+import com.quant.strategy.StrategySignal.Action;
+import org.junit.jupiter.api.Test;
+
+import static com.quant.backtest.BacktestAccount.LONG;
+import static com.quant.backtest.BacktestAccount.SHORT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 回测账户：与实盘一致的开平仓、杠杆、冷却期、手续费和盈利/补仓计数
+ */
+class BacktestAccountTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private final BacktestAccount account = new BacktestAccount(10_000.0, 0.0004, 0.0, 0);
+
+    @Test
+    void dualOpenUsesFiftyTimesLeverageAndChargesFee() {
+        assertThat(account.execute(T0, 100.0, Action.DUAL_OPEN, 0.0, 1.0, false, true))
+                .isEqualTo(BacktestAccount.Outcome.DUAL_ORDER_SUCCESS);
+
+        // 数量 = 保证金 × 杠杆 / 价格 = 1 × 50 / 100
+        assertThat(account.quantity(LONG)).isCloseTo(0.5, within(1e-12));
+        assertThat(account.quantity(SHORT)).isCloseTo(0.5, within(1e-12));
+        assertThat(account.leverage(LONG)).isEqualTo(50);
+        assertThat(account.margin(LONG)).isCloseTo(1.0, within(1e-12));
+        // 每边名义价值50，手续费0.02
+        assertThat(account.getTotalFees()).isCloseTo(0.04, within(1e-12));
+        assertThat(account.getWalletBalance()).isCloseTo(9_999.96, within(1e-9));
+        assertThat(account.pnlPercentage(LONG, 101.0)).isCloseTo(50.0, within(1e-9));
+        assertThat(account.pnlPercentage(SHORT, 101.0)).isCloseTo(-50.0, within(1e-9));
+    }
+
+    @Test
+    void sameSideOpenWithinThirtySecondsIsSkipped() {
+        account.execute(T0, 100.0, Action.DUAL_OPEN, 0.0, 1.0, false, true);
+
+        assertThat(account.execute(T0 + 29_999, 100.0, Action.BUY, 0.5, 1.0, false, true))
+                .isEqualTo(BacktestAccount.Outcome.SKIP_COOLDOWN);
+        assertThat(account.getCooldownSkips()).isEqualTo(1);
+
+        // 冷却期后补仓：沿用已有持仓的杠杆，补仓次数+1；没有保证金时默认0.5U
+        assertThat(account.execute(T0 + 30_000, 100.0, Action.BUY, 0.5, Double.NaN, false, true))
+                .isEqualTo(BacktestAccount.Outcome.ORDER_SUCCESS);
+        assertThat(account.quantity(LONG)).isCloseTo(0.75, within(1e-12));
+        assertThat(account.addCount(LONG)).isEqualTo(1);
+        assertThat(account.getAdds()).isEqualTo(1);
+
+        // 补齐仓位不计入补仓次数
+        assertThat(account.execute(T0 + 30_000, 100.0, Action.SELL, 0.5, 0.5, true, true))
+                .isEqualTo(BacktestAccount.Outcome.ORDER_SUCCESS);
+        assertThat(account.addCount(SHORT)).isZero();
+        assertThat(account.getRebalances()).isEqualTo(1);
+    }
+
+    @Test
+    void closeRealizesPnlAndUpdatesCounts() {
+        account.execute(T0, 100.0, Action.DUAL_OPEN, 0.0, 1.0, false, true);
+        account.execute(T0 + 30_000, 100.0, Action.SELL, 0.5, 1.0, false, true);
+        assertThat(account.addCount(SHORT)).isEqualTo(1);
+
+        // SELL + position>=1 平多
+        assertThat(account.execute(T0 + 60_000, 110.0, Action.SELL, 1.0, Double.NaN, false, true))
+                .isEqualTo(BacktestAccount.Outcome.CLOSE_ORDER_SUCCESS);
+
+        // 盈利 (110 - 100) × 0.5 = 5，平仓手续费 110 × 0.5 × 0.0004 = 0.022
+        assertThat(account.getRealizedPnl()).isCloseTo(5.0, within(1e-9));
+        assertThat(account.quantity(LONG)).isZero();
+        assertThat(account.getWins()).isEqualTo(1);
+        assertThat(account.profitCount(LONG)).isEqualTo(1);
+        // 另一方向的盈利次数和补仓次数清零
+        assertThat(account.profitCount(SHORT)).isZero();
+        assertThat(account.addCount(SHORT)).isZero();
+        assertThat(account.lastCloseTime()).isEqualTo(T0 + 60_000);
+        // 双开0.04 + 补仓0.02 + 平仓0.022
+        assertThat(account.getTotalFees()).isCloseTo(0.04 + 0.02 + 0.022, within(1e-9));
+
+        // 没有持仓时平仓失败
+        assertThat(account.execute(T0 + 60_000, 110.0, Action.SELL, 1.0, Double.NaN, false, true))
+                .isEqualTo(BacktestAccount.Outcome.CLOSE_ORDER_FAILED);
+    }
+
+    @Test
+    void rejectsOpenBeyondAvailableBalanceAndRecordsTrades() {
+        BacktestAccount small = new BacktestAccount(10.0, 0.0004, 0.0, 0);
+        TradeSeries trades = new TradeSeries();
+        small.recordTrades(trades);
+
+        assertThat(small.execute(T0, 100.0, Action.BUY, 0.5, 20.0, false, false))
+                .isEqualTo(BacktestAccount.Outcome.ORDER_FAILED);
+        assertThat(small.getRejected()).isEqualTo(1);
+
+        // 非双向策略没有持仓时使用1倍杠杆
+        assertThat(small.execute(T0, 100.0, Action.BUY, 0.5, 5.0, false, false))
+                .isEqualTo(BacktestAccount.Outcome.ORDER_SUCCESS);
+        assertThat(small.leverage(LONG)).isEqualTo(1);
+        small.execute(T0 + 1_000, 90.0, Action.SELL, 1.0, Double.NaN, false, false);
+
+        assertThat(small.getLosses()).isEqualTo(1);
+        assertThat(trades.size()).isEqualTo(1);
+        assertThat(small.execute(T0, 100.0, Action.HOLD, 0.0, Double.NaN, false, false))
+                .isEqualTo(BacktestAccount.Outcome.SKIP_HOLD);
+    }
+}
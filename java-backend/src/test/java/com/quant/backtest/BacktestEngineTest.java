@@ -0,0 +1,124 @@
+package com.quant.backtest;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.model.StrategyType;
+import com.quant.strategy.BaseStrategy;
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 回测引擎：固定行情上的结果、基本类型通道与通用请求通道一致、K线数据加载
+ */
+class BacktestEngineTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_700_000_040_000L;
+
+    /**
+     * 固定行情：±3%的正弦波动叠加缓慢上涨，2000根1分钟K线
+     */
+    static BarSeries fixedSeries() {
+        BarSeries bars = new BarSeries("BTCUSDT", MINUTE);
+        for (int i = 0; i < 2000; i++) {
+            double price = 100.0 * (1 + 0.03 * Math.sin(i / 15.0)) + i * 0.002;
+            bars.add(T0 + i * MINUTE, price, price * 1.001, price * 0.999, price, 10.0);
+        }
+        return bars;
+    }
+
+    @Test
+    void dualDirectionRunIsDeterministicAndConsistent() {
+        BarSeries bars = fixedSeries();
+        BacktestEngine engine = new BacktestEngine(BacktestConfig.defaults());
+
+        BacktestResult first = engine.run(bars, DualDirectionStrategy.offline(DualDirectionParams.DEFAULTS));
+        BacktestResult second = engine.run(bars, DualDirectionStrategy.offline(DualDirectionParams.DEFAULTS));
+
+        assertThat(first.getBars()).isEqualTo(2000);
+        assertThat(first.getStartTime()).isEqualTo(T0);
+        assertThat(first.getEndTime()).isEqualTo(T0 + 2000 * MINUTE);
+        assertThat(first.getOpens()).isPositive();
+        assertThat(first.getCloses()).isPositive();
+        assertThat(first.getTrades()).isEqualTo(first.getOpens() + first.getCloses());
+        assertThat(first.getWins() + first.getLosses()).isEqualTo(first.getCloses());
+        assertThat(first.getFees()).isPositive();
+        assertThat(first.getNetPnl()).isCloseTo(first.getFinalEquity() - first.getInitialBalance(), within(1e-9));
+        assertThat(first.getMaxDrawdownPct()).isBetween(0.0, 100.0);
+        assertThat(first.isRuined()).isFalse();
+        assertThat(first.getCurveEquity().length).isBetween(1, 500);
+
+        assertThat(second.getFinalEquity()).isEqualTo(first.getFinalEquity());
+        assertThat(second.getTrades()).isEqualTo(first.getTrades());
+    }
+
+    @Test
+    void requestPathMatchesPrimitivePath() {
+        BarSeries bars = fixedSeries();
+        BacktestEngine engine = new BacktestEngine(BacktestConfig.builder().curvePoints(0).build());
+        DualDirectionStrategy dual = DualDirectionStrategy.offline(DualDirectionParams.DEFAULTS);
+        // 包装后不是 DualDirectionStrategy 实例，走通用的 StrategyRequest 通道
+        BaseStrategy wrapped = new BaseStrategy() {
+            @Override
+            public StrategyResponse execute(StrategyRequest request) {
+                return dual.execute(request);
+            }
+
+            @Override
+            public StrategyType getStrategyType() {
+                return dual.getStrategyType();
+            }
+
+            @Override
+            public String getStrategyName() {
+                return dual.getStrategyName();
+            }
+        };
+
+        BacktestResult primitive = engine.run(bars, DualDirectionStrategy.offline(DualDirectionParams.DEFAULTS));
+        BacktestResult request = engine.run(bars, wrapped);
+
+        assertThat(request.getTrades()).isEqualTo(primitive.getTrades());
+        assertThat(request.getAdds()).isEqualTo(primitive.getAdds());
+        assertThat(request.getRebalances()).isEqualTo(primitive.getRebalances());
+        assertThat(request.getCloses()).isEqualTo(primitive.getCloses());
+        assertThat(request.getFinalEquity()).isCloseTo(primitive.getFinalEquity(), within(1e-6));
+        assertThat(request.getCurveEquity().length).isZero();
+    }
+
+    @Test
+    void readsBinanceCsvSkippingHeaderAndBadRows(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("BTCUSDT-1m.csv");
+        Files.writeString(file, String.join("\n",
+                "open_time,open,high,low,close,volume,close_time",
+                "1700000040000,100.0,101.0,99.0,100.5,12.5,1700000099999",
+                "1700000100000000,100.5,102.0,100.0,101.5,3.0,1700000159999999",
+                "1700000160000,bad,1,1,1,1,1",
+                // 时间倒退的行被忽略
+                "1700000040000,1,1,1,1,1,1",
+                "1700000160000,101.5,101.5,101.5,101.5,0"));
+
+        BarSeries bars = BarSeries.readCsv(file, "BTCUSDT", MINUTE);
+
+        assertThat(bars.size()).isEqualTo(3);
+        // 微秒时间戳转换为毫秒
+        assertThat(bars.time(1)).isEqualTo(1_700_000_100_000L);
+        assertThat(bars.closeTime(1)).isEqualTo(1_700_000_160_000L);
+        assertThat(bars.high(1)).isEqualTo(102.0);
+        assertThat(bars.volume(0)).isEqualTo(12.5);
+        assertThat(bars.volume(2)).isEqualTo(0.0);
+
+        BarSeries slice = bars.slice(1, 3);
+        assertThat(slice.size()).isEqualTo(2);
+        assertThat(slice.close(0)).isEqualTo(101.5);
+    }
+}
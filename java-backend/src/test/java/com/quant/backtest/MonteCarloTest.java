@@ -0,0 +1,135 @@
+package com.quant.backtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 蒙特卡洛检验：相同种子的结果与线程数无关、重排不改变最终权益、爆仓统计、分位数
+ */
+class MonteCarloTest {
+
+    // 不是分块大小的整数倍，最后一块不满
+    private static final int SIMULATIONS = 1000;
+
+    /**
+     * 固定交易序列：先连续盈利后集中亏损，实际顺序的回撤是所有排列中最大的
+     */
+    private static double[] fixedPnl() {
+        double[] pnl = new double[200];
+        for (int i = 0; i < pnl.length; i++) {
+            pnl[i] = i < 150 ? 2.0 + (i % 7) * 0.25 : -3.0 - (i % 5) * 0.5;
+        }
+        return pnl;
+    }
+
+    @Test
+    void sameSeedGivesSameResultOnAnyThreadCount() {
+        for (MonteCarlo.Method method : MonteCarlo.Method.values()) {
+            MonteCarlo monteCarlo = new MonteCarlo(fixedPnl(), 1_000.0, 50.0, method);
+
+            Map<String, Object> single = run(monteCarlo, 1, 42L);
+            Map<String, Object> parallel = run(monteCarlo, 4, 42L);
+            Map<String, Object> otherSeed = run(monteCarlo, 4, 43L);
+
+            assertThat(parallel).isEqualTo(single);
+            assertThat(otherSeed.get("maxDrawdown")).isNotEqualTo(single.get("maxDrawdown"));
+            assertThat(single.get("simulations")).isEqualTo(SIMULATIONS);
+            assertThat(single.get("method")).isEqualTo(method.name());
+        }
+    }
+
+    @Test
+    void shuffleKeepsFinalEquityAndChangesDrawdown() {
+        double[] pnl = fixedPnl();
+        double total = 0.0;
+        for (double value : pnl) {
+            total += value;
+        }
+
+        Map<String, Object> result = run(new MonteCarlo(pnl, 1_000.0, 50.0, MonteCarlo.Method.SHUFFLE), 4, 1L);
+
+        Map<String, Object> finalEquity = section(result, "finalEquity");
+        assertThat((double) finalEquity.get("min")).isCloseTo(1_000.0 + total, within(1e-6));
+        assertThat((double) finalEquity.get("max")).isCloseTo(1_000.0 + total, within(1e-6));
+        Map<String, Object> actual = section(result, "actual");
+        assertThat((double) actual.get("finalEquity")).isCloseTo(1_000.0 + total, within(1e-9));
+        // 亏损集中在最后：实际回撤等于全部亏损之和
+        assertThat((double) actual.get("maxDrawdown")).isCloseTo(200.0, within(1e-9));
+        Map<String, Object> maxDrawdown = section(result, "maxDrawdown");
+        assertThat((double) maxDrawdown.get("p50")).isLessThan(200.0);
+        assertThat((double) maxDrawdown.get("max")).isLessThanOrEqualTo(200.0 + 1e-9);
+        assertThat(result.get("probabilityOfRuin")).isEqualTo(0.0);
+        assertThat(result.get("probabilityOfLoss")).isEqualTo(0.0);
+    }
+
+    @Test
+    void bootstrapVariesFinalEquity() {
+        Map<String, Object> result = run(new MonteCarlo(fixedPnl(), 1_000.0, 50.0, MonteCarlo.Method.BOOTSTRAP), 4, 1L);
+
+        Map<String, Object> finalEquity = section(result, "finalEquity");
+        assertThat((double) finalEquity.get("min")).isLessThan((double) finalEquity.get("max"));
+        assertThat((double) finalEquity.get("p5")).isLessThanOrEqualTo((double) finalEquity.get("p95"));
+    }
+
+    @Test
+    void stopsPathAtRuinLine() {
+        double[] losses = {-10.0, -10.0, -10.0, -10.0, -10.0, -10.0};
+        Map<String, Object> result = run(new MonteCarlo(losses, 100.0, 50.0, MonteCarlo.Method.SHUFFLE), 2, 0L);
+
+        assertThat(result.get("probabilityOfRuin")).isEqualTo(1.0);
+        assertThat(result.get("probabilityOfLoss")).isEqualTo(1.0);
+        Map<String, Object> actual = section(result, "actual");
+        assertThat(actual.get("ruined")).isEqualTo(true);
+        // 权益跌到50时停止，第6笔不再计入
+        assertThat(actual.get("finalEquity")).isEqualTo(50.0);
+        assertThat(section(result, "finalEquity").get("max")).isEqualTo(50.0);
+
+        assertThatThrownBy(() -> new MonteCarlo(losses, 0.0, 50.0, MonteCarlo.Method.SHUFFLE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MonteCarlo(losses, 100.0, 120.0, MonteCarlo.Method.SHUFFLE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void distributionUsesNearestRank() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 - i;
+        }
+
+        Map<String, Object> distribution = MonteCarlo.distribution(values);
+
+        assertThat(distribution.get("min")).isEqualTo(1.0);
+        assertThat(distribution.get("p5")).isEqualTo(5.0);
+        assertThat(distribution.get("p50")).isEqualTo(50.0);
+        assertThat(distribution.get("p99")).isEqualTo(99.0);
+        assertThat(distribution.get("max")).isEqualTo(100.0);
+        assertThat(distribution.get("mean")).isEqualTo(50.5);
+        assertThat(MonteCarlo.distribution(new double[0])).isEmpty();
+    }
+
+    /**
+     * 执行模拟（去掉耗时，便于比较）
+     */
+    private static Map<String, Object> run(MonteCarlo monteCarlo, int threads, long seed) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Map<String, Object> result = monteCarlo.run(pool, SIMULATIONS, seed);
+            result.remove("elapsedMs");
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> result, String key) {
+        return (Map<String, Object>) result.get(key);
+    }
+}
@@ -0,0 +1,103 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 参数网格：混合进制解码顺序、范围包含终点、缺省参数、无效取值；寻优目标的计分和解析
+ */
+class ParameterGridTest {
+
+    @Test
+    void decodesCombinationsWithLastParameterFastest() {
+        ParameterGrid grid = ParameterGrid.parse(Map.of(
+                "takeProfitPct", List.of(30, 50),
+                "addMargin", List.of(0.5, 1.0, 1.5)));
+
+        assertThat(grid.size()).isEqualTo(6);
+        assertThat(grid.params(0)).isEqualTo(new DualDirectionParams(30.0, 4, 60, 1.0, 0.5));
+        assertThat(grid.params(1).addMargin()).isEqualTo(1.0);
+        assertThat(grid.params(2).addMargin()).isEqualTo(1.5);
+        assertThat(grid.params(3)).isEqualTo(new DualDirectionParams(50.0, 4, 60, 1.0, 0.5));
+        assertThat(grid.params(5)).isEqualTo(new DualDirectionParams(50.0, 4, 60, 1.0, 1.5));
+    }
+
+    @Test
+    void rangeIncludesEndDespiteFloatingPointError() {
+        ParameterGrid grid = ParameterGrid.parse(Map.of(
+                "openMargin", Map.of("from", 0.1, "to", 0.3, "step", 0.1),
+                // 没有 step 时步长为1
+                "winsPerAdd", Map.of("from", 1, "to", 5)));
+
+        assertThat(grid.size()).isEqualTo(15);
+        assertThat(grid.params(3).winsPerAdd()).isEqualTo(2);
+        assertThat(grid.params(12).openMargin()).isCloseTo(0.1, within(1e-12));
+        assertThat(grid.params(14).openMargin()).isCloseTo(0.3, within(1e-12));
+        assertThat(grid.params(14).winsPerAdd()).isEqualTo(5);
+    }
+
+    @Test
+    void missingParametersUseLiveDefaults() {
+        assertThat(ParameterGrid.parse(null).size()).isEqualTo(1);
+        assertThat(ParameterGrid.parse(null).params(0)).isEqualTo(DualDirectionParams.DEFAULTS);
+        assertThat(ParameterGrid.parse(Map.of("cooldownSeconds", 30)).params(0))
+                .isEqualTo(new DualDirectionParams(50.0, 4, 30, 1.0, 0.5));
+    }
+
+    @Test
+    void rejectsInvalidSpecs() {
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", List.of(30, "50"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", Map.of("from", 80, "to", 30))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", Map.of("from", 30, "to", 80, "step", 0))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", "50")))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 单个参数的候选值超过上限
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", Map.of("from", 1, "to", 20_000))))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 组合数量溢出long
+        Map<String, Object> range = Map.of("from", 1, "to", 10_000);
+        assertThatThrownBy(() -> ParameterGrid.parse(Map.of("takeProfitPct", range, "winsPerAdd", range,
+                "cooldownSeconds", range, "openMargin", range, "addMargin", range)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("参数组合数量过多");
+    }
+
+    @Test
+    void invalidCombinationFailsOnDecode() {
+        ParameterGrid grid = ParameterGrid.parse(Map.of("takeProfitPct", List.of(0, 50)));
+
+        assertThatThrownBy(() -> grid.params(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(grid.params(1).takeProfitPct()).isEqualTo(50.0);
+    }
+
+    @Test
+    void objectiveScoresAndParses() {
+        BacktestResult result = BacktestResult.builder().netPnl(30.0).maxDrawdown(0.5).winRate(0.75).build();
+
+        assertThat(SweepObjective.NET_PNL.score(result)).isEqualTo(30.0);
+        // 回撤小于1 USDT时按1计算
+        assertThat(SweepObjective.RETURN_OVER_DRAWDOWN.score(result)).isEqualTo(30.0);
+        result.setMaxDrawdown(6.0);
+        assertThat(SweepObjective.RETURN_OVER_DRAWDOWN.score(result)).isEqualTo(5.0);
+        assertThat(SweepObjective.WIN_RATE.score(result)).isEqualTo(0.75);
+        result.setRuined(true);
+        assertThat(SweepObjective.NET_PNL.score(result)).isEqualTo(Double.NEGATIVE_INFINITY);
+
+        assertThat(SweepObjective.from(" net_pnl ", SweepObjective.WIN_RATE)).isEqualTo(SweepObjective.NET_PNL);
+        assertThat(SweepObjective.from("SHARPE", SweepObjective.WIN_RATE)).isEqualTo(SweepObjective.WIN_RATE);
+        assertThat(SweepObjective.from(null, SweepObjective.RETURN_OVER_DRAWDOWN))
+                .isEqualTo(SweepObjective.RETURN_OVER_DRAWDOWN);
+    }
+}
@@ -0,0 +1,147 @@
+package com.quant.backtest;
+
+import com.quant.service.ClosePositionRecordService;
+import com.quant.service.StrategyConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 稳健性检验：固定行情上的回测输入、结果与线程数无关、目标杠杆换算、交易列表输入和参数校验
+ */
+class RobustnessRunnerTest {
+
+    private final List<BacktestPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        pools.forEach(BacktestPool::shutdown);
+    }
+
+    @Test
+    void backtestInputIsIndependentOfThreadCount() throws IOException {
+        Map<String, Object> request = new HashMap<>();
+        request.put("symbol", "BTCUSDT");
+        request.put("params", Map.of("takeProfitPct", 40));
+        request.put("grid", Map.of("takeProfitPct", List.of(30, 50)));
+        request.put("windows", 4);
+        request.put("simulations", 600);
+        request.put("seed", 3);
+        request.put("leverages", List.of(10, 50));
+
+        Map<String, Object> single = runner(1).run(request);
+        Map<String, Object> parallel = runner(4).run(request);
+
+        BacktestResult backtest = (BacktestResult) single.get("backtest");
+        assertThat(backtest.getCloses()).isPositive();
+        assertThat(single.get("trades")).isEqualTo(backtest.getCloses());
+        assertThat(withoutElapsed(section(parallel, "walkForward"))).isEqualTo(withoutElapsed(section(single, "walkForward")));
+
+        List<Map<String, Object>> monteCarlo = monteCarlo(single);
+        assertThat(monteCarlo).hasSize(2);
+        assertThat(monteCarlo.get(0).get("leverage")).isEqualTo(10);
+        assertThat(monteCarlo.get(0).get("scaled")).isEqualTo(true);
+        assertThat(monteCarlo.get(0).get("simulations")).isEqualTo(600);
+        for (int i = 0; i < monteCarlo.size(); i++) {
+            assertThat(withoutElapsed(monteCarlo(parallel).get(i))).isEqualTo(withoutElapsed(monteCarlo.get(i)));
+        }
+        // 交易记录中是50倍杠杆：换算到10倍后实际顺序的盈亏为1/5
+        double initialBalance = backtest.getInitialBalance();
+        double netPnlAt10 = (double) section(monteCarlo.get(0), "actual").get("finalEquity") - initialBalance;
+        double netPnlAt50 = (double) section(monteCarlo.get(1), "actual").get("finalEquity") - initialBalance;
+        assertThat(netPnlAt50).isNotZero();
+        assertThat(netPnlAt10).isCloseTo(netPnlAt50 / 5, within(1e-6));
+    }
+
+    @Test
+    void tradesInputUsesRecordedLeverage() throws IOException {
+        Map<String, Object> request = new HashMap<>();
+        request.put("input", "trades");
+        request.put("windows", 3);
+        request.put("simulations", 300);
+        request.put("trades", List.of(
+                5, -2,
+                Map.of("pnl", 3, "leverage", 20, "margin", 1, "time", 1_000),
+                Map.of("pnl", -1, "leverage", 20),
+                Map.of("pnl", 4, "leverage", 10)));
+
+        Map<String, Object> report = runner(2).run(request);
+
+        assertThat(report.get("trades")).isEqualTo(5);
+        assertThat(section(report, "walkForward").get("windows")).isEqualTo(3);
+        Map<String, Object> monteCarlo = monteCarlo(report).get(0);
+        assertThat(monteCarlo.get("leverage")).isEqualTo(20);
+        assertThat(monteCarlo.get("scaled")).isEqualTo(false);
+        assertThat(monteCarlo.get("method")).isEqualTo("SHUFFLE");
+        assertThat(monteCarlo.get("probabilityOfLoss")).isEqualTo(0.0);
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws IOException {
+        RobustnessRunner runner = runner(1);
+
+        assertThatThrownBy(() -> runner.run(Map.of("input", "TRADES", "trades", List.of(1), "simulations", 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> runner.run(Map.of("input", "ORDERS")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("不支持的交易来源");
+        assertThatThrownBy(() -> runner.run(Map.of("input", "TRADES", "trades", List.of(1), "method", "RANDOM")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("不支持的重排方式");
+        assertThatThrownBy(() -> runner.run(Map.of("input", "TRADES", "trades", List.of(1), "leverages", List.of(0))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> runner.run(Map.of("input", "TRADES", "trades", List.of("x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> runner.run(Map.of("input", "RECORDS")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("缺少用户ID");
+        // 样本内回测次数超过上限
+        ReflectionTestUtils.setField(runner, "maxWalkForwardRuns", 10);
+        assertThatThrownBy(() -> runner.run(Map.of("windows", 4, "grid", Map.of("takeProfitPct", List.of(10, 20, 30)))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("walk-forward");
+    }
+
+    private RobustnessRunner runner(int parallelism) throws IOException {
+        BacktestService backtestService = mock(BacktestService.class);
+        when(backtestService.loadSeries(anyMap())).thenReturn(BacktestEngineTest.fixedSeries());
+        BacktestPool pool = new BacktestPool();
+        ReflectionTestUtils.setField(pool, "parallelism", parallelism);
+        pools.add(pool);
+        RobustnessRunner runner = new RobustnessRunner(backtestService, pool,
+                mock(ClosePositionRecordService.class), mock(StrategyConfigService.class));
+        ReflectionTestUtils.setField(runner, "defaultSimulations", 1000);
+        ReflectionTestUtils.setField(runner, "maxSimulations", 100_000);
+        ReflectionTestUtils.setField(runner, "maxWalkForwardRuns", 10_000);
+        return runner;
+    }
+
+    private static Map<String, Object> withoutElapsed(Map<String, Object> result) {
+        Map<String, Object> copy = new HashMap<>(result);
+        copy.remove("elapsedMs");
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> result, String key) {
+        return (Map<String, Object>) result.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> monteCarlo(Map<String, Object> report) {
+        return (List<Map<String, Object>>) report.get("monteCarlo");
+    }
+}
@@ -0,0 +1,151 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 参数寻优：固定行情上的全网格排名与单独回测一致、无效组合计数、随机抽样可复现、组合数量上限
+ */
+class SweepRunnerTest {
+
+    private final BacktestService backtestService = mock(BacktestService.class);
+    private final BacktestPool backtestPool = new BacktestPool();
+    private SweepRunner runner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(backtestService.loadSeries(anyMap())).thenReturn(BacktestEngineTest.fixedSeries());
+        ReflectionTestUtils.setField(backtestPool, "parallelism", 4);
+        runner = new SweepRunner(backtestService, backtestPool);
+        ReflectionTestUtils.setField(runner, "maxCombinations", 100);
+        ReflectionTestUtils.setField(runner, "maxSessions", 10);
+        ReflectionTestUtils.setField(runner, "progressIntervalMs", 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        backtestPool.shutdown();
+    }
+
+    @Test
+    void gridSweepRanksEveryCombinationLikeSingleRuns() throws Exception {
+        Map<String, Object> request = request(Map.of(
+                "takeProfitPct", List.of(30, 50, 80),
+                "winsPerAdd", List.of(2, 4)));
+        request.put("objective", "NET_PNL");
+
+        Map<String, Object> status = await(runner.start(request), 10);
+
+        assertThat(status.get("state")).isEqualTo("FINISHED");
+        assertThat(status.get("total")).isEqualTo(6);
+        assertThat(status.get("completed")).isEqualTo(6);
+        assertThat(status.get("invalid")).isEqualTo(0);
+        assertThat(status.get("failures")).isEqualTo(0);
+        List<Map<String, Object>> ranking = ranking(status);
+        assertThat(ranking).hasSize(6);
+        for (int i = 1; i < ranking.size(); i++) {
+            assertThat((double) ranking.get(i).get("score")).isLessThanOrEqualTo((double) ranking.get(i - 1).get("score"));
+        }
+
+        // 并行寻优的结果与同一参数单独回测一致
+        BacktestEngine engine = new BacktestEngine(BacktestConfig.builder().curvePoints(0).build());
+        for (Map<String, Object> entry : ranking) {
+            DualDirectionParams params = (DualDirectionParams) entry.get("params");
+            BacktestResult single = engine.run(BacktestEngineTest.fixedSeries(), DualDirectionStrategy.offline(params));
+            assertThat(entry.get("netPnl")).isEqualTo(single.getNetPnl());
+            assertThat(entry.get("trades")).isEqualTo(single.getTrades());
+        }
+    }
+
+    @Test
+    void invalidCombinationsAreCountedAndSkipped() throws Exception {
+        Map<String, Object> status = await(runner.start(request(Map.of("takeProfitPct", List.of(0, 50)))), 10);
+
+        assertThat(status.get("completed")).isEqualTo(2);
+        assertThat(status.get("invalid")).isEqualTo(1);
+        assertThat(ranking(status)).hasSize(1);
+        assertThat(((DualDirectionParams) ranking(status).get(0).get("params")).takeProfitPct()).isEqualTo(50.0);
+    }
+
+    @Test
+    void randomModeWithSameSeedSamplesSameCombinations() throws Exception {
+        Map<String, Object> grid = Map.of(
+                "takeProfitPct", List.of(30, 50, 80),
+                "winsPerAdd", List.of(2, 4, 6),
+                "cooldownSeconds", List.of(0, 60, 300));
+        Map<String, Object> request = request(grid);
+        request.put("mode", "RANDOM");
+        request.put("samples", 5);
+        request.put("seed", 7);
+
+        List<Map<String, Object>> first = ranking(await(runner.start(request), 5));
+        List<Map<String, Object>> second = ranking(await(runner.start(request), 5));
+
+        assertThat(first).hasSize(5);
+        assertThat(params(second)).isEqualTo(params(first));
+        assertThat(runner.sessions()).hasSize(2);
+    }
+
+    @Test
+    void rejectsGridsBeyondCombinationLimit() {
+        ReflectionTestUtils.setField(runner, "maxCombinations", 10);
+        Map<String, Object> request = request(Map.of("takeProfitPct", Map.of("from", 10, "to", 100, "step", 5)));
+
+        assertThatThrownBy(() -> runner.start(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("RANDOM");
+        // 抽样数量超过上限
+        request.put("mode", "RANDOM");
+        request.put("samples", 11);
+        assertThatThrownBy(() -> runner.start(request)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(runner.sessions()).hasSize(0);
+    }
+
+    private static Map<String, Object> request(Map<String, Object> params) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("symbol", "BTCUSDT");
+        request.put("params", params);
+        return request;
+    }
+
+    private Map<String, Object> await(Map<String, Object> started, int topN) throws InterruptedException {
+        String sessionId = (String) started.get("sessionId");
+        long deadline = System.currentTimeMillis() + 60_000;
+        Map<String, Object> status = runner.status(sessionId, topN);
+        while (!Boolean.TRUE.equals(status.get("finished"))) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+            status = runner.status(sessionId, topN);
+        }
+        return status;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> ranking(Map<String, Object> status) {
+        return (List<Map<String, Object>>) status.get("ranking");
+    }
+
+    private static List<Object> params(List<Map<String, Object>> ranking) {
+        List<Object> params = new ArrayList<>();
+        for (Map<String, Object> entry : ranking) {
+            params.add(entry.get("params"));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,151 @@
+package com.quant.backtest;
+
+import com.quant.strategy.DualDirectionParams;
+import com.quant.strategy.DualDirectionStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 滚动窗口检验：固定行情上的窗口划分、样本内选优、结果与线程数无关；按交易数量分窗口
+ */
+class WalkForwardTest {
+
+    private final ForkJoinPool single = new ForkJoinPool(1);
+    private final ForkJoinPool parallel = new ForkJoinPool(4);
+    private final BacktestConfig config = BacktestConfig.defaults();
+
+    @AfterEach
+    void tearDown() {
+        single.shutdownNow();
+        parallel.shutdownNow();
+    }
+
+    @Test
+    void gridWalkForwardIsIndependentOfThreadCount() {
+        BarSeries bars = BacktestEngineTest.fixedSeries();
+        ParameterGrid grid = ParameterGrid.parse(Map.of("takeProfitPct", List.of(30, 50, 80)));
+        WalkForward walkForward = new WalkForward(config, SweepObjective.NET_PNL);
+
+        Map<String, Object> first = walkForward.run(single, bars, 4, 70, grid, DualDirectionParams.DEFAULTS);
+        Map<String, Object> second = walkForward.run(parallel, bars, 4, 70, grid, DualDirectionParams.DEFAULTS);
+        first.remove("elapsedMs");
+        second.remove("elapsedMs");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.get("windows")).isEqualTo(4);
+        assertThat(first.get("candidates")).isEqualTo(3);
+        List<Map<String, Object>> windows = results(first);
+        assertThat(windows).hasSize(4);
+        double outOfSampleNetPnl = 0.0;
+        for (Map<String, Object> window : windows) {
+            // 每个窗口500根K线：样本内350根，样本外150根
+            assertThat(section(window, "inSample").get("bars")).isEqualTo(350);
+            assertThat(section(window, "outOfSample").get("bars")).isEqualTo(150);
+            assertThat((long) window.get("outOfSampleStart")).isEqualTo((long) window.get("inSampleStart") + 350 * 60_000L);
+            outOfSampleNetPnl += (double) section(window, "outOfSample").get("netPnl");
+        }
+        assertThat((double) first.get("outOfSampleNetPnl")).isCloseTo(outOfSampleNetPnl, within(1e-9));
+    }
+
+    @Test
+    void picksBestInSampleCandidate() {
+        BarSeries bars = BacktestEngineTest.fixedSeries();
+        ParameterGrid grid = ParameterGrid.parse(Map.of("takeProfitPct", List.of(30, 50, 80)));
+
+        Map<String, Object> report = new WalkForward(config, SweepObjective.NET_PNL)
+                .run(parallel, bars, 4, 70, grid, DualDirectionParams.DEFAULTS);
+
+        // 第一个窗口的样本内单独回测，取净盈亏最高的参数
+        BacktestEngine engine = new BacktestEngine(config.toBuilder().curvePoints(0).build());
+        DualDirectionParams best = null;
+        double bestPnl = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < grid.size(); c++) {
+            double netPnl = engine.run(bars.slice(0, 350), DualDirectionStrategy.offline(grid.params(c))).getNetPnl();
+            if (best == null || netPnl > bestPnl) {
+                best = grid.params(c);
+                bestPnl = netPnl;
+            }
+        }
+        Map<String, Object> window = results(report).get(0);
+        assertThat(window.get("params")).isEqualTo(best);
+        assertThat(window.get("inSampleScore")).isEqualTo(bestPnl);
+    }
+
+    @Test
+    void withoutGridUsesFixedParams() {
+        DualDirectionParams fixed = new DualDirectionParams(40.0, 3, 30, 1.0, 0.5);
+
+        Map<String, Object> report = new WalkForward(config, SweepObjective.RETURN_OVER_DRAWDOWN)
+                .run(parallel, BacktestEngineTest.fixedSeries(), 3, 60, null, fixed);
+
+        assertThat(report.get("candidates")).isEqualTo(1);
+        for (Map<String, Object> window : results(report)) {
+            assertThat(window.get("params")).isEqualTo(fixed);
+        }
+        // 最后一个窗口包含余数：2000 / 3 = 666，最后一个窗口668根
+        Map<String, Object> last = results(report).get(2);
+        assertThat((int) section(last, "inSample").get("bars") + (int) section(last, "outOfSample").get("bars"))
+                .isEqualTo(668);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        BarSeries bars = BacktestEngineTest.fixedSeries();
+        WalkForward walkForward = new WalkForward(config, SweepObjective.NET_PNL);
+
+        assertThatThrownBy(() -> walkForward.run(parallel, bars, 0, 70, null, DualDirectionParams.DEFAULTS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> walkForward.run(parallel, bars, 1001, 70, null, DualDirectionParams.DEFAULTS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> walkForward.run(parallel, bars, 4, 100, null, DualDirectionParams.DEFAULTS))
+                .isInstanceOf(IllegalArgumentException.class);
+        ParameterGrid invalid = ParameterGrid.parse(Map.of("takeProfitPct", List.of(0)));
+        assertThatThrownBy(() -> walkForward.run(parallel, bars, 4, 70, invalid, DualDirectionParams.DEFAULTS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("没有有效的参数组合");
+    }
+
+    @Test
+    void byTradesSplitsRecordsIntoConsecutiveWindows() {
+        TradeSeries trades = new TradeSeries();
+        double[] pnl = {5, -2, 3, -4, -4, 1, 2, 2, 2, -1};
+        for (int i = 0; i < pnl.length; i++) {
+            trades.add(1_000L * i, pnl[i], 1.0, 50);
+        }
+
+        Map<String, Object> report = WalkForward.byTrades(trades, 3, 100.0);
+
+        List<Map<String, Object>> windows = results(report);
+        assertThat(windows).hasSize(3);
+        assertThat(windows.get(0).get("netPnl")).isEqualTo(6.0);
+        assertThat(windows.get(1).get("netPnl")).isEqualTo(-7.0);
+        assertThat(windows.get(1).get("maxDrawdown")).isEqualTo(8.0);
+        // 最后一个窗口包含余数
+        assertThat(windows.get(2).get("trades")).isEqualTo(4);
+        assertThat(windows.get(2).get("startTime")).isEqualTo(6_000L);
+        assertThat(windows.get(2).get("endTime")).isEqualTo(9_000L);
+        assertThat((double) windows.get(2).get("profitFactor")).isCloseTo(6.0, within(1e-12));
+        assertThat(report.get("profitableWindows")).isEqualTo(2);
+        assertThat((double) report.get("meanNetPnl")).isCloseTo(4.0 / 3, within(1e-12));
+
+        assertThatThrownBy(() -> WalkForward.byTrades(trades, 11, 100.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> results(Map<String, Object> report) {
+        return (List<Map<String, Object>>) report.get("results");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> window, String key) {
+        return (Map<String, Object>) window.get(key);
+    }
+}
@@ -0,0 +1,49 @@
+package com.quant.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 线程池模式：策略循环不排队，线程用完后直接拒绝
+ */
+class AsyncConfigTest {
+
+    @Test
+    void poolRejectsLoopOnceAllThreadsAreBusy() throws InterruptedException {
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) AsyncConfig.createThreadPoolExecutor();
+        CountDownLatch started = new CountDownLatch(50);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // 模拟50个不会结束的策略循环
+            for (int i = 0; i < 50; i++) {
+                executor.execute(() -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                });
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(executor.getQueueSize()).isZero();
+
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                    .isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.quant.exchange;
+
+import com.quant.market.MarkPriceTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 标记价格解析：定点转换和第9位小数舍入、负数、科学计数法和溢出回退、字段缺失和乱序、组合流外层对象
+ */
+class BinanceMarkPriceParserTest {
+
+    private final MarkPriceTable table = new MarkPriceTable(16);
+    private final BinanceMarkPriceParser parser = new BinanceMarkPriceParser(table);
+
+    @Test
+    void parsesDecimalsToFixedPoint() {
+        assertThat(scaled("11794.15000000")).isEqualTo(1_179_415_000_000L);
+        assertThat(scaled("11794.15")).isEqualTo(1_179_415_000_000L);
+        assertThat(scaled("42")).isEqualTo(4_200_000_000L);
+        assertThat(scaled("+0.5")).isEqualTo(50_000_000L);
+        assertThat(scaled(".5")).isEqualTo(50_000_000L);
+        assertThat(scaled("0.00000001")).isEqualTo(1L);
+    }
+
+    @Test
+    void roundsHalfUpOnNinthDecimal() {
+        assertThat(scaled("1.123456784")).isEqualTo(112_345_678L);
+        assertThat(scaled("1.123456785")).isEqualTo(112_345_679L);
+        // 第9位之后的数字不参与舍入
+        assertThat(scaled("1.1234567849999")).isEqualTo(112_345_678L);
+        // 进位到整数部分
+        assertThat(scaled("0.999999999")).isEqualTo(100_000_000L);
+        assertThat(scaled("0.000000004")).isZero();
+    }
+
+    @Test
+    void negativeValuesKeepSign() {
+        assertThat(scaled("-1.5")).isEqualTo(-150_000_000L);
+        // 按绝对值舍入
+        assertThat(scaled("-1.123456785")).isEqualTo(-112_345_679L);
+        assertThat(scaled("-0")).isZero();
+    }
+
+    @Test
+    void exponentAndOverflowFallBackToDouble() {
+        assertThat(scaled("1.5E3")).isEqualTo(150_000_000_000L);
+        assertThat(scaled("2e-8")).isEqualTo(2L);
+        // 整数部分过大时回退，仍在long范围内
+        assertThat(scaled("92233720360")).isEqualTo(9_223_372_036_000_000_000L);
+        // 超出long范围、非数字、空字符串都视为无法解析
+        assertThat(scaled("92233720369")).isEqualTo(-1L);
+        assertThat(scaled("1e30")).isEqualTo(-1L);
+        assertThat(scaled("NaN")).isEqualTo(-1L);
+        assertThat(scaled("1.2.3")).isEqualTo(-1L);
+        assertThat(scaled("")).isEqualTo(-1L);
+    }
+
+    @Test
+    void parsesBareArrayWithReorderedAndMissingFields() throws IOException {
+        String message = "[" +
+                "{\"e\":\"markPriceUpdate\",\"E\":1000,\"s\":\"BTCUSDT\",\"p\":\"61000.12345678\",\"r\":\"0.0001\"}," +
+                // 字段乱序、包含嵌套值
+                "{\"p\":\"3000.5\",\"x\":{\"a\":[1,2]},\"E\":2000,\"s\":\"ETHUSDT\"}," +
+                // 缺少价格、缺少交易对、价格为负数：跳过
+                "{\"e\":\"markPriceUpdate\",\"E\":3000,\"s\":\"SOLUSDT\"}," +
+                "{\"e\":\"markPriceUpdate\",\"E\":3000,\"p\":\"1.0\"}," +
+                "{\"E\":3000,\"s\":\"XRPUSDT\",\"p\":\"-1.0\"}," +
+                // 数值类型的价格
+                "{\"s\":\"BNBUSDT\",\"p\":600.25}" +
+                "]";
+
+        assertThat(parser.parse(message)).isEqualTo(3);
+
+        assertThat(table.sequence()).isEqualTo(1);
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.getMarkPrice("BTCUSDT")).isEqualByComparingTo("61000.12345678");
+        assertThat(table.eventTime(table.indexOf("BTCUSDT"))).isEqualTo(1000);
+        assertThat(table.getMarkPrice("ETHUSDT")).isEqualByComparingTo("3000.5");
+        assertThat(table.eventTime(table.indexOf("ETHUSDT"))).isEqualTo(2000);
+        assertThat(table.getMarkPrice("BNBUSDT")).isEqualByComparingTo("600.25");
+        assertThat(table.indexOf("SOLUSDT")).isEqualTo(-1);
+        assertThat(table.indexOf("XRPUSDT")).isEqualTo(-1);
+    }
+
+    @Test
+    void parsesCombinedStreamWrapper() throws IOException {
+        String wrapped = "{\"stream\":\"!markPrice@arr@1s\",\"meta\":{\"k\":[1]},\"data\":" +
+                "[{\"s\":\"BTCUSDT\",\"p\":\"61000\",\"E\":1000}]}";
+
+        assertThat(parser.parse(wrapped)).isEqualTo(1);
+        assertThat(table.getMarkPrice("BTCUSDT")).isEqualByComparingTo("61000");
+
+        // 没有更新时不发布
+        assertThat(parser.parse("{\"stream\":\"!markPrice@arr@1s\"}")).isZero();
+        assertThat(parser.parse("{\"data\":{\"s\":\"BTCUSDT\"}}")).isZero();
+        assertThat(parser.parse("[]")).isZero();
+        assertThat(parser.parse("\"pong\"")).isZero();
+        assertThat(table.sequence()).isEqualTo(1);
+    }
+
+    @Test
+    void updatesExistingSymbolInPlace() throws IOException {
+        parser.parse("[{\"s\":\"BTCUSDT\",\"p\":\"61000\"},{\"s\":\"ETHUSDT\",\"p\":\"3000\"}]");
+        int index = table.indexOf("BTCUSDT");
+
+        assertThat(parser.parse("[{\"s\":\"BTCUSDT\",\"p\":\"61001\"}]")).isEqualTo(1);
+
+        assertThat(table.indexOf("BTCUSDT")).isEqualTo(index);
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.getMarkPrice("BTCUSDT")).isEqualByComparingTo("61001");
+        assertThat(table.updatedSince(index, 2)).isTrue();
+        assertThat(table.updatedSince(table.indexOf("ETHUSDT"), 2)).isFalse();
+    }
+
+    private static long scaled(String text) {
+        char[] chars = ("xx" + text + "yy").toCharArray();
+        return BinanceMarkPriceParser.parseScaled(chars, 2, text.length());
+    }
+}
@@ -0,0 +1,142 @@
+package com.quant.exchange;
+
+import com.quant.model.AccountInfo;
+import com.quant.model.Order;
+import com.quant.model.Position;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 模拟交易账户：开平仓成交、手续费、保证金和可用余额、余额不足拒绝、账户推送
+ */
+class PaperExchangeAdapterTest {
+
+    private final Map<String, BigDecimal> prices = new HashMap<>();
+    private final List<AccountInfo> updates = new ArrayList<>();
+    private PaperExchangeAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        // 离线价格来源：在 initialize 之前设置，不使用标记价格中心
+        adapter = new PaperExchangeAdapter(null);
+        ReflectionTestUtils.setField(adapter, "initialBalance", new BigDecimal("10000"));
+        ReflectionTestUtils.setField(adapter, "takerFeeRate", new BigDecimal("0.0004"));
+        ReflectionTestUtils.setField(adapter, "defaultLeverage", 20);
+        adapter.setPriceSource(prices::get);
+        adapter.initialize(null, null, null);
+        adapter.subscribeAccountUpdates("paper-user").subscribe(updates::add);
+        prices.put("BTCUSDT", new BigDecimal("60000"));
+    }
+
+    @Test
+    void openChargesFeeAndReservesMargin() {
+        Order filled = adapter.placeOrder(market("BUY", "0.1")).block();
+
+        assertThat(filled.getStatus()).isEqualTo("FILLED");
+        assertThat(filled.getPrice()).isEqualByComparingTo("60000");
+        assertThat(filled.getOrderId()).startsWith("PAPER-");
+        assertThat(adapter.getOrder(filled.getOrderId()).block()).isSameAs(filled);
+
+        AccountInfo account = adapter.getAccountInfo("paper-user").block();
+        // 名义价值6000：手续费2.4，保证金 6000 / 20 = 300
+        assertThat(account.getTotalBalance()).isEqualByComparingTo("9997.6");
+        assertThat(account.getFrozenBalance()).isEqualByComparingTo("300");
+        assertThat(account.getAvailableBalance()).isEqualByComparingTo("9697.6");
+        assertThat(account.getPositions()).hasSize(1);
+        assertThat(account.getPositions().get(0).getSide()).isEqualTo("LONG");
+        assertThat(updates).hasSize(1);
+    }
+
+    @Test
+    void markPriceMoveUpdatesUnrealizedPnl() {
+        adapter.placeOrder(market("BUY", "0.1")).block();
+        adapter.placeOrder(market("SELL", "0.1")).block();
+        prices.put("BTCUSDT", new BigDecimal("61000"));
+
+        List<Position> positions = adapter.getPositions("paper-user").block();
+        Position longPosition = positions.get(0);
+        Position shortPosition = positions.get(1);
+        assertThat(longPosition.getUnrealizedPnl()).isEqualByComparingTo("100");
+        assertThat(shortPosition.getUnrealizedPnl()).isEqualByComparingTo("-100");
+        // 盈亏百分比 = 未实现盈亏 / 保证金 × 100
+        assertThat(longPosition.getPnlPercentage()).isEqualByComparingTo("33.333333");
+        assertThat(longPosition.getCurrentPrice()).isEqualByComparingTo("61000");
+
+        AccountInfo account = adapter.getAccountInfo("paper-user").block();
+        assertThat(account.getUnrealizedPnl()).isEqualByComparingTo("0");
+        assertThat(account.getEquity()).isEqualByComparingTo("9995.2");
+    }
+
+    @Test
+    void closeRealizesPnlAndCapsQuantityAtPosition() {
+        adapter.placeOrder(market("BUY", "0.1")).block();
+        prices.put("BTCUSDT", new BigDecimal("61000"));
+
+        Order closed = adapter.placeOrder(market("LONG", "0.2")).block();
+
+        assertThat(closed.getQuantity()).isEqualByComparingTo("0.1");
+        AccountInfo account = adapter.getAccountInfo("paper-user").block();
+        // 9997.6 + 盈利100 - 平仓手续费2.44
+        assertThat(account.getTotalBalance()).isEqualByComparingTo("10095.16");
+        assertThat(account.getPositions()).hasSize(0);
+        assertThat(account.getFrozenBalance()).isEqualByComparingTo("0");
+        assertThat((BigDecimal) account.getMetadata().get("realizedPnl")).isEqualByComparingTo("100");
+        assertThat((BigDecimal) account.getMetadata().get("totalFees")).isEqualByComparingTo("4.84");
+        assertThat(updates).hasSize(2);
+    }
+
+    @Test
+    void leverageChangeRecomputesMargin() {
+        adapter.placeOrder(market("BUY", "0.1")).block();
+        adapter.setLeverage("BTCUSDT", 10);
+
+        AccountInfo account = adapter.getAccountInfo("paper-user").block();
+        assertThat(account.getFrozenBalance()).isEqualByComparingTo("600");
+        assertThat(account.getPositions().get(0).getLeverage()).isEqualTo(10);
+        assertThatThrownBy(() -> adapter.setLeverage("BTCUSDT", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsOrdersThatCannotFill() {
+        // 保证金 5 × 60000 / 20 = 15000 超过可用余额
+        assertThatThrownBy(() -> adapter.placeOrder(market("SELL", "5")).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("可用余额不足");
+        assertThatThrownBy(() -> adapter.placeOrder(market("SHORT", "0.1")).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("没有可平的持仓");
+        assertThatThrownBy(() -> adapter.placeOrder(market("BUY", "0")).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> adapter.placeOrder(Order.builder().symbol("BTCUSDT").side("BUY").type("LIMIT")
+                .quantity(new BigDecimal("0.1")).build()).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        Order unknownSymbol = Order.builder().symbol("ETHUSDT").side("BUY").type("MARKET")
+                .quantity(new BigDecimal("1")).build();
+        assertThatThrownBy(() -> adapter.placeOrder(unknownSymbol).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("没有标记价格");
+
+        // 拒绝的订单不改变账户，也不推送
+        assertThat(adapter.getAccountInfo("paper-user").block().getTotalBalance()).isEqualByComparingTo("10000");
+        assertThat(updates).hasSize(0);
+    }
+
+    private static Order market(String side, String quantity) {
+        return Order.builder()
+                .symbol("BTCUSDT")
+                .side(side)
+                .type("MARKET")
+                .quantity(new BigDecimal(quantity))
+                .build();
+    }
+}
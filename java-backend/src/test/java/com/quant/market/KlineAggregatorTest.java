@@ -0,0 +1,111 @@
+package com.quant.market;
+
+import com.quant.model.ExchangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * K线聚合：只有标记价格时按标记价格生成K线、有成交时优先使用成交、
+ * 某个周期超过一根K线没有成交后改用标记价格、收到成交后切回
+ */
+class KlineAggregatorTest {
+
+    private static final String SYMBOL = "BTCUSDT";
+    // 整分钟
+    private static final long T0 = 1_700_000_040_000L;
+
+    private final MarkPriceHub markPriceHub = mock(MarkPriceHub.class);
+    private final Sinks.Many<MarkPriceUpdate> markPrices = Sinks.many().multicast().directBestEffort();
+    private final Sinks.Many<TradeTick> trades = Sinks.many().multicast().directBestEffort();
+    private final MarkPriceTable table = new MarkPriceTable(16);
+    private KlineAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        when(markPriceHub.markPriceUpdates(ExchangeType.BINANCE)).thenReturn(markPrices.asFlux());
+        when(markPriceHub.tradeUpdates(ExchangeType.BINANCE)).thenReturn(trades.asFlux());
+        aggregator = new KlineAggregator(markPriceHub);
+        ReflectionTestUtils.setField(aggregator, "enabled", true);
+        ReflectionTestUtils.setField(aggregator, "capacity", 100);
+        ReflectionTestUtils.setField(aggregator, "tradeStreamEnabled", true);
+        ReflectionTestUtils.setField(aggregator, "defaultIndicators", List.of("sma:2"));
+        aggregator.init();
+        aggregator.track(SYMBOL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.shutdown();
+    }
+
+    @Test
+    void buildsBarsFromMarkPricesWithoutTrades() {
+        markPrice(T0 + 100, 100.0);
+        markPrice(T0 + 1_100, 101.0);
+        markPrice(T0 + 2_100, 102.0);
+
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.S1, 5)).containsExactly(100.0, 101.0, 102.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M1, 5)).containsExactly(102.0);
+        assertThat(aggregator.lastVolume(SYMBOL, KlineInterval.S1)).isNull();
+        assertThat(aggregator.getStats().get("tradeFedSymbols")).isEqualTo(List.of());
+    }
+
+    @Test
+    void markPricesResumePerIntervalOnceTradesAreOlderThanOneBar() {
+        trade(T0 + 100, 100.0, 1.0);
+        assertThat(aggregator.lastVolume(SYMBOL, KlineInterval.M1)).isEqualTo(1.0);
+
+        // 一根K线之内有成交：所有周期忽略标记价格
+        markPrice(T0 + 500, 200.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.S1, 5)).containsExactly(100.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M1, 5)).containsExactly(100.0);
+
+        // 超过1秒没有成交：1s周期改用标记价格，1m周期仍只用成交
+        markPrice(T0 + 1_600, 201.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.S1, 5)).containsExactly(100.0, 201.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M1, 5)).containsExactly(100.0);
+
+        // 超过1分钟没有成交：1m周期也改用标记价格
+        markPrice(T0 + 60_200, 300.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M1, 5)).containsExactly(100.0, 300.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M5, 5)).containsExactly(100.0);
+        assertThat(aggregator.lastVolume(SYMBOL, KlineInterval.M1)).isEqualTo(0.0);
+
+        // 收到成交后切回成交
+        trade(T0 + 61_000, 310.0, 2.0);
+        markPrice(T0 + 61_500, 400.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M1, 5)).containsExactly(100.0, 310.0);
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.M5, 1)).containsExactly(310.0);
+        assertThat(aggregator.lastVolume(SYMBOL, KlineInterval.M1)).isEqualTo(2.0);
+        assertThat(aggregator.getStats().get("tradeFedSymbols")).isEqualTo(List.of(SYMBOL));
+    }
+
+    @Test
+    void ignoresUntrackedSymbols() {
+        trades.tryEmitNext(new TradeTick("ETHUSDT", 3_000.0, 1.0, T0));
+        markPrice(T0, 100.0);
+
+        assertThat(aggregator.closes("ETHUSDT", KlineInterval.S1, 5)).isEmpty();
+        assertThat(aggregator.closes(SYMBOL, KlineInterval.S1, 5)).containsExactly(100.0);
+    }
+
+    private void markPrice(long timeMs, double price) {
+        char[] chars = SYMBOL.toCharArray();
+        table.put(chars, 0, chars.length, Math.round(price * 100_000_000L), timeMs);
+        table.commit();
+        markPrices.tryEmitNext(new MarkPriceUpdate(table, table.sequence(), 1));
+    }
+
+    private void trade(long timeMs, double price, double quantity) {
+        trades.tryEmitNext(new TradeTick(SYMBOL, price, quantity, timeMs));
+    }
+}
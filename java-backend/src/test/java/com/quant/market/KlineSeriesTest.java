@@ -0,0 +1,89 @@
+package com.quant.market;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * K线环形数组：周期对齐、OHLCV更新、空周期补齐、迟到数据、容量覆盖、收盘回调
+ */
+class KlineSeriesTest {
+
+    private static final long T0 = 1_700_000_040_000L;
+
+    @Test
+    void updatesOhlcvWithinOneBar() {
+        KlineSeries series = new KlineSeries(KlineInterval.M1, 10);
+        series.update(T0 + 1_000, 100.0, 1.0);
+        series.update(T0 + 2_000, 105.0, 2.0);
+        series.update(T0 + 3_000, 98.0, 0.5);
+        series.update(T0 + 59_999, 101.0, 0.0);
+
+        Map<String, Object> bars = series.lastBars(5);
+        assertThat(series.size()).isEqualTo(1);
+        assertThat(bars.get("time")).isEqualTo(List.of(T0));
+        assertThat(bars.get("open")).isEqualTo(List.of(100.0));
+        assertThat(bars.get("high")).isEqualTo(List.of(105.0));
+        assertThat(bars.get("low")).isEqualTo(List.of(98.0));
+        assertThat(bars.get("close")).isEqualTo(List.of(101.0));
+        assertThat(series.lastVolume()).isEqualTo(3.5);
+    }
+
+    @Test
+    void fillsEmptyIntervalsWithPreviousClose() {
+        KlineSeries series = new KlineSeries(KlineInterval.M1, 10);
+        series.update(T0, 100.0, 1.0);
+        // 跳过两个周期
+        series.update(T0 + 3 * 60_000 + 5, 110.0, 2.0);
+
+        Map<String, Object> bars = series.lastBars(10);
+        assertThat(bars.get("time")).isEqualTo(List.of(T0, T0 + 60_000, T0 + 120_000, T0 + 180_000));
+        assertThat(bars.get("close")).isEqualTo(List.of(100.0, 100.0, 100.0, 110.0));
+        assertThat(bars.get("volume")).isEqualTo(List.of(1.0, 0.0, 0.0, 2.0));
+    }
+
+    @Test
+    void lateDataOnlyAddsVolume() {
+        KlineSeries series = new KlineSeries(KlineInterval.M1, 10);
+        series.update(T0, 100.0, 1.0);
+        series.update(T0 + 60_000, 101.0, 1.0);
+        series.update(T0 + 30_000, 50.0, 4.0);
+
+        assertThat(series.lastCloses(2)).containsExactly(100.0, 101.0);
+        assertThat(series.lastBars(1).get("low")).isEqualTo(List.of(101.0));
+        assertThat(series.lastVolume()).isEqualTo(5.0);
+    }
+
+    @Test
+    void overwritesOldestBarWhenFull() {
+        KlineSeries series = new KlineSeries(KlineInterval.S1, 3);
+        for (int i = 0; i < 5; i++) {
+            series.update(T0 + i * 1_000L, 100.0 + i, 0.0);
+        }
+
+        assertThat(series.size()).isEqualTo(3);
+        assertThat(series.lastCloses(10)).containsExactly(102.0, 103.0, 104.0);
+        assertThat(series.lastCloses(2)).containsExactly(103.0, 104.0);
+    }
+
+    @Test
+    void listenerReceivesClosedBarsAndReplaySkipsCurrent() {
+        KlineSeries series = new KlineSeries(KlineInterval.S1, 10);
+        List<Double> closed = new ArrayList<>();
+        series.setListener((openTime, open, high, low, close, volume) -> closed.add(close));
+        series.update(T0, 100.0, 0.0);
+        series.update(T0 + 500, 100.5, 0.0);
+        series.update(T0 + 1_000, 101.0, 0.0);
+        series.update(T0 + 2_000, 102.0, 0.0);
+
+        assertThat(closed).containsExactly(100.5, 101.0);
+
+        List<Long> replayed = new ArrayList<>();
+        series.replayClosed((openTime, open, high, low, close, volume) -> replayed.add(openTime));
+        assertThat(replayed).containsExactly(T0, T0 + 1_000);
+    }
+}
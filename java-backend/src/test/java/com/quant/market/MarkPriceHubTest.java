@@ -0,0 +1,109 @@
+package com.quant.market;
+
+import com.quant.exchange.BinanceFuturesWebSocketClient;
+import com.quant.model.ExchangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 标记价格中心：所有用户共享一条连接、模拟交易使用Binance行情、连接异常不结束订阅者
+ */
+class MarkPriceHubTest {
+
+    private final BinanceFuturesWebSocketClient feed = mock(BinanceFuturesWebSocketClient.class);
+    private final Sinks.Many<MarkPriceUpdate> feedPrices = Sinks.many().multicast().directBestEffort();
+    private final MarkPriceTable table = new MarkPriceTable(16);
+    private final List<BinanceFuturesWebSocketClient> created = new ArrayList<>();
+    private MarkPriceHub hub;
+
+    @BeforeEach
+    void setUp() {
+        when(feed.subscribeAllMarkPrices()).thenReturn(feedPrices.asFlux());
+        when(feed.waitForPriceData(anyInt())).thenReturn(true);
+        when(feed.getMarkPriceTable()).thenReturn(table);
+        when(feed.getMarkPrice("BTCUSDT")).thenReturn(new BigDecimal("61000"));
+        hub = new MarkPriceHub(null, proxy -> {
+            created.add(feed);
+            return feed;
+        });
+    }
+
+    @Test
+    void oneSharedFeedForBinanceAndPaper() {
+        hub.ensureStarted(ExchangeType.BINANCE);
+        hub.ensureStarted(ExchangeType.PAPER);
+        hub.ensureStarted(ExchangeType.BINANCE);
+
+        assertThat(created).hasSize(1);
+        assertThat(hub.getTable(ExchangeType.BINANCE)).isSameAs(table);
+        assertThat(hub.getTable(ExchangeType.PAPER)).isSameAs(table);
+        assertThat(hub.getMarkPrice(ExchangeType.PAPER, "BTCUSDT")).isEqualByComparingTo("61000");
+        assertThat(hub.getMarkPrice(ExchangeType.PAPER, null)).isNull();
+    }
+
+    @Test
+    void unsupportedExchangeHasNoFeed() {
+        hub.ensureStarted(ExchangeType.OKX);
+
+        assertThat(created).isEmpty();
+        assertThat(hub.getTable(ExchangeType.OKX)).isNull();
+        assertThat(hub.getMarkPrice(ExchangeType.OKX, "BTCUSDT")).isNull();
+        List<Boolean> completed = new ArrayList<>();
+        hub.markPriceUpdates(ExchangeType.OKX).subscribe(update -> { }, error -> { }, () -> completed.add(true));
+        assertThat(completed).containsExactly(true);
+    }
+
+    @Test
+    void paperAndBinanceSubscribersReceiveSameUpdates() {
+        List<MarkPriceUpdate> binance = new ArrayList<>();
+        List<MarkPriceUpdate> paper = new ArrayList<>();
+        // 可以在连接建立之前订阅
+        hub.markPriceUpdates(ExchangeType.BINANCE).subscribe(binance::add);
+        hub.markPriceUpdates(ExchangeType.PAPER).subscribe(paper::add);
+        hub.ensureStarted(ExchangeType.PAPER);
+
+        MarkPriceUpdate update = new MarkPriceUpdate(table, 1, 1);
+        feedPrices.tryEmitNext(update);
+
+        assertThat(binance).containsExactly(update);
+        assertThat(paper).containsExactly(update);
+        assertThat(hub.getStats().get("binanceSubscribers")).isEqualTo(2);
+    }
+
+    @Test
+    void feedErrorAndCancelledSubscribersDoNotEndTheStream() {
+        hub.ensureStarted(ExchangeType.BINANCE);
+        List<MarkPriceUpdate> received = new ArrayList<>();
+        List<String> terminal = new ArrayList<>();
+        hub.markPriceUpdates(ExchangeType.BINANCE).subscribe(received::add,
+                error -> terminal.add("error"), () -> terminal.add("complete"));
+
+        // 订阅者全部取消后，中心仍然持有连接的订阅
+        Disposable other = hub.markPriceUpdates(ExchangeType.PAPER).subscribe(update -> { });
+        other.dispose();
+        MarkPriceUpdate update = new MarkPriceUpdate(table, 1, 1);
+        feedPrices.tryEmitNext(update);
+        assertThat(received).containsExactly(update);
+
+        // 连接异常只记录日志，订阅者不会收到错误或结束
+        feedPrices.tryEmitError(new IllegalStateException("连接断开"));
+        assertThat(terminal).isEmpty();
+        assertThat(hub.getStats().get("binanceSubscribers")).isEqualTo(1);
+
+        hub.shutdown();
+        assertThat(terminal).containsExactly("complete");
+        verify(feed).close();
+    }
+}
@@ -0,0 +1,194 @@
+package com.quant.market;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 标记价格表：新增/更新/查找、容量已满、消息序号和 updatedSince、asMap 实时视图、单写多读
+ */
+class MarkPriceTableTest {
+
+    private static final long SCALE = 100_000_000L;
+
+    @Test
+    void insertsUpdatesAndLooksUp() {
+        MarkPriceTable table = new MarkPriceTable(8);
+
+        assertThat(put(table, "BTCUSDT", 61_000, 1000)).isEqualTo(0);
+        assertThat(put(table, "ETHUSDT", 3_000, 1001)).isEqualTo(1);
+        // 已存在的交易对原地更新，下标不变
+        assertThat(put(table, "BTCUSDT", 61_001, 1002)).isEqualTo(0);
+        // 交易对名称以字符区间传入
+        char[] chars = "xxSOLUSDTyy".toCharArray();
+        assertThat(table.put(chars, 2, 7, 150 * SCALE, 1003)).isEqualTo(2);
+
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.indexOf("BTCUSDT")).isEqualTo(0);
+        assertThat(table.indexOf("SOLUSDT")).isEqualTo(2);
+        assertThat(table.indexOf("XRPUSDT")).isEqualTo(-1);
+        assertThat(table.indexOf(null)).isEqualTo(-1);
+        assertThat(table.symbol(1)).isEqualTo("ETHUSDT");
+        assertThat(table.getMarkPrice("BTCUSDT")).isEqualByComparingTo("61001");
+        assertThat(table.getMarkPrice("XRPUSDT")).isNull();
+        assertThat(table.scaledPrice(1)).isEqualTo(3_000 * SCALE);
+        assertThat(table.price(2)).isEqualTo(150.0);
+        assertThat(table.eventTime(0)).isEqualTo(1002);
+
+        List<String> visited = new ArrayList<>();
+        table.forEach((index, symbol, scaledPrice) -> visited.add(index + ":" + symbol + ":" + scaledPrice / SCALE));
+        assertThat(visited).containsExactly("0:BTCUSDT:61001", "1:ETHUSDT:3000", "2:SOLUSDT:150");
+    }
+
+    @Test
+    void fullTableRejectsNewSymbolsButUpdatesExisting() {
+        MarkPriceTable table = new MarkPriceTable(2);
+        put(table, "BTCUSDT", 61_000, 1);
+        put(table, "ETHUSDT", 3_000, 1);
+
+        assertThat(put(table, "SOLUSDT", 150, 2)).isEqualTo(-1);
+        assertThat(put(table, "ETHUSDT", 3_100, 2)).isEqualTo(1);
+
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.indexOf("SOLUSDT")).isEqualTo(-1);
+        assertThat(table.getMarkPrice("ETHUSDT")).isEqualByComparingTo("3100");
+    }
+
+    @Test
+    void sequenceMarksSymbolsUpdatedByEachMessage() {
+        MarkPriceTable table = new MarkPriceTable(8);
+        assertThat(table.sequence()).isZero();
+
+        // 第一条消息：写入时即标记为序号1，commit 后发布
+        int btc = put(table, "BTCUSDT", 61_000, 1);
+        int eth = put(table, "ETHUSDT", 3_000, 1);
+        assertThat(table.updatedSince(btc, 1)).isTrue();
+        table.commit();
+        assertThat(table.sequence()).isEqualTo(1);
+
+        // 第二条消息只更新BTC
+        put(table, "BTCUSDT", 61_001, 2);
+        table.commit();
+        assertThat(table.sequence()).isEqualTo(2);
+
+        assertThat(table.updatedSince(btc, 2)).isTrue();
+        assertThat(table.updatedSince(eth, 2)).isFalse();
+        // 序号1或之后更新过
+        assertThat(table.updatedSince(eth, 1)).isTrue();
+        assertThat(table.updatedSince(-1, 0)).isFalse();
+        assertThat(new MarkPriceUpdate(table, 2, 1).contains("BTCUSDT")).isTrue();
+        assertThat(new MarkPriceUpdate(table, 2, 1).contains("ETHUSDT")).isFalse();
+        assertThat(new MarkPriceUpdate(table, 2, 1).contains("XRPUSDT")).isFalse();
+    }
+
+    @Test
+    void asMapIsLiveReadOnlyView() {
+        MarkPriceTable table = new MarkPriceTable(8);
+        Map<String, BigDecimal> view = table.asMap();
+        assertThat(view).isEmpty();
+
+        put(table, "BTCUSDT", 61_000, 1);
+        put(table, "ETHUSDT", 3_000, 1);
+
+        // 之前取得的视图能看到之后写入的交易对和价格
+        assertThat(view).hasSize(2);
+        assertThat(view.get("BTCUSDT")).isEqualByComparingTo("61000");
+        put(table, "BTCUSDT", 62_000, 2);
+        assertThat(view.get("BTCUSDT")).isEqualByComparingTo("62000");
+        assertThat(view.containsKey("ETHUSDT")).isTrue();
+        assertThat(view.containsKey("XRPUSDT")).isFalse();
+        assertThat(view.get(42)).isNull();
+
+        // 复制出的快照不随价格表变化
+        Map<String, BigDecimal> snapshot = new HashMap<>(view);
+        put(table, "SOLUSDT", 150, 3);
+        assertThat(snapshot).hasSize(2);
+        assertThat(view).hasSize(3);
+        assertThat(snapshot.get("BTCUSDT")).isEqualByComparingTo("62000");
+
+        assertThatThrownBy(() -> view.put("XRPUSDT", BigDecimal.ONE))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void readersSeeCompleteEntriesWhileSingleWriterUpdates() throws InterruptedException {
+        int symbols = 500;
+        int rounds = 200;
+        MarkPriceTable table = new MarkPriceTable(symbols);
+        char[][] names = new char[symbols][];
+        for (int i = 0; i < symbols; i++) {
+            names[i] = ("SYM" + i + "USDT").toCharArray();
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                await(start);
+                while (!done.get() && failure.get() == null) {
+                    long seq = table.sequence();
+                    for (int i = 0; i < symbols; i++) {
+                        String symbol = "SYM" + i + "USDT";
+                        int index = table.indexOf(symbol);
+                        if (index < 0) {
+                            continue;
+                        }
+                        // 查到下标时名称和价格已经可见；价格的最后三位是交易对编号
+                        long scaled = table.scaledPrice(index);
+                        if (!symbol.equals(table.symbol(index)) || scaled <= 0 || scaled % 1000 != i) {
+                            failure.compareAndSet(null, symbol + " index=" + index + " price=" + scaled);
+                        }
+                    }
+                    if (table.sequence() < seq || table.size() > symbols) {
+                        failure.compareAndSet(null, "sequence/size went backwards");
+                    }
+                }
+            }, "mark-price-reader-" + r);
+            readers.add(reader);
+            reader.start();
+        }
+
+        start.countDown();
+        for (int round = 1; round <= rounds; round++) {
+            for (int i = 0; i < symbols; i++) {
+                table.put(names[i], 0, names[i].length, round * 1_000_000L + i, round);
+            }
+            table.commit();
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertThat(failure.get()).isNull();
+        assertThat(table.size()).isEqualTo(symbols);
+        assertThat(table.sequence()).isEqualTo(rounds);
+        assertThat(table.scaledPrice(table.indexOf("SYM7USDT"))).isEqualTo(rounds * 1_000_000L + 7);
+    }
+
+    private static int put(MarkPriceTable table, String symbol, long price, long eventTime) {
+        char[] chars = symbol.toCharArray();
+        return table.put(chars, 0, chars.length, price * SCALE, eventTime);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.quant.market;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 订单簿快照/增量衔接：缓存增量回放、U <= lastUpdateId + 1 <= u 衔接规则、pu 连续性、断档后重新同步
+ */
+class OrderBookHubTest {
+
+    private static final long SCALE = 100_000_000L;
+
+    @Test
+    void buffersDiffsUntilSnapshotAndReplaysFromBridge() {
+        OrderBookHub.ManagedBook managed = new OrderBookHub.ManagedBook("BTCUSDT");
+        // 快照前收到的增量全部缓存
+        assertThat(managed.onDiff(diff(90, 95, 89, 100.0, 1.0))).isFalse();
+        assertThat(managed.onDiff(diff(96, 100, 95, 101.0, 2.0))).isFalse();
+        assertThat(managed.onDiff(diff(101, 104, 100, 102.0, 3.0))).isFalse();
+        assertThat(managed.isSynced()).isFalse();
+
+        // lastUpdateId=100：前两条已包含在快照中，第三条 U=101 <= 101 <= u=104 衔接
+        assertThat(managed.onSnapshot(snapshot(100, 99.0))).isFalse();
+
+        OrderBook book = managed.book();
+        assertThat(managed.isSynced()).isTrue();
+        assertThat(book.getLastUpdateId()).isEqualTo(104);
+        assertThat(book.bestBid()).isEqualTo(102.0);
+        // 已包含在快照中的增量没有重复应用
+        assertThat(book.bidLevels()).isEqualTo(2);
+
+        // 之后按 pu 连续应用
+        assertThat(managed.onDiff(diff(105, 106, 104, 102.0, 0.0))).isFalse();
+        assertThat(book.getLastUpdateId()).isEqualTo(106);
+        assertThat(book.bestBid()).isEqualTo(99.0);
+    }
+
+    @Test
+    void bridgeAcceptsDiffSpanningSnapshot() {
+        OrderBookHub.ManagedBook managed = new OrderBookHub.ManagedBook("BTCUSDT");
+        managed.onSnapshot(snapshot(100, 99.0));
+
+        // 已包含在快照中（u <= lastUpdateId）的增量直接丢弃，仍等待衔接
+        assertThat(managed.onDiff(diff(95, 100, 94, 50.0, 1.0))).isFalse();
+        assertThat(managed.book().bidLevels()).isEqualTo(1);
+
+        // U=98 <= 101 <= u=103
+        assertThat(managed.onDiff(diff(98, 103, 97, 100.0, 1.0))).isFalse();
+        assertThat(managed.book().getLastUpdateId()).isEqualTo(103);
+        assertThat(managed.book().bestBid()).isEqualTo(100.0);
+        assertThat(managed.resyncs()).isZero();
+    }
+
+    @Test
+    void gapBeforeBridgeTriggersResync() {
+        OrderBookHub.ManagedBook managed = new OrderBookHub.ManagedBook("BTCUSDT");
+        managed.onSnapshot(snapshot(100, 99.0));
+
+        // U=103 > lastUpdateId + 1：中间缺了101、102
+        assertThat(managed.onDiff(diff(103, 105, 102, 100.0, 1.0))).isTrue();
+        assertThat(managed.isSynced()).isFalse();
+        assertThat(managed.resyncs()).isEqualTo(1);
+        assertThat(managed.book().bidLevels()).isZero();
+
+        // 重新同步期间的增量继续缓存
+        assertThat(managed.onDiff(diff(106, 107, 105, 101.0, 1.0))).isFalse();
+
+        // 新快照之后回放断档的那条和后续增量
+        assertThat(managed.onSnapshot(snapshot(104, 99.0))).isFalse();
+        assertThat(managed.isSynced()).isTrue();
+        assertThat(managed.book().getLastUpdateId()).isEqualTo(107);
+        assertThat(managed.book().bestBid()).isEqualTo(101.0);
+    }
+
+    @Test
+    void previousFinalUpdateIdMismatchTriggersResync() {
+        OrderBookHub.ManagedBook managed = new OrderBookHub.ManagedBook("BTCUSDT");
+        managed.onSnapshot(snapshot(100, 99.0));
+        assertThat(managed.onDiff(diff(101, 102, 100, 100.0, 1.0))).isFalse();
+
+        // pu=105 != 102：丢失了一条增量
+        assertThat(managed.onDiff(diff(106, 108, 105, 101.0, 1.0))).isTrue();
+        assertThat(managed.isSynced()).isFalse();
+        assertThat(managed.resyncs()).isEqualTo(1);
+
+        // 快照仍早于断档的增量时再次断档
+        assertThat(managed.onSnapshot(snapshot(102, 99.0))).isTrue();
+        assertThat(managed.resyncs()).isEqualTo(2);
+
+        assertThat(managed.onSnapshot(snapshot(107, 99.0))).isFalse();
+        assertThat(managed.book().getLastUpdateId()).isEqualTo(108);
+        assertThat(managed.book().bestBid()).isEqualTo(101.0);
+    }
+
+    private static DepthUpdate snapshot(long lastUpdateId, double bid) {
+        return new DepthUpdate("BTCUSDT", lastUpdateId, lastUpdateId, -1, 0,
+                new long[]{scaled(bid)}, new double[]{1.0},
+                new long[]{scaled(bid + 10)}, new double[]{1.0});
+    }
+
+    private static DepthUpdate diff(long first, long last, long previous, double bid, double quantity) {
+        return new DepthUpdate("BTCUSDT", first, last, previous, last,
+                new long[]{scaled(bid)}, new double[]{quantity},
+                new long[0], new double[0]);
+    }
+
+    private static long scaled(double price) {
+        return Math.round(price * SCALE);
+    }
+}
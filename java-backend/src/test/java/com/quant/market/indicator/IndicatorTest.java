@@ -0,0 +1,224 @@
+package com.quant.market.indicator;
+
+import com.quant.market.KlineInterval;
+import com.quant.market.KlineSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 增量指标：与按窗口全量重算的结果对比，以及定义解析、去重和历史预热
+ */
+class IndicatorTest {
+
+    private static final int BARS = 300;
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_700_006_400_000L;
+
+    private final double[] open = new double[BARS];
+    private final double[] high = new double[BARS];
+    private final double[] low = new double[BARS];
+    private final double[] close = new double[BARS];
+    private final double[] volume = new double[BARS];
+
+    IndicatorTest() {
+        // 固定种子的随机游走
+        Random random = new Random(42);
+        double price = 100.0;
+        for (int i = 0; i < BARS; i++) {
+            open[i] = price;
+            price += random.nextGaussian();
+            close[i] = price;
+            high[i] = Math.max(open[i], close[i]) + random.nextDouble();
+            low[i] = Math.min(open[i], close[i]) - random.nextDouble();
+            volume[i] = i % 7 == 0 ? 0.0 : 1.0 + random.nextDouble() * 10;
+        }
+    }
+
+    @Test
+    void smaMatchesWindowMean() {
+        Sma sma = new Sma(20);
+        for (int i = 0; i < BARS; i++) {
+            feed(sma, i);
+            if (i < 19) {
+                assertThat(sma.isReady()).isFalse();
+                continue;
+            }
+            assertThat(sma.getValue()).isCloseTo(mean(close, i - 19, i), within(1e-9));
+            if (i > 19) {
+                assertThat(sma.getPrevious()).isCloseTo(mean(close, i - 20, i - 1), within(1e-9));
+            }
+        }
+    }
+
+    @Test
+    void emaSeedsWithSmaThenSmooths() {
+        Ema ema = new Ema(10);
+        double alpha = 2.0 / 11;
+        double expected = Double.NaN;
+        for (int i = 0; i < BARS; i++) {
+            feed(ema, i);
+            if (i < 9) {
+                assertThat(ema.isReady()).isFalse();
+                continue;
+            }
+            expected = i == 9 ? mean(close, 0, 9) : expected + alpha * (close[i] - expected);
+            assertThat(ema.getValue()).isCloseTo(expected, within(1e-9));
+        }
+    }
+
+    @Test
+    void rsiMatchesWilderRecomputation() {
+        int period = 14;
+        Rsi rsi = new Rsi(period);
+        for (int i = 0; i < BARS; i++) {
+            feed(rsi, i);
+            assertThat(rsi.isReady()).isEqualTo(i >= period);
+        }
+        double avgGain = 0;
+        double avgLoss = 0;
+        for (int i = 1; i <= period; i++) {
+            double change = close[i] - close[i - 1];
+            avgGain += Math.max(change, 0) / period;
+            avgLoss += Math.max(-change, 0) / period;
+        }
+        for (int i = period + 1; i < BARS; i++) {
+            double change = close[i] - close[i - 1];
+            avgGain = (avgGain * (period - 1) + Math.max(change, 0)) / period;
+            avgLoss = (avgLoss * (period - 1) + Math.max(-change, 0)) / period;
+        }
+        assertThat(rsi.getValue()).isCloseTo(100 - 100 / (1 + avgGain / avgLoss), within(1e-9));
+        assertThat(rsi.getValue()).isBetween(0.0, 100.0);
+    }
+
+    @Test
+    void rsiEdgeCases() {
+        Rsi rising = new Rsi(3);
+        Rsi flat = new Rsi(3);
+        for (int i = 0; i < 5; i++) {
+            rising.onBar(T0 + i * MINUTE, 0, 0, 0, 100 + i, 0);
+            flat.onBar(T0 + i * MINUTE, 0, 0, 0, 100, 0);
+        }
+        assertThat(rising.getValue()).isEqualTo(100.0);
+        assertThat(flat.getValue()).isEqualTo(50.0);
+    }
+
+    @Test
+    void atrUsesTrueRangeWithWilderSmoothing() {
+        int period = 14;
+        Atr atr = new Atr(period);
+        double expected = 0;
+        for (int i = 0; i < BARS; i++) {
+            feed(atr, i);
+            double trueRange = high[i] - low[i];
+            if (i > 0) {
+                trueRange = Math.max(trueRange, Math.max(Math.abs(high[i] - close[i - 1]), Math.abs(low[i] - close[i - 1])));
+            }
+            if (i < period) {
+                expected += trueRange / period;
+                assertThat(atr.isReady()).isEqualTo(i == period - 1);
+            } else {
+                expected = (expected * (period - 1) + trueRange) / period;
+            }
+        }
+        assertThat(atr.getValue()).isCloseTo(expected, within(1e-9));
+    }
+
+    @Test
+    void bollingerMatchesPopulationDeviation() {
+        Bollinger boll = new Bollinger(20, 2);
+        for (int i = 0; i < BARS; i++) {
+            feed(boll, i);
+            if (i < 19) {
+                continue;
+            }
+            double mean = mean(close, i - 19, i);
+            double variance = 0;
+            for (int j = i - 19; j <= i; j++) {
+                variance += (close[j] - mean) * (close[j] - mean) / 20;
+            }
+            assertThat(boll.getValue()).isCloseTo(mean, within(1e-9));
+            assertThat(boll.getUpper()).isCloseTo(mean + 2 * Math.sqrt(variance), within(1e-6));
+            assertThat(boll.getLower()).isCloseTo(mean - 2 * Math.sqrt(variance), within(1e-6));
+        }
+
+        Map<String, Object> out = new HashMap<>();
+        boll.writeTo(out);
+        assertThat(out).containsKey("boll_20_2_upper").containsKey("boll_20_2_middle").containsKey("boll_20_2_lower");
+    }
+
+    @Test
+    void vwapResetsEachUtcDayAndSkipsZeroVolume() {
+        Vwap vwap = new Vwap();
+        long dayStart = T0 - Math.floorMod(T0, 86_400_000L);
+        vwap.onBar(dayStart + 1, 0, 12, 9, 9, 2.0);
+        vwap.onBar(dayStart + 2, 0, 30, 30, 30, 0.0);
+        vwap.onBar(dayStart + 3, 0, 21, 21, 21, 1.0);
+        assertThat(vwap.getValue()).isCloseTo((10.0 * 2 + 21.0) / 3, within(1e-12));
+
+        // 下一个UTC自然日重新累计
+        vwap.onBar(dayStart + 86_400_000L, 0, 50, 50, 50, 4.0);
+        assertThat(vwap.getValue()).isCloseTo(50.0, within(1e-12));
+        assertThat(vwap.getPrevious()).isCloseTo((10.0 * 2 + 21.0) / 3, within(1e-12));
+    }
+
+    @Test
+    void parsesSpecsAndRejectsInvalidOnes() {
+        assertThat(Indicator.parse("SMA:20").getName()).isEqualTo("sma_20");
+        assertThat(Indicator.parse(" ema:50 ").getName()).isEqualTo("ema_50");
+        assertThat(Indicator.parse("boll:20").getName()).isEqualTo("boll_20_2");
+        assertThat(Indicator.parse("boll:20:2.5").getName()).isEqualTo("boll_20_2.5");
+        assertThat(Indicator.parse("vwap").getName()).isEqualTo("vwap");
+
+        assertThatThrownBy(() -> Indicator.parse("macd:12")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Indicator.parse("sma")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Indicator.parse("rsi:0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Indicator.parse("atr:x")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Indicator.parse(" ")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void indicatorSetDeduplicatesAndWarmsUpFromHistory() {
+        KlineSeries series = new KlineSeries(KlineInterval.M1, 500);
+        IndicatorSet set = new IndicatorSet();
+        series.setListener(set);
+        Indicator live = set.add(new Ema(20), series);
+
+        for (int i = 0; i < BARS; i++) {
+            series.update(T0 + i * MINUTE, close[i], volume[i]);
+        }
+
+        // 同名指标返回已有实例
+        assertThat(set.add(new Ema(20), series)).isSameAs(live);
+        // 后订阅的指标用历史K线预热，结果与实时订阅的一致
+        Indicator late = set.add(new Sma(20), series);
+        Sma reference = new Sma(20);
+        for (int i = 0; i < BARS - 1; i++) {
+            reference.onBar(T0 + i * MINUTE, close[i], close[i], close[i], close[i], volume[i]);
+        }
+        assertThat(set.size()).isEqualTo(2);
+        assertThat(late.getValue()).isCloseTo(reference.getValue(), within(1e-9));
+
+        Map<String, Object> out = new HashMap<>();
+        set.writeTo(out);
+        assertThat(out).containsKey("ema_20").containsKey("ema_20_prev").containsKey("sma_20");
+    }
+
+    private void feed(Indicator indicator, int i) {
+        indicator.onBar(T0 + i * MINUTE, open[i], high[i], low[i], close[i], volume[i]);
+    }
+
+    private static double mean(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i <= to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from + 1);
+    }
+}
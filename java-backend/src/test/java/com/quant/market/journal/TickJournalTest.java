@@ -0,0 +1,136 @@
+package com.quant.market.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tick日志写入/读取往返：跨映射块、重启续写、按天滚动、读取正在写入的文件
+ */
+class TickJournalTest {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    // 每块3条记录，便于跨块
+    private static final long CHUNK = 3L * TickJournal.RECORD_SIZE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsRecordsAcrossChunks() throws IOException {
+        long now = System.currentTimeMillis();
+        Path file;
+        try (TickJournal journal = new TickJournal(dir, "binance", CHUNK)) {
+            int btc = journal.symbolId("BTCUSDT");
+            int eth = journal.symbolId("ETHUSDT");
+            assertThat(journal.symbolId("BTCUSDT")).isEqualTo(btc);
+            for (int i = 0; i < 10; i++) {
+                journal.append(i % 2 == 0 ? TickJournal.TYPE_MARK_PRICE : TickJournal.TYPE_TRADE,
+                        i % 2 == 0 ? btc : eth, now + i, 6_512_010_000_000L + i, i * 1_000_000L);
+            }
+            // 事件时间无效的记录不写入
+            journal.append(TickJournal.TYPE_TRADE, btc, 0, 1, 1);
+            assertThat(journal.getRecords()).isEqualTo(10);
+            file = journal.getCurrentFile();
+        }
+
+        List<String> read = readAll(file);
+        assertThat(read).hasSize(10);
+        assertThat(read.get(0)).isEqualTo("1 BTCUSDT " + now + " 65120.1 0.0");
+        assertThat(read.get(9)).isEqualTo("2 ETHUSDT " + (now + 9) + " 65120.10000009 0.09");
+    }
+
+    @Test
+    void reopenContinuesAfterLastRecordWithSameSymbolIds() throws IOException {
+        long now = System.currentTimeMillis();
+        int eth;
+        try (TickJournal journal = new TickJournal(dir, "binance", CHUNK)) {
+            journal.symbolId("BTCUSDT");
+            eth = journal.symbolId("ETHUSDT");
+            for (int i = 0; i < 4; i++) {
+                journal.append(TickJournal.TYPE_MARK_PRICE, eth, now + i, 100_000_000L, 0);
+            }
+        }
+        Path file;
+        try (TickJournal journal = new TickJournal(dir, "binance", CHUNK)) {
+            assertThat(journal.symbolId("ETHUSDT")).isEqualTo(eth);
+            assertThat(journal.symbolId("SOLUSDT")).isEqualTo(2);
+            journal.append(TickJournal.TYPE_TRADE, 2, now + 4, 200_000_000L, 0);
+            file = journal.getCurrentFile();
+        }
+
+        List<String> read = readAll(file);
+        assertThat(read).hasSize(5);
+        assertThat(read.get(3)).isEqualTo("1 ETHUSDT " + (now + 3) + " 1.0 0.0");
+        assertThat(read.get(4)).isEqualTo("2 SOLUSDT " + (now + 4) + " 2.0 0.0");
+    }
+
+    @Test
+    void rollsToNewFileOnNextUtcDay() throws IOException {
+        long now = System.currentTimeMillis();
+        long tomorrow = (Math.floorDiv(now, DAY_MILLIS) + 1) * DAY_MILLIS + 1;
+        Path first;
+        Path second;
+        try (TickJournal journal = new TickJournal(dir, "binance", CHUNK)) {
+            int btc = journal.symbolId("BTCUSDT");
+            journal.append(TickJournal.TYPE_MARK_PRICE, btc, now, 100_000_000L, 0);
+            first = journal.getCurrentFile();
+            journal.append(TickJournal.TYPE_MARK_PRICE, btc, tomorrow, 200_000_000L, 0);
+            second = journal.getCurrentFile();
+        }
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(TickJournal.files(dir, "binance")).containsExactly(first, second);
+        assertThat(TickJournal.files(dir, "okx")).hasSize(0);
+        // 新文件的字典包含已知的全部交易对，编号不变
+        assertThat(readAll(first)).containsExactly("1 BTCUSDT " + now + " 1.0 0.0");
+        assertThat(readAll(second)).containsExactly("1 BTCUSDT " + tomorrow + " 2.0 0.0");
+    }
+
+    @Test
+    void readerFollowsFileWhileWriting() throws IOException {
+        long now = System.currentTimeMillis();
+        try (TickJournal journal = new TickJournal(dir, "binance", CHUNK)) {
+            int btc = journal.symbolId("BTCUSDT");
+            journal.append(TickJournal.TYPE_MARK_PRICE, btc, now, 100_000_000L, 0);
+
+            try (TickJournalReader reader = new TickJournalReader(journal.getCurrentFile())) {
+                assertThat(reader.next()).isTrue();
+                assertThat(reader.next()).isFalse();
+
+                int eth = journal.symbolId("ETHUSDT");
+                journal.append(TickJournal.TYPE_TRADE, eth, now + 1, 300_000_000L, 50_000_000L);
+                assertThat(reader.next()).isTrue();
+                assertThat(reader.symbol()).isEqualTo("ETHUSDT");
+                assertThat(reader.quantity()).isEqualTo(0.5);
+            }
+        }
+    }
+
+    @Test
+    void rejectsFileWithoutHeader() throws IOException {
+        Path file = dir.resolve("binance-20240101.ticks");
+        Files.write(file, new byte[TickJournal.HEADER_SIZE]);
+
+        assertThatThrownBy(() -> new TickJournalReader(file)).isInstanceOf(IOException.class);
+    }
+
+    private static List<String> readAll(Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (TickJournalReader reader = new TickJournalReader(file)) {
+            while (reader.next()) {
+                records.add(reader.type() + " " + reader.symbol() + " " + reader.eventTime() + " "
+                        + reader.price() + " " + reader.quantity());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,170 @@
+package com.quant.replay;
+
+import com.quant.model.Position;
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.model.TradingContext;
+import com.quant.strategy.StrategyEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 录制文件往返：上下文金额精度、请求/响应可选、追加写入、不完整的最后一帧
+ */
+class ReplayFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsRecordWithContextPrecision() throws IOException {
+        Path file = dir.resolve("evaluations.rpl");
+        EvaluationRecord record = new EvaluationRecord(1_700_000_000_123L, "DualDirectionStrategy", StrategyEngine.JVM,
+                context(), request(), response(), "ORDER_SUCCESS_1700000000123");
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(file)) {
+            writer.write(record);
+            assertThat(writer.getRecords()).isEqualTo(1);
+        }
+
+        EvaluationRecord read;
+        try (ReplayFile.Reader reader = new ReplayFile.Reader(file)) {
+            read = reader.next();
+            assertThat(reader.next()).isNull();
+        }
+
+        assertThat(read.decisionTime()).isEqualTo(1_700_000_000_123L);
+        assertThat(read.strategyName()).isEqualTo("DualDirectionStrategy");
+        assertThat(read.engine()).isEqualTo(StrategyEngine.JVM);
+        assertThat(read.orderResult()).isEqualTo("ORDER_SUCCESS_1700000000123");
+
+        TradingContext context = read.context();
+        assertThat(context.getUserId()).isEqualTo("user-1");
+        assertThat(context.isFetchSuccess()).isTrue();
+        // 金额按字符串保存，精度和标度不变
+        assertThat(context.getPrice()).isEqualTo(new BigDecimal("65120.10000001"));
+        assertThat(context.getLongPosition().getQuantity()).isEqualTo(new BigDecimal("0.010"));
+        assertThat(context.getLongPosition().getLeverage()).isEqualTo(50);
+        assertThat(context.getShortPosition()).isNull();
+        assertThat(context.getLongProfitCount()).isEqualTo(3);
+        assertThat(context.getShortAddCount()).isEqualTo(1);
+        assertThat(context.getRecentClosePositions()).hasSize(1);
+
+        assertThat(read.request().getSymbol()).isEqualTo("BTCUSDT");
+        assertThat(read.request().getStrategyParams()).containsEntry("ma_period", 20L);
+        assertThat(read.response().getSignal()).isEqualTo("ADD");
+        assertThat(read.response().getRequestId()).isEqualTo("r-1");
+    }
+
+    @Test
+    void appendsToExistingFileAndHandlesMissingRequestAndResponse() throws IOException {
+        Path file = dir.resolve("evaluations.rpl");
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(file)) {
+            writer.write(new EvaluationRecord(1, "DualDirectionStrategy", StrategyEngine.JVM, context(), null,
+                    response(), null));
+        }
+        // 重新打开时不重复写文件头
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(file)) {
+            writer.write(new EvaluationRecord(2, "DualDirectionStrategy", StrategyEngine.PYTHON, context(), request(),
+                    null, EvaluationRecord.REJECTED_RISK));
+        }
+
+        try (ReplayFile.Reader reader = new ReplayFile.Reader(file)) {
+            EvaluationRecord first = reader.next();
+            EvaluationRecord second = reader.next();
+            assertThat(reader.next()).isNull();
+
+            assertThat(first.request()).isNull();
+            assertThat(first.response().getSignal()).isEqualTo("ADD");
+            assertThat(first.orderResult()).isNull();
+            assertThat(second.decisionTime()).isEqualTo(2);
+            assertThat(second.request().getStrategyName()).isEqualTo("DualDirectionStrategy");
+            assertThat(second.response()).isNull();
+            assertThat(second.orderResult()).isEqualTo(EvaluationRecord.REJECTED_RISK);
+        }
+    }
+
+    @Test
+    void ignoresTruncatedLastFrame() throws IOException {
+        Path file = dir.resolve("evaluations.rpl");
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(file)) {
+            writer.write(new EvaluationRecord(1, "DualDirectionStrategy", StrategyEngine.JVM, context(), request(),
+                    response(), null));
+        }
+        // 模拟进程在写入第二帧时退出：长度已写入，负载不完整
+        Files.write(file, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (ReplayFile.Reader reader = new ReplayFile.Reader(file)) {
+            assertThat(reader.next().decisionTime()).isEqualTo(1);
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void rejectsFileWithoutMagic() throws IOException {
+        Path file = dir.resolve("other.rpl");
+        Files.write(file, new byte[]{1, 2, 3, 4, 0, 0, 0, 1});
+
+        assertThatThrownBy(() -> new ReplayFile.Reader(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("不是录制文件");
+    }
+
+    @Test
+    void resultTypeStripsTimestampSuffix() {
+        assertThat(EvaluationRecord.resultType("ORDER_SUCCESS_1700000000000")).isEqualTo("ORDER_SUCCESS");
+        assertThat(EvaluationRecord.resultType(EvaluationRecord.REJECTED_RISK)).isEqualTo("REJECTED_RISK");
+        assertThat(EvaluationRecord.resultType(null)).isNull();
+    }
+
+    private static TradingContext context() {
+        return TradingContext.builder()
+                .userId("user-1")
+                .symbol("BTCUSDT")
+                .timestamp(1_700_000_000_000L)
+                .fetchSuccess(true)
+                .price(new BigDecimal("65120.10000001"))
+                .longPosition(Position.builder()
+                        .symbol("BTCUSDT")
+                        .side("LONG")
+                        .quantity(new BigDecimal("0.010"))
+                        .avgPrice(new BigDecimal("65000.5"))
+                        .pnlPercentage(new BigDecimal("9.2"))
+                        .leverage(50)
+                        .build())
+                .longProfitCount(3)
+                .shortAddCount(1)
+                .recentClosePositions(List.of(Map.of("side", "SHORT", "closeTime", 1_699_999_990_000L)))
+                .build();
+    }
+
+    private static StrategyRequest request() {
+        return StrategyRequest.builder()
+                .requestId("r-1")
+                .strategyName("DualDirectionStrategy")
+                .symbol("BTCUSDT")
+                .marketData(Map.of("price", 65120.1))
+                .strategyParams(Map.of("ma_period", 20))
+                .position(Map.of("longQuantity", 0.01))
+                .account(Map.of())
+                .build();
+    }
+
+    private static StrategyResponse response() {
+        StrategyResponse response = StrategyResponse.defaultResponse();
+        response.setRequestId("r-1");
+        response.setSignal("ADD");
+        response.setPosition(new BigDecimal("0.5"));
+        return response;
+    }
+}
@@ -0,0 +1,134 @@
+package com.quant.service;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.transport.StrategyTcpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 策略请求批量合并管道：慢速批量调用、调用异常、排队超时
+ */
+class StrategyManagerTest {
+
+    private final StrategyTcpClient tcpClient = mock(StrategyTcpClient.class);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private StrategyManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void slowDispatcherQueuesBatchesInsteadOfOverflowing() {
+        manager = createManager(2, 5000);
+        slowDispatcher(Duration.ofMillis(100));
+
+        List<StrategyResponse> responses = executeConcurrently(40);
+
+        assertThat(responses).hasSize(40).allMatch(response -> "BUY".equals(response.getSignal()));
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(4);
+        // 窗口超时时可能发出不满的批次
+        assertThat(calls.get()).isBetween(20, 40);
+        // 管道仍然可用
+        assertThat(manager.executeStrategy(request()).block(Duration.ofSeconds(5)).getSignal()).isEqualTo("BUY");
+    }
+
+    @Test
+    void dispatcherExceptionDoesNotTerminatePipeline() {
+        manager = createManager(1, 5000);
+        AtomicInteger attempts = new AtomicInteger();
+        when(tcpClient.executeBatch(anyList())).thenAnswer(invocation -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new IllegalStateException("连接已关闭");
+            }
+            return Mono.just(echo(invocation.getArgument(0)));
+        });
+
+        assertThat(manager.executeStrategy(request()).block(Duration.ofSeconds(5)).getSignal()).isEqualTo("HOLD");
+        assertThat(manager.executeStrategy(request()).block(Duration.ofSeconds(5)).getSignal()).isEqualTo("BUY");
+    }
+
+    @Test
+    void requestsQueuedLongerThanMaxQueueAreNotSent() {
+        manager = createManager(1, 50);
+        slowDispatcher(Duration.ofMillis(300));
+
+        List<StrategyResponse> responses = executeConcurrently(8);
+
+        // 前4个批次立即发送，其余排队约300毫秒后超过最长排队时间，直接返回默认响应
+        assertThat(responses.stream().filter(response -> "BUY".equals(response.getSignal()))).hasSize(4);
+        assertThat(responses.stream().filter(response -> "HOLD".equals(response.getSignal()))).hasSize(4);
+        assertThat(calls.get()).isEqualTo(4);
+        assertThat(manager.getExpiredRequests()).isEqualTo(4);
+    }
+
+    private StrategyManager createManager(int batchMaxSize, long maxQueueMs) {
+        StrategyManager strategyManager = new StrategyManager(null, null, tcpClient);
+        ReflectionTestUtils.setField(strategyManager, "transport", "tcp");
+        ReflectionTestUtils.setField(strategyManager, "timeoutMs", 2000);
+        ReflectionTestUtils.setField(strategyManager, "batchEnabled", true);
+        ReflectionTestUtils.setField(strategyManager, "batchWindowMs", 5L);
+        ReflectionTestUtils.setField(strategyManager, "batchMaxSize", batchMaxSize);
+        ReflectionTestUtils.setField(strategyManager, "batchMaxQueueMs", maxQueueMs);
+        strategyManager.init();
+        return strategyManager;
+    }
+
+    private void slowDispatcher(Duration delay) {
+        when(tcpClient.executeBatch(anyList())).thenAnswer(invocation -> {
+            List<StrategyRequest> requests = invocation.getArgument(0);
+            calls.incrementAndGet();
+            return Mono.delay(delay)
+                    .doOnSubscribe(subscription -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .map(tick -> {
+                        // 在结果发出之前减少计数（结果发出后管道会立即发送下一个批次）
+                        inFlight.decrementAndGet();
+                        return echo(requests);
+                    });
+        });
+    }
+
+    private List<StrategyResponse> executeConcurrently(int count) {
+        return Flux.range(0, count)
+                .flatMap(i -> manager.executeStrategy(request()))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+
+    private static StrategyRequest request() {
+        return StrategyRequest.builder()
+                .strategyName("DualDirectionStrategy")
+                .symbol("BTCUSDT")
+                .build();
+    }
+
+    private static List<StrategyResponse> echo(List<StrategyRequest> requests) {
+        List<StrategyResponse> responses = new ArrayList<>(requests.size());
+        for (StrategyRequest request : requests) {
+            StrategyResponse response = StrategyResponse.defaultResponse();
+            response.setRequestId(request.getRequestId());
+            response.setSignal("BUY");
+            responses.add(response);
+        }
+        return responses;
+    }
+}
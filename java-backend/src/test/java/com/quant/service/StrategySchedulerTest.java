@@ -0,0 +1,114 @@
+package com.quant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 时间轮调度：槽位/轮数计算、初始相位、抖动范围、到期执行
+ */
+class StrategySchedulerTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void wheelSizeRoundsUpToPowerOfTwo() {
+        assertThat(new StrategyScheduler.HashedWheelTimer(TICK, 512).wheelSize()).isEqualTo(512);
+        assertThat(new StrategyScheduler.HashedWheelTimer(TICK, 500).wheelSize()).isEqualTo(512);
+        assertThat(new StrategyScheduler.HashedWheelTimer(TICK, 513).wheelSize()).isEqualTo(1024);
+    }
+
+    @Test
+    void deadlineMapsToSlotAndRemainingRounds() {
+        // 未启动的时间轮：起点为0，当前刻度为0
+        StrategyScheduler.HashedWheelTimer timer = new StrategyScheduler.HashedWheelTimer(TICK, 8);
+
+        assertThat(timer.ticksFor(0)).isZero();
+        assertThat(timer.ticksFor(TICK - 1)).isZero();
+        assertThat(timer.ticksFor(TICK)).isEqualTo(1);
+
+        // 第3刻度：当前这一圈
+        long ticks = timer.ticksFor(3 * TICK + 5);
+        assertThat(timer.slotOf(ticks)).isEqualTo(3);
+        assertThat(timer.roundsFor(ticks)).isZero();
+
+        // 第19刻度：两圈之后的第3个槽位
+        ticks = timer.ticksFor(19 * TICK);
+        assertThat(timer.slotOf(ticks)).isEqualTo(3);
+        assertThat(timer.roundsFor(ticks)).isEqualTo(2);
+
+        // 已过期的任务放在当前刻度
+        assertThat(timer.ticksFor(-5 * TICK)).isZero();
+    }
+
+    @Test
+    void initialPhaseStaysWithinOneInterval() {
+        long interval = TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 1000; i++) {
+            long phase = StrategyScheduler.initialPhase("user" + i + ":DualDirectionStrategy:BTCUSDT", interval);
+            assertThat(phase).isBetween(0L, interval - 1);
+        }
+        // 同一个key的相位固定，重启后不变
+        assertThat(StrategyScheduler.initialPhase("u:s:BTCUSDT", interval))
+                .isEqualTo(StrategyScheduler.initialPhase("u:s:BTCUSDT", interval));
+    }
+
+    @Test
+    void jitterCoversBothSidesWithinRange() {
+        long jitter = 1000;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long offset = StrategyScheduler.jitterOffset(jitter);
+            min = Math.min(min, offset);
+            max = Math.max(max, offset);
+        }
+        assertThat(min).isBetween(-jitter, -1L);
+        assertThat(max).isBetween(1L, jitter);
+        assertThat(StrategyScheduler.jitterOffset(0)).isZero();
+    }
+
+    @Test
+    void deadlineDoesNotAccumulateJitter() {
+        long base = 5_000;
+        long interval = 10_000;
+        long jitter = 2_000;
+        for (long round = 0; round < 1000; round++) {
+            long deadline = StrategyScheduler.deadline(base, interval, round, StrategyScheduler.jitterOffset(jitter));
+            assertThat(deadline - (base + interval * round)).isBetween(-jitter, jitter);
+        }
+    }
+
+    @Test
+    void timeoutsFireAfterDeadlineIncludingLaterRounds() throws InterruptedException {
+        long tick = TimeUnit.MILLISECONDS.toNanos(5);
+        // 8个槽位 × 5ms = 40ms一圈，120ms的任务需要等待多圈；同一刻度内到期的任务执行顺序不固定
+        StrategyScheduler.HashedWheelTimer timer = new StrategyScheduler.HashedWheelTimer(tick, 8);
+        timer.start();
+        try {
+            long now = System.nanoTime();
+            List<Long> delaysMs = List.of(120L, 10L, 60L, 0L);
+            Map<Long, Long> firedAt = new ConcurrentHashMap<>();
+            CountDownLatch done = new CountDownLatch(delaysMs.size());
+            for (long delayMs : delaysMs) {
+                timer.newTimeout(() -> {
+                    firedAt.put(delayMs, System.nanoTime());
+                    done.countDown();
+                }, now + TimeUnit.MILLISECONDS.toNanos(delayMs));
+            }
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            for (long delayMs : delaysMs) {
+                assertThat(firedAt.get(delayMs) - now).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(delayMs));
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+}
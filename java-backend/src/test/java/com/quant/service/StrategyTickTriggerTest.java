@@ -0,0 +1,319 @@
+package com.quant.service;
+
+import com.quant.market.MarkPriceTable;
+import com.quant.market.MarkPriceUpdate;
+import com.quant.strategy.StrategyEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 行情触发：合并窗口按最新价格推迟、持续推送时的最长等待、最小间隔、执行期间的价格补一次执行、取消注册、价格流结束
+ */
+class StrategyTickTriggerTest {
+
+    private static final String USER = "user-1";
+    private static final String STRATEGY = "dual";
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final AccountService accountService = mock(AccountService.class);
+    private final TradingEngine tradingEngine = mock(TradingEngine.class);
+    private final MarkPriceTable table = new MarkPriceTable(16);
+    private final Sinks.Many<MarkPriceUpdate> updates = Sinks.many().multicast().directBestEffort();
+    private final List<String> runs = new ArrayList<>();
+    // 不为null时策略执行保持进行中，直到测试完成它
+    private Sinks.Empty<Void> inFlight;
+    private StrategyTickTrigger trigger;
+
+    @BeforeEach
+    void setUp() {
+        when(accountService.subscribeMarkPrices(USER)).thenReturn(updates.asFlux());
+        when(tradingEngine.executeTrading(anyString(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            runs.add(invocation.getArgument(1) + "@" + scheduler.now);
+            return inFlight != null ? inFlight.asMono() : Mono.empty();
+        });
+        trigger = new StrategyTickTrigger(accountService, tradingEngine, scheduler, () -> scheduler.now,
+                Schedulers.immediate());
+    }
+
+    @Test
+    void debounceSettlesOnLatestTick() {
+        register(200, 1000);
+
+        tick("BTCUSDT");
+        scheduler.advance(150);
+        tick("BTCUSDT");
+        // 其他交易对的价格不影响
+        tick("ETHUSDT");
+        scheduler.advance(150);
+        assertThat(runs).isEmpty();
+
+        scheduler.advance(50);
+        assertThat(runs).containsExactly("BTCUSDT@350");
+        scheduler.advance(5_000);
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void continuousTicksRunWithinMaxWait() {
+        register(200, 500);
+
+        // 每100毫秒一次价格：合并窗口一直被推迟，最长等待 max(200, 500)
+        for (int i = 0; i < 5; i++) {
+            tick("BTCUSDT");
+            scheduler.advance(100);
+        }
+        assertThat(runs).containsExactly("BTCUSDT@500");
+    }
+
+    @Test
+    void minIntervalSpacesRuns() {
+        register(100, 1000);
+
+        tick("BTCUSDT");
+        scheduler.advance(100);
+        assertThat(runs).containsExactly("BTCUSDT@100");
+
+        scheduler.advance(100);
+        tick("BTCUSDT");
+        scheduler.advance(899);
+        assertThat(runs).hasSize(1);
+        scheduler.advance(1);
+        assertThat(runs).containsExactly("BTCUSDT@100", "BTCUSDT@1100");
+    }
+
+    @Test
+    void tickDuringRunTriggersOneTrailingRun() {
+        register(200, 1000);
+        inFlight = Sinks.empty();
+
+        tick("BTCUSDT");
+        scheduler.advance(200);
+        assertThat(runs).containsExactly("BTCUSDT@200");
+
+        // 执行期间的价格：不丢弃，也不并发执行
+        scheduler.advance(100);
+        tick("BTCUSDT");
+        tick("BTCUSDT");
+        scheduler.advance(1_700);
+        assertThat(runs).hasSize(1);
+
+        Sinks.Empty<Void> first = inFlight;
+        inFlight = null;
+        first.tryEmitEmpty();
+        scheduler.advance(199);
+        assertThat(runs).hasSize(1);
+        scheduler.advance(1);
+        assertThat(runs).containsExactly("BTCUSDT@200", "BTCUSDT@2200");
+
+        // 价格停止后不再执行
+        scheduler.advance(10_000);
+        assertThat(runs).hasSize(2);
+    }
+
+    @Test
+    void unregisterCancelsPendingRunAndStopsListening() {
+        register(200, 1000);
+        assertThat(trigger.isRegistered(USER, STRATEGY)).isTrue();
+
+        tick("BTCUSDT");
+        trigger.unregister(USER, STRATEGY);
+        scheduler.advance(1_000);
+        tick("BTCUSDT");
+        scheduler.advance(1_000);
+
+        assertThat(runs).isEmpty();
+        assertThat(trigger.isRegistered(USER, STRATEGY)).isFalse();
+        assertThat(updates.currentSubscriberCount()).isZero();
+    }
+
+    @Test
+    void endedStreamDropsRegistration() {
+        register(200, 1000);
+        tick("BTCUSDT");
+
+        updates.tryEmitComplete();
+        scheduler.advance(1_000);
+
+        assertThat(runs).isEmpty();
+        assertThat(trigger.isRegistered(USER, STRATEGY)).isFalse();
+        // 可以重新注册
+        when(accountService.subscribeMarkPrices(USER)).thenReturn(Sinks.many().multicast().<MarkPriceUpdate>directBestEffort().asFlux());
+        register(200, 1000);
+        assertThat(trigger.isRegistered(USER, STRATEGY)).isTrue();
+    }
+
+    @Test
+    void registerFailsWithoutMarkPriceStream() {
+        when(accountService.subscribeMarkPrices("user-2")).thenReturn(Flux.empty());
+
+        assertThat(trigger.register("user-2", STRATEGY, STRATEGY, List.of("BTCUSDT"), 200, 1000,
+                StrategyEngine.JVM)).isFalse();
+        assertThat(trigger.isRegistered("user-2", STRATEGY)).isFalse();
+    }
+
+    private void register(long debounceMs, long minIntervalMs) {
+        assertThat(trigger.register(USER, STRATEGY, STRATEGY, List.of("BTCUSDT"), debounceMs, minIntervalMs,
+                StrategyEngine.JVM)).isTrue();
+    }
+
+    /**
+     * 模拟一条只更新一个交易对的标记价格推送
+     */
+    private void tick(String symbol) {
+        table.put(symbol.toCharArray(), 0, symbol.length(), 6_100_000_000_000L, scheduler.now);
+        table.commit();
+        updates.tryEmitNext(new MarkPriceUpdate(table, table.sequence(), 1));
+    }
+
+    /**
+     * 手动推进时间的单线程调度器：advance 时在测试线程中按到期时间执行任务
+     */
+    private static final class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+        private final List<Task> tasks = new ArrayList<>();
+        private long now;
+
+        void advance(long millis) {
+            long target = now + millis;
+            while (true) {
+                Task next = null;
+                for (Task task : tasks) {
+                    if (task.at <= target && (next == null || task.at < next.at)) {
+                        next = task;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                tasks.remove(next);
+                now = Math.max(now, next.at);
+                next.done = true;
+                next.command.run();
+            }
+            now = target;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task task = new Task(command, now + unit.toMillis(delay));
+            tasks.add(task);
+            return task;
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+                                                         TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            schedule(command, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+        private final class Task implements ScheduledFuture<Object> {
+            private final Runnable command;
+            private final long at;
+            private boolean done;
+            private boolean cancelled;
+
+            private Task(Runnable command, long at) {
+                this.command = command;
+                this.at = at;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(at - now, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed other) {
+                return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+                cancelled = true;
+                tasks.remove(this);
+                return true;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+
+            @Override
+            public boolean isDone() {
+                return done;
+            }
+
+            @Override
+            public Object get() {
+                return null;
+            }
+
+            @Override
+            public Object get(long timeout, TimeUnit unit) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.quant.strategy;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * JVM双向策略与Python策略的一致性
+ *
+ * 每个用例的期望值是把相同输入交给 python-strategies/strategies/dual_direction_strategy.py 执行后记录的结果
+ * （signal、position、confidence，以及metadata中的margin、addPositionType、多空盈利百分比）；
+ * 修改任一侧的规则时需要重新记录
+ */
+class DualDirectionStrategyParityTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final DualDirectionStrategy strategy = new DualDirectionStrategy();
+
+    @Test
+    void takeProfitAtFiftyPercent() {
+        assertParity("多头盈利正好50%", 65000.0, both("longProfitPct", 50.0), map(),
+                python("SELL", 1.0, 0.9, null, null, 50.0, -10.0));
+        assertParity("多头盈利49.99%", 65000.0, both("longProfitPct", 49.99), map(),
+                python("HOLD", 0.0, 0.6, null, null, 49.99, -10.0));
+        assertParity("空头盈利55%", 65000.0, both("longProfitPct", -20.0, "shortProfitPct", 55.0), map(),
+                python("BUY", 1.0, 0.9, null, null, -20.0, 55.0));
+        assertParity("多空都达到50%时先平多头", 65000.0, both("longProfitPct", 60.0, "shortProfitPct", 70.0), map(),
+                python("SELL", 1.0, 0.9, null, null, 60.0, 70.0));
+        assertParity("单边持仓盈利80%不平仓", 65000.0, longOnly("longProfitPct", 80.0), map(),
+                python("SELL", 0.5, 0.6, 1.0, "REBALANCE", 80.0, 0.0));
+        assertParity("同时满足平仓和补仓时补仓覆盖平仓", 65000.0,
+                both("longProfitPct", 52.0, "shortProfitPct", -30.0, "longProfitCount", 4), map(),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", 52.0, -30.0));
+    }
+
+    @Test
+    void dualOpenWithoutPositions() {
+        assertParity("没有任何持仓", 65000.0, empty(), map(),
+                python("DUAL_OPEN", 0.5, 0.6, 1.0, null, 0.0, 0.0));
+        assertParity("没有持仓时不受冷却期限制", 65000.0, empty(), closedSecondsAgo(5, "SHORT"),
+                python("DUAL_OPEN", 0.5, 0.6, 1.0, null, 0.0, 0.0));
+    }
+
+    @Test
+    void rebalanceWaitsForSixtySecondCooldown() {
+        assertParity("只有多头，30秒前平仓", 65000.0, longOnly(), closedSecondsAgo(30, "SHORT"),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, 0.0));
+        assertParity("只有多头，59.9秒前平仓", 65000.0, longOnly(), closedSecondsAgo(59.9, "SHORT"),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, 0.0));
+        assertParity("只有多头，正好60秒前平仓", 65000.0, longOnly(), closedSecondsAgo(60, "SHORT"),
+                python("SELL", 0.5, 0.6, 1.0, "REBALANCE", 10.0, 0.0));
+        assertParity("只有多头，没有平仓记录", 65000.0, longOnly(), map(),
+                python("SELL", 0.5, 0.6, 1.0, "REBALANCE", 10.0, 0.0));
+        assertParity("只有空头，61秒前平仓", 65000.0, shortOnly(), closedSecondsAgo(61, "LONG"),
+                python("BUY", 0.5, 0.6, 1.0, "REBALANCE", 0.0, -10.0));
+        assertParity("只有空头，10秒前平仓", 65000.0, shortOnly(), closedSecondsAgo(10, "LONG"),
+                python("HOLD", 0.0, 0.6, null, null, 0.0, -10.0));
+    }
+
+    @Test
+    void addEveryFourthProfit() {
+        assertParity("多头盈利4次，空头亏损", 65000.0, both("longProfitCount", 4, "shortProfitPct", -5.0), map(),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", 10.0, -5.0));
+        assertParity("多头盈利5次，不在补仓窗口", 65000.0, both("longProfitCount", 5, "shortProfitPct", -5.0), map(),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, -5.0));
+        assertParity("多头盈利8次，空头已补1次", 65000.0,
+                both("longProfitCount", 8, "shortProfitPct", -5.0, "shortAddCount", 1), map(),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", 10.0, -5.0));
+        assertParity("多头盈利8次，空头已补2次", 65000.0,
+                both("longProfitCount", 8, "shortProfitPct", -5.0, "shortAddCount", 2), map(),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, -5.0));
+        assertParity("多头盈利4次，空头未亏损", 65000.0, both("longProfitCount", 4, "shortProfitPct", 3.0), map(),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, 3.0));
+        assertParity("多头盈利3次", 65000.0, both("longProfitCount", 3, "shortProfitPct", -5.0), map(),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, -5.0));
+        assertParity("空头盈利4次，多头亏损", 65000.0,
+                both("shortProfitCount", 4, "longProfitPct", -7.5, "shortProfitPct", 10.0), map(),
+                python("BUY", 0.5, 0.7, 0.5, "ADD", -7.5, 10.0));
+        assertParity("空头盈利12次，多头已补3次", 65000.0,
+                both("shortProfitCount", 12, "longProfitPct", -7.5, "shortProfitPct", 10.0, "longAddCount", 3), map(),
+                python("HOLD", 0.0, 0.6, null, null, -7.5, 10.0));
+        assertParity("多空盈利次数都满足时先看多头", 65000.0,
+                both("longProfitCount", 4, "shortProfitCount", 4, "longProfitPct", -2.0, "shortProfitPct", -2.0), map(),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", -2.0, -2.0));
+    }
+
+    @Test
+    void priceDiffFallbackWhenProfitPctMissing() {
+        assertParity("多头未提供盈利百分比，价格差51%", 151.0,
+                both("longOpenRate", 100.0, "shortOpenRate", 300.0, "longProfitPct", 0.0, "shortProfitPct", -10.0), map(),
+                python("SELL", 1.0, 0.9, null, null, 51.0, -10.0));
+        assertParity("空头未提供盈利百分比，价格差50.5%", 99.0,
+                both("longOpenRate", 100.0, "shortOpenRate", 200.0, "longProfitPct", -1.0, "shortProfitPct", 0.0), map(),
+                python("BUY", 1.0, 0.9, null, null, -1.0, 50.5));
+        assertParity("价格差计算为亏损时可以补仓", 110.0,
+                both("longOpenRate", 100.0, "shortOpenRate", 100.0, "longProfitPct", 5.0, "shortProfitPct", 0.0, "longProfitCount", 4), map(),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", 5.0, -10.0));
+    }
+
+    @Test
+    void oppositePositionFallbackWhenProfitFieldsMissing() {
+        assertParity("从对方向持仓读取多头盈利", 65000.0, without(both(), "longProfitPct", "longProfitCount"),
+                opposite(false, 0, 62.0, 0),
+                python("SELL", 1.0, 0.9, null, null, 62.0, -10.0));
+        assertParity("从对方向持仓读取空头盈利和补仓次数", 65000.0,
+                without(both("longProfitCount", 4), "shortProfitPct", "shortProfitCount"),
+                opposite(true, 1, -12.0, 0),
+                python("SELL", 0.5, 0.7, 0.5, "ADD", 10.0, -12.0));
+        assertParity("对方向持仓补仓次数已达上限", 65000.0,
+                without(both("longProfitCount", 4), "shortProfitPct", "shortProfitCount"),
+                opposite(true, 0, -12.0, 1),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, -12.0));
+        assertParity("只提供盈利次数时不使用对方向持仓", 65000.0, without(both("longProfitCount", 4), "shortProfitPct"),
+                opposite(true, 0, -12.0, 0),
+                python("HOLD", 0.0, 0.6, null, null, 10.0, 0.0));
+    }
+
+    @Test
+    void invalidDataHolds() {
+        assertParity("价格为0", 0.0, both(), map(),
+                python("HOLD", 0.0, 0.0, null, null, null, null));
+        assertParity("多头有持仓但开仓价格为0", 65000.0, both("longOpenRate", 0.0), map(),
+                python("HOLD", 0.0, 0.0, null, null, null, null));
+        assertParity("空头有持仓但开仓价格为0", 65000.0, both("shortOpenRate", 0.0), map(),
+                python("HOLD", 0.0, 0.0, null, null, null, null));
+        assertParity("持仓数据获取失败", 65000.0, both("_fetchSuccess", false, "_error", "timeout"), map(),
+                python("HOLD", 0.0, 0.0, null, null, null, null));
+    }
+
+    private void assertParity(String name, double price, Map<String, Object> position,
+                              Map<String, Object> strategyParams, Recorded expected) {
+        StrategyRequest request = StrategyRequest.builder()
+                .requestId(name)
+                .strategyName("DualDirectionStrategy")
+                .symbol("BTCUSDT")
+                .marketData(map("price", price, "volume", 1000000, "timestamp", NOW))
+                .strategyParams(strategyParams)
+                .position(position)
+                .account(map())
+                .build();
+
+        StrategyResponse response = strategy.execute(request);
+        Map<String, Object> metadata = response.getMetadata();
+
+        assertThat(response.getSignal()).as(name).isEqualTo(expected.signal());
+        assertThat(response.getPosition().doubleValue()).as(name).isEqualTo(expected.position());
+        assertThat(response.getConfidence().doubleValue()).as(name).isEqualTo(expected.confidence());
+        assertThat(metadata.get("margin")).as(name).isEqualTo(expected.margin());
+        assertThat(metadata.get("addPositionType")).as(name).isEqualTo(expected.addType());
+        if (expected.longProfitPct() == null) {
+            assertThat(metadata).as(name).doesNotContainKey("longProfitPct");
+        } else {
+            assertThat((Double) metadata.get("longProfitPct")).as(name).isCloseTo(expected.longProfitPct(), within(1e-9));
+            assertThat((Double) metadata.get("shortProfitPct")).as(name).isCloseTo(expected.shortProfitPct(), within(1e-9));
+        }
+    }
+
+    /**
+     * 多空双边持仓（开仓价65000，多头盈利10%、空头亏损10%），按键值对覆盖字段
+     */
+    private static Map<String, Object> both(Object... overrides) {
+        Map<String, Object> position = map(
+                "longQuantity", 0.01, "shortQuantity", 0.01,
+                "longOpenRate", 65000.0, "shortOpenRate", 65000.0,
+                "longProfitPct", 10.0, "shortProfitPct", -10.0,
+                "longProfitCount", 0, "shortProfitCount", 0,
+                "longAddCount", 0, "shortAddCount", 0);
+        position.putAll(map(overrides));
+        return position;
+    }
+
+    private static Map<String, Object> longOnly(Object... overrides) {
+        Map<String, Object> position = both("shortQuantity", 0.0, "shortOpenRate", 0.0, "shortProfitPct", 0.0);
+        position.putAll(map(overrides));
+        return position;
+    }
+
+    private static Map<String, Object> shortOnly(Object... overrides) {
+        Map<String, Object> position = both("longQuantity", 0.0, "longOpenRate", 0.0, "longProfitPct", 0.0);
+        position.putAll(map(overrides));
+        return position;
+    }
+
+    private static Map<String, Object> empty() {
+        return both("longQuantity", 0.0, "shortQuantity", 0.0, "longOpenRate", 0.0, "shortOpenRate", 0.0,
+                "longProfitPct", 0.0, "shortProfitPct", 0.0);
+    }
+
+    private static Map<String, Object> without(Map<String, Object> position, String... keys) {
+        for (String key : keys) {
+            position.remove(key);
+        }
+        return position;
+    }
+
+    /**
+     * 通过 strategyParams.oppositePositions 传递的某一方向盈利信息（开仓价65000）
+     */
+    private static Map<String, Object> opposite(boolean isShort, int profitCount, double profitPct, int addCount) {
+        return map("oppositePositions", List.of(map("isShort", isShort, "profitCount", profitCount,
+                "profitPct", profitPct, "addCount", addCount, "openRate", 65000.0)));
+    }
+
+    private static Map<String, Object> closedSecondsAgo(double seconds, String side) {
+        return map("recentClosePositions", List.of(
+                map("side", side, "closeType", "STRATEGY", "closeTime", NOW - (long) (seconds * 1000))));
+    }
+
+    private static Recorded python(String signal, double position, double confidence, Double margin, String addType,
+                                   Double longProfitPct, Double shortProfitPct) {
+        return new Recorded(signal, position, confidence, margin, addType, longProfitPct, shortProfitPct);
+    }
+
+    private static Map<String, Object> map(Object... keyValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Python策略对同一输入的输出
+     */
+    private record Recorded(String signal, double position, double confidence, Double margin, String addType,
+                            Double longProfitPct, Double shortProfitPct) {
+    }
+}
@@ -0,0 +1,273 @@
+package com.quant.transport;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * TCP客户端：多路复用和分段到达的响应帧、错误帧和非预期帧类型、调用方超时后迟到的响应、
+ * 非法帧长度和服务端断开后的重连
+ */
+class StrategyTcpClientTest {
+
+    private FakeServer server;
+    private StrategyTcpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeServer();
+        client = new StrategyTcpClient();
+        ReflectionTestUtils.setField(client, "host", InetAddress.getLoopbackAddress().getHostAddress());
+        ReflectionTestUtils.setField(client, "port", server.serverSocket.getLocalPort());
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void multiplexedResponsesArriveInFragments() throws Exception {
+        CompletableFuture<StrategyResponse> first = client.execute(request("r-1")).toFuture();
+        CompletableFuture<StrategyResponse> second = client.execute(request("r-2")).toFuture();
+
+        Received one = server.next();
+        Received two = server.next();
+        assertThat(one.type()).isEqualTo(StrategyWireCodec.FRAME_EXECUTE);
+        assertThat(StrategyWireCodec.decodeRequest(ByteBuffer.wrap(one.payload())).getSymbol()).isEqualTo("BTCUSDT");
+
+        // 按相反顺序、分段写出响应
+        two.replyInFragments(StrategyWireCodec.FRAME_RESULT, response(two), 3);
+        one.replyInFragments(StrategyWireCodec.FRAME_RESULT, response(one), 7);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getRequestId()).isEqualTo("r-1");
+        assertThat(second.get(5, TimeUnit.SECONDS).getRequestId()).isEqualTo("r-2");
+        assertThat(first.get().getSignal()).isEqualTo("BUY");
+        assertThat(server.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void errorFramesAndUnexpectedTypesFailOnlyThatCall() throws Exception {
+        CompletableFuture<StrategyResponse> failed = client.execute(request("r-1")).toFuture();
+        server.next().reply(StrategyWireCodec.FRAME_ERROR, StrategyWireCodec.encodeValues("策略不存在"));
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("策略不存在");
+
+        CompletableFuture<StrategyResponse> wrongType = client.execute(request("r-2")).toFuture();
+        server.next().reply(StrategyWireCodec.FRAME_PONG, new byte[0]);
+        assertThatThrownBy(() -> wrongType.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("非预期的响应帧类型");
+
+        CompletableFuture<Boolean> pong = client.ping().toFuture();
+        Received ping = server.next();
+        assertThat(ping.type()).isEqualTo(StrategyWireCodec.FRAME_PING);
+        ping.reply(StrategyWireCodec.FRAME_PONG, new byte[0]);
+        assertThat(pong.get(5, TimeUnit.SECONDS)).isTrue();
+
+        // 错误帧不影响连接
+        assertThat(server.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void lateResponseAfterCallerTimeoutIsDropped() throws Exception {
+        CompletableFuture<StrategyResponse> timedOut = client.execute(request("r-1"))
+                .timeout(Duration.ofMillis(200), Mono.just(StrategyResponse.defaultResponse()))
+                .toFuture();
+        Received late = server.next();
+        assertThat(timedOut.get(5, TimeUnit.SECONDS).getSignal()).isEqualTo("HOLD");
+
+        late.reply(StrategyWireCodec.FRAME_RESULT, response(late));
+        CompletableFuture<StrategyResponse> next = client.execute(request("r-2")).toFuture();
+        Received current = server.next();
+        current.reply(StrategyWireCodec.FRAME_RESULT, response(current));
+
+        assertThat(next.get(5, TimeUnit.SECONDS).getRequestId()).isEqualTo("r-2");
+        assertThat(server.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidFrameLengthClosesConnectionAndNextCallReconnects() throws Exception {
+        int[] lengths = {StrategyWireCodec.MAX_FRAME_SIZE + 1, StrategyWireCodec.FRAME_HEADER_SIZE - 1};
+        for (int length : lengths) {
+            CompletableFuture<StrategyResponse> broken = client.execute(request("r-1")).toFuture();
+            Received received = server.next();
+            DataOutputStream out = new DataOutputStream(received.socket().getOutputStream());
+            out.writeInt(length);
+            out.writeLong(received.correlationId());
+            out.flush();
+            assertThatThrownBy(() -> broken.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasMessageContaining("连接已断开");
+        }
+
+        CompletableFuture<StrategyResponse> next = client.execute(request("r-2")).toFuture();
+        Received current = server.next();
+        current.reply(StrategyWireCodec.FRAME_RESULT, response(current));
+        assertThat(next.get(5, TimeUnit.SECONDS).getRequestId()).isEqualTo("r-2");
+        assertThat(server.connections.get()).isEqualTo(3);
+    }
+
+    @Test
+    void serverDisconnectFailsInFlightCallsAndNextCallReconnects() throws Exception {
+        CompletableFuture<StrategyResponse> first = client.execute(request("r-1")).toFuture();
+        CompletableFuture<StrategyResponse> second = client.execute(request("r-2")).toFuture();
+        Received received = server.next();
+        server.next();
+        received.socket().close();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+
+        CompletableFuture<StrategyResponse> next = client.execute(request("r-3")).toFuture();
+        Received current = server.next();
+        assertThat(current.socket()).isNotSameAs(received.socket());
+        current.reply(StrategyWireCodec.FRAME_RESULT, response(current));
+        assertThat(next.get(5, TimeUnit.SECONDS).getRequestId()).isEqualTo("r-3");
+        assertThat(server.connections.get()).isEqualTo(2);
+    }
+
+    private static StrategyRequest request(String requestId) {
+        return StrategyRequest.builder()
+                .requestId(requestId)
+                .strategyName("dual_direction")
+                .symbol("BTCUSDT")
+                .build();
+    }
+
+    /**
+     * 按请求中的requestId生成响应
+     */
+    private static byte[] response(Received received) {
+        String requestId = StrategyWireCodec.decodeRequest(ByteBuffer.wrap(received.payload())).getRequestId();
+        return StrategyWireCodec.encodeResponse(StrategyResponse.builder()
+                .requestId(requestId)
+                .signal("BUY")
+                .build());
+    }
+
+    /**
+     * 服务端收到的一帧
+     */
+    private record Received(Socket socket, long correlationId, byte type, byte[] payload) {
+
+        void reply(byte frameType, byte[] body) throws IOException {
+            replyInFragments(frameType, body, 1);
+        }
+
+        /**
+         * 把响应帧拆成多段写出，每段之间稍作停顿，让客户端读到不完整的帧
+         */
+        void replyInFragments(byte frameType, byte[] body, int fragments) throws IOException {
+            byte[] frame = StrategyWireCodec.encodeFrame(correlationId, frameType, body);
+            OutputStream out = socket.getOutputStream();
+            synchronized (socket) {
+                int step = Math.max(1, frame.length / fragments);
+                for (int offset = 0; offset < frame.length; offset += step) {
+                    out.write(frame, offset, Math.min(step, frame.length - offset));
+                    out.flush();
+                    if (fragments > 1) {
+                        sleep();
+                    }
+                }
+            }
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 模拟Python策略服务：记录收到的帧，由测试决定如何响应
+     */
+    private static final class FakeServer {
+        private final ServerSocket serverSocket;
+        private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private FakeServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "fake-strategy-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private Received next() throws InterruptedException {
+            Received frame = received.poll(5, TimeUnit.SECONDS);
+            assertThat(frame).isNotNull();
+            return frame;
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread reader = new Thread(() -> readLoop(socket), "fake-strategy-reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException e) {
+                // 服务端已关闭
+            }
+        }
+
+        private void readLoop(Socket socket) {
+            try {
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    int length = input.readInt();
+                    long correlationId = input.readLong();
+                    byte type = input.readByte();
+                    byte[] payload = new byte[length - StrategyWireCodec.FRAME_HEADER_SIZE];
+                    input.readFully(payload);
+                    received.add(new Received(socket, correlationId, type, payload));
+                }
+            } catch (IOException e) {
+                // 连接已关闭
+            }
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.quant.transport;
+
+import com.quant.model.StrategyRequest;
+import com.quant.model.StrategyResponse;
+import com.quant.strategy.StrategyEngine;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 二进制编码：请求/响应/批量往返、帧头布局、多字节varint、未知类型标记和截断数据
+ */
+class StrategyWireCodecTest {
+
+    @Test
+    void requestRoundTripKeepsNestedValues() {
+        Map<String, Object> marketData = new LinkedHashMap<>();
+        marketData.put("price", 61234.5);
+        marketData.put("closes", List.of(1L, 2.5, -3L));
+        marketData.put("note", "多空双开");
+        marketData.put("nothing", null);
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("hasPosition", true);
+        position.put("short", false);
+        position.put("quantity", new BigDecimal("0.125"));
+        position.put("leverage", 50);
+        position.put("engine", StrategyEngine.JVM);
+        position.put("nested", Map.of("level", List.of(Map.of("k", 7L))));
+        StrategyRequest request = StrategyRequest.builder()
+                .requestId("r-1")
+                .strategyName("dual_direction")
+                .symbol("BTCUSDT")
+                .marketData(marketData)
+                .position(position)
+                .account(Map.of())
+                .build();
+
+        StrategyRequest decoded = StrategyWireCodec.decodeRequest(ByteBuffer.wrap(StrategyWireCodec.encodeRequest(request)));
+
+        assertThat(decoded.getRequestId()).isEqualTo("r-1");
+        assertThat(decoded.getStrategyName()).isEqualTo("dual_direction");
+        assertThat(decoded.getSymbol()).isEqualTo("BTCUSDT");
+        assertThat(decoded.getMarketData()).isEqualTo(marketData);
+        // 整数统一为INT64，BigDecimal为FLOAT64，枚举为字符串
+        assertThat(decoded.getPosition().get("leverage")).isEqualTo(50L);
+        assertThat(decoded.getPosition().get("quantity")).isEqualTo(0.125);
+        assertThat(decoded.getPosition().get("engine")).isEqualTo("JVM");
+        assertThat(decoded.getPosition().get("hasPosition")).isEqualTo(true);
+        assertThat(decoded.getPosition().get("short")).isEqualTo(false);
+        assertThat(decoded.getPosition().get("nested")).isEqualTo(Map.of("level", List.of(Map.of("k", 7L))));
+        assertThat(decoded.getStrategyParams()).isNull();
+        assertThat(decoded.getAccount()).isEqualTo(Map.of());
+    }
+
+    @Test
+    void responseAndBatchRoundTrip() {
+        StrategyResponse first = StrategyResponse.builder()
+                .requestId("r-1")
+                .signal("BUY")
+                .position(new BigDecimal("0.3"))
+                .targetPrice(new BigDecimal("62000"))
+                .confidence(new BigDecimal("0.75"))
+                .metadata(Map.of("rsi", 28.5, "reason", "超卖"))
+                .build();
+        StrategyResponse second = StrategyResponse.defaultResponse();
+
+        StrategyResponse decoded = StrategyWireCodec.decodeResponse(ByteBuffer.wrap(StrategyWireCodec.encodeResponse(first)));
+        assertThat(decoded.getRequestId()).isEqualTo("r-1");
+        assertThat(decoded.getSignal()).isEqualTo("BUY");
+        assertThat(decoded.getPosition()).isEqualByComparingTo("0.3");
+        assertThat(decoded.getTargetPrice()).isEqualByComparingTo("62000");
+        assertThat(decoded.getStopLoss()).isNull();
+        assertThat(decoded.getConfidence()).isEqualByComparingTo("0.75");
+        assertThat(decoded.getMetadata()).isEqualTo(Map.of("rsi", 28.5, "reason", "超卖"));
+        assertThat(decoded.getError()).isNull();
+
+        // 批量响应：varint个数 + 逐个响应
+        ByteBuffer batch = ByteBuffer.wrap(concat(new byte[]{2}, StrategyWireCodec.encodeResponse(first),
+                StrategyWireCodec.encodeResponse(second)));
+        List<StrategyResponse> responses = StrategyWireCodec.decodeBatchResponse(batch);
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(1).getSignal()).isEqualTo("HOLD");
+        assertThat(responses.get(1).getError()).isEqualTo("策略服务不可用");
+        assertThat(batch.remaining()).isZero();
+
+        byte[] requests = StrategyWireCodec.encodeBatchRequest(List.of(
+                StrategyRequest.builder().requestId("a").build(), StrategyRequest.builder().requestId("b").build()));
+        ByteBuffer buffer = ByteBuffer.wrap(requests);
+        assertThat(buffer.get()).isEqualTo((byte) 2);
+        assertThat(StrategyWireCodec.decodeRequest(buffer).getRequestId()).isEqualTo("a");
+        assertThat(StrategyWireCodec.decodeRequest(buffer).getRequestId()).isEqualTo("b");
+    }
+
+    @Test
+    void frameHeaderLayout() {
+        byte[] frame = StrategyWireCodec.encodeFrame(0x0102030405060708L, StrategyWireCodec.FRAME_EXECUTE,
+                new byte[]{9, 8, 7});
+
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        // 长度不含自身：帧头9字节 + 负载
+        assertThat(buffer.getInt()).isEqualTo(StrategyWireCodec.FRAME_HEADER_SIZE + 3);
+        assertThat(buffer.getLong()).isEqualTo(0x0102030405060708L);
+        assertThat(buffer.get()).isEqualTo(StrategyWireCodec.FRAME_EXECUTE);
+        assertThat(buffer.remaining()).isEqualTo(3);
+        assertThat(frame.length).isEqualTo(4 + StrategyWireCodec.FRAME_HEADER_SIZE + 3);
+
+        assertThat(StrategyWireCodec.encodeFrame(1, StrategyWireCodec.FRAME_PING, new byte[0]))
+                .hasSize(4 + StrategyWireCodec.FRAME_HEADER_SIZE);
+    }
+
+    @Test
+    void multiByteVarintLengths() {
+        String text = "价".repeat(100);
+        List<Long> numbers = new ArrayList<>();
+        for (long i = 0; i < 20_000; i++) {
+            numbers.add(i);
+        }
+
+        byte[] encoded = StrategyWireCodec.encodeValues(text, numbers, "");
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+
+        // 300字节的UTF-8：2字节varint
+        assertThat(encoded[1]).isEqualTo((byte) (0x80 | (300 & 0x7F)));
+        assertThat(encoded[2]).isEqualTo((byte) (300 >>> 7));
+        assertThat(StrategyWireCodec.decodeValue(buffer)).isEqualTo(text);
+        assertThat(StrategyWireCodec.decodeValue(buffer)).isEqualTo(numbers);
+        assertThat(StrategyWireCodec.decodeValue(buffer)).isEqualTo("");
+        assertThat(buffer.remaining()).isZero();
+    }
+
+    @Test
+    void rejectsUnknownTagsAndTruncatedData() {
+        assertThatThrownBy(() -> StrategyWireCodec.decodeValue(ByteBuffer.wrap(new byte[]{42})))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("未知的值类型标记");
+        // 超过5字节的varint
+        assertThatThrownBy(() -> StrategyWireCodec.decodeValue(ByteBuffer.wrap(
+                new byte[]{6, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1})))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("varint");
+
+        // 截断的字符串和数值
+        byte[] response = StrategyWireCodec.encodeResponse(StrategyResponse.defaultResponse());
+        assertThatThrownBy(() -> StrategyWireCodec.decodeResponse(ByteBuffer.wrap(Arrays.copyOf(response, response.length - 3))))
+                .isInstanceOf(BufferUnderflowException.class);
+        byte[] number = StrategyWireCodec.encodeValues(1.5);
+        assertThatThrownBy(() -> StrategyWireCodec.decodeValue(ByteBuffer.wrap(Arrays.copyOf(number, number.length - 3))))
+                .isInstanceOf(BufferUnderflowException.class);
+    }
+
+    @Test
+    void decodesErrorMessages() {
+        assertThat(StrategyWireCodec.decodeError(ByteBuffer.wrap(StrategyWireCodec.encodeValues("策略不存在"))))
+                .isEqualTo("策略不存在");
+        assertThat(StrategyWireCodec.decodeError(ByteBuffer.wrap(StrategyWireCodec.encodeValues((Object) null))))
+                .isEqualTo("未知错误");
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            buffer.put(part);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,187 @@
+package com.quant.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 连接发送队列：快照取代同一订阅中该用户更早的帧、队列满时丢弃最旧的帧（最旧的是快照时连同基于它的增量）、写入失败清空队列
+ */
+class AccountFanoutTest {
+
+    private static final String SUBSCRIPTION = "sub-0";
+    private static final String ADMIN_SUBSCRIPTION = "sub-admin";
+
+    private final ManualExecutor sender = new ManualExecutor();
+    private final List<String> sent = new ArrayList<>();
+    private AccountFanout fanout;
+    private AccountFanout.Outbox outbox;
+    private boolean failWrites;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fanout = new AccountFanout(new LocalPushBus());
+        ReflectionTestUtils.setField(fanout, "maxQueuedFrames", 4);
+        ReflectionTestUtils.setField(fanout, "sender", sender);
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session-1");
+        doAnswer(invocation -> {
+            if (failWrites) {
+                throw new IOException("closed");
+            }
+            sent.add(body(invocation.getArgument(0)));
+            return null;
+        }).when(session).sendMessage(any());
+        outbox = fanout.new Outbox(session);
+    }
+
+    @Test
+    void snapshotSupersedesEarlierFramesOfSameUserAndSubscription() {
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d1"));
+        outbox.offer(delta(ADMIN_SUBSCRIPTION, "u1", "admin-u1-d1"));
+        outbox.offer(delta(SUBSCRIPTION, "u2", "u2-d1"));
+        outbox.offer(snapshot(SUBSCRIPTION, "u1", "u1-s2"));
+
+        // 同一连接同时只有一个发送任务
+        assertThat(sender.tasks).hasSize(1);
+        sender.runAll();
+
+        // 全用户订阅和其他用户的帧不受影响，新快照排在队尾
+        assertThat(sent).containsExactly("admin-u1-d1", "u2-d1", "u1-s2");
+        assertThat(fanout.getStats().get("superseded")).isEqualTo(1L);
+        assertThat(fanout.getStats().get("dropped")).isEqualTo(0L);
+        assertThat(fanout.getStats().get("frames")).isEqualTo(3L);
+    }
+
+    @Test
+    void overflowDropsOldestDelta() {
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d1"));
+        outbox.offer(delta(SUBSCRIPTION, "u2", "u2-d1"));
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d2"));
+        outbox.offer(delta(SUBSCRIPTION, "u2", "u2-d2"));
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d3"));
+
+        sender.runAll();
+
+        assertThat(sent).containsExactly("u2-d1", "u1-d2", "u2-d2", "u1-d3");
+        assertThat(fanout.getStats().get("dropped")).isEqualTo(1L);
+    }
+
+    @Test
+    void droppingOldestSnapshotDropsDeltasBasedOnIt() {
+        outbox.offer(snapshot(SUBSCRIPTION, "u1", "u1-s1"));
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d2"));
+        outbox.offer(delta(SUBSCRIPTION, "u2", "u2-d1"));
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d3"));
+        outbox.offer(delta(SUBSCRIPTION, "u2", "u2-d2"));
+
+        sender.runAll();
+
+        // 快照和排在它之后的u1增量一起丢弃，其他用户的帧保留
+        assertThat(sent).containsExactly("u2-d1", "u2-d2");
+        assertThat(fanout.getStats().get("dropped")).isEqualTo(3L);
+        assertThat(fanout.getStats().get("superseded")).isEqualTo(0L);
+    }
+
+    @Test
+    void writeFailureClearsQueueAndClosedOutboxIgnoresFrames() {
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d1"));
+        outbox.offer(delta(SUBSCRIPTION, "u1", "u1-d2"));
+        failWrites = true;
+        sender.runAll();
+
+        assertThat(sent).isEmpty();
+        assertThat(fanout.getStats().get("failures")).isEqualTo(1L);
+
+        // 失败后队列已清空，新的帧重新调度发送任务
+        failWrites = false;
+        outbox.offer(snapshot(SUBSCRIPTION, "u1", "u1-s3"));
+        assertThat(sender.tasks).hasSize(1);
+        sender.runAll();
+        assertThat(sent).containsExactly("u1-s3");
+        assertThat(fanout.getStats().get("superseded")).isEqualTo(0L);
+
+        outbox.close();
+        outbox.offer(snapshot(SUBSCRIPTION, "u1", "u1-s4"));
+        assertThat(sender.tasks).isEmpty();
+    }
+
+    private static AccountFanout.Frame snapshot(String subscriptionId, String userId, String body) {
+        return frame(subscriptionId, userId, true, body);
+    }
+
+    private static AccountFanout.Frame delta(String subscriptionId, String userId, String body) {
+        return frame(subscriptionId, userId, false, body);
+    }
+
+    private static AccountFanout.Frame frame(String subscriptionId, String userId, boolean snapshot, String body) {
+        return new AccountFanout.Frame("/user/" + userId + "/account", subscriptionId, userId, snapshot,
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * STOMP帧的消息体：空行之后、结尾的空字符之前
+     */
+    private static String body(TextMessage message) {
+        String payload = message.getPayload();
+        return payload.substring(payload.indexOf("\n\n") + 2, payload.length() - 1);
+    }
+
+    /**
+     * 只记录任务、由测试线程执行的发送线程池
+     */
+    private static final class ManualExecutor extends AbstractExecutorService {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
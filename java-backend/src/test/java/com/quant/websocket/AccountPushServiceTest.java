@@ -0,0 +1,275 @@
+package com.quant.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quant.model.AccountInfo;
+import com.quant.model.Position;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 账户推送：快照之后增量只包含变化的字段和持仓、平仓持仓放入 removed、没有变化时不推送、合并窗口、
+ * 没有连接的用户不推送、连接关闭和失去所有权时丢弃推送状态
+ */
+class AccountPushServiceTest {
+
+    private static final String USER = "user-1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Published> published = new LinkedBlockingQueue<>();
+    private final OwnershipBus pushBus = new OwnershipBus();
+    private final AccountFanout accountFanout = mock(AccountFanout.class);
+    private AccountPushService service;
+
+    @BeforeEach
+    void setUp() {
+        pushBus.subscribe(new PushBus.Listener() {
+            @Override
+            public void onFrame(String userId, byte[] body, boolean snapshot) {
+                published.add(new Published(userId, body, snapshot));
+            }
+        });
+        service = new AccountPushService(pushBus, accountFanout);
+        ReflectionTestUtils.setField(service, "coalesceMs", 50L);
+        ReflectionTestUtils.setField(service, "snapshotIntervalMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void snapshotThenDeltaCarriesOnlyChanges() throws Exception {
+        service.sendSnapshot(USER, account("1000", 1L,
+                position("BTCUSDT", "LONG", "0.01", "61000", "10"),
+                position("ETHUSDT", "SHORT", "1", "3000", "-5")));
+
+        JsonNode snapshot = next(true);
+        assertThat(snapshot.get("type").asText()).isEqualTo(AccountPushService.TYPE_SNAPSHOT);
+        assertThat(snapshot.get("userId").asText()).isEqualTo(USER);
+        assertThat(snapshot.get("seq").asLong()).isEqualTo(1L);
+        assertThat(snapshot.has("baseSeq")).isFalse();
+        assertThat(snapshot.get("positions").size()).isEqualTo(2);
+
+        // 余额只改变标度不算变化；BTC价格变化，ETH不变，SOL新开仓
+        service.publish(USER, account("1000.00", 2L,
+                position("BTCUSDT", "LONG", "0.01", "62000", "20"),
+                position("ETHUSDT", "SHORT", "1", "3000", "-5"),
+                position("SOLUSDT", "LONG", "10", "150", "0")));
+
+        JsonNode delta = next(false);
+        assertThat(delta.get("type").asText()).isEqualTo(AccountPushService.TYPE_DELTA);
+        assertThat(delta.get("seq").asLong()).isEqualTo(2L);
+        assertThat(delta.get("baseSeq").asLong()).isEqualTo(1L);
+        assertThat(fields(delta)).containsExactly("positions", "timestamp", "userId", "type", "seq", "baseSeq");
+        JsonNode btc = delta.get("positions").get(0);
+        assertThat(fields(btc)).containsExactly("symbol", "side", "currentPrice", "unrealizedPnl");
+        assertThat(btc.get("currentPrice").decimalValue()).isEqualByComparingTo("62000");
+        JsonNode sol = delta.get("positions").get(1);
+        // 新持仓携带全部非空字段
+        assertThat(fields(sol)).containsExactly("symbol", "side", "quantity", "avgPrice", "currentPrice", "unrealizedPnl",
+                "leverage");
+        assertThat(sol.get("quantity").decimalValue()).isEqualByComparingTo("10");
+        assertThat(delta.get("positions").size()).isEqualTo(2);
+    }
+
+    @Test
+    void closedPositionsAreListedAsRemoved() throws Exception {
+        service.sendSnapshot(USER, account("1000", 1L,
+                position("BTCUSDT", "LONG", "0.01", "61000", "10"),
+                position("ETHUSDT", "SHORT", "1", "3000", "-5")));
+        next(true);
+
+        service.publish(USER, account("995", 2L, position("BTCUSDT", "LONG", "0.01", "61000", "10")));
+
+        JsonNode delta = next(false);
+        assertThat(delta.get("totalBalance").decimalValue()).isEqualByComparingTo("995");
+        assertThat(delta.has("positions")).isFalse();
+        assertThat(delta.get("removed").size()).isEqualTo(1);
+        assertThat(delta.get("removed").get(0).get("symbol").asText()).isEqualTo("ETHUSDT");
+        assertThat(delta.get("removed").get(0).get("side").asText()).isEqualTo("SHORT");
+    }
+
+    @Test
+    void unchangedStateSendsNothing() throws Exception {
+        AccountInfo first = account("1000", 1L, position("BTCUSDT", "LONG", "0.01", "61000", "10"));
+        service.sendSnapshot(USER, first);
+        next(true);
+
+        // 同一个对象、内容相同的新对象、只有时间戳变化：都不推送
+        service.publish(USER, first);
+        awaitUnchanged(1);
+        service.publish(USER, account("1000", 1L, position("BTCUSDT", "LONG", "0.01", "61000", "10")));
+        awaitUnchanged(2);
+        service.publish(USER, account("1000", 5L, position("BTCUSDT", "LONG", "0.01", "61000", "10")));
+        awaitUnchanged(3);
+
+        assertThat(published).isEmpty();
+        assertThat(service.getStats().get("deltas")).isEqualTo(0L);
+    }
+
+    @Test
+    void burstWithinWindowIsCoalescedIntoLatest() throws Exception {
+        service.sendSnapshot(USER, account("1000", 1L));
+        // 快照同步推送
+        assertThat(published.poll().snapshot()).isTrue();
+
+        ReflectionTestUtils.setField(service, "coalesceMs", 500L);
+        service.publish(USER, account("990", 2L));
+        service.publish(USER, account("980", 3L));
+        service.publish(USER, account("970", 4L));
+
+        JsonNode delta = next(false);
+        assertThat(delta.get("totalBalance").decimalValue()).isEqualByComparingTo("970");
+        assertThat(delta.get("baseSeq").asLong()).isEqualTo(1L);
+        assertThat(published.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(service.getStats().get("users")).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotIntervalForcesFullFrames() throws Exception {
+        ReflectionTestUtils.setField(service, "snapshotIntervalMs", 0L);
+
+        service.sendSnapshot(USER, account("1000", 1L));
+        next(true);
+        service.publish(USER, account("990", 2L));
+
+        JsonNode frame = next(true);
+        assertThat(frame.get("seq").asLong()).isEqualTo(2L);
+        assertThat(frame.has("baseSeq")).isFalse();
+    }
+
+    @Test
+    void usersWithoutSessionsAreNotPublished() throws Exception {
+        // 没有请求过快照（没有连接）的用户不推送
+        service.publish(USER, account("1000", 1L));
+        assertThat(published.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(service.getStats().get("users")).isEqualTo(0);
+
+        service.sendSnapshot(USER, account("1000", 1L));
+        assertThat(next(true).get("seq").asLong()).isEqualTo(1L);
+
+        // 本节点仍有该用户的订阅：保留推送状态
+        when(accountFanout.hasSubscribers(USER)).thenReturn(true);
+        service.close(USER);
+        service.publish(USER, account("990", 2L));
+        assertThat(next(false).get("baseSeq").asLong()).isEqualTo(1L);
+
+        // 所有连接都已关闭：丢弃推送状态、放弃所有权，等待中的更新也不再发送
+        when(accountFanout.hasSubscribers(USER)).thenReturn(false);
+        ReflectionTestUtils.setField(service, "coalesceMs", 200L);
+        service.publish(USER, account("980", 3L));
+        service.close(USER);
+        assertThat(published.poll(400, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(service.getStats().get("users")).isEqualTo(0);
+        assertThat(pushBus.released).containsExactly(USER);
+
+        // 重新连接后从快照开始
+        service.sendSnapshot(USER, account("980", 3L));
+        JsonNode snapshot = next(true);
+        assertThat(snapshot.get("seq").asLong()).isEqualTo(1L);
+        assertThat(snapshot.get("totalBalance").decimalValue()).isEqualByComparingTo("980");
+    }
+
+    @Test
+    void lostOwnershipStopsPublishing() throws Exception {
+        assertThat(service.claim(USER)).isTrue();
+        service.sendSnapshot(USER, account("1000", 1L));
+        next(true);
+
+        // 租约已由其他节点取得：续期失败后不再推送，也不响应快照请求
+        pushBus.owner = false;
+        service.renewOwnership();
+        service.publish(USER, account("990", 2L));
+
+        assertThat(published.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(service.getStats().get("users")).isEqualTo(0);
+        assertThat(service.claim(USER)).isFalse();
+        assertThat(pushBus.released).isEmpty();
+    }
+
+    /**
+     * 下一帧（等待合并窗口结束）
+     */
+    private JsonNode next(boolean snapshot) throws InterruptedException, IOException {
+        Published frame = published.poll(5, TimeUnit.SECONDS);
+        assertThat(frame).isNotNull();
+        assertThat(frame.userId()).isEqualTo(USER);
+        assertThat(frame.snapshot()).isEqualTo(snapshot);
+        return objectMapper.readTree(frame.body());
+    }
+
+    private void awaitUnchanged(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Long.valueOf(count).equals(service.getStats().get("unchanged"))) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> fields(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> iterator = node.fieldNames(); iterator.hasNext(); ) {
+            names.add(iterator.next());
+        }
+        return names;
+    }
+
+    private static AccountInfo account(String totalBalance, long timestamp, Position... positions) {
+        return AccountInfo.builder()
+                .userId(USER)
+                .totalBalance(new BigDecimal(totalBalance))
+                .positions(List.of(positions))
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static Position position(String symbol, String side, String quantity, String currentPrice, String pnl) {
+        return Position.builder()
+                .symbol(symbol)
+                .side(side)
+                .quantity(new BigDecimal(quantity))
+                .avgPrice(new BigDecimal("100"))
+                .currentPrice(new BigDecimal(currentPrice))
+                .unrealizedPnl(new BigDecimal(pnl))
+                .leverage(20)
+                .build();
+    }
+
+    private record Published(String userId, byte[] body, boolean snapshot) {
+    }
+
+    /**
+     * 可以切换推送所有权的单节点总线
+     */
+    private static final class OwnershipBus extends LocalPushBus {
+        private final List<String> released = new ArrayList<>();
+        private volatile boolean owner = true;
+
+        @Override
+        public boolean acquire(String userId) {
+            return owner;
+        }
+
+        @Override
+        public void release(String userId) {
+            released.add(userId);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.quant.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 单节点推送总线：在发布线程中同步投递给所有监听者、帧内容不复制、总是持有推送所有权、统计
+ */
+class LocalPushBusTest {
+
+    @Test
+    void deliversSynchronouslyToAllListeners() {
+        LocalPushBus bus = new LocalPushBus();
+        List<String> events = new ArrayList<>();
+        List<byte[]> bodies = new ArrayList<>();
+        for (String name : List.of("fanout", "push")) {
+            bus.subscribe(new PushBus.Listener() {
+                @Override
+                public void onFrame(String userId, byte[] body, boolean snapshot) {
+                    events.add(name + ":" + userId + ":" + snapshot + ":" + Thread.currentThread().getName());
+                    bodies.add(body);
+                }
+
+                @Override
+                public void onSnapshotRequest(String userId) {
+                    events.add(name + ":request:" + userId);
+                }
+
+                @Override
+                public void onSessionsClosed(String userId) {
+                    events.add(name + ":closed:" + userId);
+                }
+            });
+        }
+        byte[] body = "{\"seq\":1}".getBytes(StandardCharsets.UTF_8);
+        String thread = Thread.currentThread().getName();
+
+        bus.publish("u1", body, true);
+        bus.publish("u2", body, false);
+        bus.requestSnapshot("u3");
+        bus.sessionsClosed("u4");
+
+        // 返回之前已经按注册顺序投递
+        assertThat(events).containsExactly(
+                "fanout:u1:true:" + thread, "push:u1:true:" + thread,
+                "fanout:u2:false:" + thread, "push:u2:false:" + thread,
+                "fanout:request:u3", "push:request:u3",
+                "fanout:closed:u4", "push:closed:u4");
+        // 所有监听者共用同一份帧内容
+        assertThat(bodies.get(0)).isSameAs(body);
+        assertThat(bodies.get(1)).isSameAs(body);
+
+        assertThat(bus.isRelay()).isFalse();
+        assertThat(bus.acquire("u1")).isTrue();
+        assertThat(bus.getStats().get("mode")).isEqualTo("local");
+        assertThat(bus.getStats().get("frames")).isEqualTo(2L);
+        assertThat(bus.getStats().get("snapshotRequests")).isEqualTo(1L);
+    }
+}
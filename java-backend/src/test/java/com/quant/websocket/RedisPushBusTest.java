@@ -0,0 +1,195 @@
+package com.quant.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Redis推送总线：消息格式、帧内容按原始字节转发、快照请求在单独线程中处理、连接关闭通知、
+ * 推送所有权同时只由一个节点持有、格式错误和发布失败只计数
+ */
+class RedisPushBusTest {
+
+    private static final String CHANNEL = "account-push";
+    private static final long OWNER_TTL_MS = 30_000;
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final List<String> sent = new ArrayList<>();
+    private final BlockingQueue<Received> frames = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+    private final List<String> closed = new ArrayList<>();
+    // 模拟Redis中的租约：key -> 节点ID
+    private final Map<String, String> owners = new HashMap<>();
+    private int scriptCalls;
+    private RedisPushBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bus = new RedisPushBus(mock(RedisConnectionFactory.class), redisTemplate, CHANNEL, OWNER_TTL_MS);
+        // 模拟Redis把消息回传给所有节点（包括发布节点）
+        doAnswer(invocation -> {
+            String payload = invocation.getArgument(1);
+            sent.add(payload);
+            bus.onMessage(message(payload), null);
+            return 1L;
+        }).when(redisTemplate).convertAndSend(anyString(), any());
+        // 取得或续期：没有持有者或由同一节点持有时成功
+        doAnswer(invocation -> {
+            scriptCalls++;
+            List<String> keys = invocation.getArgument(1);
+            String node = invocation.getArgument(2);
+            String owner = owners.putIfAbsent(keys.get(0), node);
+            return owner == null || owner.equals(node) ? 1L : 0L;
+        }).when(redisTemplate).execute(any(), anyList(), any(), any());
+        // 释放：只删除同一节点持有的租约
+        doAnswer(invocation -> {
+            scriptCalls++;
+            List<String> keys = invocation.getArgument(1);
+            return owners.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+        }).when(redisTemplate).execute(any(), anyList(), any());
+        bus.subscribe(new PushBus.Listener() {
+            @Override
+            public void onFrame(String userId, byte[] body, boolean snapshot) {
+                frames.add(new Received(userId, new String(body, StandardCharsets.UTF_8), snapshot));
+            }
+
+            @Override
+            public void onSnapshotRequest(String userId) {
+                requests.add(userId + "@" + Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onSessionsClosed(String userId) {
+                closed.add(userId);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        bus.shutdown();
+    }
+
+    @Test
+    void framesRoundTripWithRawBody() throws InterruptedException {
+        String snapshot = "{\"type\":\"snapshot\",\"seq\":1,\"note\":\"平仓\"}";
+        bus.publish("u1", snapshot.getBytes(StandardCharsets.UTF_8), true);
+        bus.publish("u1", "{\"seq\":2,\"baseSeq\":1}".getBytes(StandardCharsets.UTF_8), false);
+
+        assertThat(sent).containsExactly("S\nu1\n" + snapshot, "D\nu1\n{\"seq\":2,\"baseSeq\":1}");
+        assertThat(frames.poll(5, TimeUnit.SECONDS)).isEqualTo(new Received("u1", snapshot, true));
+        assertThat(frames.poll(5, TimeUnit.SECONDS)).isEqualTo(new Received("u1", "{\"seq\":2,\"baseSeq\":1}", false));
+        assertThat(bus.isRelay()).isTrue();
+        assertThat(bus.getStats().get("channel")).isEqualTo(CHANNEL);
+        assertThat(bus.getStats().get("published")).isEqualTo(2L);
+        assertThat(bus.getStats().get("received")).isEqualTo(2L);
+    }
+
+    @Test
+    void snapshotRequestIsHandledOnRequestThread() throws InterruptedException {
+        bus.requestSnapshot("u2");
+
+        assertThat(sent).containsExactly("R\nu2\n");
+        assertThat(requests.poll(5, TimeUnit.SECONDS)).isEqualTo("u2@account-push-request");
+        assertThat(frames).isEmpty();
+    }
+
+    @Test
+    void sessionsClosedIsRelayedInOrderWithFrames() {
+        bus.sessionsClosed("u3");
+
+        assertThat(sent).containsExactly("C\nu3\n");
+        assertThat(closed).containsExactly("u3");
+        assertThat(frames).isEmpty();
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    void ownershipIsHeldByOneNodeUntilReleased() throws Exception {
+        RedisPushBus other = new RedisPushBus(mock(RedisConnectionFactory.class), redisTemplate, CHANNEL,
+                OWNER_TTL_MS);
+        try {
+            assertThat(bus.acquire("u1")).isTrue();
+            assertThat(other.acquire("u1")).isFalse();
+            assertThat(owners.keySet()).containsExactly(CHANNEL + ":owner:u1");
+
+            // 三分之一租期内不重复访问Redis
+            assertThat(bus.acquire("u1")).isTrue();
+            assertThat(scriptCalls).isEqualTo(2);
+
+            // 没有持有的节点不能释放
+            other.release("u1");
+            assertThat(scriptCalls).isEqualTo(2);
+            assertThat(other.acquire("u1")).isFalse();
+
+            // 释放后其他节点可以立即取得
+            bus.release("u1");
+            assertThat(owners).isEmpty();
+            assertThat(other.acquire("u1")).isTrue();
+            assertThat(bus.acquire("u1")).isFalse();
+            assertThat(bus.getStats().get("ownedUsers")).isEqualTo(0);
+            assertThat(other.getStats().get("ownedUsers")).isEqualTo(1);
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void malformedMessagesAreCountedAndDropped() {
+        bus.onMessage(message("S"), null);
+        bus.onMessage(message("\nu1\n{}"), null);
+        bus.onMessage(message("SX\nu1\n{}"), null);
+        bus.onMessage(message("D\nu1"), null);
+
+        assertThat(frames).isEmpty();
+        assertThat(bus.getStats().get("malformed")).isEqualTo(4L);
+        assertThat(bus.getStats().get("received")).isEqualTo(0L);
+    }
+
+    @Test
+    void publishFailureIsCountedNotThrown() {
+        doThrow(new RedisConnectionFailureException("connection refused"))
+                .when(redisTemplate).convertAndSend(anyString(), any());
+
+        doThrow(new RedisConnectionFailureException("connection refused"))
+                .when(redisTemplate).execute(any(), anyList(), any(), any());
+
+        bus.publish("u1", "{}".getBytes(StandardCharsets.UTF_8), false);
+        bus.requestSnapshot("u1");
+        // Redis不可用时不持有所有权
+        assertThat(bus.acquire("u1")).isFalse();
+
+        assertThat(bus.getStats().get("failures")).isEqualTo(3L);
+        assertThat(bus.getStats().get("published")).isEqualTo(0L);
+    }
+
+    private static Message message(String payload) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Received(String userId, String body, boolean snapshot) {
+    }
+}
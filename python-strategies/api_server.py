@@ -1,12 +1,31 @@
 """
 Python策略API服务
 提供RESTful API接口供Java后台调用
+
+另外提供TCP长连接接口（二进制编码，见 wire_codec.py），Java端配置 python.strategy.transport=tcp 时使用
+环境变量：
+    STRATEGY_TCP_ENABLED  是否启用TCP接口（默认 1）
+    STRATEGY_TCP_HOST     监听地址（默认 127.0.0.1，只接受本机连接；Java后台运行在Docker容器中、
+                          通过Docker网关（如172.17.0.1）访问时需设置为 0.0.0.0 或网关地址，
+                          并与Java端 python.strategy.tcp.host 保持一致）
+    STRATEGY_TCP_PORT     监听端口（默认 8001）
+    STRATEGY_SERVER_WORKERS  uvicorn工作进程数（默认 4，与 start.bat 中 --workers 一致），用于计算执行进程池大小
+    STRATEGY_TCP_WORKERS  每个工作进程执行TCP请求的进程数（默认：支持SO_REUSEPORT时为 CPU核数/工作进程数，
+                          因为每个工作进程都监听TCP端口并各自创建进程池；否则只有一个工作进程监听，为 CPU核数）
 """
 from fastapi import FastAPI, HTTPException
 from pydantic import BaseModel
-from typing import Dict, Any, Optional
+from typing import Dict, Any, List, Optional
 from loguru import logger
+import asyncio
+import concurrent.futures
+import os
+import socket
 import sys
+import threading
+import time
+
+import wire_codec
 
 # 导入策略模块
 from strategies.base_strategy import BaseStrategy
@@ -30,6 +49,7 @@ STRATEGY_REGISTRY = {
 
 class StrategyRequest(BaseModel):
     """策略请求模型（与Java端对应）"""
+    requestId: Optional[str] = None
     strategyName: str
     symbol: str
     marketData: Dict[str, Any]
@@ -40,6 +60,7 @@ class StrategyRequest(BaseModel):
 
 class StrategyResponse(BaseModel):
     """策略响应模型（与Java端对应）"""
+    requestId: Optional[str] = None
     signal: str  # BUY, SELL, HOLD
     position: float  # 0.0 - 1.0
     targetPrice: Optional[float] = None
@@ -50,36 +71,60 @@ class StrategyResponse(BaseModel):
     error: Optional[str] = None
 
 
-@app.get("/health")
-async def health_check():
-    """健康检查接口"""
-    return {"status": "ok"}
+class BatchStrategyRequest(BaseModel):
+    """批量策略请求"""
+    requests: List[StrategyRequest]
 
 
-@app.post("/api/strategy/execute", response_model=StrategyResponse)
-async def execute_strategy(request: StrategyRequest):
+class BatchStrategyResponse(BaseModel):
+    """批量策略响应（按requestId对应请求）"""
+    responses: List[StrategyResponse]
+    elapsedMs: float = 0.0
+
+
+class ThroughputStats:
+    """接口吞吐统计（调用次数、策略执行次数、累计耗时；批量接口在线程池中执行，记录时加锁）"""
+
+    def __init__(self):
+        self.calls = 0
+        self.evaluations = 0
+        self.total_seconds = 0.0
+        self._lock = threading.Lock()
+
+    def record(self, evaluations: int, seconds: float):
+        with self._lock:
+            self.calls += 1
+            self.evaluations += evaluations
+            self.total_seconds += seconds
+
+    def to_dict(self) -> Dict[str, Any]:
+        return {
+            "calls": self.calls,
+            "evaluations": self.evaluations,
+            "avgCallMs": round(self.total_seconds * 1000 / self.calls, 3) if self.calls else 0.0,
+            "evaluationsPerSecond": round(self.evaluations / self.total_seconds, 1) if self.total_seconds else 0.0,
+        }
+
+
+STATS = {
+    "execute": ThroughputStats(),
+    "execute_batch": ThroughputStats(),
+    "tcp": ThroughputStats(),
+}
+
+
+def run_strategy(request: StrategyRequest) -> StrategyResponse:
     """
-    执行策略并返回交易信号
-    
-    Args:
-        request: 策略请求，包含市场数据和策略参数
-        
-    Returns:
-        StrategyResponse: 策略响应，包含交易信号和建议
+    执行单个策略请求，异常只影响当前请求（返回HOLD和错误信息）
     """
     try:
-        logger.info(f"收到策略请求: {request.strategyName} - {request.symbol}")
-        
         # 1. 获取策略实例
         strategy_class = STRATEGY_REGISTRY.get(request.strategyName)
         if not strategy_class:
-            raise HTTPException(
-                status_code=404, 
-                detail=f"策略不存在: {request.strategyName}"
-            )
-        
+            raise ValueError(f"策略不存在: {request.strategyName}")
+
         strategy = strategy_class()
-        
+
         # 2. 执行策略
         result = strategy.execute(
             symbol=request.symbol,
@@ -88,9 +133,10 @@ async def execute_strategy(request: StrategyRequest):
             position=request.position,
             account=request.account
         )
-        
+
         # 3. 构建响应
-        response = StrategyResponse(
+        return StrategyResponse(
+            requestId=request.requestId,
             signal=result.get("signal", "HOLD"),
             position=result.get("position", 0.0),
             targetPrice=result.get("targetPrice"),
@@ -99,13 +145,11 @@ async def execute_strategy(request: StrategyRequest):
             confidence=result.get("confidence", 0.0),
             metadata=result.get("metadata", {}),
         )
-        
-        logger.info(f"策略执行完成: {response.signal} - 置信度: {response.confidence}")
-        return response
-        
+
     except Exception as e:
-        logger.error(f"策略执行失败: {str(e)}", exc_info=True)
+        logger.error(f"策略执行失败: {request.strategyName} - {request.symbol}: {str(e)}", exc_info=True)
         return StrategyResponse(
+            requestId=request.requestId,
             signal="HOLD",
             position=0.0,
             confidence=0.0,
@@ -113,6 +157,66 @@ async def execute_strategy(request: StrategyRequest):
         )
 
 
+@app.get("/health")
+async def health_check():
+    """健康检查接口"""
+    return {"status": "ok"}
+
+
+@app.post("/api/strategy/execute", response_model=StrategyResponse)
+async def execute_strategy(request: StrategyRequest):
+    """
+    执行策略并返回交易信号
+    
+    Args:
+        request: 策略请求，包含市场数据和策略参数
+        
+    Returns:
+        StrategyResponse: 策略响应，包含交易信号和建议
+    """
+    logger.info(f"收到策略请求: {request.strategyName} - {request.symbol}")
+
+    start = time.perf_counter()
+    response = run_strategy(request)
+    STATS["execute"].record(1, time.perf_counter() - start)
+
+    logger.info(f"策略执行完成: {response.signal} - 置信度: {response.confidence}")
+    return response
+
+
+@app.post("/api/strategy/execute-batch", response_model=BatchStrategyResponse)
+def execute_strategy_batch(batch: BatchStrategyRequest):
+    """
+    批量执行策略（Java端把同一时间窗口内的请求合并为一次调用）
+
+    每个请求独立执行，单个请求失败只在对应响应中返回error，不影响其他请求
+    一批最多200个请求，同步执行耗时较长，因此定义为普通函数，由FastAPI放到线程池执行，
+    不阻塞事件循环（执行期间 /health 等其他请求仍能及时响应）
+
+    Args:
+        batch: 批量请求，每个请求带requestId
+
+    Returns:
+        BatchStrategyResponse: 按requestId对应的响应列表和本批耗时
+    """
+    start = time.perf_counter()
+    responses = [run_strategy(request) for request in batch.requests]
+    elapsed = time.perf_counter() - start
+    STATS["execute_batch"].record(len(batch.requests), elapsed)
+
+    signals = sum(1 for response in responses if response.signal != "HOLD")
+    errors = sum(1 for response in responses if response.error)
+    logger.info(f"批量策略执行完成: 数量={len(responses)}, 非HOLD信号={signals}, 失败={errors}, "
+                f"耗时={elapsed * 1000:.1f}ms")
+    return BatchStrategyResponse(responses=responses, elapsedMs=round(elapsed * 1000, 3))
+
+
+@app.get("/api/strategy/stats")
+async def strategy_stats():
+    """单个调用与批量调用的吞吐统计（用于对比批量合并前后的效果）"""
+    return {name: stats.to_dict() for name, stats in STATS.items()}
+
+
 @app.get("/api/strategies")
 async def list_strategies():
     """列出所有可用策略"""
@@ -122,6 +226,159 @@ async def list_strategies():
     }
 
 
+# ==================== TCP长连接接口 ====================
+
+TCP_ENABLED = os.getenv("STRATEGY_TCP_ENABLED", "1") == "1"
+TCP_HOST = os.getenv("STRATEGY_TCP_HOST", "127.0.0.1")
+TCP_PORT = int(os.getenv("STRATEGY_TCP_PORT", "8001"))
+
+SERVER_WORKERS = max(1, int(os.getenv("STRATEGY_SERVER_WORKERS", "4")))
+
+
+def default_tcp_workers() -> int:
+    """所有工作进程的执行进程合计不超过CPU核数"""
+    cpus = os.cpu_count() or 4
+    if hasattr(socket, "SO_REUSEPORT"):
+        return max(1, cpus // SERVER_WORKERS)
+    return cpus
+
+
+TCP_WORKERS = int(os.getenv("STRATEGY_TCP_WORKERS", str(default_tcp_workers())))
+
+tcp_server: Optional[asyncio.AbstractServer] = None
+# 策略执行是CPU密集的同步代码，放在进程池中执行，避免阻塞事件循环，并能利用多个CPU核
+# （支持SO_REUSEPORT时每个工作进程各有一个进程池；Windows不支持SO_REUSEPORT，多进程模式下只有一个进程监听TCP端口，
+#   所有请求都由该进程的进程池执行）
+tcp_executor: Optional[concurrent.futures.ProcessPoolExecutor] = None
+
+
+def get_tcp_executor() -> concurrent.futures.ProcessPoolExecutor:
+    """首次建立TCP连接时创建进程池（没有监听到TCP端口的进程不创建）"""
+    global tcp_executor
+    if tcp_executor is None:
+        tcp_executor = concurrent.futures.ProcessPoolExecutor(max_workers=TCP_WORKERS)
+        logger.info(f"策略TCP执行进程池已创建: 进程数={TCP_WORKERS}")
+    return tcp_executor
+
+
+def execute_tcp_frame(frame_type: int, payload: bytes):
+    """
+    在执行进程中处理一个请求帧，返回 (响应帧类型, 响应负载, 策略执行次数)
+    """
+    if frame_type == wire_codec.FRAME_EXECUTE:
+        request = StrategyRequest.model_construct(**wire_codec.decode_request(payload))
+        response = run_strategy(request)
+        return wire_codec.FRAME_RESULT, wire_codec.encode_response(response.model_dump()), 1
+
+    if frame_type == wire_codec.FRAME_EXECUTE_BATCH:
+        requests = [StrategyRequest.model_construct(**fields)
+                    for fields in wire_codec.decode_batch_request(payload)]
+        responses = [run_strategy(request).model_dump() for request in requests]
+        return wire_codec.FRAME_BATCH_RESULT, wire_codec.encode_batch_response(responses), len(requests)
+
+    raise ValueError(f"未知的帧类型: {frame_type}")
+
+
+async def handle_tcp_frame(frame_type: int, payload: bytes):
+    """
+    处理一个请求帧，返回 (响应帧类型, 响应负载)；心跳直接在事件循环中应答，其余请求交给进程池
+    """
+    if frame_type == wire_codec.FRAME_PING:
+        return wire_codec.FRAME_PONG, b""
+
+    start = time.perf_counter()
+    loop = asyncio.get_running_loop()
+    response_type, response_payload, count = await loop.run_in_executor(
+        get_tcp_executor(), execute_tcp_frame, frame_type, payload)
+    elapsed = time.perf_counter() - start
+    STATS["tcp"].record(count, elapsed)
+    if frame_type == wire_codec.FRAME_EXECUTE_BATCH:
+        logger.info(f"批量策略执行完成（TCP）: 数量={count}, 耗时={elapsed * 1000:.1f}ms")
+    return response_type, response_payload
+
+
+async def handle_tcp_connection(reader: asyncio.StreamReader, writer: asyncio.StreamWriter):
+    """
+    处理一条TCP长连接：按帧读取请求，每个请求帧独立处理（同一连接上的请求并发执行），
+    响应帧带相同的关联ID，按完成顺序写回；同一连接上处理中的请求超过进程数的两倍时暂停读取
+    """
+    peer = writer.get_extra_info("peername")
+    logger.info(f"策略TCP连接建立: {peer}")
+    write_lock = asyncio.Lock()
+    slots = asyncio.Semaphore(TCP_WORKERS * 2)
+    pending = set()
+
+    async def process(correlation_id: int, frame_type: int, payload: bytes):
+        try:
+            try:
+                response_type, response_payload = await handle_tcp_frame(frame_type, payload)
+            except Exception as e:
+                logger.error(f"TCP请求处理失败: {str(e)}", exc_info=True)
+                response_type, response_payload = wire_codec.FRAME_ERROR, wire_codec.encode_error(str(e))
+            async with write_lock:
+                writer.write(wire_codec.encode_frame(correlation_id, response_type, response_payload))
+                await writer.drain()
+        except ConnectionError as e:
+            logger.warning(f"策略TCP响应写入失败: {peer}, {str(e)}")
+        finally:
+            slots.release()
+
+    try:
+        while True:
+            length = int.from_bytes(await reader.readexactly(4), "big", signed=True)
+            if length < wire_codec.FRAME_HEADER_SIZE or length > wire_codec.MAX_FRAME_SIZE:
+                logger.error(f"非法的帧长度，关闭连接: {peer}, length={length}")
+                break
+            body = await reader.readexactly(length)
+            correlation_id, frame_type = wire_codec.decode_frame_header(body[:wire_codec.FRAME_HEADER_SIZE])
+            payload = body[wire_codec.FRAME_HEADER_SIZE:]
+
+            await slots.acquire()
+            task = asyncio.create_task(process(correlation_id, frame_type, payload))
+            pending.add(task)
+            task.add_done_callback(pending.discard)
+    except asyncio.IncompleteReadError:
+        pass
+    except ConnectionError as e:
+        logger.warning(f"策略TCP连接异常: {peer}, {str(e)}")
+    finally:
+        for task in list(pending):
+            task.cancel()
+        logger.info(f"策略TCP连接关闭: {peer}")
+        writer.close()
+
+
+@app.on_event("startup")
+async def start_tcp_server():
+    """
+    启动TCP接口（多进程模式下各进程通过SO_REUSEPORT共享端口；Windows等不支持的平台上只有一个进程能监听成功，
+    该进程通过执行进程池并发处理请求，其余进程只提供HTTP接口）
+    """
+    global tcp_server
+    if not TCP_ENABLED:
+        return
+    try:
+        tcp_server = await asyncio.start_server(
+            handle_tcp_connection, TCP_HOST, TCP_PORT,
+            reuse_port=hasattr(socket, "SO_REUSEPORT"),
+        )
+        logger.info(f"策略TCP接口已启动: {TCP_HOST}:{TCP_PORT}")
+    except OSError as e:
+        if hasattr(socket, "SO_REUSEPORT"):
+            logger.warning(f"策略TCP接口启动失败（端口可能已被其他进程监听）: {str(e)}")
+        else:
+            logger.info(f"策略TCP接口由其他工作进程监听（平台不支持SO_REUSEPORT）: {str(e)}")
+
+
+@app.on_event("shutdown")
+async def stop_tcp_server():
+    if tcp_server is not None:
+        tcp_server.close()
+        await tcp_server.wait_closed()
+    if tcp_executor is not None:
+        tcp_executor.shutdown(wait=False, cancel_futures=True)
+
+
 if __name__ == "__main__":
     import uvicorn
     logger.info("启动Python策略API服务...")
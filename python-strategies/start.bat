@@ -34,6 +34,8 @@ if errorlevel 1 (
 echo.
 echo [3/3] 启动Python策略API服务（多进程模式）...
 echo 服务地址: http://localhost:8000
+echo TCP接口: 127.0.0.1:8001（Java端 python.strategy.transport=tcp 时使用）
+echo   Windows下TCP接口只由一个工作进程监听，请求在该进程的执行进程池中并发处理（STRATEGY_TCP_WORKERS，默认CPU核数）
 echo 工作进程数: 4（支持并发处理多个用户请求）
 echo 按 Ctrl+C 停止服务
 echo.
@@ -44,6 +46,8 @@ REM 使用 uvicorn 多进程模式启动
 REM --workers 4: 启动4个工作进程，支持并发处理
 REM --host 0.0.0.0: 监听所有网络接口
 REM --port 8000: 监听端口8000
+REM STRATEGY_SERVER_WORKERS 与 --workers 保持一致，Python端据此计算每个工作进程的TCP执行进程池大小
+set STRATEGY_SERVER_WORKERS=4
 uvicorn api_server:app --host 0.0.0.0 --port 8000 --workers 4
 
 pause
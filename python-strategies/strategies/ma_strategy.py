@@ -31,24 +31,35 @@ class MAStrategy(BaseStrategy):
         long_period = strategy_params.get("long_period", 20)
         
         # 2. 处理市场数据
-        # 假设market_data包含价格序列
-        prices = market_data.get("prices", [])
-        if len(prices) < long_period:
-            return self._hold_signal("数据不足")
-        
-        # 转换为DataFrame
-        df = pd.DataFrame({"close": prices})
-        
-        # 3. 计算移动平均线
-        df["ma_short"] = df["close"].rolling(window=short_period).mean()
-        df["ma_long"] = df["close"].rolling(window=long_period).mean()
+        # 优先使用后端共享计算的指标（已收盘K线，见 market_data["indicators"]），否则由价格序列计算
+        current_price = market_data.get("price")
+        indicators = market_data.get("indicators", {}).get(market_data.get("interval"), {})
+        short_key = f"sma_{short_period}"
+        long_key = f"sma_{long_period}"
+        if all(k in indicators for k in (short_key, short_key + "_prev", long_key, long_key + "_prev")):
+            ma_short_current = indicators[short_key]
+            ma_long_current = indicators[long_key]
+            ma_short_prev = indicators[short_key + "_prev"]
+            ma_long_prev = indicators[long_key + "_prev"]
+        else:
+            prices = market_data.get("prices", [])
+            if len(prices) < long_period:
+                return self._hold_signal("数据不足")
+            
+            # 转换为DataFrame
+            df = pd.DataFrame({"close": prices})
+            
+            # 3. 计算移动平均线
+            df["ma_short"] = df["close"].rolling(window=short_period).mean()
+            df["ma_long"] = df["close"].rolling(window=long_period).mean()
+            
+            current_price = prices[-1]
+            ma_short_current = df["ma_short"].iloc[-1]
+            ma_long_current = df["ma_long"].iloc[-1]
+            ma_short_prev = df["ma_short"].iloc[-2] if len(df) > 1 else ma_short_current
+            ma_long_prev = df["ma_long"].iloc[-2] if len(df) > 1 else ma_long_current
         
         # 4. 生成交易信号
-        current_price = prices[-1]
-        ma_short_current = df["ma_short"].iloc[-1]
-        ma_long_current = df["ma_long"].iloc[-1]
-        ma_short_prev = df["ma_short"].iloc[-2] if len(df) > 1 else ma_short_current
-        ma_long_prev = df["ma_long"].iloc[-2] if len(df) > 1 else ma_long_current
         
         # 5. 判断交叉
         signal = "HOLD"
@@ -0,0 +1,203 @@
+"""
+Java与Python策略服务之间的二进制编码
+与 java-backend 中的 com.quant.transport.StrategyWireCodec 保持一致
+
+帧格式（大端）：
+    [int32 长度（不含自身）][int64 关联ID][byte 帧类型][负载]
+
+值编码：1字节类型标记 + 数据
+    NULL / TRUE / FALSE：无数据
+    INT64 / FLOAT64：8字节
+    STRING：varint长度 + UTF-8
+    LIST：varint个数 + 元素
+    MAP：varint个数 + (STRING键, 值)
+
+StrategyRequest / StrategyResponse 的顶层字段按固定顺序编码，不写字段名
+"""
+import struct
+from typing import Any, Dict, List, Tuple
+
+# 帧类型：请求
+FRAME_EXECUTE = 0x01
+FRAME_EXECUTE_BATCH = 0x02
+FRAME_PING = 0x03
+
+# 帧类型：响应
+FRAME_RESULT = 0x81
+FRAME_BATCH_RESULT = 0x82
+FRAME_PONG = 0x83
+FRAME_ERROR = 0xFF
+
+# 帧头：关联ID(8) + 帧类型(1)
+FRAME_HEADER_SIZE = 9
+MAX_FRAME_SIZE = 16 * 1024 * 1024
+
+TAG_NULL = 0
+TAG_TRUE = 1
+TAG_FALSE = 2
+TAG_INT64 = 3
+TAG_FLOAT64 = 4
+TAG_STRING = 5
+TAG_LIST = 6
+TAG_MAP = 7
+
+REQUEST_FIELDS = ("requestId", "strategyName", "symbol", "marketData",
+                  "strategyParams", "position", "account")
+RESPONSE_FIELDS = ("requestId", "signal", "position", "targetPrice", "stopLoss",
+                   "takeProfit", "confidence", "metadata", "error")
+
+_INT64 = struct.Struct(">q")
+_FLOAT64 = struct.Struct(">d")
+_HEADER = struct.Struct(">iqB")
+
+
+def encode_frame(correlation_id: int, frame_type: int, payload: bytes) -> bytes:
+    """编码完整帧（含长度前缀）"""
+    return _HEADER.pack(FRAME_HEADER_SIZE + len(payload), correlation_id, frame_type) + payload
+
+
+def decode_frame_header(header: bytes) -> Tuple[int, int]:
+    """解析帧头（关联ID、帧类型），header 为长度前缀之后的9个字节"""
+    correlation_id, frame_type = struct.unpack(">qB", header)
+    return correlation_id, frame_type
+
+
+def _write_varint(out: bytearray, value: int):
+    while value & ~0x7F:
+        out.append((value & 0x7F) | 0x80)
+        value >>= 7
+    out.append(value)
+
+
+def _write_value(out: bytearray, value: Any):
+    if value is None:
+        out.append(TAG_NULL)
+    elif value is True:
+        out.append(TAG_TRUE)
+    elif value is False:
+        out.append(TAG_FALSE)
+    elif isinstance(value, int):
+        out.append(TAG_INT64)
+        out += _INT64.pack(value)
+    elif isinstance(value, float):
+        out.append(TAG_FLOAT64)
+        out += _FLOAT64.pack(value)
+    elif isinstance(value, dict):
+        out.append(TAG_MAP)
+        _write_varint(out, len(value))
+        for key, item in value.items():
+            _write_value(out, str(key))
+            _write_value(out, item)
+    elif isinstance(value, (list, tuple)):
+        out.append(TAG_LIST)
+        _write_varint(out, len(value))
+        for item in value:
+            _write_value(out, item)
+    else:
+        # str 以及其他类型（如numpy标量）按字符串或浮点编码
+        if hasattr(value, "item"):
+            _write_value(out, value.item())
+            return
+        data = str(value).encode("utf-8")
+        out.append(TAG_STRING)
+        _write_varint(out, len(data))
+        out += data
+
+
+class _Reader:
+    __slots__ = ("data", "pos")
+
+    def __init__(self, data: bytes):
+        self.data = memoryview(data)
+        self.pos = 0
+
+    def varint(self) -> int:
+        value = 0
+        shift = 0
+        while True:
+            b = self.data[self.pos]
+            self.pos += 1
+            value |= (b & 0x7F) << shift
+            if not b & 0x80:
+                return value
+            shift += 7
+
+    def value(self) -> Any:
+        tag = self.data[self.pos]
+        self.pos += 1
+        if tag == TAG_NULL:
+            return None
+        if tag == TAG_TRUE:
+            return True
+        if tag == TAG_FALSE:
+            return False
+        if tag == TAG_INT64:
+            value = _INT64.unpack_from(self.data, self.pos)[0]
+            self.pos += 8
+            return value
+        if tag == TAG_FLOAT64:
+            value = _FLOAT64.unpack_from(self.data, self.pos)[0]
+            self.pos += 8
+            return value
+        if tag == TAG_STRING:
+            length = self.varint()
+            value = bytes(self.data[self.pos:self.pos + length]).decode("utf-8")
+            self.pos += length
+            return value
+        if tag == TAG_LIST:
+            return [self.value() for _ in range(self.varint())]
+        if tag == TAG_MAP:
+            result = {}
+            for _ in range(self.varint()):
+                key = self.value()
+                result[key] = self.value()
+            return result
+        raise ValueError(f"未知的值类型标记: {tag}")
+
+
+def decode_request(payload: bytes) -> Dict[str, Any]:
+    """解码单个策略请求为字段字典"""
+    reader = _Reader(payload)
+    return _read_request(reader)
+
+
+def decode_batch_request(payload: bytes) -> List[Dict[str, Any]]:
+    """解码批量策略请求"""
+    reader = _Reader(payload)
+    return [_read_request(reader) for _ in range(reader.varint())]
+
+
+def _read_request(reader: _Reader) -> Dict[str, Any]:
+    fields = {name: reader.value() for name in REQUEST_FIELDS}
+    for name in ("marketData", "strategyParams", "position", "account"):
+        if fields[name] is None:
+            fields[name] = {}
+    return fields
+
+
+def encode_response(response: Dict[str, Any]) -> bytes:
+    """编码单个策略响应（字段字典）"""
+    out = bytearray()
+    _write_response(out, response)
+    return bytes(out)
+
+
+def encode_batch_response(responses: List[Dict[str, Any]]) -> bytes:
+    """编码批量策略响应"""
+    out = bytearray()
+    _write_varint(out, len(responses))
+    for response in responses:
+        _write_response(out, response)
+    return bytes(out)
+
+
+def _write_response(out: bytearray, response: Dict[str, Any]):
+    for name in RESPONSE_FIELDS:
+        _write_value(out, response.get(name))
+
+
+def encode_error(message: str) -> bytes:
+    """编码错误信息"""
+    out = bytearray()
+    _write_value(out, message)
+    return bytes(out)